@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.Extension;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.Service;
+import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.algebra.helpers.TupleExprs;
+
+/**
+ * An evaluation strategy that evaluates filters, projections, extensions and hash joins a batch of solutions at a
+ * time, see {@link BindingSetBatch}. Chains of these operators pass batches to each other, and the solutions of all
+ * other operators are collected in batches by a {@link BatchingIteration} and returned one at a time by an
+ * {@link UnbatchingIteration}. The results are the same as those of {@link StrictEvaluationStrategy}.
+ */
+public class BatchEvaluationStrategy extends StrictEvaluationStrategy {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final long iterationCacheSyncThreshold;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public BatchEvaluationStrategy(TripleSource tripleSource, FederatedServiceResolver serviceResolver) {
+		this(tripleSource, null, serviceResolver);
+	}
+
+	public BatchEvaluationStrategy(TripleSource tripleSource, Dataset dataset,
+			FederatedServiceResolver serviceResolver) {
+		this(tripleSource, dataset, serviceResolver, 0, new EvaluationStatistics());
+	}
+
+	public BatchEvaluationStrategy(TripleSource tripleSource, Dataset dataset,
+			FederatedServiceResolver serviceResolver, long iterationCacheSyncThreshold,
+			EvaluationStatistics evaluationStatistics) {
+		super(tripleSource, dataset, serviceResolver, iterationCacheSyncThreshold, evaluationStatistics);
+		this.iterationCacheSyncThreshold = iterationCacheSyncThreshold;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Projection projection, BindingSet bindings)
+			throws QueryEvaluationException {
+		return new UnbatchingIteration(evaluateBatches(projection, bindings));
+	}
+
+	@Override
+	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Filter filter, BindingSet bindings)
+			throws QueryEvaluationException {
+		return new UnbatchingIteration(evaluateBatches(filter, bindings));
+	}
+
+	@Override
+	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Extension extension, BindingSet bindings)
+			throws QueryEvaluationException {
+		return new UnbatchingIteration(evaluateBatches(extension, bindings));
+	}
+
+	@Override
+	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Join join, BindingSet bindings)
+			throws QueryEvaluationException {
+		if (isBatchHashJoin(join)) {
+			return new UnbatchingIteration(evaluateBatches(join, bindings));
+		}
+		return super.evaluate(join, bindings);
+	}
+
+	/**
+	 * Evaluates a tuple expression a batch of solutions at a time.
+	 */
+	protected CloseableIteration<BindingSetBatch, QueryEvaluationException> evaluateBatches(TupleExpr expr,
+			BindingSet bindings) throws QueryEvaluationException {
+		if (expr instanceof Filter) {
+			Filter filter = (Filter) expr;
+			return new FilterBatchIteration(filter, evaluateBatches(filter.getArg(), bindings), this);
+		} else if (expr instanceof Projection) {
+			Projection projection = (Projection) expr;
+			return new ProjectionBatchIteration(projection, evaluateBatches(projection.getArg(), bindings), bindings);
+		} else if (expr instanceof Extension) {
+			Extension extension = (Extension) expr;
+			CloseableIteration<BindingSetBatch, QueryEvaluationException> result;
+			try {
+				result = evaluateBatches(extension.getArg(), bindings);
+			} catch (ValueExprEvaluationException e) {
+				// a type error in an extension argument should be silently ignored and result in zero bindings
+				result = new EmptyIteration<>();
+			}
+			return new ExtensionBatchIteration(extension, result, this);
+		} else if (expr instanceof Join && isBatchHashJoin((Join) expr)) {
+			Join join = (Join) expr;
+			return new HashJoinBatchIteration(evaluateBatches(join.getLeftArg(), bindings),
+					join.getLeftArg().getBindingNames(), evaluateBatches(join.getRightArg(), bindings),
+					join.getRightArg().getBindingNames());
+		} else {
+			return new BatchingIteration(evaluate(expr, bindings));
+		}
+	}
+
+	/**
+	 * Determines whether a join is evaluated as a batch hash join. Like {@link StrictEvaluationStrategy}, only joins
+	 * with a subquery as right argument are hash joins, and the joins that may have to spill to disk are left to
+	 * {@link org.eclipse.rdf4j.query.algebra.evaluation.iterator.HashJoinIteration}.
+	 */
+	private boolean isBatchHashJoin(Join join) {
+		TupleExpr rightArg = join.getRightArg();
+		return !(rightArg instanceof Service) && TupleExprs.containsSubquery(rightArg)
+				&& iterationCacheSyncThreshold <= 0;
+	}
+
+	/**
+	 * Determines whether a query model node contains a subquery whose evaluation may keep the binding set it is
+	 * evaluated with.
+	 */
+	static boolean containsSubQuery(QueryModelNode node) {
+		boolean[] found = { false };
+		node.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+
+			@Override
+			protected void meetNode(QueryModelNode node) {
+				if (node instanceof SubQueryValueOperator) {
+					found[0] = true;
+				} else {
+					super.meetNode(node);
+				}
+			}
+		});
+		return found[0];
+	}
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.federation.FederatedServiceResolver;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
+
+/**
+ * Creates {@link BatchEvaluationStrategy} instances.
+ */
+public class BatchEvaluationStrategyFactory extends StrictEvaluationStrategyFactory {
+
+	public BatchEvaluationStrategyFactory() {
+	}
+
+	public BatchEvaluationStrategyFactory(FederatedServiceResolver resolver) {
+		super(resolver);
+	}
+
+	@Override
+	public EvaluationStrategy createEvaluationStrategy(Dataset dataset, TripleSource tripleSource,
+			EvaluationStatistics evaluationStatistics) {
+		BatchEvaluationStrategy strategy = new BatchEvaluationStrategy(tripleSource, dataset,
+				getFederatedServiceResolver(), getQuerySolutionCacheThreshold(), evaluationStatistics);
+		getOptimizerPipeline().ifPresent(pipeline -> strategy.setOptimizerPipeline(pipeline));
+		return strategy;
+	}
+}
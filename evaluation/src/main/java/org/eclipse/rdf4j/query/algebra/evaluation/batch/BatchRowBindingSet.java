@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.AbstractBindingSet;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.impl.SimpleBinding;
+
+/**
+ * A view of a row of a {@link BindingSetBatch} as a binding set, used to evaluate value expressions over the
+ * rows of a batch without copying them. The view can be moved from row to row, so it must not be kept by the code it
+ * is passed to.
+ */
+class BatchRowBindingSet extends AbstractBindingSet {
+
+	private static final long serialVersionUID = -3212529497516218585L;
+
+	private final BindingSetBatch batch;
+
+	/**
+	 * Whether each column is visible, or <tt>null</tt> if all columns are, including the ones that are added later.
+	 */
+	private final boolean[] visible;
+
+	private int row;
+
+	/**
+	 * @param batch        The batch.
+	 * @param bindingNames The binding names that are visible, or <tt>null</tt> if all are.
+	 */
+	public BatchRowBindingSet(BindingSetBatch batch, Set<String> bindingNames) {
+		this.batch = batch;
+		if (bindingNames == null) {
+			this.visible = null;
+		} else {
+			this.visible = new boolean[batch.getColumnCount()];
+			for (String name : bindingNames) {
+				int column = batch.getColumnIndex(name);
+				if (column >= 0) {
+					visible[column] = true;
+				}
+			}
+		}
+	}
+
+	public void setRow(int row) {
+		this.row = row;
+	}
+
+	@Override
+	public Value getValue(String bindingName) {
+		int column = batch.getColumnIndex(bindingName);
+		return isVisible(column) ? batch.getValue(column, row) : null;
+	}
+
+	@Override
+	public boolean hasBinding(String bindingName) {
+		return getValue(bindingName) != null;
+	}
+
+	@Override
+	public Binding getBinding(String bindingName) {
+		Value value = getValue(bindingName);
+		return value != null ? new SimpleBinding(bindingName, value) : null;
+	}
+
+	@Override
+	public Set<String> getBindingNames() {
+		Set<String> bindingNames = new LinkedHashSet<>();
+		for (int column = 0; column < batch.getColumnCount(); column++) {
+			if (isVisible(column) && batch.getValue(column, row) != null) {
+				bindingNames.add(batch.getColumnName(column));
+			}
+		}
+		return bindingNames;
+	}
+
+	@Override
+	public Iterator<Binding> iterator() {
+		List<Binding> bindings = new ArrayList<>(batch.getColumnCount());
+		for (int column = 0; column < batch.getColumnCount(); column++) {
+			Value value = batch.getValue(column, row);
+			if (value != null && isVisible(column)) {
+				bindings.add(new SimpleBinding(batch.getColumnName(column), value));
+			}
+		}
+		return bindings.iterator();
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (int column = 0; column < batch.getColumnCount(); column++) {
+			if (isVisible(column) && batch.getValue(column, row) != null) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	private boolean isVisible(int column) {
+		return column >= 0 && (visible == null || column < visible.length && visible[column]);
+	}
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+
+/**
+ * Collects the solutions of a tuple-at-a-time iteration in batches. The first batches are small, so that little more
+ * than needed is evaluated when only the first solutions are consumed, and the batch size grows up to
+ * {@link #MAX_BATCH_SIZE} as more solutions are requested.
+ */
+public class BatchingIteration extends LookAheadIteration<BindingSetBatch, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	static final int MIN_BATCH_SIZE = 16;
+
+	static final int MAX_BATCH_SIZE = 1024;
+
+	private final CloseableIteration<BindingSet, QueryEvaluationException> iter;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private int batchSize = MIN_BATCH_SIZE;
+
+	/**
+	 * The binding names of the previous batch, which are likely to be the binding names of the next batch as well.
+	 */
+	private List<String> bindingNames;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public BatchingIteration(CloseableIteration<BindingSet, QueryEvaluationException> iter) {
+		this.iter = iter;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	protected BindingSetBatch getNextElement() throws QueryEvaluationException {
+		if (!iter.hasNext()) {
+			return null;
+		}
+
+		BindingSetBatch batch = new BindingSetBatch(batchSize);
+		if (bindingNames != null) {
+			for (String name : bindingNames) {
+				batch.addColumn(name);
+			}
+		}
+
+		while (batch.getRowCount() < batchSize && iter.hasNext()) {
+			BindingSet bindingSet = iter.next();
+			int row = batch.addRow();
+			for (Binding binding : bindingSet) {
+				if (binding.getValue() != null) {
+					batch.setValue(batch.addColumn(binding.getName()), row, binding.getValue());
+				}
+			}
+		}
+
+		bindingNames = new ArrayList<>(batch.getBindingNames());
+		batchSize = Math.min(batchSize * 2, MAX_BATCH_SIZE);
+		return batch;
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			iter.close();
+		}
+	}
+}
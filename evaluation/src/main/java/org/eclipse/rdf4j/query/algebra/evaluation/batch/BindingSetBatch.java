@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+
+/**
+ * A batch of solutions in columnar form. The values of every binding name are kept in a column array that is indexed
+ * by row, with <tt>null</tt> for rows in which the name is unbound. A selection vector records which rows belong to
+ * the batch, so that rows can be dropped without moving the others.
+ * <p>
+ * Column arrays may be shared between batches, so a column must not be modified once the batch has been handed to
+ * another operator. Operators that change the values of a column replace it with a new array instead.
+ */
+public class BindingSetBatch {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final int capacity;
+
+	private final List<String> names = new ArrayList<>();
+
+	private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+	private final List<Value[]> columns = new ArrayList<>();
+
+	private int rowCount;
+
+	/**
+	 * The selected rows, in ascending order, or <tt>null</tt> if all rows are selected.
+	 */
+	private int[] selection;
+
+	private int selectionSize;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param capacity The maximum number of rows of the batch.
+	 */
+	public BindingSetBatch(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Creates a batch without columns that has the same rows as this batch.
+	 */
+	public BindingSetBatch withSameRows() {
+		BindingSetBatch result = new BindingSetBatch(capacity);
+		result.rowCount = rowCount;
+		result.selection = selection;
+		result.selectionSize = selectionSize;
+		return result;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of rows of this batch, including the rows that are not selected.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Adds a row in which all binding names are unbound.
+	 *
+	 * @return The index of the new row.
+	 */
+	public int addRow() {
+		if (rowCount >= capacity) {
+			throw new IllegalStateException("Batch is full");
+		}
+		if (selection != null) {
+			selection[selectionSize++] = rowCount;
+		}
+		return rowCount++;
+	}
+
+	/**
+	 * Gets the number of selected rows.
+	 */
+	public int size() {
+		return selection != null ? selectionSize : rowCount;
+	}
+
+	/**
+	 * Gets the row index of a selected row.
+	 *
+	 * @param index The index of the row in the selection, less than {@link #size()}.
+	 */
+	public int getRow(int index) {
+		return selection != null ? selection[index] : index;
+	}
+
+	/**
+	 * Restricts the selected rows.
+	 *
+	 * @param rows The rows to select, in ascending order, in an array of at least the capacity of this batch.
+	 * @param size The number of rows to select.
+	 */
+	public void setSelection(int[] rows, int size) {
+		this.selection = rows;
+		this.selectionSize = size;
+	}
+
+	public List<String> getBindingNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	/**
+	 * @return The index of the column of a binding name, or -1 if this batch has no such column.
+	 */
+	public int getColumnIndex(String name) {
+		Integer index = columnIndexes.get(name);
+		return index != null ? index : -1;
+	}
+
+	public String getColumnName(int column) {
+		return names.get(column);
+	}
+
+	public Value[] getColumn(int column) {
+		return columns.get(column);
+	}
+
+	/**
+	 * Adds an empty column for a binding name, unless this batch already has one.
+	 *
+	 * @return The index of the column.
+	 */
+	public int addColumn(String name) {
+		int index = getColumnIndex(name);
+		if (index < 0) {
+			index = columns.size();
+			names.add(name);
+			columnIndexes.put(name, index);
+			columns.add(new Value[capacity]);
+		}
+		return index;
+	}
+
+	/**
+	 * Sets the column of a binding name, replacing the current column if there is one.
+	 *
+	 * @param values The values of the column, in an array of at least the capacity of this batch.
+	 */
+	public void setColumn(String name, Value[] values) {
+		int index = getColumnIndex(name);
+		if (index < 0) {
+			names.add(name);
+			columnIndexes.put(name, columns.size());
+			columns.add(values);
+		} else {
+			columns.set(index, values);
+		}
+	}
+
+	/**
+	 * Sets the values of a binding name in the rows in which they are bound, keeping the current values of the other
+	 * rows.
+	 */
+	public void mergeColumn(String name, Value[] values) {
+		int index = getColumnIndex(name);
+		if (index < 0) {
+			setColumn(name, values);
+		} else {
+			Value[] merged = columns.get(index).clone();
+			for (int row = 0; row < rowCount; row++) {
+				if (values[row] != null) {
+					merged[row] = values[row];
+				}
+			}
+			columns.set(index, merged);
+		}
+	}
+
+	public Value getValue(int column, int row) {
+		return columns.get(column)[row];
+	}
+
+	/**
+	 * Sets a value in a column that has been added to this batch by {@link #addColumn(String)}, and that has not been
+	 * handed to another operator yet.
+	 */
+	public void setValue(int column, int row, Value value) {
+		columns.get(column)[row] = value;
+	}
+
+	/**
+	 * Creates a binding set with the values of a row.
+	 */
+	public BindingSet getBindingSet(int row) {
+		QueryBindingSet bindingSet = new QueryBindingSet(columns.size());
+		for (int column = 0; column < columns.size(); column++) {
+			Value value = columns.get(column)[row];
+			if (value != null) {
+				bindingSet.addBinding(names.get(column), value);
+			}
+		}
+		return bindingSet;
+	}
+}
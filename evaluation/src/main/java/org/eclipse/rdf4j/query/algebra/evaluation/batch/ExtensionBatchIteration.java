@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.AggregateOperator;
+import org.eclipse.rdf4j.query.algebra.Extension;
+import org.eclipse.rdf4j.query.algebra.ExtensionElem;
+import org.eclipse.rdf4j.query.algebra.ValueExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * Evaluates the elements of an {@link Extension} on the selected rows of every batch, one element at a time, and
+ * replaces the column of each element with a column that holds the results.
+ */
+public class ExtensionBatchIteration
+		extends ConvertingIteration<BindingSetBatch, BindingSetBatch, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final Extension extension;
+
+	private final EvaluationStrategy strategy;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public ExtensionBatchIteration(Extension extension,
+			CloseableIteration<BindingSetBatch, QueryEvaluationException> iter, EvaluationStrategy strategy) {
+		super(iter);
+		this.extension = extension;
+		this.strategy = strategy;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	protected BindingSetBatch convert(BindingSetBatch batch) throws QueryEvaluationException {
+		BatchRowBindingSet view = new BatchRowBindingSet(batch, null);
+
+		for (ExtensionElem extElem : extension.getElements()) {
+			ValueExpr expr = extElem.getExpr();
+			if (expr instanceof AggregateOperator) {
+				continue;
+			}
+
+			boolean copyRows = BatchEvaluationStrategy.containsSubQuery(expr);
+			int column = batch.getColumnIndex(extElem.getName());
+			Value[] values = column >= 0 ? batch.getColumn(column).clone() : new Value[batch.getCapacity()];
+
+			for (int i = 0; i < batch.size(); i++) {
+				int row = batch.getRow(i);
+				view.setRow(row);
+				try {
+					Value targetValue = strategy.evaluate(expr, copyRows ? new QueryBindingSet(view) : view);
+					if (targetValue != null) {
+						// Potentially overwrites bindings from super
+						values[row] = targetValue;
+					}
+				} catch (ValueExprEvaluationException e) {
+					// silently ignore type errors in extension arguments. They should cause the binding to be
+					// unbound, like ExtensionIterator does, see https://www.w3.org/TR/sparql11-query/#assignment
+					values[row] = null;
+				}
+			}
+
+			// the column is set before the next element is evaluated, so that it can use the values of this one
+			batch.setColumn(extElem.getName(), values);
+		}
+
+		return batch;
+	}
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.Filter;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
+
+/**
+ * Evaluates the condition of a {@link Filter} on the selected rows of every batch, and narrows the selection of the
+ * batch down to the rows for which it is true. Batches in which no row remains are skipped.
+ */
+public class FilterBatchIteration extends LookAheadIteration<BindingSetBatch, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final Filter filter;
+
+	private final CloseableIteration<BindingSetBatch, QueryEvaluationException> iter;
+
+	private final EvaluationStrategy strategy;
+
+	/**
+	 * The binding names that are in scope for the filter, or <tt>null</tt> if all binding names are, see
+	 * {@link org.eclipse.rdf4j.query.algebra.evaluation.iterator.FilterIterator}.
+	 */
+	private final Set<String> scopeBindingNames;
+
+	/**
+	 * Whether the condition is evaluated on a copy of each row, because it contains subqueries that may keep the
+	 * binding set they are evaluated with.
+	 */
+	private final boolean copyRows;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public FilterBatchIteration(Filter filter, CloseableIteration<BindingSetBatch, QueryEvaluationException> iter,
+			EvaluationStrategy strategy) {
+		this.filter = filter;
+		this.iter = iter;
+		this.strategy = strategy;
+		this.scopeBindingNames = isPartOfSubQuery(filter) ? null : filter.getBindingNames();
+		this.copyRows = BatchEvaluationStrategy.containsSubQuery(filter.getCondition());
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	private static boolean isPartOfSubQuery(QueryModelNode node) {
+		for (QueryModelNode n = node; n != null; n = n.getParentNode()) {
+			if (n instanceof SubQueryValueOperator) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected BindingSetBatch getNextElement() throws QueryEvaluationException {
+		while (iter.hasNext()) {
+			BindingSetBatch batch = iter.next();
+			BatchRowBindingSet view = new BatchRowBindingSet(batch, scopeBindingNames);
+
+			int[] selection = new int[batch.getCapacity()];
+			int size = 0;
+			for (int i = 0; i < batch.size(); i++) {
+				int row = batch.getRow(i);
+				view.setRow(row);
+				if (accept(copyRows ? new QueryBindingSet(view) : view)) {
+					selection[size++] = row;
+				}
+			}
+
+			if (size > 0) {
+				batch.setSelection(selection, size);
+				return batch;
+			}
+		}
+		return null;
+	}
+
+	private boolean accept(BindingSet bindings) throws QueryEvaluationException {
+		try {
+			return strategy.isTrue(filter.getCondition(), bindings);
+		} catch (ValueExprEvaluationException e) {
+			// failed to evaluate condition
+			return false;
+		}
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			iter.close();
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.BindingSetHashKey;
+
+/**
+ * Joins two batch iterations with an in-memory hash table that is built from all solutions of the right argument.
+ * The rows of each left batch are probed against the hash table, and the joined rows are collected in batches of at
+ * most {@link BatchingIteration#MAX_BATCH_SIZE} rows. A left row in which no binding name is bound is compatible with
+ * every right solution.
+ */
+public class HashJoinBatchIteration extends LookAheadIteration<BindingSetBatch, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final CloseableIteration<BindingSetBatch, QueryEvaluationException> leftIter;
+
+	private final CloseableIteration<BindingSetBatch, QueryEvaluationException> rightIter;
+
+	private final String[] joinAttributes;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private Map<BindingSetHashKey, List<BindingSet>> hashTable;
+
+	private List<BindingSet> rightSolutions;
+
+	private Set<String> rightBindingNames;
+
+	private BindingSetBatch leftBatch;
+
+	private BatchRowBindingSet leftRow;
+
+	private int leftIndex;
+
+	private int currentRow;
+
+	private List<BindingSet> matches;
+
+	private int matchIndex;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public HashJoinBatchIteration(CloseableIteration<BindingSetBatch, QueryEvaluationException> leftIter,
+			Set<String> leftBindingNames, CloseableIteration<BindingSetBatch, QueryEvaluationException> rightIter,
+			Set<String> rightBindingNames) {
+		this.leftIter = leftIter;
+		this.rightIter = rightIter;
+
+		Set<String> joinAttributeNames = new HashSet<>(leftBindingNames);
+		joinAttributeNames.retainAll(rightBindingNames);
+		this.joinAttributes = joinAttributeNames.toArray(new String[joinAttributeNames.size()]);
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	protected BindingSetBatch getNextElement() throws QueryEvaluationException {
+		if (hashTable == null) {
+			setupHashTable();
+		}
+
+		BindingSetBatch result = null;
+		while (true) {
+			if (leftBatch == null) {
+				// a result batch never holds the rows of more than one left batch
+				if (result != null || !leftIter.hasNext()) {
+					return result;
+				}
+				leftBatch = leftIter.next();
+				leftRow = new BatchRowBindingSet(leftBatch, null);
+				leftIndex = 0;
+				matches = null;
+			}
+
+			while (matches == null || matchIndex >= matches.size()) {
+				if (leftIndex >= leftBatch.size()) {
+					break;
+				}
+				currentRow = leftBatch.getRow(leftIndex++);
+				leftRow.setRow(currentRow);
+				if (leftRow.size() == 0) {
+					matches = rightSolutions;
+				} else {
+					matches = hashTable.get(BindingSetHashKey.create(joinAttributes, leftRow));
+				}
+				matchIndex = 0;
+			}
+
+			if (matches == null || matchIndex >= matches.size()) {
+				// the left batch is exhausted
+				leftBatch = null;
+				leftRow = null;
+				matches = null;
+			} else if (result == null) {
+				result = createResultBatch();
+			} else if (result.getRowCount() == result.getCapacity()) {
+				return result;
+			} else {
+				addRow(result, matches.get(matchIndex++));
+			}
+		}
+	}
+
+	private void setupHashTable() throws QueryEvaluationException {
+		hashTable = new HashMap<>();
+		rightSolutions = new ArrayList<>();
+		rightBindingNames = new LinkedHashSet<>();
+
+		while (rightIter.hasNext()) {
+			BindingSetBatch batch = rightIter.next();
+			rightBindingNames.addAll(batch.getBindingNames());
+			for (int i = 0; i < batch.size(); i++) {
+				BindingSet solution = batch.getBindingSet(batch.getRow(i));
+				rightSolutions.add(solution);
+				hashTable.computeIfAbsent(BindingSetHashKey.create(joinAttributes, solution), k -> new ArrayList<>())
+						.add(solution);
+			}
+		}
+	}
+
+	private BindingSetBatch createResultBatch() {
+		BindingSetBatch result = new BindingSetBatch(BatchingIteration.MAX_BATCH_SIZE);
+		// the left columns come first, so that they have the same indexes as in the left batch
+		for (String name : leftBatch.getBindingNames()) {
+			result.addColumn(name);
+		}
+		for (String name : rightBindingNames) {
+			result.addColumn(name);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the join of the current left row and a right solution to a result batch.
+	 */
+	private void addRow(BindingSetBatch result, BindingSet rightSolution) {
+		int row = result.addRow();
+		for (int column = 0; column < leftBatch.getColumnCount(); column++) {
+			result.setValue(column, row, leftBatch.getValue(column, currentRow));
+		}
+		for (Binding binding : rightSolution) {
+			int column = result.getColumnIndex(binding.getName());
+			if (result.getValue(column, row) == null) {
+				result.setValue(column, row, binding.getValue());
+			}
+		}
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			try {
+				leftIter.close();
+			} finally {
+				rightIter.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.MultiProjection;
+import org.eclipse.rdf4j.query.algebra.Projection;
+import org.eclipse.rdf4j.query.algebra.ProjectionElem;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
+
+/**
+ * Projects every batch onto the elements of a {@link Projection}, with the same semantics as
+ * {@link org.eclipse.rdf4j.query.algebra.evaluation.iterator.ProjectionIterator}. The columns of the source batch are
+ * shared with the projected batch rather than copied, unless values of the parent bindings have to be filled in.
+ */
+public class ProjectionBatchIteration
+		extends ConvertingIteration<BindingSetBatch, BindingSetBatch, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final Projection projection;
+
+	private final BindingSet parentBindings;
+
+	private final boolean isOuterProjection;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public ProjectionBatchIteration(Projection projection,
+			CloseableIteration<BindingSetBatch, QueryEvaluationException> iter, BindingSet parentBindings) {
+		super(iter);
+		this.projection = projection;
+		this.parentBindings = parentBindings;
+		this.isOuterProjection = determineOuterProjection();
+	}
+
+	private boolean determineOuterProjection() {
+		QueryModelNode ancestor = projection;
+		while (ancestor.getParentNode() != null) {
+			ancestor = ancestor.getParentNode();
+			if (ancestor instanceof Projection || ancestor instanceof MultiProjection) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	protected BindingSetBatch convert(BindingSetBatch source) throws QueryEvaluationException {
+		boolean includeAllParentBindings = !isOuterProjection;
+		BindingSetBatch result = source.withSameRows();
+
+		if (includeAllParentBindings) {
+			for (Binding binding : parentBindings) {
+				if (binding.getValue() != null) {
+					result.setColumn(binding.getName(), createConstantColumn(source, binding.getValue()));
+				}
+			}
+		}
+
+		for (ProjectionElem pe : projection.getProjectionElemList().getElements()) {
+			int sourceColumn = source.getColumnIndex(pe.getSourceName());
+			Value parentValue = includeAllParentBindings ? null : parentBindings.getValue(pe.getSourceName());
+
+			Value[] values;
+			if (sourceColumn < 0) {
+				values = parentValue != null ? createConstantColumn(source, parentValue) : null;
+			} else if (parentValue != null) {
+				values = source.getColumn(sourceColumn).clone();
+				for (int row = 0; row < source.getRowCount(); row++) {
+					if (values[row] == null) {
+						values[row] = parentValue;
+					}
+				}
+			} else {
+				values = source.getColumn(sourceColumn);
+			}
+
+			if (values != null) {
+				result.mergeColumn(pe.getTargetName(), values);
+			}
+		}
+
+		return result;
+	}
+
+	private static Value[] createConstantColumn(BindingSetBatch batch, Value value) {
+		Value[] values = new Value[batch.getCapacity()];
+		Arrays.fill(values, 0, batch.getRowCount(), value);
+		return values;
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+
+/**
+ * Returns the selected rows of a batch iteration one solution at a time, for the operators that are evaluated tuple
+ * at a time.
+ */
+public class UnbatchingIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private final CloseableIteration<BindingSetBatch, QueryEvaluationException> iter;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private BindingSetBatch batch;
+
+	private int index;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public UnbatchingIteration(CloseableIteration<BindingSetBatch, QueryEvaluationException> iter) {
+		this.iter = iter;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	@Override
+	protected BindingSet getNextElement() throws QueryEvaluationException {
+		while (batch == null || index >= batch.size()) {
+			if (!iter.hasNext()) {
+				batch = null;
+				return null;
+			}
+			batch = iter.next();
+			index = 0;
+		}
+		return batch.getBindingSet(batch.getRow(index++));
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			batch = null;
+			iter.close();
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
@@ -135,11 +136,14 @@ import org.eclipse.rdf4j.query.algebra.evaluation.iterator.OrderIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.PathIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ProjectionIterator;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.SPARQLMinusIteration;
+import org.eclipse.rdf4j.query.algebra.evaluation.iterator.TransitiveClosureIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.iterator.ZeroLengthPathIteration;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.EvaluationStrategies;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.MathUtil;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.OrderComparator;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryBackgroundExecutor;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryEvaluationUtil;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryMemoryBudget;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.ValueComparator;
 import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
 import org.eclipse.rdf4j.query.algebra.helpers.TupleExprs;
@@ -177,10 +181,20 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	private final long iterationCacheSyncThreshold;
 
+	/**
+	 * The number of intermediate results that the operators of the query may keep in memory before spilling to disk.
+	 */
+	private final QueryMemoryBudget memoryBudget;
+
 	private final UUID uuid;
 
 	private QueryOptimizerPipeline pipeline;
 
+	/**
+	 * The executor on which the operators of the query run their background work.
+	 */
+	private volatile Executor backgroundExecutor;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -201,6 +215,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		this.dataset = dataset;
 		this.serviceResolver = serviceResolver;
 		this.iterationCacheSyncThreshold = iterationCacheSyncTreshold;
+		this.memoryBudget = new QueryMemoryBudget(iterationCacheSyncTreshold);
 		this.pipeline = new StandardQueryOptimizerPipeline(this, tripleSource, evaluationStatistics);
 		this.uuid = UUID.randomUUID();
 		EvaluationStrategies.register(this);
@@ -231,6 +246,25 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		this.pipeline = pipeline;
 	}
 
+	/**
+	 * Sets the executor on which the operators of the query run their background work, such as spilling sorted runs to
+	 * disk. By default, the {@link QueryBackgroundExecutor#getSharedInstance() shared} executor is used.
+	 * 
+	 * @param executor a bounded executor, that is not used for work that waits on the work of query operators.
+	 */
+	public void setBackgroundExecutor(Executor executor) {
+		Objects.requireNonNull(executor);
+		this.backgroundExecutor = executor;
+	}
+
+	/**
+	 * Gets the executor on which the operators of the query run their background work.
+	 */
+	public Executor getBackgroundExecutor() {
+		Executor executor = backgroundExecutor;
+		return executor != null ? executor : QueryBackgroundExecutor.getSharedInstance();
+	}
+
 	@Override
 	public TupleExpr optimize(TupleExpr expr, EvaluationStatistics evaluationStatistics, BindingSet bindings) {
 		TupleExpr optimizedExpr = expr;
@@ -278,6 +312,27 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		final Var contextVar = alp.getContextVar();
 		final long minLength = alp.getMinLength();
 
+		if (minLength <= 1 && !isUnbound(subjectVar, bindings) && !isUnbound(objVar, bindings)
+				&& (!subjectVar.getName().equals(objVar.getName()) || getVarValue(subjectVar, bindings) != null)) {
+			// paths over simple predicates are evaluated by searching the triple source directly
+			List<TransitiveClosureIteration.Edge> edges = TransitiveClosureIteration.getEdges(alp);
+			Value contextValue = getVarValue(contextVar, bindings);
+			if (edges != null && (contextVar == null || contextValue != null)) {
+				Resource[] contexts;
+				try {
+					contexts = getContexts(scope, contextValue);
+				} catch (ClassCastException e) {
+					// Invalid value type for context
+					return new EmptyIteration<>();
+				}
+				if (contexts == null) {
+					return new EmptyIteration<>();
+				}
+				return new TransitiveClosureIteration(this, tripleSource, scope, subjectVar, edges, objVar, contextVar,
+						contexts, minLength, bindings);
+			}
+		}
+
 		return new PathIteration(this, scope, subjectVar, pathExpression, objVar, contextVar, minLength, bindings);
 	}
 
@@ -456,55 +511,9 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		boolean allGood = false;
 		try {
 			try {
-				Resource[] contexts;
-
-				Set<IRI> graphs = null;
-				boolean emptyGraph = false;
-
-				if (dataset != null) {
-					if (sp.getScope() == Scope.DEFAULT_CONTEXTS) {
-						graphs = dataset.getDefaultGraphs();
-						emptyGraph = graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty();
-					} else {
-						graphs = dataset.getNamedGraphs();
-						emptyGraph = graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty();
-					}
-				}
-
-				if (emptyGraph) {
-					// Search zero contexts
+				Resource[] contexts = getContexts(sp.getScope(), contextValue);
+				if (contexts == null) {
 					return new EmptyIteration<>();
-				} else if (graphs == null || graphs.isEmpty()) {
-					// store default behaivour
-					if (contextValue != null) {
-						contexts = new Resource[] { (Resource) contextValue };
-					}
-					/*
-					 * TODO activate this to have an exclusive (rather than inclusive) interpretation of the default
-					 * graph in SPARQL querying. else if (sp.getScope() == Scope.DEFAULT_CONTEXTS ) { contexts = new
-					 * Resource[] { (Resource)null }; }
-					 */
-					else {
-						contexts = new Resource[0];
-					}
-				} else if (contextValue != null) {
-					if (graphs.contains(contextValue)) {
-						contexts = new Resource[] { (Resource) contextValue };
-					} else {
-						// Statement pattern specifies a context that is not part of
-						// the dataset
-						return new EmptyIteration<>();
-					}
-				} else {
-					contexts = new Resource[graphs.size()];
-					int i = 0;
-					for (IRI graph : graphs) {
-						IRI context = null;
-						if (!SESAME.NIL.equals(graph)) {
-							context = graph;
-						}
-						contexts[i++] = context;
-					}
 				}
 
 				stIter1 = tripleSource.getStatements((Resource) subjValue, (IRI) predValue, objValue, contexts);
@@ -625,6 +634,67 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		}
 	}
 
+	/**
+	 * Determines the contexts that statements matching a pattern with the supplied scope and context value are
+	 * retrieved from, taking the dataset of this strategy into account.
+	 *
+	 * @param scope        The scope of the pattern.
+	 * @param contextValue The value of the pattern's context variable, or <tt>null</tt> if it has no value.
+	 * @return The contexts to retrieve statements from, an empty array for all contexts, or <tt>null</tt> if no
+	 *         statements can match.
+	 * @throws ClassCastException If the context value is not a resource.
+	 */
+	protected Resource[] getContexts(Scope scope, Value contextValue) {
+		Set<IRI> graphs = null;
+		boolean emptyGraph = false;
+
+		if (dataset != null) {
+			if (scope == Scope.DEFAULT_CONTEXTS) {
+				graphs = dataset.getDefaultGraphs();
+				emptyGraph = graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty();
+			} else {
+				graphs = dataset.getNamedGraphs();
+				emptyGraph = graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty();
+			}
+		}
+
+		if (emptyGraph) {
+			// Search zero contexts
+			return null;
+		} else if (graphs == null || graphs.isEmpty()) {
+			// store default behaivour
+			if (contextValue != null) {
+				return new Resource[] { (Resource) contextValue };
+			}
+			/*
+			 * TODO activate this to have an exclusive (rather than inclusive) interpretation of the default graph in
+			 * SPARQL querying. else if (scope == Scope.DEFAULT_CONTEXTS ) { return new Resource[] { (Resource)null }; }
+			 */
+			else {
+				return new Resource[0];
+			}
+		} else if (contextValue != null) {
+			if (graphs.contains(contextValue)) {
+				return new Resource[] { (Resource) contextValue };
+			} else {
+				// Statement pattern specifies a context that is not part of
+				// the dataset
+				return null;
+			}
+		} else {
+			Resource[] contexts = new Resource[graphs.size()];
+			int i = 0;
+			for (IRI graph : graphs) {
+				IRI context = null;
+				if (!SESAME.NIL.equals(graph)) {
+					context = graph;
+				}
+				contexts[i++] = context;
+			}
+			return contexts;
+		}
+	}
+
 	protected boolean isUnbound(Var var, BindingSet bindings) {
 		if (var == null) {
 			return false;
@@ -800,7 +870,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Group node, BindingSet bindings)
 			throws QueryEvaluationException {
-		return new GroupIterator(this, node, bindings, iterationCacheSyncThreshold);
+		return new GroupIterator(this, node, bindings, memoryBudget, getBackgroundExecutor());
 	}
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Order node, BindingSet bindings)
@@ -809,7 +879,8 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		OrderComparator cmp = new OrderComparator(this, node, vcmp);
 		boolean reduced = isReducedOrDistinct(node);
 		long limit = getLimit(node);
-		return new OrderIterator(evaluate(node.getArg(), bindings), cmp, limit, reduced, iterationCacheSyncThreshold);
+		return new OrderIterator(evaluate(node.getArg(), bindings), cmp, limit, reduced, iterationCacheSyncThreshold,
+				getBackgroundExecutor());
 	}
 
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(BinaryTupleOperator expr,
@@ -841,7 +912,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 		}
 
 		if (TupleExprs.containsSubquery(join.getRightArg())) {
-			return new HashJoinIteration(this, join, bindings);
+			return new HashJoinIteration(this, join, bindings, memoryBudget);
 		} else {
 			return new JoinIterator(this, join, bindings);
 		}
@@ -850,7 +921,7 @@ public class StrictEvaluationStrategy implements EvaluationStrategy, FederatedSe
 	public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(LeftJoin leftJoin,
 			final BindingSet bindings) throws QueryEvaluationException {
 		if (TupleExprs.containsSubquery(leftJoin.getRightArg())) {
-			return new HashJoinIteration(this, leftJoin, bindings);
+			return new HashJoinIteration(this, leftJoin, bindings, memoryBudget);
 		}
 
 		// Check whether optional join is "well designed" as defined in section
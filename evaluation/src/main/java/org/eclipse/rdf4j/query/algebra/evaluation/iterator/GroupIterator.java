@@ -7,21 +7,31 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Collection;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.lang.ObjectUtil;
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.datatypes.XMLDatatypeUtil;
@@ -32,26 +42,39 @@ import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.algebra.AbstractAggregateOperator;
 import org.eclipse.rdf4j.query.algebra.AggregateOperator;
 import org.eclipse.rdf4j.query.algebra.Avg;
+import org.eclipse.rdf4j.query.algebra.BNodeGenerator;
 import org.eclipse.rdf4j.query.algebra.Count;
+import org.eclipse.rdf4j.query.algebra.FunctionCall;
 import org.eclipse.rdf4j.query.algebra.Group;
 import org.eclipse.rdf4j.query.algebra.GroupConcat;
 import org.eclipse.rdf4j.query.algebra.GroupElem;
 import org.eclipse.rdf4j.query.algebra.MathExpr.MathOp;
 import org.eclipse.rdf4j.query.algebra.Max;
 import org.eclipse.rdf4j.query.algebra.Min;
+import org.eclipse.rdf4j.query.algebra.QueryModelNode;
 import org.eclipse.rdf4j.query.algebra.Sample;
+import org.eclipse.rdf4j.query.algebra.SubQueryValueOperator;
 import org.eclipse.rdf4j.query.algebra.Sum;
 import org.eclipse.rdf4j.query.algebra.ValueExpr;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.ValueExprEvaluationException;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.MathUtil;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryBackgroundExecutor;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryMemoryBudget;
 import org.eclipse.rdf4j.query.algebra.evaluation.util.ValueComparator;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
 
 /**
+ * Evaluates a {@link Group} by hash aggregation.
+ * <p>
+ * The solutions of the argument are divided into partitions by the hash of their group bindings. Every partition keeps
+ * its own groups, so the partitions are aggregated in parallel, in batches of solutions, if the aggregates can be
+ * evaluated concurrently. Groups that do not fit in the {@link QueryMemoryBudget} are not kept in memory: their
+ * solutions are spilled to disk instead, and are aggregated by a later pass once the groups in memory have been
+ * reported.
+ * 
  * @author David Huynh
  * @author Arjohn Kampman
  * @author Jeen Broekstra
@@ -63,6 +86,15 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 	 * Constants *
 	 *-----------*/
 
+	private static final int PARTITION_BITS = 4;
+
+	private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+
+	/**
+	 * The number of solutions that is handed to a partition at once when partitions are aggregated in parallel.
+	 */
+	private static final int BATCH_SIZE = 1024;
+
 	private final SimpleValueFactory vf = SimpleValueFactory.getInstance();
 
 	private final EvaluationStrategy strategy;
@@ -75,15 +107,27 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 
 	private final Object lock = new Object();
 
-	private final File tempFile;
+	private final QueryMemoryBudget memoryBudget;
 
-	private final DB db;
+	/**
+	 * Whether the partitions are aggregated in parallel.
+	 */
+	private final boolean parallel;
+
+	/**
+	 * The executor on which the partitions are aggregated, if they are aggregated in parallel.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The partitions whose groups are yet to be reported.
+	 */
+	private final Deque<Partition> partitions = new ArrayDeque<>();
 
 	/**
-	 * Number of items cached before internal collections are synced to disk. If set to 0, no disk-syncing is done and
-	 * all internal caching is kept in memory.
+	 * The partition whose groups are being reported.
 	 */
-	private final long iterationCacheSyncThreshold;
+	private Partition currentPartition;
 
 	/*--------------*
 	 * Constructors *
@@ -96,22 +140,29 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 
 	public GroupIterator(EvaluationStrategy strategy, Group group, BindingSet parentBindings,
 			long iterationCacheSyncThreshold) throws QueryEvaluationException {
+		this(strategy, group, parentBindings, new QueryMemoryBudget(iterationCacheSyncThreshold));
+	}
+
+	/**
+	 * @param memoryBudget The memory budget of the query, which limits the number of groups that are kept in memory.
+	 */
+	public GroupIterator(EvaluationStrategy strategy, Group group, BindingSet parentBindings,
+			QueryMemoryBudget memoryBudget) throws QueryEvaluationException {
+		this(strategy, group, parentBindings, memoryBudget, QueryBackgroundExecutor.getSharedInstance());
+	}
+
+	/**
+	 * @param memoryBudget The memory budget of the query, which limits the number of groups that are kept in memory.
+	 * @param executor     The executor on which the partitions are aggregated in parallel.
+	 */
+	public GroupIterator(EvaluationStrategy strategy, Group group, BindingSet parentBindings,
+			QueryMemoryBudget memoryBudget, Executor executor) throws QueryEvaluationException {
 		this.strategy = strategy;
 		this.group = group;
 		this.parentBindings = parentBindings;
-		this.iterationCacheSyncThreshold = iterationCacheSyncThreshold;
-
-		if (this.iterationCacheSyncThreshold > 0) {
-			try {
-				this.tempFile = File.createTempFile("group-eval", null);
-			} catch (IOException e) {
-				throw new QueryEvaluationException("could not initialize temp db", e);
-			}
-			this.db = DBMaker.newFileDB(tempFile).deleteFilesAfterClose().closeOnJvmShutdown().make();
-		} else {
-			this.tempFile = null;
-			this.db = null;
-		}
+		this.memoryBudget = memoryBudget;
+		this.executor = executor;
+		this.parallel = QueryBackgroundExecutor.isParallel() && isThreadSafe(group);
 	}
 
 	/*---------*
@@ -149,65 +200,99 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 		try {
 			super.handleClose();
 		} finally {
-			if (db != null) {
-				db.close();
-			}
-		}
-	}
-
-	private <T> Set<T> createSet(String setName) {
-		if (db != null) {
-			return db.getHashSet(setName);
-		} else {
-			return new HashSet<>();
+			disposePartitions();
 		}
 	}
 
-	private Iterator<BindingSet> createIterator() throws QueryEvaluationException {
-		Collection<Entry> entries = buildEntries();
-		Set<BindingSet> bindingSets = createSet("bindingsets");
-
-		for (Entry entry : entries) {
-			QueryBindingSet sol = new QueryBindingSet(parentBindings);
-
-			for (String name : group.getGroupBindingNames()) {
-				BindingSet prototype = entry.getPrototype();
-				if (prototype != null) {
-					Value value = prototype.getValue(name);
-					if (value != null) {
-						// Potentially overwrites bindings from super
-						sol.setBinding(name, value);
-					}
+	/**
+	 * Checks whether the aggregates of a group can be evaluated by several threads at the same time. Subqueries,
+	 * functions and blank node generation may depend on state that is not safe to share between threads.
+	 */
+	private static boolean isThreadSafe(Group group) {
+		boolean[] threadSafe = { true };
+		AbstractQueryModelVisitor<RuntimeException> visitor = new AbstractQueryModelVisitor<RuntimeException>() {
+
+			@Override
+			protected void meetNode(QueryModelNode node) {
+				if (node instanceof SubQueryValueOperator || node instanceof FunctionCall
+						|| node instanceof BNodeGenerator) {
+					threadSafe[0] = false;
+				} else {
+					super.meetNode(node);
 				}
 			}
-
-			entry.bindSolution(sol);
-
-			bindingSets.add(sol);
+		};
+		for (GroupElem ge : group.getGroupElements()) {
+			ge.getOperator().visit(visitor);
 		}
-
-		return bindingSets.iterator();
+		return threadSafe[0];
 	}
 
-	private Collection<Entry> buildEntries() throws QueryEvaluationException {
+	private Iterator<BindingSet> createIterator() throws QueryEvaluationException {
 		CloseableIteration<BindingSet, QueryEvaluationException> iter;
 		iter = strategy.evaluate(group.getArg(), parentBindings);
 
 		try {
-			Map<Key, Entry> entries = new LinkedHashMap<>();
-
 			if (!iter.hasNext()) {
 				// no solutions, but if aggregates are present we still need to process them to produce a
 				// zero-result.
 				final Entry entry = new Entry(null);
 				if (!entry.getAggregates().isEmpty()) {
 					entry.addSolution(EmptyBindingSet.getInstance());
-					entries.put(new Key(EmptyBindingSet.getInstance()), entry);
+					return Collections.singletonList(createSolution(entry)).iterator();
 				}
+				return Collections.emptyIterator();
 			}
 
-			// long count = 0;
+			aggregate(iter, 0);
+		} finally {
+			iter.close();
+		}
+
+		return new ResultIterator();
+	}
+
+	private BindingSet createSolution(Entry entry) throws QueryEvaluationException {
+		QueryBindingSet sol = new QueryBindingSet(parentBindings);
+
+		for (String name : group.getGroupBindingNames()) {
+			BindingSet prototype = entry.getPrototype();
+			if (prototype != null) {
+				Value value = prototype.getValue(name);
+				if (value != null) {
+					// Potentially overwrites bindings from super
+					sol.setBinding(name, value);
+				}
+			}
+		}
+
+		entry.bindSolution(sol);
+
+		return sol;
+	}
 
+	/**
+	 * Aggregates solutions into new partitions, which are added to the front of the partitions that are yet to be
+	 * reported.
+	 * 
+	 * @param pass The number of times that the solutions have been spilled to disk before.
+	 */
+	private void aggregate(CloseableIteration<BindingSet, QueryEvaluationException> iter, int pass)
+			throws QueryEvaluationException {
+		Partition[] newPartitions = new Partition[PARTITION_COUNT];
+		for (int i = PARTITION_COUNT - 1; i >= 0; i--) {
+			newPartitions[i] = new Partition(pass);
+			partitions.addFirst(newPartitions[i]);
+		}
+
+		List<List<Key>> batches = new ArrayList<>(PARTITION_COUNT);
+		List<CompletableFuture<Void>> pending = new ArrayList<>(PARTITION_COUNT);
+		for (int i = 0; i < PARTITION_COUNT; i++) {
+			batches.add(new ArrayList<>());
+			pending.add(null);
+		}
+
+		try {
 			while (iter.hasNext()) {
 				BindingSet sol;
 				try {
@@ -216,21 +301,109 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 					break; // closed
 				}
 				Key key = new Key(sol);
-				Entry entry = entries.get(key);
+				int index = getPartition(key, pass);
+
+				if (parallel) {
+					List<Key> batch = batches.get(index);
+					batch.add(key);
+					if (batch.size() >= BATCH_SIZE) {
+						pending.set(index, submit(newPartitions[index], batch, pending.get(index)));
+						batches.set(index, new ArrayList<>(BATCH_SIZE));
+					}
+				} else {
+					newPartitions[index].add(key);
+				}
+			}
 
-				if (entry == null) {
-					entry = new Entry(sol);
-					entries.put(key, entry);
+			for (int i = 0; i < PARTITION_COUNT; i++) {
+				if (!batches.get(i).isEmpty()) {
+					pending.set(i, submit(newPartitions[i], batches.get(i), pending.get(i)));
 				}
+			}
+		} finally {
+			// let running batches finish before the partitions are used or disposed
+			for (CompletableFuture<Void> future : pending) {
+				if (future != null) {
+					future.handle((result, e) -> null).join();
+				}
+			}
+		}
+
+		for (CompletableFuture<Void> future : pending) {
+			await(future);
+		}
+	}
+
+	/**
+	 * Aggregates a batch of solutions of a partition in the background, once the previous batch of the partition has
+	 * been aggregated.
+	 */
+	private CompletableFuture<Void> submit(Partition partition, List<Key> batch, CompletableFuture<Void> previous)
+			throws QueryEvaluationException {
+		await(previous);
+		return CompletableFuture.runAsync(() -> {
+			for (Key key : batch) {
+				partition.add(key);
+			}
+		}, executor);
+	}
 
-				entry.addSolution(sol);
+	private void await(CompletableFuture<Void> future) throws QueryEvaluationException {
+		if (future == null) {
+			return;
+		}
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof QueryEvaluationException) {
+				throw (QueryEvaluationException) e.getCause();
 			}
+			throw new QueryEvaluationException(e.getCause());
+		}
+	}
 
-			return entries.values();
-		} finally {
-			iter.close();
+	private int getPartition(Key key, int pass) {
+		// every pass uses different bits of the scrambled hash, to divide the groups of a spilled partition
+		int hash = Integer.rotateLeft(key.hashCode() * 0x9E3779B9, pass * PARTITION_BITS);
+		return hash >>> (Integer.SIZE - PARTITION_BITS);
+	}
+
+	/**
+	 * Releases the groups of the partition that has been reported, and aggregates the solutions that it has spilled to
+	 * disk.
+	 */
+	private void finishPartition(Partition partition) throws QueryEvaluationException {
+		partition.releaseEntries();
+		if (partition.spillFile != null) {
+			try (CloseableIteration<BindingSet, QueryEvaluationException> spilled = partition.spillFile.read()) {
+				aggregate(spilled, partition.pass + 1);
+			} catch (IOException e) {
+				throw new QueryEvaluationException(e);
+			} finally {
+				partition.close();
+			}
 		}
+	}
 
+	private void disposePartitions() throws QueryEvaluationException {
+		if (currentPartition != null) {
+			partitions.addFirst(currentPartition);
+			currentPartition = null;
+		}
+
+		QueryEvaluationException exception = null;
+		for (Partition partition : partitions) {
+			partition.releaseEntries();
+			try {
+				partition.close();
+			} catch (QueryEvaluationException e) {
+				exception = e;
+			}
+		}
+		partitions.clear();
+		if (exception != null) {
+			throw exception;
+		}
 	}
 
 	/**
@@ -285,6 +458,104 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 		}
 	}
 
+	/**
+	 * Reports the groups of the partitions one partition at a time, aggregating the solutions that a partition has
+	 * spilled to disk once its groups in memory have been reported.
+	 */
+	private class ResultIterator implements Iterator<BindingSet> {
+
+		private Iterator<Entry> entries = Collections.emptyIterator();
+
+		@Override
+		public boolean hasNext() throws QueryEvaluationException {
+			while (!entries.hasNext()) {
+				if (currentPartition != null) {
+					Partition partition = currentPartition;
+					currentPartition = null;
+					finishPartition(partition);
+				}
+				currentPartition = partitions.pollFirst();
+				if (currentPartition == null) {
+					return false;
+				}
+				entries = currentPartition.entries.values().iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public BindingSet next() throws QueryEvaluationException {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return createSolution(entries.next());
+		}
+	}
+
+	/**
+	 * The groups of which the hash of the group bindings falls into the same partition. Once a group does not fit in
+	 * the memory budget, the solutions of all groups of the partition that are not yet in memory are spilled to disk.
+	 * A partition always keeps at least one group in memory, so that every pass makes progress.
+	 */
+	private class Partition implements Closeable {
+
+		private final int pass;
+
+		private Map<Key, Entry> entries = new LinkedHashMap<>();
+
+		private SpillFile spillFile;
+
+		public Partition(int pass) {
+			this.pass = pass;
+		}
+
+		public void add(Key key) throws QueryEvaluationException {
+			Entry entry = entries.get(key);
+
+			if (entry == null) {
+				try {
+					if (spillFile == null && !entries.isEmpty() && !memoryBudget.tryReserve(1)) {
+						spillFile = new SpillFile("group");
+					}
+					if (spillFile != null) {
+						spillFile.add(key.bindingSet);
+						return;
+					}
+				} catch (IOException e) {
+					throw new QueryEvaluationException(e);
+				}
+
+				if (entries.isEmpty()) {
+					memoryBudget.reserve(1);
+				}
+				entry = new Entry(key.bindingSet);
+				entries.put(key, entry);
+			}
+
+			entry.addSolution(key.bindingSet);
+		}
+
+		public void releaseEntries() {
+			if (entries != null) {
+				memoryBudget.release(entries.size());
+				entries = null;
+			}
+		}
+
+		@Override
+		public void close() throws QueryEvaluationException {
+			if (spillFile != null) {
+				try {
+					spillFile.close();
+				} catch (IOException e) {
+					throw new QueryEvaluationException(e);
+				} finally {
+					spillFile = null;
+				}
+			}
+		}
+	}
+
 	private class Entry {
 
 		private final BindingSet prototype;
@@ -373,7 +644,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 			this.arg = operator.getArg();
 
 			if (operator.isDistinct()) {
-				distinctValues = createSet("distinct-values-" + this.hashCode());
+				distinctValues = new HashSet<>();
 			} else {
 				distinctValues = null;
 			}
@@ -388,13 +659,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 				return true;
 			}
 
-			final boolean result = distinctValues.add(value);
-			if (db != null && distinctValues.size() % iterationCacheSyncThreshold == 0) {
-				// write to disk every $iterationCacheSyncThreshold items
-				db.commit();
-			}
-
-			return result;
+			return distinctValues.add(value);
 		}
 
 		protected ValueExpr getArg() {
@@ -422,7 +687,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 			// for a wildcarded count with a DISTINCT clause we need to filter on
 			// distinct bindingsets rather than individual values.
 			if (operator.isDistinct() && getArg() == null) {
-				distinctBindingSets = createSet("distinct-bs-" + this.hashCode());
+				distinctBindingSets = new HashSet<>();
 			} else {
 				distinctBindingSets = null;
 			}
@@ -448,13 +713,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 				return true;
 			}
 
-			final boolean result = distinctBindingSets.add(s);
-			if (db != null && distinctBindingSets.size() % iterationCacheSyncThreshold == 0) {
-				// write to disk every
-				db.commit();
-			}
-
-			return result;
+			return distinctBindingSets.add(s);
 		}
 
 		@Override
@@ -521,7 +780,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 
 	private class SumAggregate extends Aggregate {
 
-		private Literal sum = vf.createLiteral("0", XMLSchema.INTEGER);
+		private final NumericSum sum = new NumericSum();
 
 		private ValueExprEvaluationException typeError = null;
 
@@ -542,7 +801,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 					Literal nextLiteral = (Literal) v;
 					if (nextLiteral.getDatatype() != null
 							&& XMLDatatypeUtil.isNumericDatatype(nextLiteral.getDatatype())) {
-						sum = MathUtil.compute(sum, nextLiteral, MathOp.PLUS);
+						sum.add(nextLiteral);
 					} else {
 						typeError = new ValueExprEvaluationException("not a number: " + v);
 					}
@@ -558,7 +817,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 				throw typeError;
 			}
 
-			return sum;
+			return sum.getValue();
 		}
 	}
 
@@ -566,7 +825,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 
 		private long count = 0;
 
-		private Literal sum = vf.createLiteral("0", XMLSchema.INTEGER);
+		private final NumericSum sum = new NumericSum();
 
 		private ValueExprEvaluationException typeError = null;
 
@@ -589,7 +848,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 					// check if the literal is numeric.
 					if (nextLiteral.getDatatype() != null
 							&& XMLDatatypeUtil.isNumericDatatype(nextLiteral.getDatatype())) {
-						sum = MathUtil.compute(sum, nextLiteral, MathOp.PLUS);
+						sum.add(nextLiteral);
 					} else {
 						typeError = new ValueExprEvaluationException("not a number: " + v);
 					}
@@ -616,7 +875,7 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 			}
 
 			Literal sizeLit = vf.createLiteral(count);
-			return MathUtil.compute(sum, sizeLit, MathOp.DIVIDE);
+			return MathUtil.compute(sum.getValue(), sizeLit, MathOp.DIVIDE);
 		}
 	}
 
@@ -685,4 +944,120 @@ public class GroupIterator extends CloseableIteratorIteration<BindingSet, QueryE
 			return vf.createLiteral(concatenated.substring(0, len));
 		}
 	}
+
+	/**
+	 * The sum of numeric literals, with the datatype and the precision of {@link MathUtil#compute} additions. The sum
+	 * is kept in a primitive, rather than in a literal that is created for every addition, as long as its datatype and
+	 * size allow.
+	 */
+	private static class NumericSum {
+
+		private static final int INTEGER = 0;
+
+		private static final int DECIMAL = 1;
+
+		private static final int FLOAT = 2;
+
+		private static final int DOUBLE = 3;
+
+		private int type = INTEGER;
+
+		private long longSum;
+
+		/**
+		 * The sum of integers once it no longer fits in a long.
+		 */
+		private BigInteger integerSum;
+
+		private BigDecimal decimalSum;
+
+		private float floatSum;
+
+		private double doubleSum;
+
+		public void add(Literal literal) throws ValueExprEvaluationException {
+			try {
+				promote(getType(literal.getDatatype()));
+
+				switch (type) {
+				case INTEGER:
+					addInteger(literal.integerValue());
+					break;
+				case DECIMAL:
+					decimalSum = decimalSum.add(literal.decimalValue());
+					break;
+				case FLOAT:
+					floatSum += literal.floatValue();
+					break;
+				default:
+					doubleSum += literal.doubleValue();
+				}
+			} catch (NumberFormatException | ArithmeticException e) {
+				throw new ValueExprEvaluationException(e);
+			}
+		}
+
+		public Literal getValue() {
+			SimpleValueFactory vf = SimpleValueFactory.getInstance();
+			switch (type) {
+			case INTEGER:
+				return vf.createLiteral(getInteger());
+			case DECIMAL:
+				return vf.createLiteral(decimalSum);
+			case FLOAT:
+				return vf.createLiteral(floatSum);
+			default:
+				return vf.createLiteral(doubleSum);
+			}
+		}
+
+		private static int getType(IRI datatype) {
+			if (XMLSchema.DOUBLE.equals(datatype)) {
+				return DOUBLE;
+			} else if (XMLSchema.FLOAT.equals(datatype)) {
+				return FLOAT;
+			} else if (XMLSchema.DECIMAL.equals(datatype)) {
+				return DECIMAL;
+			}
+			return INTEGER;
+		}
+
+		/**
+		 * Converts the sum to the common type of the sum and an operand.
+		 */
+		private void promote(int operandType) {
+			if (operandType <= type) {
+				return;
+			}
+
+			if (type == INTEGER) {
+				BigInteger integer = getInteger();
+				decimalSum = new BigDecimal(integer);
+				floatSum = integer.floatValue();
+				doubleSum = integer.doubleValue();
+			} else if (type == DECIMAL) {
+				floatSum = decimalSum.floatValue();
+				doubleSum = decimalSum.doubleValue();
+			} else {
+				doubleSum = floatSum;
+			}
+			type = operandType;
+		}
+
+		private void addInteger(BigInteger value) {
+			if (integerSum == null && value.bitLength() < Long.SIZE) {
+				long result = longSum + value.longValue();
+				// the addition overflows if both operands have a different sign than the result
+				if (((longSum ^ result) & (value.longValue() ^ result)) >= 0) {
+					longSum = result;
+					return;
+				}
+			}
+			integerSum = getInteger().add(value);
+		}
+
+		private BigInteger getInteger() {
+			return integerSum != null ? integerSum : BigInteger.valueOf(longSum);
+		}
+	}
 }
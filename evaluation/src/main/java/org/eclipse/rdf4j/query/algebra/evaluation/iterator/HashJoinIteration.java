@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -17,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.FilterIteration;
 import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.common.iterator.UnionIterator;
 import org.eclipse.rdf4j.model.Value;
@@ -27,16 +30,30 @@ import org.eclipse.rdf4j.query.algebra.LeftJoin;
 import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryMemoryBudget;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.eclipse.rdf4j.util.iterators.EmptyIterator;
 
 /**
  * Generic hash join implementation suitable for use by Sail implementations.
+ * <p>
+ * If a limited {@link QueryMemoryBudget} is supplied, the join is evaluated as a partitioned (grace) hash join: the
+ * right argument is divided into partitions by the hash of its join attributes, and partitions that do not fit in the
+ * budget are spilled to disk, together with the results of the left argument that fall into them. The partitions that
+ * stay in memory are joined while the left argument is read, the spilled partitions are joined one by one afterwards.
  * 
  * @author MJAHale
  */
 public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int PARTITION_BITS = 5;
+
+	private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -59,30 +76,76 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 
 	private final boolean leftJoin;
 
+	private final QueryMemoryBudget memoryBudget;
+
+	/**
+	 * The partitions of a partitioned hash join, <tt>null</tt> if the hash table is kept in memory as a whole.
+	 */
+	private Partition[] partitions;
+
+	/**
+	 * The index of the spilled partition that is currently being joined, -1 while the partitions that have been kept in
+	 * memory are being joined.
+	 */
+	private int spilledPartitionIndex = -1;
+
+	/**
+	 * The number of results that this join has reserved in the memory budget.
+	 */
+	private long reserved;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
 	public HashJoinIteration(EvaluationStrategy strategy, Join join, BindingSet bindings)
 			throws QueryEvaluationException {
-		this(strategy, join.getLeftArg(), join.getRightArg(), bindings, false);
+		this(strategy, join, bindings, null);
+	}
+
+	/**
+	 * @param memoryBudget The memory budget of the query, or <tt>null</tt> to keep the hash table in memory.
+	 */
+	public HashJoinIteration(EvaluationStrategy strategy, Join join, BindingSet bindings,
+			QueryMemoryBudget memoryBudget) throws QueryEvaluationException {
+		this(strategy, join.getLeftArg(), join.getRightArg(), bindings, false, memoryBudget);
 	}
 
 	public HashJoinIteration(EvaluationStrategy strategy, LeftJoin join, BindingSet bindings)
 			throws QueryEvaluationException {
-		this(strategy, join.getLeftArg(), join.getRightArg(), bindings, true);
+		this(strategy, join, bindings, null);
+	}
+
+	/**
+	 * @param memoryBudget The memory budget of the query, or <tt>null</tt> to keep the hash table in memory.
+	 */
+	public HashJoinIteration(EvaluationStrategy strategy, LeftJoin join, BindingSet bindings,
+			QueryMemoryBudget memoryBudget) throws QueryEvaluationException {
+		this(strategy, join.getLeftArg(), join.getRightArg(), bindings, true, memoryBudget);
 	}
 
 	public HashJoinIteration(EvaluationStrategy strategy, TupleExpr left, TupleExpr right, BindingSet bindings,
 			boolean leftJoin) throws QueryEvaluationException {
+		this(strategy, left, right, bindings, leftJoin, null);
+	}
+
+	public HashJoinIteration(EvaluationStrategy strategy, TupleExpr left, TupleExpr right, BindingSet bindings,
+			boolean leftJoin, QueryMemoryBudget memoryBudget) throws QueryEvaluationException {
 		this(strategy, strategy.evaluate(left, bindings), left.getBindingNames(), strategy.evaluate(right, bindings),
-				right.getBindingNames(), leftJoin);
+				right.getBindingNames(), leftJoin, memoryBudget);
 	}
 
 	public HashJoinIteration(EvaluationStrategy strategy,
 			CloseableIteration<BindingSet, QueryEvaluationException> leftIter, Set<String> leftBindingNames,
 			CloseableIteration<BindingSet, QueryEvaluationException> rightIter, Set<String> rightBindingNames,
 			boolean leftJoin) throws QueryEvaluationException {
+		this(strategy, leftIter, leftBindingNames, rightIter, rightBindingNames, leftJoin, null);
+	}
+
+	public HashJoinIteration(EvaluationStrategy strategy,
+			CloseableIteration<BindingSet, QueryEvaluationException> leftIter, Set<String> leftBindingNames,
+			CloseableIteration<BindingSet, QueryEvaluationException> rightIter, Set<String> rightBindingNames,
+			boolean leftJoin, QueryMemoryBudget memoryBudget) throws QueryEvaluationException {
 		this.leftIter = leftIter;
 		this.rightIter = rightIter;
 
@@ -91,6 +154,7 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		joinAttributes = joinAttributeNames.toArray(new String[joinAttributeNames.size()]);
 
 		this.leftJoin = leftJoin;
+		this.memoryBudget = memoryBudget;
 	}
 
 	/*---------*
@@ -118,6 +182,9 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 
 				if (restIter.hasNext()) {
 					currentScanElem = restIter.next();
+				} else if (nextSpilledPartition()) {
+					nextHashTable = hashTable;
+					continue;
 				} else {
 					// no more elements available
 					return null;
@@ -208,10 +275,14 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 								disposeCache(toCloseScanList);
 							}
 						} finally {
-							Map<BindingSetHashKey, List<BindingSet>> toCloseHashTable = hashTable;
-							hashTable = null;
-							if (toCloseHashTable != null) {
-								disposeHashTable(toCloseHashTable);
+							try {
+								Map<BindingSetHashKey, List<BindingSet>> toCloseHashTable = hashTable;
+								hashTable = null;
+								if (toCloseHashTable != null) {
+									disposeHashTable(toCloseHashTable);
+								}
+							} finally {
+								disposePartitions();
 							}
 						}
 					}
@@ -221,6 +292,9 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 	}
 
 	private Map<BindingSetHashKey, List<BindingSet>> setupHashTable() throws QueryEvaluationException {
+		if (memoryBudget != null && memoryBudget.isLimited()) {
+			return setupPartitionedHashTable();
+		}
 
 		Collection<BindingSet> leftArgResults;
 		Collection<BindingSet> rightArgResults = makeIterationCache(rightIter);
@@ -255,6 +329,11 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		leftArgResults = null;
 		rightArgResults = null;
 
+		return createHashTable(smallestResult);
+	}
+
+	private Map<BindingSetHashKey, List<BindingSet>> createHashTable(Collection<BindingSet> smallestResult)
+			throws QueryEvaluationException {
 		// create the hash table for our join
 		// hash table will never be any bigger than smallestResult.size()
 		Map<BindingSetHashKey, List<BindingSet>> resultHashTable = makeHashTable(smallestResult.size());
@@ -277,6 +356,188 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 		return resultHashTable;
 	}
 
+	/**
+	 * Sets up the hash table of a partitioned hash join. The right argument is always used to build the hash table, so
+	 * that the results of the left argument can be streamed, and reported by a left join if they have no match.
+	 */
+	private Map<BindingSetHashKey, List<BindingSet>> setupPartitionedHashTable() throws QueryEvaluationException {
+		partitions = new Partition[PARTITION_COUNT];
+		for (int i = 0; i < PARTITION_COUNT; i++) {
+			partitions[i] = new Partition();
+		}
+
+		try {
+			while (rightIter.hasNext()) {
+				addToPartition(rightIter.next());
+			}
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+
+		List<BindingSet> residentResults = new ArrayList<>();
+		boolean spilled = false;
+		for (Partition partition : partitions) {
+			if (partition.buildFile == null) {
+				residentResults.addAll(partition.buildResults);
+				partition.buildResults = null;
+			} else {
+				spilled = true;
+			}
+		}
+
+		scanList = Collections.emptyIterator();
+		if (spilled) {
+			restIter = new FilterIteration<BindingSet, QueryEvaluationException>(leftIter) {
+
+				@Override
+				protected boolean accept(BindingSet bindingSet) throws QueryEvaluationException {
+					return spillIfNeeded(bindingSet);
+				}
+			};
+		} else {
+			restIter = leftIter;
+		}
+		return createHashTable(residentResults);
+	}
+
+	private void addToPartition(BindingSet bindingSet) throws IOException {
+		Partition partition = partitions[getPartition(bindingSet)];
+		while (partition.buildFile == null && !memoryBudget.tryReserve(1)) {
+			spillLargestPartition();
+		}
+
+		if (partition.buildFile == null) {
+			partition.buildResults.add(bindingSet);
+			reserved++;
+		} else {
+			partition.buildFile.add(bindingSet);
+		}
+	}
+
+	private void spillLargestPartition() throws IOException {
+		Partition largest = null;
+		for (Partition partition : partitions) {
+			if (partition.buildFile == null
+					&& (largest == null || partition.buildResults.size() > largest.buildResults.size())) {
+				largest = partition;
+			}
+		}
+
+		largest.buildFile = new SpillFile("hashjoin");
+		for (BindingSet bindingSet : largest.buildResults) {
+			largest.buildFile.add(bindingSet);
+		}
+		memoryBudget.release(largest.buildResults.size());
+		reserved -= largest.buildResults.size();
+		largest.buildResults = null;
+	}
+
+	/**
+	 * Spills a result of the left argument if it falls into a spilled partition.
+	 * 
+	 * @return <tt>true</tt> if the result is to be joined with the partitions that are kept in memory.
+	 */
+	private boolean spillIfNeeded(BindingSet bindingSet) throws QueryEvaluationException {
+		try {
+			if (bindingSet instanceof EmptyBindingSet) {
+				// the empty bindingset is merged with all partitions
+				for (Partition partition : partitions) {
+					if (partition.buildFile != null) {
+						partition.getProbeFile().add(bindingSet);
+					}
+				}
+				return true;
+			}
+
+			Partition partition = partitions[getPartition(bindingSet)];
+			if (partition.buildFile == null) {
+				return true;
+			}
+			partition.getProbeFile().add(bindingSet);
+			return false;
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	private int getPartition(BindingSet bindingSet) {
+		int hash = BindingSetHashKey.create(joinAttributes, bindingSet).hashCode();
+		// use the high bits of the scrambled hash, the hash table of a partition uses the low bits
+		return (hash * 0x9E3779B9) >>> (Integer.SIZE - PARTITION_BITS);
+	}
+
+	/**
+	 * Continues a partitioned hash join with the next spilled partition, once the left argument has been read.
+	 * 
+	 * @return <tt>false</tt> if there are no more partitions to join.
+	 */
+	private boolean nextSpilledPartition() throws QueryEvaluationException {
+		if (partitions == null) {
+			return false;
+		}
+
+		Map<BindingSetHashKey, List<BindingSet>> previousHashTable = hashTable;
+		hashTable = null;
+		if (previousHashTable != null) {
+			disposeHashTable(previousHashTable);
+		}
+		memoryBudget.release(reserved);
+		reserved = 0;
+
+		try {
+			if (spilledPartitionIndex >= 0) {
+				partitions[spilledPartitionIndex].close();
+			}
+			while (++spilledPartitionIndex < PARTITION_COUNT) {
+				Partition partition = partitions[spilledPartitionIndex];
+				if (partition.buildFile == null || partition.probeFile == null) {
+					// no results of the left argument to join
+					continue;
+				}
+
+				// a spilled partition is loaded as a whole, even if it does not fit in the budget
+				List<BindingSet> buildResults = new ArrayList<>((int) partition.buildFile.size());
+				try (CloseableIteration<BindingSet, QueryEvaluationException> iter = partition.buildFile.read()) {
+					while (iter.hasNext()) {
+						buildResults.add(iter.next());
+					}
+				}
+				memoryBudget.reserve(buildResults.size());
+				reserved = buildResults.size();
+
+				hashTable = createHashTable(buildResults);
+				restIter = partition.probeFile.read();
+				return true;
+			}
+			return false;
+		} catch (IOException e) {
+			throw new QueryEvaluationException(e);
+		}
+	}
+
+	private void disposePartitions() throws QueryEvaluationException {
+		Partition[] toClosePartitions = partitions;
+		partitions = null;
+		if (memoryBudget != null) {
+			memoryBudget.release(reserved);
+			reserved = 0;
+		}
+
+		if (toClosePartitions != null) {
+			IOException exception = null;
+			for (Partition partition : toClosePartitions) {
+				try {
+					partition.close();
+				} catch (IOException e) {
+					exception = e;
+				}
+			}
+			if (exception != null) {
+				throw new QueryEvaluationException(exception);
+			}
+		}
+	}
+
 	protected void putHashTableEntry(Map<BindingSetHashKey, List<BindingSet>> nextHashTable, BindingSetHashKey hashKey,
 			List<BindingSet> hashValue, boolean newEntry) throws QueryEvaluationException {
 		// by default, we use a standard memory hash map
@@ -356,4 +617,49 @@ public class HashJoinIteration extends LookAheadIteration<BindingSet, QueryEvalu
 	protected <E> void addAll(Collection<E> col, List<E> values) throws QueryEvaluationException {
 		col.addAll(values);
 	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * A partition of a partitioned hash join.
+	 */
+	private static final class Partition implements Closeable {
+
+		/**
+		 * The results of the right argument while the partition is kept in memory, <tt>null</tt> otherwise.
+		 */
+		private List<BindingSet> buildResults = new ArrayList<>();
+
+		/**
+		 * The results of the right argument once the partition has been spilled, <tt>null</tt> otherwise.
+		 */
+		private SpillFile buildFile;
+
+		/**
+		 * The results of the left argument that are joined with a spilled partition.
+		 */
+		private SpillFile probeFile;
+
+		public SpillFile getProbeFile() throws IOException {
+			if (probeFile == null) {
+				probeFile = new SpillFile("hashjoin");
+			}
+			return probeFile;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (buildFile != null) {
+					buildFile.close();
+				}
+			} finally {
+				if (probeFile != null) {
+					probeFile.close();
+				}
+			}
+		}
+	}
 }
@@ -8,23 +8,20 @@
 package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-import java.util.AbstractQueue;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
@@ -32,193 +29,33 @@ import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.DelayedIteration;
 import org.eclipse.rdf4j.common.iteration.Iteration;
 import org.eclipse.rdf4j.common.iteration.LimitIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryBackgroundExecutor;
 
 /**
  * Sorts the input and optionally applies limit and distinct.
+ * <p>
+ * Inputs that do not fit in the iteration sync threshold are sorted by an external merge sort. The input is divided
+ * into runs of at most that many solutions, each of which is sorted in the background while the next run is read, and
+ * is then spilled to disk in the compact binary format of {@link SpillFile}. The runs are finally merged, at most
+ * {@link #MAX_MERGE_WIDTH} at a time. If a limit is set, runs are cut off after the limit, and solutions that sort
+ * after the spilled runs' limit'th solution are discarded as soon as they are read.
  * 
  * @author James Leigh
  * @author Arjohn Kampman
  */
 public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationException> {
 
-	private static class SerializedQueue<E extends Serializable> extends AbstractQueue<E> implements Closeable {
-
-		private final File file;
-
-		private ObjectOutputStream output;
-
-		private ObjectInputStream input;
-
-		private int size;
-
-		private E next;
-
-		private E last;
-
-		public SerializedQueue(String prefix) throws IOException {
-			this(prefix, null);
-		}
-
-		public SerializedQueue(String prefix, File directory) throws IOException {
-			file = File.createTempFile(prefix, "", directory);
-			output = new ObjectOutputStream(new FileOutputStream(file));
-		}
-
-		public E peekLast() {
-			return last;
-		}
-
-		@Override
-		public boolean offer(E e) {
-			if (output == null) {
-				return false;
-			}
-			try {
-				output.writeObject(e);
-				last = e;
-				size++;
-				return true;
-			} catch (IOException exc) {
-				return false;
-			}
-		}
-
-		@Override
-		@SuppressWarnings("unchecked")
-		public E poll() {
-			try {
-				if (next != null) {
-					return next;
-				} else if (input == null) {
-					output.close();
-					input = new ObjectInputStream(new FileInputStream(file));
-				}
-				size--;
-				return (E) input.readObject();
-			} catch (IOException | ClassNotFoundException exc) {
-				return null;
-			} finally {
-				next = null;
-			}
-		}
-
-		@Override
-		public E peek() {
-			if (size <= 0) {
-				return null;
-			} else if (next != null) {
-				return next;
-			} else {
-				return next = poll();
-			}
-		}
-
-		@Override
-		public Iterator<E> iterator() {
-			return new Iterator<E>() {
-
-				@Override
-				public boolean hasNext() {
-					return peek() != null;
-				}
-
-				@Override
-				public E next() {
-					return poll();
-				}
-			};
-		}
-
-		@Override
-		public int size() {
-			if (next == null) {
-				return (int) size;
-			} else {
-				return (int) size + 1;
-			}
-		}
-
-		@Override
-		public void close() throws IOException {
-			if (output != null) {
-				output.close();
-			}
-			if (input != null) {
-				input.close();
-			}
-			file.delete();
-		}
-
-	}
-
-	private static class SortedIterators<E> implements Iterator<E> {
-
-		private final List<Iterator<E>> iterators;
-
-		private final TreeMap<E, List<Integer>> head;
-
-		private final boolean distinct;
-
-		private E next;
-
-		public SortedIterators(Comparator<E> comparator, boolean distinct, List<Iterator<E>> iterators) {
-			this.iterators = iterators;
-			this.distinct = distinct;
-			head = new TreeMap<>(comparator);
-		}
-
-		@Override
-		public boolean hasNext() {
-			if (next != null) {
-				return true;
-			} else {
-				next = next();
-				return next != null;
-			}
-		}
-
-		@Override
-		public E next() {
-			if (next != null) {
-				try {
-					return next;
-				} finally {
-					next = null;
-				}
-			}
-			if (head.isEmpty()) {
-				for (int i = 0, n = iterators.size(); i < n; i++) {
-					advance(i);
-				}
-			}
-			if (head.isEmpty()) {
-				return null;
-			} else {
-				Entry<E, List<Integer>> e = head.firstEntry();
-				advance(e.getValue().remove(0));
-				if (e.getValue().isEmpty()) {
-					head.remove(e.getKey());
-				}
-				return e.getKey();
-			}
-		}
-
-		private void advance(int i) {
-			while (iterators.get(i).hasNext()) {
-				E key = iterators.get(i).next();
-				if (!head.containsKey(key)) {
-					head.put(key, new LinkedList<>(Arrays.asList(i)));
-					break;
-				} else if (!distinct) {
-					head.get(key).add(i);
-					break;
-				}
-			}
-		}
+	/*-----------*
+	 * Constants *
+	 *-----------*/
 
-	}
+	/**
+	 * The maximum number of runs that are merged at the same time, which limits the number of open files.
+	 */
+	private static final int MAX_MERGE_WIDTH = 64;
 
 	/*-----------*
 	 * Variables *
@@ -232,7 +69,15 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 
 	private final boolean distinct;
 
-	private final List<SerializedQueue<BindingSet>> serialized = new LinkedList<>();
+	/**
+	 * The sorted runs that have been spilled to disk.
+	 */
+	private final List<Run> runs = new ArrayList<>();
+
+	/**
+	 * The run that is being sorted and spilled in the background, if any.
+	 */
+	private CompletableFuture<Run> pendingRun;
 
 	/**
 	 * Number of items cached before internal collection is synced to disk. If set to 0, no disk-syncing is done and all
@@ -240,6 +85,11 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 	 */
 	private final long iterationSyncThreshold;
 
+	/**
+	 * The executor on which runs are sorted and spilled.
+	 */
+	private final Executor executor;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -256,11 +106,18 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 
 	public OrderIterator(CloseableIteration<BindingSet, QueryEvaluationException> iter,
 			Comparator<BindingSet> comparator, long limit, boolean distinct, long iterationSyncThreshold) {
+		this(iter, comparator, limit, distinct, iterationSyncThreshold, QueryBackgroundExecutor.getSharedInstance());
+	}
+
+	public OrderIterator(CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			Comparator<BindingSet> comparator, long limit, boolean distinct, long iterationSyncThreshold,
+			Executor executor) {
 		this.iter = iter;
 		this.comparator = comparator;
 		this.limit = limit;
 		this.distinct = distinct;
 		this.iterationSyncThreshold = iterationSyncThreshold > 0 ? iterationSyncThreshold : Integer.MAX_VALUE;
+		this.executor = executor;
 	}
 
 	/*---------*
@@ -270,20 +127,16 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 	@Override
 	protected Iteration<BindingSet, QueryEvaluationException> createIteration() throws QueryEvaluationException {
 		BindingSet threshold = null;
-		List<BindingSet> list = new LinkedList<>();
+		List<BindingSet> list = new ArrayList<>();
 		int limit2 = limit >= Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : (int) limit * 2;
 		int syncThreshold = (int) Math.min(iterationSyncThreshold, Integer.MAX_VALUE);
 		try {
 			while (iter.hasNext()) {
 				if (list.size() >= syncThreshold && list.size() < limit) {
-					SerializedQueue<BindingSet> queue = new SerializedQueue<>("orderiter");
-					sort(list).forEach(bs -> queue.add(bs));
-					serialized.add(queue);
-					decrement(list.size() - queue.size());
+					spill(list);
 					list = new ArrayList<>(list.size());
-					if (threshold == null && serialized.stream().mapToLong(q -> q.size()).sum() >= limit) {
-						Stream<BindingSet> stream = serialized.stream().map(q -> q.peekLast());
-						threshold = stream.sorted(comparator).skip(serialized.size() - 1).findFirst().get();
+					if (threshold == null) {
+						threshold = getThreshold();
 					}
 				} else if (list.size() >= limit2 || !distinct && threshold == null && list.size() >= limit) {
 					List<BindingSet> sorted = new ArrayList<>(limit2);
@@ -300,17 +153,128 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 					increment();
 				}
 			}
+			finishPendingRun();
+
+			if (runs.isEmpty()) {
+				return new LimitIteration<>(new CloseableIteratorIteration<>(sort(list).iterator()), limit);
+			}
+
+			// merge the runs with the solutions that are still in memory
+			mergeRuns(MAX_MERGE_WIDTH - 1);
+			List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations = new ArrayList<>();
+			for (Run run : runs) {
+				iterations.add(run.file.read());
+			}
+			iterations.add(new CloseableIteratorIteration<>(sort(list).iterator()));
+			return new LimitIteration<>(new MergeIteration(iterations), limit);
 		} catch (IOException e) {
 			throw new QueryEvaluationException(e);
 		} finally {
 			iter.close();
 		}
-		SortedIterators<BindingSet> iterator;
-		List<Iterator<BindingSet>> iterators = new ArrayList<>(serialized.size() + 1);
-		serialized.forEach(queue -> iterators.add(queue.iterator()));
-		iterators.add(sort(list).iterator());
-		iterator = new SortedIterators<>(comparator, distinct, iterators);
-		return new LimitIteration<>(new CloseableIteratorIteration<>(iterator), limit);
+	}
+
+	/**
+	 * Sorts and spills a run in the background, after the previous run has been spilled.
+	 */
+	private void spill(List<BindingSet> list) throws QueryEvaluationException {
+		finishPendingRun();
+		pendingRun = CompletableFuture.supplyAsync(() -> {
+			try {
+				return writeRun(list);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	private Run writeRun(List<BindingSet> list) throws IOException {
+		SpillFile file = new SpillFile("orderiter");
+		try {
+			BindingSet last = null;
+			Iterator<BindingSet> sorted = sort(list).iterator();
+			while (sorted.hasNext()) {
+				last = sorted.next();
+				file.add(last);
+			}
+			return new Run(file, last, list.size());
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private void finishPendingRun() throws QueryEvaluationException {
+		if (pendingRun != null) {
+			Run run;
+			try {
+				run = pendingRun.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause()
+						: e.getCause();
+				if (cause instanceof QueryEvaluationException) {
+					throw (QueryEvaluationException) cause;
+				}
+				throw new QueryEvaluationException(cause);
+			} finally {
+				pendingRun = null;
+			}
+			runs.add(run);
+			decrement(run.inputSize - (int) run.file.size());
+		}
+	}
+
+	/**
+	 * Gets a solution that at least limit solutions of the spilled runs sort before or equal to.
+	 * 
+	 * @return The solution, or <tt>null</tt> if the runs contain fewer solutions than the limit.
+	 */
+	private BindingSet getThreshold() {
+		long count = 0;
+		BindingSet threshold = null;
+		for (Run run : runs) {
+			count += run.file.size();
+			if (threshold == null || comparator.compare(run.last, threshold) > 0) {
+				threshold = run.last;
+			}
+		}
+		return count >= limit ? threshold : null;
+	}
+
+	/**
+	 * Merges spilled runs into larger runs until no more than the specified number of runs remain.
+	 */
+	private void mergeRuns(int maxRuns) throws IOException, QueryEvaluationException {
+		while (runs.size() > maxRuns) {
+			int width = Math.min(MAX_MERGE_WIDTH, runs.size() - maxRuns + 1);
+			List<Run> merged = new ArrayList<>(runs.subList(0, width));
+			runs.subList(0, width).clear();
+
+			SpillFile file = new SpillFile("orderiter");
+			Run run = null;
+			try {
+				List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations = new ArrayList<>(width);
+				for (Run mergedRun : merged) {
+					iterations.add(mergedRun.file.read());
+				}
+				try (MergeIteration iteration = new MergeIteration(iterations)) {
+					BindingSet last = null;
+					while (iteration.hasNext() && file.size() < limit) {
+						last = iteration.next();
+						file.add(last);
+					}
+					run = new Run(file, last, 0);
+				}
+			} finally {
+				if (run == null) {
+					file.close();
+				}
+				for (Run mergedRun : merged) {
+					mergedRun.close();
+				}
+			}
+			runs.add(run);
+		}
 	}
 
 	protected void increment() throws QueryEvaluationException {
@@ -347,17 +311,166 @@ public class OrderIterator extends DelayedIteration<BindingSet, QueryEvaluationE
 			try {
 				iter.close();
 			} finally {
-				serialized.stream().map(queue -> {
+				closeRuns();
+			}
+		}
+	}
+
+	private void closeRuns() throws QueryEvaluationException {
+		if (pendingRun != null) {
+			try {
+				runs.add(pendingRun.join());
+			} catch (CompletionException e) {
+				// the file of the run has already been removed
+			} finally {
+				pendingRun = null;
+			}
+		}
+
+		IOException exception = null;
+		for (Run run : runs) {
+			try {
+				run.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		runs.clear();
+		if (exception != null) {
+			throw new QueryEvaluationException(exception);
+		}
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * A sorted run that has been spilled to disk.
+	 */
+	private static final class Run implements Closeable {
+
+		private final SpillFile file;
+
+		/**
+		 * The last solution of the run.
+		 */
+		private final BindingSet last;
+
+		/**
+		 * The number of solutions that the run has been created from, before applying limit and distinct.
+		 */
+		private final int inputSize;
+
+		public Run(SpillFile file, BindingSet last, int inputSize) {
+			this.file = file;
+			this.last = last;
+			this.inputSize = inputSize;
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Merges sorted iterations. If distinct is set, equal solutions are only reported once, also if they come from
+	 * different iterations.
+	 */
+	private class MergeIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+		private final List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations;
+
+		/**
+		 * The next solution of every iteration that has not been exhausted.
+		 */
+		private final PriorityQueue<Head> heads;
+
+		/**
+		 * The solutions reported so far that are equal to the last one according to the comparator, used to remove
+		 * duplicates.
+		 */
+		private final Set<BindingSet> ties = new HashSet<>();
+
+		private BindingSet lastTie;
+
+		private boolean initialized;
+
+		public MergeIteration(List<CloseableIteration<BindingSet, QueryEvaluationException>> iterations) {
+			this.iterations = iterations;
+			this.heads = new PriorityQueue<>(Math.max(1, iterations.size()), (head1, head2) -> {
+				int result = comparator.compare(head1.bindingSet, head2.bindingSet);
+				return result != 0 ? result : Integer.compare(head1.index, head2.index);
+			});
+		}
+
+		@Override
+		protected BindingSet getNextElement() throws QueryEvaluationException {
+			if (!initialized) {
+				initialized = true;
+				for (int i = 0; i < iterations.size(); i++) {
+					advance(i);
+				}
+			}
+
+			while (!heads.isEmpty()) {
+				Head head = heads.poll();
+				advance(head.index);
+
+				BindingSet next = head.bindingSet;
+				if (distinct) {
+					if (lastTie == null || comparator.compare(lastTie, next) != 0) {
+						ties.clear();
+						lastTie = next;
+					}
+					if (!ties.add(next)) {
+						continue;
+					}
+				}
+				return next;
+			}
+			return null;
+		}
+
+		private void advance(int index) throws QueryEvaluationException {
+			CloseableIteration<BindingSet, QueryEvaluationException> iteration = iterations.get(index);
+			if (iteration.hasNext()) {
+				heads.add(new Head(iteration.next(), index));
+			}
+		}
+
+		@Override
+		protected void handleClose() throws QueryEvaluationException {
+			try {
+				super.handleClose();
+			} finally {
+				QueryEvaluationException exception = null;
+				for (CloseableIteration<BindingSet, QueryEvaluationException> iteration : iterations) {
 					try {
-						queue.close();
-						return null;
-					} catch (IOException e) {
-						return e;
+						iteration.close();
+					} catch (QueryEvaluationException e) {
+						exception = e;
 					}
-				}).filter(exec -> exec != null).findFirst().ifPresent(exec -> {
-					throw new QueryEvaluationException(exec);
-				});
+				}
+				heads.clear();
+				ties.clear();
+				if (exception != null) {
+					throw exception;
+				}
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	private static final class Head {
+
+		private final BindingSet bindingSet;
+
+		private final int index;
+
+		public Head(BindingSet bindingSet, int index) {
+			this.bindingSet = bindingSet;
+			this.index = index;
+		}
+	}
+}
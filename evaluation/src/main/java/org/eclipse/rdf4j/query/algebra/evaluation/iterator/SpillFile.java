@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.BindingSetSerializer;
+
+/**
+ * A temporary file that intermediate query results are spilled to when they do not fit in memory. Binding sets are
+ * appended to the file with a {@link BindingSetSerializer} and are read back in the same order once all of them have
+ * been added. The file is deleted when it is closed.
+ */
+public class SpillFile implements Closeable {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final File file;
+
+	private final BindingSetSerializer serializer = new BindingSetSerializer();
+
+	private DataOutputStream output;
+
+	private DataInputStream input;
+
+	private long size;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public SpillFile(String prefix) throws IOException {
+		this(prefix, null);
+	}
+
+	/**
+	 * @param prefix    The prefix of the file name.
+	 * @param directory The directory to create the file in, or <tt>null</tt> for the default temporary-file directory.
+	 */
+	public SpillFile(String prefix, File directory) throws IOException {
+		file = File.createTempFile(prefix, "", directory);
+		output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Appends a binding set to this file. Binding sets can no longer be added once the file is being read.
+	 */
+	public void add(BindingSet bindingSet) throws IOException {
+		if (output == null) {
+			throw new IOException("Spill file is being read: " + file);
+		}
+		serializer.write(bindingSet, output);
+		size++;
+	}
+
+	/**
+	 * Gets the number of binding sets that have been added to this file.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Reads the binding sets in this file, in the order in which they have been added. This method can only be called
+	 * once.
+	 */
+	public CloseableIteration<BindingSet, QueryEvaluationException> read() throws IOException {
+		if (input != null) {
+			throw new IOException("Spill file is already being read: " + file);
+		}
+		if (output != null) {
+			output.close();
+			output = null;
+		}
+		input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+		return new LookAheadIteration<BindingSet, QueryEvaluationException>() {
+
+			private final BindingSetSerializer reader = new BindingSetSerializer();
+
+			private long remaining = size;
+
+			@Override
+			protected BindingSet getNextElement() throws QueryEvaluationException {
+				if (remaining <= 0) {
+					return null;
+				}
+				try {
+					BindingSet next = reader.read(input);
+					remaining--;
+					return next;
+				} catch (IOException e) {
+					throw new QueryEvaluationException(e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (output != null) {
+				output.close();
+				output = null;
+			}
+			if (input != null) {
+				input.close();
+				input = null;
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
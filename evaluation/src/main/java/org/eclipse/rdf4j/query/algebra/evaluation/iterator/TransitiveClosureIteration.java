@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.StatementPattern.Scope;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Union;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.ZeroLengthPath;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+
+/**
+ * Evaluates an {@link ArbitraryLengthPath} over a predicate, or an alternative of (possibly inverse) predicates, by
+ * searching the {@link TripleSource} directly. Unlike {@link PathIteration}, which re-evaluates an ever longer join
+ * for every path length, the nodes reachable from a start node are found by a breadth-first search that looks up the
+ * statements of every node only once.
+ * <p>
+ * If one end of the path is bound, the search starts from that end and every newly reached node is reported as soon as
+ * it is found. If both ends are bound, the path is searched from both ends at the same time, expanding the smaller
+ * frontier first, until the two searches meet. If neither end is bound, every subject of the path's predicates is
+ * searched from in turn.
+ */
+public class TransitiveClosureIteration extends LookAheadIteration<BindingSet, QueryEvaluationException> {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final EvaluationStrategy evaluationStrategy;
+
+	private final TripleSource tripleSource;
+
+	private final Scope scope;
+
+	private final Var startVar;
+
+	private final Var endVar;
+
+	private final Var contextVar;
+
+	private final Edge[] edges;
+
+	private final Resource[] contexts;
+
+	/**
+	 * Flag indicating that statements without a context are not part of the path, as the path is evaluated in all
+	 * named contexts.
+	 */
+	private final boolean namedContextsOnly;
+
+	private final long minLength;
+
+	private final BindingSet bindings;
+
+	private final Value startValue;
+
+	private final Value endValue;
+
+	/**
+	 * The zero-length paths that still need to be reported if neither end of the path is bound.
+	 */
+	private CloseableIteration<BindingSet, QueryEvaluationException> zeroLengthIter;
+
+	/**
+	 * The statements whose subjects (or objects, for inverse edges) are searched from if neither end of the path is
+	 * bound.
+	 */
+	private CloseableIteration<? extends Statement, QueryEvaluationException> rootIter;
+
+	private int rootEdgeIndex = -1;
+
+	private Set<Value> roots;
+
+	/**
+	 * The node that is currently searched from, <tt>null</tt> if no search is in progress.
+	 */
+	private Value root;
+
+	/**
+	 * Flag indicating that the current search follows the edges backwards, from the end of the path to its start.
+	 */
+	private boolean reverse;
+
+	private boolean rootReported;
+
+	private final Set<Value> visited = new HashSet<>();
+
+	private final Queue<Value> frontier = new ArrayDeque<>();
+
+	/**
+	 * The node whose statements are currently being looked up.
+	 */
+	private Value node;
+
+	private int edgeIndex;
+
+	private boolean subjectSide;
+
+	private CloseableIteration<? extends Statement, QueryEvaluationException> statementIter;
+
+	private boolean finished;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param evaluationStrategy The strategy that evaluates the zero-length paths if neither end is bound.
+	 * @param tripleSource       The triple source to search.
+	 * @param scope              The scope of the path.
+	 * @param startVar           The variable at the start of the path.
+	 * @param edges              The edges that a single step of the path can follow, see {@link #getEdges}.
+	 * @param endVar             The variable at the end of the path.
+	 * @param contextVar         The context variable of the path, which must have a value if not <tt>null</tt>.
+	 * @param contexts           The contexts to search, an empty array for all contexts.
+	 * @param minLength          The minimum length of the path, either 0 or 1.
+	 * @param bindings           The bindings to evaluate the path with.
+	 */
+	public TransitiveClosureIteration(EvaluationStrategy evaluationStrategy, TripleSource tripleSource, Scope scope,
+			Var startVar, List<Edge> edges, Var endVar, Var contextVar, Resource[] contexts, long minLength,
+			BindingSet bindings) throws QueryEvaluationException {
+		this.evaluationStrategy = evaluationStrategy;
+		this.tripleSource = tripleSource;
+		this.scope = scope;
+		this.startVar = startVar;
+		this.endVar = endVar;
+		this.contextVar = contextVar;
+		this.edges = edges.toArray(new Edge[edges.size()]);
+		this.contexts = contexts;
+		this.namedContextsOnly = contexts.length == 0 && scope == Scope.NAMED_CONTEXTS;
+		this.minLength = minLength;
+		this.bindings = bindings;
+		this.startValue = getVarValue(startVar, bindings);
+		this.endValue = getVarValue(endVar, bindings);
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Gets the edges that a single step of the supplied path can follow.
+	 *
+	 * @return The edges, or <tt>null</tt> if the path expression is not a statement pattern with a fixed predicate or a
+	 *         union of such patterns, in either direction, between the ends of the path.
+	 */
+	public static List<Edge> getEdges(ArbitraryLengthPath path) {
+		List<Edge> edges = new ArrayList<>();
+		return collectEdges(path.getPathExpression(), path, edges) ? edges : null;
+	}
+
+	private static boolean collectEdges(TupleExpr expr, ArbitraryLengthPath path, List<Edge> edges) {
+		if (expr instanceof Union) {
+			Union union = (Union) expr;
+			return collectEdges(union.getLeftArg(), path, edges) && collectEdges(union.getRightArg(), path, edges);
+		} else if (!(expr instanceof StatementPattern)) {
+			return false;
+		}
+
+		StatementPattern sp = (StatementPattern) expr;
+		Value predicate = sp.getPredicateVar().getValue();
+		if (!(predicate instanceof IRI) || sp.getScope() != path.getScope()
+				|| !isSameVar(sp.getContextVar(), path.getContextVar())) {
+			return false;
+		}
+
+		if (isSameVar(sp.getSubjectVar(), path.getSubjectVar()) && isSameVar(sp.getObjectVar(), path.getObjectVar())) {
+			edges.add(new Edge((IRI) predicate, false));
+		} else if (isSameVar(sp.getSubjectVar(), path.getObjectVar())
+				&& isSameVar(sp.getObjectVar(), path.getSubjectVar())) {
+			edges.add(new Edge((IRI) predicate, true));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isSameVar(Var var1, Var var2) {
+		if (var1 == null || var2 == null) {
+			return var1 == var2;
+		}
+		return var1.getName().equals(var2.getName());
+	}
+
+	@Override
+	protected BindingSet getNextElement() throws QueryEvaluationException {
+		if (finished) {
+			return null;
+		}
+
+		if (startValue != null && endValue != null) {
+			finished = true;
+			return isReachable(startValue, endValue) ? createResult(startValue, endValue) : null;
+		}
+
+		if (startValue == null && endValue == null && minLength == 0L) {
+			if (zeroLengthIter == null) {
+				ZeroLengthPath zlp = new ZeroLengthPath(scope, startVar, endVar, contextVar);
+				zeroLengthIter = evaluationStrategy.evaluate(zlp, bindings);
+			}
+			if (zeroLengthIter.hasNext()) {
+				return zeroLengthIter.next();
+			}
+		}
+
+		while (true) {
+			if (root == null && !nextRoot()) {
+				finished = true;
+				return null;
+			}
+
+			if (!rootReported) {
+				// the zero-length path of the bound end
+				rootReported = true;
+				return createResult(root, root);
+			}
+
+			Value reached = nextReachable();
+			if (reached != null) {
+				return reverse ? createResult(reached, root) : createResult(root, reached);
+			}
+			root = null;
+		}
+	}
+
+	/**
+	 * Starts a search from the next node, if any.
+	 */
+	private boolean nextRoot() throws QueryEvaluationException {
+		if (startValue != null || endValue != null) {
+			if (roots != null) {
+				return false;
+			}
+			roots = new HashSet<>();
+			startSearch(startValue != null ? startValue : endValue, startValue == null);
+			return true;
+		}
+
+		if (roots == null) {
+			roots = new HashSet<>();
+		}
+		while (true) {
+			while (rootIter != null && rootIter.hasNext()) {
+				Statement st = rootIter.next();
+				if (namedContextsOnly && st.getContext() == null) {
+					continue;
+				}
+				Value candidate = edges[rootEdgeIndex].isInverse() ? st.getObject() : st.getSubject();
+				if (roots.add(candidate)) {
+					startSearch(candidate, false);
+					return true;
+				}
+			}
+			Iterations.closeCloseable(rootIter);
+			rootIter = null;
+
+			if (++rootEdgeIndex >= edges.length) {
+				return false;
+			}
+			rootIter = tripleSource.getStatements(null, edges[rootEdgeIndex].getPredicate(), null, contexts);
+		}
+	}
+
+	private void startSearch(Value root, boolean reverse) throws QueryEvaluationException {
+		Iterations.closeCloseable(statementIter);
+		statementIter = null;
+		node = null;
+		visited.clear();
+		frontier.clear();
+
+		this.root = root;
+		this.reverse = reverse;
+		// the zero-length paths are reported separately if neither end is bound
+		this.rootReported = minLength != 0L || startValue == null && endValue == null;
+		if (minLength == 0L) {
+			visited.add(root);
+		}
+		frontier.add(root);
+	}
+
+	/**
+	 * Gets the next node that is reachable from the current root and has not been reported yet.
+	 *
+	 * @return The node, or <tt>null</tt> if all reachable nodes have been reported.
+	 */
+	private Value nextReachable() throws QueryEvaluationException {
+		while (true) {
+			while (statementIter != null && statementIter.hasNext()) {
+				Statement st = statementIter.next();
+				if (namedContextsOnly && st.getContext() == null) {
+					continue;
+				}
+				Value target = subjectSide ? st.getObject() : st.getSubject();
+				if (visited.add(target)) {
+					frontier.add(target);
+					return target;
+				}
+			}
+			Iterations.closeCloseable(statementIter);
+			statementIter = null;
+
+			if (node != null && edgeIndex + 1 < edges.length) {
+				edgeIndex++;
+			} else {
+				node = frontier.poll();
+				if (node == null) {
+					return null;
+				}
+				edgeIndex = 0;
+			}
+			subjectSide = edges[edgeIndex].isInverse() == reverse;
+			statementIter = getStatements(node, edges[edgeIndex], subjectSide);
+		}
+	}
+
+	/**
+	 * Checks whether a path exists between the supplied nodes by searching from both ends, one frontier at a time.
+	 */
+	private boolean isReachable(Value start, Value end) throws QueryEvaluationException {
+		if (minLength == 0L && start.equals(end)) {
+			return true;
+		}
+
+		Set<Value> forwardVisited = new HashSet<>();
+		Set<Value> backwardVisited = new HashSet<>();
+		List<Value> forwardFrontier = new ArrayList<>();
+		List<Value> backwardFrontier = new ArrayList<>();
+		forwardVisited.add(start);
+		forwardFrontier.add(start);
+		backwardVisited.add(end);
+		backwardFrontier.add(end);
+
+		while (!forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+			boolean forward = forwardFrontier.size() <= backwardFrontier.size();
+			List<Value> current = forward ? forwardFrontier : backwardFrontier;
+			Set<Value> visited = forward ? forwardVisited : backwardVisited;
+			Set<Value> otherVisited = forward ? backwardVisited : forwardVisited;
+
+			List<Value> next = new ArrayList<>();
+			for (Value value : current) {
+				for (Edge edge : edges) {
+					boolean subjectSide = edge.isInverse() != forward;
+					try (CloseableIteration<? extends Statement, QueryEvaluationException> iter = getStatements(value,
+							edge, subjectSide)) {
+						while (iter.hasNext()) {
+							Statement st = iter.next();
+							if (namedContextsOnly && st.getContext() == null) {
+								continue;
+							}
+							Value target = subjectSide ? st.getObject() : st.getSubject();
+							// every edge extends the path, so the searches may also meet at one of the ends
+							if (otherVisited.contains(target)) {
+								return true;
+							}
+							if (visited.add(target)) {
+								next.add(target);
+							}
+						}
+					}
+				}
+			}
+
+			if (forward) {
+				forwardFrontier = next;
+			} else {
+				backwardFrontier = next;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the statements that an edge from or to the supplied node follows.
+	 *
+	 * @param subjectSide Whether the node is the subject of the statements, rather than the object.
+	 */
+	private CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Value node, Edge edge,
+			boolean subjectSide) throws QueryEvaluationException {
+		if (subjectSide) {
+			if (!(node instanceof Resource)) {
+				return new EmptyIteration<>();
+			}
+			return tripleSource.getStatements((Resource) node, edge.getPredicate(), null, contexts);
+		}
+		return tripleSource.getStatements(null, edge.getPredicate(), node, contexts);
+	}
+
+	private BindingSet createResult(Value start, Value end) {
+		QueryBindingSet result = new QueryBindingSet(bindings);
+		if (!result.hasBinding(startVar.getName())) {
+			result.addBinding(startVar.getName(), start);
+		}
+		if (!result.hasBinding(endVar.getName())) {
+			result.addBinding(endVar.getName(), end);
+		}
+		return result;
+	}
+
+	private static Value getVarValue(Var var, BindingSet bindings) {
+		Value value = var.getValue();
+		if (value == null) {
+			value = bindings.getValue(var.getName());
+		}
+		return value;
+	}
+
+	@Override
+	protected void handleClose() throws QueryEvaluationException {
+		try {
+			super.handleClose();
+		} finally {
+			try {
+				Iterations.closeCloseable(zeroLengthIter);
+			} finally {
+				try {
+					Iterations.closeCloseable(rootIter);
+				} finally {
+					Iterations.closeCloseable(statementIter);
+					visited.clear();
+					frontier.clear();
+					roots = null;
+				}
+			}
+		}
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * A predicate that a single step of a path follows, either from subject to object or, for an inverse edge, from
+	 * object to subject.
+	 */
+	public static final class Edge {
+
+		private final IRI predicate;
+
+		private final boolean inverse;
+
+		public Edge(IRI predicate, boolean inverse) {
+			this.predicate = predicate;
+			this.inverse = inverse;
+		}
+
+		public IRI getPredicate() {
+			return predicate;
+		}
+
+		public boolean isInverse() {
+			return inverse;
+		}
+	}
+}
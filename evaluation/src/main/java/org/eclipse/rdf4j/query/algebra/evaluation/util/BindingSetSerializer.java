@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+
+/**
+ * A compact binary encoding of {@link BindingSet}s, used to spill intermediate query results to disk.
+ * <p>
+ * Binding names, datatypes and values are written in full only the first time they occur in a stream and are referred
+ * to by number afterwards. Only the first {@link #MAX_DICTIONARY_SIZE} distinct values of a stream are numbered, which
+ * bounds the memory that is used for long streams. An instance keeps track of the names, datatypes and values of a
+ * single stream, so a separate instance has to be used for every stream, and for writing and reading it.
+ */
+public class BindingSetSerializer {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int NULL_VALUE = 0;
+
+	private static final int IRI_VALUE = 1;
+
+	private static final int BNODE_VALUE = 2;
+
+	private static final int STRING_LITERAL_VALUE = 3;
+
+	private static final int LANG_LITERAL_VALUE = 4;
+
+	private static final int TYPED_LITERAL_VALUE = 5;
+
+	private static final int VALUE_REFERENCE = 6;
+
+	/**
+	 * The maximum number of values that are numbered in a single stream.
+	 */
+	private static final int MAX_DICTIONARY_SIZE = 16384;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final ValueFactory vf;
+
+	private final Map<String, Integer> nameIds = new HashMap<>();
+
+	private final List<String> names = new ArrayList<>();
+
+	private final Map<IRI, Integer> datatypeIds = new HashMap<>();
+
+	private final List<IRI> datatypes = new ArrayList<>();
+
+	private final Map<Value, Integer> valueIds = new HashMap<>();
+
+	private final List<Value> values = new ArrayList<>();
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public BindingSetSerializer() {
+		this(SimpleValueFactory.getInstance());
+	}
+
+	/**
+	 * @param vf The value factory that is used to create the values of the binding sets that are read.
+	 */
+	public BindingSetSerializer(ValueFactory vf) {
+		this.vf = vf;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	public void write(BindingSet bindingSet, DataOutput out) throws IOException {
+		// a QueryBindingSet can explicitly leave a variable unbound, which is kept
+		boolean writeUnbound = bindingSet instanceof QueryBindingSet;
+		Set<String> bindingNames = bindingSet.getBindingNames();
+		int size = 0;
+		for (String name : bindingNames) {
+			if (writeUnbound || bindingSet.getValue(name) != null) {
+				size++;
+			}
+		}
+
+		writeVarInt(size, out);
+		for (String name : bindingNames) {
+			Value value = bindingSet.getValue(name);
+			if (writeUnbound || value != null) {
+				writeName(name, out);
+				writeValue(value, out);
+			}
+		}
+	}
+
+	/**
+	 * Reads a binding set. Binding sets without bindings are read as the shared {@link EmptyBindingSet} instance.
+	 */
+	public BindingSet read(DataInput in) throws IOException {
+		int size = readVarInt(in);
+		if (size == 0) {
+			return EmptyBindingSet.getInstance();
+		}
+
+		QueryBindingSet bindingSet = new QueryBindingSet(size);
+		for (int i = 0; i < size; i++) {
+			String name = readName(in);
+			bindingSet.addBinding(name, readValue(in));
+		}
+		return bindingSet;
+	}
+
+	private void writeName(String name, DataOutput out) throws IOException {
+		Integer id = nameIds.get(name);
+		if (id != null) {
+			writeVarInt(id, out);
+		} else {
+			nameIds.put(name, nameIds.size() + 1);
+			writeVarInt(0, out);
+			writeString(name, out);
+		}
+	}
+
+	private String readName(DataInput in) throws IOException {
+		int id = readVarInt(in);
+		if (id == 0) {
+			String name = readString(in);
+			names.add(name);
+			return name;
+		} else if (id > names.size()) {
+			throw new IOException("Invalid binding name reference: " + id);
+		}
+		return names.get(id - 1);
+	}
+
+	private void writeValue(Value value, DataOutput out) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL_VALUE);
+			return;
+		}
+
+		Integer id = valueIds.get(value);
+		if (id != null) {
+			out.writeByte(VALUE_REFERENCE);
+			writeVarInt(id, out);
+			return;
+		} else if (valueIds.size() < MAX_DICTIONARY_SIZE) {
+			valueIds.put(value, valueIds.size());
+		}
+
+		if (value instanceof IRI) {
+			out.writeByte(IRI_VALUE);
+			writeString(value.stringValue(), out);
+		} else if (value instanceof BNode) {
+			out.writeByte(BNODE_VALUE);
+			writeString(((BNode) value).getID(), out);
+		} else if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			Optional<String> language = literal.getLanguage();
+			if (language.isPresent()) {
+				out.writeByte(LANG_LITERAL_VALUE);
+				writeString(literal.getLabel(), out);
+				writeString(language.get(), out);
+			} else if (XMLSchema.STRING.equals(literal.getDatatype())) {
+				out.writeByte(STRING_LITERAL_VALUE);
+				writeString(literal.getLabel(), out);
+			} else {
+				out.writeByte(TYPED_LITERAL_VALUE);
+				writeString(literal.getLabel(), out);
+				writeDatatype(literal.getDatatype(), out);
+			}
+		} else {
+			throw new IOException("Unsupported value type: " + value);
+		}
+	}
+
+	private Value readValue(DataInput in) throws IOException {
+		int type = in.readByte();
+		if (type == NULL_VALUE) {
+			return null;
+		} else if (type == VALUE_REFERENCE) {
+			int id = readVarInt(in);
+			if (id >= values.size()) {
+				throw new IOException("Invalid value reference: " + id);
+			}
+			return values.get(id);
+		}
+
+		Value value = readValueInFull(type, in);
+		if (values.size() < MAX_DICTIONARY_SIZE) {
+			values.add(value);
+		}
+		return value;
+	}
+
+	private Value readValueInFull(int type, DataInput in) throws IOException {
+		switch (type) {
+		case IRI_VALUE:
+			return vf.createIRI(readString(in));
+		case BNODE_VALUE:
+			return vf.createBNode(readString(in));
+		case STRING_LITERAL_VALUE:
+			return vf.createLiteral(readString(in));
+		case LANG_LITERAL_VALUE:
+			String label = readString(in);
+			return vf.createLiteral(label, readString(in));
+		case TYPED_LITERAL_VALUE:
+			label = readString(in);
+			return vf.createLiteral(label, readDatatype(in));
+		default:
+			throw new IOException("Invalid value type: " + type);
+		}
+	}
+
+	private void writeDatatype(IRI datatype, DataOutput out) throws IOException {
+		Integer id = datatypeIds.get(datatype);
+		if (id != null) {
+			writeVarInt(id, out);
+		} else {
+			datatypeIds.put(datatype, datatypeIds.size() + 1);
+			writeVarInt(0, out);
+			writeString(datatype.stringValue(), out);
+		}
+	}
+
+	private IRI readDatatype(DataInput in) throws IOException {
+		int id = readVarInt(in);
+		if (id == 0) {
+			IRI datatype = vf.createIRI(readString(in));
+			datatypes.add(datatype);
+			return datatype;
+		} else if (id > datatypes.size()) {
+			throw new IOException("Invalid datatype reference: " + id);
+		}
+		return datatypes.get(id - 1);
+	}
+
+	private static void writeString(String s, DataOutput out) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length, out);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarInt(int value, DataOutput out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid variable-length integer");
+	}
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor on which query operators run their background work, such as writing sorted runs to disk and aggregating
+ * partitions of groups, unless the evaluation strategy is given another executor. It is kept apart from the common
+ * fork-join pool, because the work includes blocking disk I/O.
+ * <p>
+ * The executor has at most one thread per processor and a bounded queue. When the queue is full, the work is run by
+ * the thread that submits it, which slows down the query that produces the work instead of queuing it without bounds.
+ */
+public final class QueryBackgroundExecutor {
+
+	private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static final int QUEUE_SIZE = 4 * THREADS;
+
+	private static volatile Executor sharedInstance;
+
+	private QueryBackgroundExecutor() {
+	}
+
+	/**
+	 * Gets the executor that is shared by all queries, creating it if it does not exist yet. Its threads are daemon
+	 * threads that stop when they have been idle for a minute.
+	 */
+	public static Executor getSharedInstance() {
+		Executor executor = sharedInstance;
+		if (executor == null) {
+			synchronized (QueryBackgroundExecutor.class) {
+				executor = sharedInstance;
+				if (executor == null) {
+					executor = sharedInstance = createExecutor();
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Determines whether background work can run in parallel with the thread that submits it.
+	 */
+	public static boolean isParallel() {
+		return THREADS > 1;
+	}
+
+	private static Executor createExecutor() {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+					Thread thread = new Thread(runnable, "rdf4j-query-background-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
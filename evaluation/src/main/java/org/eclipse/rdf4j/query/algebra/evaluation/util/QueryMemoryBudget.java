@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of intermediate results that the operators of a single query may together keep in memory. Operators that
+ * can spill their intermediate results to disk reserve room for every result they keep in memory, and spill results
+ * once a reservation fails.
+ */
+public class QueryMemoryBudget {
+
+	private final long limit;
+
+	private final AtomicLong used = new AtomicLong();
+
+	/**
+	 * @param limit The maximum number of intermediate results kept in memory, or 0 if there is no limit and nothing is
+	 *              spilled to disk.
+	 */
+	public QueryMemoryBudget(long limit) {
+		this.limit = limit > 0 ? limit : 0;
+	}
+
+	public boolean isLimited() {
+		return limit > 0;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public long getUsed() {
+		return used.get();
+	}
+
+	/**
+	 * Reserves room for the specified number of results if it is available.
+	 *
+	 * @return <tt>true</tt> if the room has been reserved, <tt>false</tt> if the results should be spilled instead.
+	 */
+	public boolean tryReserve(long count) {
+		while (true) {
+			long current = used.get();
+			if (isLimited() && current + count > limit) {
+				return false;
+			}
+			if (used.compareAndSet(current, current + count)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Reserves room for the specified number of results that have to be kept in memory regardless of the limit.
+	 */
+	public void reserve(long count) {
+		used.addAndGet(count);
+	}
+
+	/**
+	 * Releases the room of results that are no longer kept in memory.
+	 */
+	public void release(long count) {
+		used.addAndGet(-count);
+	}
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link BatchEvaluationStrategy} returns the same results as {@link StrictEvaluationStrategy}.
+ */
+public class BatchEvaluationStrategyTest {
+
+	private static final String NS = "http://example.org/";
+
+	private static final String PREFIX = "PREFIX ex: <" + NS + ">\n";
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private EvaluationStrategy strict;
+
+	private EvaluationStrategy batch;
+
+	@Before
+	public void setUp() {
+		IRI name = vf.createIRI(NS, "name");
+		IRI age = vf.createIRI(NS, "age");
+		IRI knows = vf.createIRI(NS, "knows");
+
+		Model m = new LinkedHashModel();
+		for (int i = 0; i < 3000; i++) {
+			IRI person = vf.createIRI(NS, "person" + i);
+			m.add(person, name, vf.createLiteral("person " + i));
+			if (i % 5 != 0) {
+				m.add(person, age, vf.createLiteral(i % 60));
+			}
+			if (i % 2 == 0) {
+				m.add(person, knows, vf.createIRI(NS, "person" + (i + 1) % 3000));
+				m.add(person, knows, vf.createIRI(NS, "person" + (i * 7) % 3000));
+			}
+		}
+
+		TripleSource ts = new TripleSource() {
+
+			@Override
+			public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Resource subj,
+					IRI pred, Value obj, Resource... contexts) throws QueryEvaluationException {
+				return new CloseableIteratorIteration<>(m.filter(subj, pred, obj, contexts).iterator());
+			}
+
+			@Override
+			public ValueFactory getValueFactory() {
+				return vf;
+			}
+		};
+		strict = new StrictEvaluationStrategy(ts, null);
+		batch = new BatchEvaluationStrategy(ts, null);
+	}
+
+	@Test
+	public void testFilter() {
+		assertSameResults("SELECT ?p ?age WHERE { ?p ex:age ?age FILTER (?age > 30 && ?age != 42) }");
+	}
+
+	@Test
+	public void testFilterScope() {
+		// ?age is not in scope for the filter, so the condition is always true
+		assertSameResults("SELECT * WHERE { ?p ex:age ?age { ?p ex:name ?name FILTER (!bound(?age)) } }");
+	}
+
+	@Test
+	public void testExtension() {
+		// the second binding is unbound when the division by zero fails
+		assertSameResults("SELECT ?p ?x ?y WHERE { ?p ex:age ?age "
+				+ "BIND (?age * 2 AS ?x) BIND (?x / (?age - 40) AS ?y) }");
+	}
+
+	@Test
+	public void testOptionalValues() {
+		assertSameResults("SELECT ?name ?older WHERE { ?p ex:name ?name OPTIONAL { ?p ex:age ?age } "
+				+ "BIND (?age + 1 AS ?older) FILTER (!bound(?age) || ?age < 10) }");
+	}
+
+	@Test
+	public void testSubqueryJoin() {
+		assertSameResults("SELECT ?name ?friends WHERE { ?p ex:name ?name . "
+				+ "{ SELECT ?p (COUNT(?f) AS ?friends) WHERE { ?p ex:knows ?f } GROUP BY ?p } }");
+	}
+
+	@Test
+	public void testExists() {
+		assertSameResults("SELECT ?p WHERE { ?p ex:age ?age "
+				+ "FILTER EXISTS { ?p ex:knows ?f . ?f ex:age ?fage FILTER (?fage < ?age) } }");
+	}
+
+	private void assertSameResults(String query) {
+		TupleExpr expr = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, PREFIX + query, null).getTupleExpr();
+
+		Map<Map<String, Value>, Integer> expected = evaluate(strict, expr);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, evaluate(batch, expr));
+	}
+
+	/**
+	 * Evaluates a query and counts how often each solution occurs.
+	 */
+	private Map<Map<String, Value>, Integer> evaluate(EvaluationStrategy strategy, TupleExpr expr) {
+		Map<Map<String, Value>, Integer> result = new HashMap<>();
+		try (CloseableIteration<BindingSet, QueryEvaluationException> iter = strategy.evaluate(expr,
+				EmptyBindingSet.getInstance())) {
+			while (iter.hasNext()) {
+				Map<String, Value> solution = new HashMap<>();
+				for (Binding binding : iter.next()) {
+					if (binding.getValue() != null) {
+						solution.put(binding.getName(), binding.getValue());
+					}
+				}
+				result.merge(solution, 1, Integer::sum);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.Avg;
+import org.eclipse.rdf4j.query.algebra.BindingSetAssignment;
+import org.eclipse.rdf4j.query.algebra.Count;
+import org.eclipse.rdf4j.query.algebra.Group;
+import org.eclipse.rdf4j.query.algebra.GroupElem;
+import org.eclipse.rdf4j.query.algebra.MathExpr.MathOp;
+import org.eclipse.rdf4j.query.algebra.Max;
+import org.eclipse.rdf4j.query.algebra.Min;
+import org.eclipse.rdf4j.query.algebra.Sum;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.MathUtil;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryMemoryBudget;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.junit.Test;
+
+/**
+ * Unit tests for class {@link GroupIterator}.
+ */
+public class GroupIteratorTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final EvaluationStrategy evaluator = new StrictEvaluationStrategy(null, null);
+
+	@Test
+	public void testAggregates() {
+		Group group = createGroup(createBindingSets(5000, 300));
+
+		List<BindingSet> result = Iterations.asList(
+				new GroupIterator(evaluator, group, EmptyBindingSet.getInstance(), new QueryMemoryBudget(0)));
+
+		assertEquals(300, result.size());
+		for (BindingSet bindingSet : result) {
+			int g = ((Literal) bindingSet.getValue("g")).intValue();
+			// the values of group g are g, g + 300, g + 600, ..., below 5000
+			long count = (5000 - g + 299) / 300;
+			long sum = count * g + 300 * count * (count - 1) / 2;
+			assertEquals(count, ((Literal) bindingSet.getValue("count")).longValue());
+			assertEquals(sum, ((Literal) bindingSet.getValue("sum")).longValue());
+			assertEquals(g, ((Literal) bindingSet.getValue("min")).intValue());
+			assertEquals(g + 300 * (count - 1), ((Literal) bindingSet.getValue("max")).intValue());
+			assertEquals(0, BigDecimal.valueOf(sum)
+					.divide(BigDecimal.valueOf(count), 24, RoundingMode.HALF_UP)
+					.compareTo(((Literal) bindingSet.getValue("avg")).decimalValue()));
+			assertEquals(Math.min(count, 7), ((Literal) bindingSet.getValue("distinct")).longValue());
+		}
+	}
+
+	@Test
+	public void testSpilling() {
+		Group group = createGroup(createBindingSets(5000, 300));
+		QueryMemoryBudget memoryBudget = new QueryMemoryBudget(10);
+
+		Set<BindingSet> expected = new HashSet<>(Iterations.asList(
+				new GroupIterator(evaluator, group, EmptyBindingSet.getInstance(), new QueryMemoryBudget(0))));
+		List<BindingSet> actual = Iterations
+				.asList(new GroupIterator(evaluator, group, EmptyBindingSet.getInstance(), memoryBudget));
+
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected, new HashSet<>(actual));
+		assertEquals(0, memoryBudget.getUsed());
+	}
+
+	@Test
+	public void testSumPromotion() {
+		List<Literal> values = Arrays.asList(vf.createLiteral(Long.MAX_VALUE), vf.createLiteral(Long.MAX_VALUE),
+				vf.createLiteral(-3), vf.createLiteral(new BigDecimal("0.25")), vf.createLiteral(1.5f),
+				vf.createLiteral(0.1d), vf.createLiteral(7));
+
+		List<BindingSet> bindingSets = new ArrayList<>();
+		Literal expected = vf.createLiteral(BigInteger.ZERO);
+		for (int i = 0; i < values.size(); i++) {
+			bindingSets.add(new ListBindingSet(Arrays.asList("v"), values.get(i)));
+			expected = MathUtil.compute(expected, values.get(i), MathOp.PLUS);
+
+			BindingSetAssignment arg = new BindingSetAssignment();
+			arg.setBindingSets(new ArrayList<>(bindingSets));
+			Group group = new Group(arg, Collections.<String>emptySet());
+			group.addGroupElement(new GroupElem("sum", new Sum(new Var("v"))));
+
+			BindingSet result = new GroupIterator(evaluator, group, EmptyBindingSet.getInstance()).next();
+			assertEquals(expected, result.getValue("sum"));
+		}
+	}
+
+	@Test
+	public void testEmptyInput() {
+		Group group = createGroup(Collections.<BindingSet>emptyList());
+
+		List<BindingSet> result = Iterations.asList(new GroupIterator(evaluator, group, EmptyBindingSet.getInstance(),
+				new QueryMemoryBudget(10)));
+
+		assertEquals(1, result.size());
+		assertEquals(0, ((Literal) result.get(0).getValue("count")).intValue());
+		assertTrue(result.get(0).hasBinding("sum"));
+	}
+
+	/**
+	 * Creates the binding sets of the numbers below a limit, which are grouped by their remainder.
+	 */
+	private List<BindingSet> createBindingSets(int limit, int groups) {
+		List<String> names = Arrays.asList("g", "v", "w");
+		List<BindingSet> bindingSets = new ArrayList<>(limit);
+		for (int i = 0; i < limit; i++) {
+			bindingSets.add(new ListBindingSet(names, vf.createLiteral(i % groups), vf.createLiteral(i),
+					vf.createLiteral(i % 7)));
+		}
+		return bindingSets;
+	}
+
+	private Group createGroup(List<BindingSet> bindingSets) {
+		BindingSetAssignment arg = new BindingSetAssignment();
+		arg.setBindingSets(bindingSets);
+
+		Group group = new Group(arg, Collections.singleton("g"));
+		group.addGroupElement(new GroupElem("count", new Count(new Var("v"))));
+		group.addGroupElement(new GroupElem("sum", new Sum(new Var("v"))));
+		group.addGroupElement(new GroupElem("min", new Min(new Var("v"))));
+		group.addGroupElement(new GroupElem("max", new Max(new Var("v"))));
+		group.addGroupElement(new GroupElem("avg", new Avg(new Var("v"))));
+		group.addGroupElement(new GroupElem("distinct", new Count(new Var("w"), true)));
+		return group;
+	}
+}
@@ -9,8 +9,14 @@ package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.ValueFactoryImpl;
@@ -20,6 +26,7 @@ import org.eclipse.rdf4j.query.algebra.BindingSetAssignment;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.QueryMemoryBudget;
 import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.junit.Test;
 
@@ -106,4 +113,68 @@ public class HashJoinIterationTest {
 		assertEquals("x", actual.getValue("i").stringValue());
 		assertFalse(actual.hasBinding("b"));
 	}
+
+	@Test
+	public void testSpillingInnerJoin() throws QueryEvaluationException {
+		QueryMemoryBudget budget = new QueryMemoryBudget(50);
+		BindingSetAssignment left = createBindingSets("a", 1000, 1);
+		BindingSetAssignment right = createBindingSets("b", 500, 2);
+
+		Set<String> results = new HashSet<>();
+		try (HashJoinIteration iter = new HashJoinIteration(evaluator, left, right, EmptyBindingSet.getInstance(),
+				false, budget)) {
+			while (iter.hasNext()) {
+				BindingSet actual = iter.next();
+				assertTrue(results.add(actual.getValue("i").stringValue()));
+				assertEquals(actual.getValue("a").stringValue(), "a" + actual.getValue("i").stringValue());
+				assertEquals(actual.getValue("b").stringValue(), "b" + actual.getValue("i").stringValue());
+			}
+		}
+
+		// every second value of i is shared
+		assertEquals(500, results.size());
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test
+	public void testSpillingLeftJoin() throws QueryEvaluationException {
+		QueryMemoryBudget budget = new QueryMemoryBudget(50);
+		BindingSetAssignment left = createBindingSets("a", 1000, 1);
+		BindingSetAssignment right = createBindingSets("b", 500, 2);
+
+		int count = 0;
+		try (HashJoinIteration iter = new HashJoinIteration(evaluator, left, right, EmptyBindingSet.getInstance(),
+				true, budget)) {
+			while (iter.hasNext()) {
+				BindingSet actual = iter.next();
+				int i = Integer.parseInt(actual.getValue("i").stringValue());
+				if (i % 2 == 0) {
+					assertEquals("b" + i, actual.getValue("b").stringValue());
+				} else {
+					assertNull(actual.getValue("b"));
+				}
+				count++;
+			}
+		}
+
+		assertEquals(1000, count);
+		assertEquals(0, budget.getUsed());
+	}
+
+	/**
+	 * Creates binding sets that bind the join variable <tt>i</tt> to every multiple of the step, and the supplied
+	 * variable to the same number with the variable name as prefix.
+	 */
+	private BindingSetAssignment createBindingSets(String name, int count, int step) {
+		List<BindingSet> bindingSets = new ArrayList<>(count);
+		for (int i = 0; i < count * step; i += step) {
+			QueryBindingSet bs = new QueryBindingSet();
+			bs.addBinding(name, vf.createLiteral(name + i));
+			bs.addBinding("i", vf.createLiteral(Integer.toString(i)));
+			bindingSets.add(bs);
+		}
+		BindingSetAssignment assignment = new BindingSetAssignment();
+		assignment.setBindingSets(bindingSets);
+		return assignment;
+	}
 }
@@ -11,15 +11,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.Binding;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
 
 import junit.framework.TestCase;
 
@@ -181,6 +187,64 @@ public class OrderIteratorTest extends TestCase {
 		assertFalse(order.hasNext());
 	}
 
+	public void testSpilling() throws Exception {
+		List<BindingSet> input = createBindingSets(1000, 300);
+		List<BindingSet> sorted = new ArrayList<>(input);
+		Collections.sort(sorted, new ValueComparator());
+
+		// enough runs to need more than one merge pass
+		OrderIterator spilling = new OrderIterator(new CloseableIteratorIteration<>(input.iterator()),
+				new ValueComparator(), Long.MAX_VALUE, false, 10);
+		assertEquals(sorted, Iterations.asList(spilling));
+	}
+
+	public void testSpillingWithLimit() throws Exception {
+		List<BindingSet> input = createBindingSets(1000, 300);
+		List<BindingSet> sorted = new ArrayList<>(input);
+		Collections.sort(sorted, new ValueComparator());
+
+		OrderIterator spilling = new OrderIterator(new CloseableIteratorIteration<>(input.iterator()),
+				new ValueComparator(), 25, false, 10);
+		assertEquals(sorted.subList(0, 25), Iterations.asList(spilling));
+	}
+
+	public void testSpillingDistinct() throws Exception {
+		List<BindingSet> input = createBindingSets(1000, 300);
+		List<BindingSet> sorted = new ArrayList<>(new HashSet<>(input));
+		Collections.sort(sorted, new ValueComparator());
+
+		OrderIterator spilling = new OrderIterator(new CloseableIteratorIteration<>(input.iterator()),
+				new ValueComparator(), Long.MAX_VALUE, true, 10);
+		assertEquals(sorted, Iterations.asList(spilling));
+	}
+
+	/**
+	 * Creates binding sets of two random numbers, with many duplicates.
+	 */
+	private List<BindingSet> createBindingSets(int count, int range) {
+		Random random = new Random(42);
+		List<String> names = Arrays.asList("x", "y");
+		List<BindingSet> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(new ListBindingSet(names, SimpleValueFactory.getInstance().createLiteral(random.nextInt(range)),
+					SimpleValueFactory.getInstance().createLiteral(random.nextInt(2))));
+		}
+		return result;
+	}
+
+	class ValueComparator implements Comparator<BindingSet> {
+
+		@Override
+		public int compare(BindingSet o1, BindingSet o2) {
+			int result = Integer.compare(intValue(o1, "x"), intValue(o2, "x"));
+			return result != 0 ? result : Integer.compare(intValue(o1, "y"), intValue(o2, "y"));
+		}
+
+		private int intValue(BindingSet bindingSet, String name) {
+			return ((Literal) bindingSet.getValue(name)).intValue();
+		}
+	}
+
 	@Override
 	protected void setUp() throws Exception {
 		list = Arrays.asList(b3, b5, b2, b1, b4, b2);
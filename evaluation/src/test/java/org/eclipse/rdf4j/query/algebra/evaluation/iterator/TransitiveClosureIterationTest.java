@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.ArbitraryLengthPath;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.StatementPattern.Scope;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Union;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.evaluation.TripleSource;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategy;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests evaluation of {@link ArbitraryLengthPath}s by {@link TransitiveClosureIteration}.
+ */
+public class TransitiveClosureIterationTest {
+
+	private static final String NS = "http://example.org/";
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI broader = vf.createIRI(NS, "broader");
+
+	private final IRI narrower = vf.createIRI(NS, "narrower");
+
+	private final IRI a = vf.createIRI(NS, "a");
+
+	private final IRI b = vf.createIRI(NS, "b");
+
+	private final IRI c = vf.createIRI(NS, "c");
+
+	private final IRI d = vf.createIRI(NS, "d");
+
+	private final IRI e = vf.createIRI(NS, "e");
+
+	private StrictEvaluationStrategy strategy;
+
+	@Before
+	public void setUp() {
+		Model m = new LinkedHashModel();
+		// a cycle a -> b -> c -> a, with a branch to d
+		m.add(a, broader, b);
+		m.add(b, broader, c);
+		m.add(c, broader, a);
+		m.add(c, broader, d);
+		// e can only be reached from d in the inverse direction
+		m.add(e, narrower, d);
+
+		TripleSource ts = new TripleSource() {
+
+			@Override
+			public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(Resource subj,
+					IRI pred, Value obj, Resource... contexts) throws QueryEvaluationException {
+				return new CloseableIteratorIteration<>(m.filter(subj, pred, obj, contexts).iterator());
+			}
+
+			@Override
+			public ValueFactory getValueFactory() {
+				return vf;
+			}
+		};
+		strategy = new StrictEvaluationStrategy(ts, null);
+	}
+
+	@Test
+	public void testStartBound() {
+		assertEquals(pairs("a b", "a c", "a a", "a d"), evaluate(path(constant(a), new Var("o"), 1)));
+		assertEquals(pairs("a a", "a b", "a c", "a d"), evaluate(path(constant(a), new Var("o"), 0)));
+		assertEquals(pairs("d d"), evaluate(path(constant(d), new Var("o"), 0)));
+	}
+
+	@Test
+	public void testEndBound() {
+		assertEquals(pairs("c d", "b d", "a d"), evaluate(path(new Var("s"), constant(d), 1)));
+		assertEquals(pairs("a a", "c a", "b a"), evaluate(path(new Var("s"), constant(a), 0)));
+	}
+
+	@Test
+	public void testBothBound() {
+		assertEquals(pairs("a d"), evaluate(path(constant(a), constant(d), 1)));
+		assertEquals(pairs("a a"), evaluate(path(constant(a), constant(a), 1)));
+		assertEquals(pairs("d d"), evaluate(path(constant(d), constant(d), 0)));
+		assertEquals(pairs(), evaluate(path(constant(d), constant(d), 1)));
+		assertEquals(pairs(), evaluate(path(constant(d), constant(a), 0)));
+	}
+
+	@Test
+	public void testInverseAlternative() {
+		Var start = constant(a);
+		Var end = new Var("o");
+		TupleExpr expr = new Union(new StatementPattern(start.clone(), constant(broader), end.clone()),
+				new StatementPattern(end.clone(), constant(narrower), start.clone()));
+		ArbitraryLengthPath path = new ArbitraryLengthPath(Scope.DEFAULT_CONTEXTS, start, expr, end, 1);
+
+		assertEquals(2, TransitiveClosureIteration.getEdges(path).size());
+		assertEquals(pairs("a b", "a c", "a a", "a d", "a e"), evaluate(path));
+	}
+
+	@Test
+	public void testSameResultsAsPathIteration() {
+		for (long minLength = 0; minLength <= 1; minLength++) {
+			ArbitraryLengthPath path = path(new Var("s"), new Var("o"), minLength);
+			assertTrue(strategy.evaluate(path, EmptyBindingSet.getInstance()) instanceof TransitiveClosureIteration);
+
+			List<String> expected = toPairs(new PathIteration(strategy, path.getScope(), path.getSubjectVar(),
+					path.getPathExpression(), path.getObjectVar(), null, minLength, EmptyBindingSet.getInstance()),
+					path);
+			List<String> actual = toPairs(strategy.evaluate(path, EmptyBindingSet.getInstance()), path);
+			assertEquals(new HashSet<>(expected).size(), actual.size());
+			assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+		}
+	}
+
+	private ArbitraryLengthPath path(Var start, Var end, long minLength) {
+		StatementPattern sp = new StatementPattern(start.clone(), constant(broader), end.clone());
+		return new ArbitraryLengthPath(Scope.DEFAULT_CONTEXTS, start, sp, end, minLength);
+	}
+
+	private Var constant(IRI value) {
+		Var var = new Var("_const_" + value.getLocalName(), value);
+		var.setAnonymous(true);
+		return var;
+	}
+
+	private Set<String> evaluate(ArbitraryLengthPath path) {
+		CloseableIteration<BindingSet, QueryEvaluationException> iter = strategy.evaluate(path,
+				EmptyBindingSet.getInstance());
+		assertTrue(iter instanceof TransitiveClosureIteration);
+		List<String> pairs = toPairs(iter, path);
+		Set<String> result = new HashSet<>(pairs);
+		assertEquals("duplicate results " + pairs, pairs.size(), result.size());
+		return result;
+	}
+
+	private List<String> toPairs(CloseableIteration<BindingSet, QueryEvaluationException> iter,
+			ArbitraryLengthPath path) {
+		List<String> pairs = new ArrayList<>();
+		try {
+			while (iter.hasNext()) {
+				BindingSet bs = iter.next();
+				IRI start = (IRI) bs.getValue(path.getSubjectVar().getName());
+				IRI end = (IRI) bs.getValue(path.getObjectVar().getName());
+				pairs.add(start.getLocalName() + " " + end.getLocalName());
+			}
+		} finally {
+			iter.close();
+		}
+		return pairs;
+	}
+
+	private Set<String> pairs(String... pairs) {
+		return new HashSet<>(Arrays.asList(pairs));
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.query.algebra.evaluation.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.junit.Test;
+
+/**
+ * Unit tests for class {@link BindingSetSerializer}.
+ */
+public class BindingSetSerializerTest {
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		QueryBindingSet first = new QueryBindingSet();
+		first.addBinding("iri", RDF.TYPE);
+		first.addBinding("bnode", vf.createBNode("node1"));
+		first.addBinding("string", vf.createLiteral("a \u00e9 \ud83d\ude00"));
+		first.addBinding("lang", vf.createLiteral("chat", "fr"));
+		first.addBinding("typed", vf.createLiteral(42));
+		first.addBinding("unbound", null);
+
+		QueryBindingSet second = new QueryBindingSet();
+		second.addBinding("typed", vf.createLiteral(43));
+		second.addBinding("iri", RDF.NIL);
+
+		List<BindingSet> read = roundTrip(first, second, EmptyBindingSet.getInstance());
+
+		assertEquals(first, read.get(0));
+		assertTrue(read.get(0).hasBinding("unbound"));
+		assertNull(read.get(0).getValue("unbound"));
+		assertEquals(second, read.get(1));
+		assertSame(EmptyBindingSet.getInstance(), read.get(2));
+	}
+
+	@Test
+	public void testUnboundValuesOfOtherBindingSetsAreSkipped() throws Exception {
+		BindingSet bindingSet = new ListBindingSet(Arrays.asList("a", "b"), RDF.TYPE, null);
+
+		BindingSet read = roundTrip(bindingSet).get(0);
+
+		assertEquals(RDF.TYPE, read.getValue("a"));
+		assertFalse(read.hasBinding("b"));
+	}
+
+	@Test
+	public void testRepeatedValues() throws Exception {
+		List<BindingSet> bindingSets = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			bindingSets.add(new ListBindingSet(Arrays.asList("a", "b"), vf.createLiteral(i % 100),
+					vf.createLiteral("value " + i)));
+		}
+
+		assertEquals(bindingSets, roundTrip(bindingSets.toArray(new BindingSet[bindingSets.size()])));
+	}
+
+	private List<BindingSet> roundTrip(BindingSet... bindingSets) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		BindingSetSerializer writer = new BindingSetSerializer();
+		for (BindingSet bindingSet : bindingSets) {
+			writer.write(bindingSet, out);
+		}
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		BindingSetSerializer reader = new BindingSetSerializer(vf);
+		BindingSet[] result = new BindingSet[bindingSets.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = reader.read(in);
+		}
+		assertEquals(-1, in.read());
+		return Arrays.asList(result);
+	}
+}
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.base.SailSink;
+
+/**
+ * An append-only log of the changes that have been committed to a persistent MemoryStore since its data file was last
+ * written. Each commit is appended as a single entry, so durable commits cost time proportional to the size of the
+ * change instead of the size of the store.
+ * <p>
+ * The log starts with a header, followed by entries of the form <tt>[length][sequence][checksum][records]</tt>. The
+ * records are encoded by {@link FileIO}. The sequence numbers of the entries increase across restarts of the store:
+ * the change that creates snapshot <tt>S</tt> gets the sequence number <tt>B + S</tt>, where <tt>B</tt> is the
+ * largest sequence number in the log when it is opened. The header holds the sequence number of the last change that
+ * has been removed from the log, so that sequence numbers never decrease, even when all entries have been removed. An
+ * entry that has not been written completely, or that has an invalid checksum, marks the end of the log: it is the
+ * result of an interrupted commit and is discarded.
+ * <p>
+ * Replaying changes is idempotent, so entries that are already contained in the data file can safely be replayed.
+ */
+class ChangeLog implements Closeable {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	/** Magic number for MemoryStore change logs */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'M', 'S', 'C', 'L' };
+
+	/** The version number of the current format. */
+	private static final int LOG_VERSION = 2;
+
+	private static final int HEADER_LENGTH = MAGIC_NUMBER.length + 1 + 8;
+
+	private static final int ENTRY_HEADER_LENGTH = 16;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final File file;
+
+	private final ValueFactory vf;
+
+	/**
+	 * The channel that entries are appended to, <tt>null</tt> if the log has not been opened for appending.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The sequence number of the last change that was logged before the log was opened, <tt>-1</tt> if the log has
+	 * not been opened yet. The change that creates a snapshot gets the sum of this number and the snapshot as its
+	 * sequence number.
+	 */
+	private long sequenceBase = -1L;
+
+	/**
+	 * The largest sequence number in the log, which is set when the log is read.
+	 */
+	private long lastSequence;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	public ChangeLog(File file, ValueFactory vf) {
+		this.file = file;
+		this.vf = vf;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Applies the changes in the log, if it exists, to the supplied sinks.
+	 *
+	 * @return The number of changes that have been replayed.
+	 */
+	public synchronized int replay(SailSink explicit, SailSink inferred) throws IOException, SailException {
+		if (!file.exists() || file.length() == 0L) {
+			return 0;
+		}
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel in = raf.getChannel()) {
+			MappedByteBuffer buffer = in.map(MapMode.READ_ONLY, 0, in.size());
+			readHeader(buffer);
+
+			FileIO fileIO = new FileIO(vf);
+			int count = 0;
+			byte[] records;
+			while ((records = nextEntry(buffer)) != null) {
+				fileIO.readChange(new DataInputStream(new ByteArrayInputStream(records)), explicit, inferred);
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Opens the log for appending changes, creating it if it does not exist yet. Entries of interrupted commits at the
+	 * end of the log are removed.
+	 */
+	public synchronized void open() throws IOException {
+		if (channel != null) {
+			return;
+		}
+
+		FileChannel out = new RandomAccessFile(file, "rw").getChannel();
+		try {
+			if (out.size() == 0L) {
+				out.write(createHeader(0L));
+				lastSequence = 0L;
+			} else {
+				out.truncate(getValidLength(out));
+			}
+			if (sequenceBase < 0L) {
+				// snapshots start at 1, so all changes of this session get larger sequence numbers
+				sequenceBase = lastSequence;
+			}
+			out.position(out.size());
+			out.force(true);
+			channel = out;
+		} finally {
+			if (channel == null) {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new, empty change that can be appended to this log.
+	 */
+	public Change createChange() {
+		return new Change(vf);
+	}
+
+	/**
+	 * Appends a change to this log. The change is not guaranteed to be durable until {@link #force()} is called.
+	 *
+	 * @param change   The change to append.
+	 * @param snapshot The snapshot that the change created.
+	 */
+	public synchronized void append(Change change, int snapshot) throws IOException {
+		if (channel == null) {
+			throw new IOException("Change log has not been opened: " + file);
+		}
+		ByteBuffer entry = change.toEntry(sequenceBase + snapshot);
+		while (entry.hasRemaining()) {
+			channel.write(entry);
+		}
+	}
+
+	/**
+	 * Forces all appended changes to disk.
+	 */
+	public synchronized void force() throws IOException {
+		if (channel != null) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Gets the size of the log in bytes.
+	 */
+	public synchronized long size() throws IOException {
+		return channel != null ? channel.size() : file.length();
+	}
+
+	/**
+	 * Removes the entries of changes that created the specified snapshot or an earlier one, after the data file has
+	 * been written from that snapshot. The remaining entries are copied to a new log, which replaces this one.
+	 */
+	public synchronized void removeChangesUpTo(int snapshot) throws IOException {
+		if (channel == null) {
+			throw new IOException("Change log has not been opened: " + file);
+		}
+
+		long sequence = sequenceBase + snapshot;
+		long position = HEADER_LENGTH;
+		long end = channel.size();
+		ByteBuffer entryHeader = ByteBuffer.allocate(ENTRY_HEADER_LENGTH);
+		while (position < end) {
+			entryHeader.clear();
+			readFully(channel, entryHeader, position);
+			entryHeader.flip();
+			int length = entryHeader.getInt();
+			if (entryHeader.getLong() > sequence) {
+				break;
+			}
+			position += ENTRY_HEADER_LENGTH + length;
+		}
+
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (FileChannel out = new RandomAccessFile(tmpFile, "rw").getChannel()) {
+			out.truncate(0L);
+			out.write(createHeader(sequence));
+			while (position < end) {
+				position += channel.transferTo(position, end - position, out);
+			}
+			out.force(true);
+		}
+
+		channel.close();
+		channel = null;
+		// prefer atomic renameTo operations
+		if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+			throw new IOException("Could not rename " + tmpFile.getAbsolutePath() + " to " + file.getName());
+		}
+		open();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			try {
+				channel.force(false);
+			} finally {
+				channel.close();
+				channel = null;
+			}
+		}
+	}
+
+	/**
+	 * Creates a header for a log from which the changes up to the specified sequence number have been removed.
+	 */
+	private static ByteBuffer createHeader(long removedSequence) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.put(MAGIC_NUMBER);
+		header.put((byte) LOG_VERSION);
+		header.putLong(removedSequence);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Reads the header of the log.
+	 *
+	 * @return The sequence number of the last change that has been removed from the log.
+	 */
+	private long readHeader(ByteBuffer buffer) throws IOException {
+		byte[] magicNumber = new byte[MAGIC_NUMBER.length];
+		if (buffer.remaining() < HEADER_LENGTH) {
+			throw new IOException("File is not a MemoryStore change log: " + file);
+		}
+		buffer.get(magicNumber);
+		if (!Arrays.equals(magicNumber, MAGIC_NUMBER)) {
+			throw new IOException("File is not a MemoryStore change log: " + file);
+		}
+		int version = buffer.get();
+		if (version != LOG_VERSION) {
+			throw new IOException("Incompatible change log version: " + version);
+		}
+		return buffer.getLong();
+	}
+
+	/**
+	 * Reads the records of the next valid entry.
+	 *
+	 * @return The records, or <tt>null</tt> if there are no more complete and valid entries.
+	 */
+	private static byte[] nextEntry(ByteBuffer buffer) {
+		if (buffer.remaining() < ENTRY_HEADER_LENGTH) {
+			return null;
+		}
+		int length = buffer.getInt();
+		buffer.getLong(); // sequence
+		int checksum = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			return null;
+		}
+
+		byte[] records = new byte[length];
+		buffer.get(records);
+		if (checksum(records) != checksum) {
+			return null;
+		}
+		return records;
+	}
+
+	/**
+	 * Gets the length of the log without the incomplete or invalid entries at its end, and sets the
+	 * {@link #lastSequence}.
+	 */
+	private long getValidLength(FileChannel in) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		readFully(in, header, 0L);
+		header.flip();
+		lastSequence = readHeader(header);
+
+		long position = HEADER_LENGTH;
+		long size = in.size();
+		ByteBuffer entryHeader = ByteBuffer.allocate(ENTRY_HEADER_LENGTH);
+		while (size - position >= ENTRY_HEADER_LENGTH) {
+			entryHeader.clear();
+			readFully(in, entryHeader, position);
+			entryHeader.flip();
+			int length = entryHeader.getInt();
+			long sequence = entryHeader.getLong();
+			int checksum = entryHeader.getInt();
+			if (length < 0 || length > size - position - ENTRY_HEADER_LENGTH) {
+				break;
+			}
+
+			ByteBuffer records = ByteBuffer.allocate(length);
+			readFully(in, records, position + ENTRY_HEADER_LENGTH);
+			if (checksum(records.array()) != checksum) {
+				break;
+			}
+			lastSequence = Math.max(lastSequence, sequence);
+			position += ENTRY_HEADER_LENGTH + length;
+		}
+		return position;
+	}
+
+	private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = in.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of change log");
+			}
+			position += read;
+		}
+	}
+
+	private static int checksum(byte[] records) {
+		CRC32 crc = new CRC32();
+		crc.update(records, 0, records.length);
+		return (int) crc.getValue();
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * The records of a single commit, in the order in which the changes have been made.
+	 */
+	static final class Change {
+
+		private final FileIO fileIO;
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+
+		private final DataOutputStream dataOut = new DataOutputStream(bytes);
+
+		private Change(ValueFactory vf) {
+			this.fileIO = new FileIO(vf);
+		}
+
+		public boolean isEmpty() {
+			return bytes.size() == 0;
+		}
+
+		public void statementAdded(Statement st, boolean explicit) throws SailException {
+			try {
+				fileIO.writeStatementAddedChange(st, explicit, dataOut);
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+		}
+
+		public void statementRemoved(Statement st, boolean explicit) throws SailException {
+			try {
+				fileIO.writeStatementRemovedChange(st, explicit, dataOut);
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+		}
+
+		public void namespaceSet(String prefix, String name) throws SailException {
+			try {
+				fileIO.writeNamespaceChange(prefix, name, dataOut);
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+		}
+
+		public void namespaceRemoved(String prefix) throws SailException {
+			try {
+				fileIO.writeNamespaceRemovedChange(prefix, dataOut);
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+		}
+
+		public void namespacesCleared() throws SailException {
+			try {
+				fileIO.writeNamespacesClearedChange(dataOut);
+			} catch (IOException e) {
+				throw new SailException(e);
+			}
+		}
+
+		private ByteBuffer toEntry(long sequence) throws IOException {
+			dataOut.writeByte(FileIO.EOF_MARKER);
+			dataOut.flush();
+			byte[] records = bytes.toByteArray();
+
+			ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_LENGTH + records.length);
+			entry.putInt(records.length);
+			entry.putLong(sequence);
+			entry.putInt(checksum(records));
+			entry.put(records);
+			entry.flip();
+			return entry;
+		}
+	}
+}
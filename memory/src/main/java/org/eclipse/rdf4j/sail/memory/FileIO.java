@@ -7,6 +7,10 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -16,13 +20,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -62,7 +73,19 @@ class FileIO {
 	// Version 1: initial version
 	// Version 2: don't use read/writeUTF() to remove 64k limit on strings,
 	// removed dummy "up-to-date status" boolean for namespace records
-	private static final int BMSF_VERSION = 2;
+	// Version 3: independently compressed blocks, values are written to value
+	// blocks and are referred to by ID from statement blocks
+	private static final int BMSF_VERSION = 3;
+
+	/** The maximum number of statements in a statement block. */
+	private static final int STATEMENT_BLOCK_SIZE = 64 * 1024;
+
+	/* BLOCK TYPES */
+	public static final int NAMESPACE_BLOCK_MARKER = 20;
+
+	public static final int VALUE_BLOCK_MARKER = 21;
+
+	public static final int STATEMENT_BLOCK_MARKER = 22;
 
 	/* RECORD TYPES */
 	public static final int NAMESPACE_MARKER = 1;
@@ -85,6 +108,19 @@ class FileIO {
 
 	public static final int DATATYPE_LITERAL_MARKER = 10;
 
+	/* CHANGE LOG RECORD TYPES, see ChangeLog */
+	public static final int EXPL_TRIPLE_REMOVED_MARKER = 11;
+
+	public static final int EXPL_QUAD_REMOVED_MARKER = 12;
+
+	public static final int INF_TRIPLE_REMOVED_MARKER = 13;
+
+	public static final int INF_QUAD_REMOVED_MARKER = 14;
+
+	public static final int NAMESPACE_REMOVED_MARKER = 15;
+
+	public static final int NAMESPACES_CLEARED_MARKER = 16;
+
 	public static final int EOF_MARKER = 127;
 
 	/*-----------*
@@ -140,19 +176,35 @@ class FileIO {
 			out.write(MAGIC_NUMBER);
 			out.write(BMSF_VERSION);
 			out.flush();
-			// The rest of the data is GZIP-compressed
-			try (DataOutputStream dataOut = new DataOutputStream(new GZIPOutputStream(out));) {
+			// The rest of the data consists of GZIP-compressed blocks
+			try (DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));) {
 
-				writeNamespaces(explicit, dataOut);
+				ByteArrayOutputStream namespaces = new ByteArrayOutputStream();
+				DataOutputStream namespacesOut = new DataOutputStream(namespaces);
+				writeNamespaces(explicit, namespacesOut);
+				namespacesOut.writeByte(EOF_MARKER);
+				writeBlock(NAMESPACE_BLOCK_MARKER, namespaces, dataOut);
 
-				writeStatements(explicit, inferred, dataOut);
+				StatementBlockWriter statementWriter = new StatementBlockWriter(dataOut);
+				statementWriter.write(explicit.getStatements(null, null, null), true);
+				statementWriter.write(inferred.getStatements(null, null, null), false);
+				statementWriter.flush();
 
 				dataOut.writeByte(EOF_MARKER);
 			}
 		}
 	}
 
-	public synchronized void read(File dataFile, SailSink explicit, SailSink inferred)
+	/**
+	 * Reads the contents of a data file and applies them to the supplied sinks.
+	 *
+	 * @param dataFile The data file to read.
+	 * @param explicit The sink for namespaces and explicit statements.
+	 * @param inferred The sink for inferred statements.
+	 * @param store    An empty store that statements can be loaded into directly, using multiple threads, or
+	 *                 <tt>null</tt> to add all statements through the sinks.
+	 */
+	public synchronized void read(File dataFile, SailSink explicit, SailSink inferred, MemorySailStore store)
 			throws IOException, SailException {
 		try (InputStream in = new FileInputStream(dataFile);) {
 			byte[] magicNumber = IOUtil.readBytes(in, MAGIC_NUMBER.length);
@@ -165,34 +217,128 @@ class FileIO {
 				throw new IOException("Incompatible format version: " + formatVersion);
 			}
 
-			// The rest of the data is GZIP-compressed
-			try (DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));) {
-				int recordTypeMarker;
-				while ((recordTypeMarker = dataIn.readByte()) != EOF_MARKER) {
-					switch (recordTypeMarker) {
-					case NAMESPACE_MARKER:
-						readNamespace(dataIn, explicit);
-						break;
-					case EXPL_TRIPLE_MARKER:
-						readStatement(false, true, dataIn, explicit, inferred);
-						break;
-					case EXPL_QUAD_MARKER:
-						readStatement(true, true, dataIn, explicit, inferred);
-						break;
-					case INF_TRIPLE_MARKER:
-						readStatement(false, false, dataIn, explicit, inferred);
-						break;
-					case INF_QUAD_MARKER:
-						readStatement(true, false, dataIn, explicit, inferred);
-						break;
-					default:
-						throw new IOException("Invalid record type marker: " + recordTypeMarker);
-					}
+			if (formatVersion >= 3) {
+				// The rest of the data consists of GZIP-compressed blocks
+				try (DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));) {
+					new BlockLoader(explicit, inferred, store).load(dataIn);
+				}
+			} else {
+				// The rest of the data is GZIP-compressed
+				try (DataInputStream dataIn = new DataInputStream(new GZIPInputStream(in));) {
+					readRecords(dataIn, explicit, inferred);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Writes a block of data, compressing the header values and the content.
+	 */
+	private static void writeBlock(int blockType, ByteArrayOutputStream content, DataOutputStream dataOut,
+			int... header) throws IOException {
+		ByteArrayOutputStream block = new ByteArrayOutputStream(content.size() / 2 + 64);
+		try (DataOutputStream blockOut = new DataOutputStream(new GZIPOutputStream(block));) {
+			for (int value : header) {
+				blockOut.writeInt(value);
+			}
+			content.writeTo(blockOut);
+		}
+		dataOut.writeByte(blockType);
+		dataOut.writeInt(block.size());
+		block.writeTo(dataOut);
+	}
+
+	private static DataInputStream openBlock(byte[] block) throws IOException {
+		return new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(block)));
+	}
+
+	/**
+	 * Reads the records of a change, as written by the <tt>write...Change</tt> methods and terminated by an
+	 * {@link #EOF_MARKER}, and applies them to the supplied sinks.
+	 */
+	public synchronized void readChange(DataInputStream dataIn, SailSink explicit, SailSink inferred)
+			throws IOException, SailException {
+		formatVersion = BMSF_VERSION;
+		readRecords(dataIn, explicit, inferred);
+	}
+
+	public void writeStatementAddedChange(Statement st, boolean isExplicit, DataOutputStream dataOut)
+			throws IOException {
+		if (isExplicit) {
+			writeStatementRecord(st, EXPL_TRIPLE_MARKER, EXPL_QUAD_MARKER, dataOut);
+		} else {
+			writeStatementRecord(st, INF_TRIPLE_MARKER, INF_QUAD_MARKER, dataOut);
+		}
+	}
+
+	public void writeStatementRemovedChange(Statement st, boolean isExplicit, DataOutputStream dataOut)
+			throws IOException {
+		if (isExplicit) {
+			writeStatementRecord(st, EXPL_TRIPLE_REMOVED_MARKER, EXPL_QUAD_REMOVED_MARKER, dataOut);
+		} else {
+			writeStatementRecord(st, INF_TRIPLE_REMOVED_MARKER, INF_QUAD_REMOVED_MARKER, dataOut);
+		}
+	}
+
+	public void writeNamespaceChange(String prefix, String name, DataOutputStream dataOut) throws IOException {
+		dataOut.writeByte(NAMESPACE_MARKER);
+		writeString(prefix, dataOut);
+		writeString(name, dataOut);
+	}
+
+	public void writeNamespaceRemovedChange(String prefix, DataOutputStream dataOut) throws IOException {
+		dataOut.writeByte(NAMESPACE_REMOVED_MARKER);
+		writeString(prefix, dataOut);
+	}
+
+	public void writeNamespacesClearedChange(DataOutputStream dataOut) throws IOException {
+		dataOut.writeByte(NAMESPACES_CLEARED_MARKER);
+	}
+
+	private void readRecords(DataInputStream dataIn, SailSink explicit, SailSink inferred)
+			throws IOException, SailException {
+		int recordTypeMarker;
+		while ((recordTypeMarker = dataIn.readByte()) != EOF_MARKER) {
+			switch (recordTypeMarker) {
+			case NAMESPACE_MARKER:
+				readNamespace(dataIn, explicit);
+				break;
+			case EXPL_TRIPLE_MARKER:
+				readStatement(false, true, false, dataIn, explicit, inferred);
+				break;
+			case EXPL_QUAD_MARKER:
+				readStatement(true, true, false, dataIn, explicit, inferred);
+				break;
+			case INF_TRIPLE_MARKER:
+				readStatement(false, false, false, dataIn, explicit, inferred);
+				break;
+			case INF_QUAD_MARKER:
+				readStatement(true, false, false, dataIn, explicit, inferred);
+				break;
+			case EXPL_TRIPLE_REMOVED_MARKER:
+				readStatement(false, true, true, dataIn, explicit, inferred);
+				break;
+			case EXPL_QUAD_REMOVED_MARKER:
+				readStatement(true, true, true, dataIn, explicit, inferred);
+				break;
+			case INF_TRIPLE_REMOVED_MARKER:
+				readStatement(false, false, true, dataIn, explicit, inferred);
+				break;
+			case INF_QUAD_REMOVED_MARKER:
+				readStatement(true, false, true, dataIn, explicit, inferred);
+				break;
+			case NAMESPACE_REMOVED_MARKER:
+				explicit.removeNamespace(readString(dataIn));
+				break;
+			case NAMESPACES_CLEARED_MARKER:
+				explicit.clearNamespaces();
+				break;
+			default:
+				throw new IOException("Invalid record type marker: " + recordTypeMarker);
+			}
+		}
+	}
+
 	private void writeNamespaces(SailDataset store, DataOutputStream dataOut) throws IOException, SailException {
 		try (CloseableIteration<? extends Namespace, SailException> iter = store.getNamespaces();) {
 			while (iter.hasNext()) {
@@ -216,39 +362,24 @@ class FileIO {
 		store.setNamespace(prefix, name);
 	}
 
-	private void writeStatements(final SailDataset explicit, SailDataset inferred, DataOutputStream dataOut)
-			throws IOException, SailException {
-		// write explicit only statements
-		writeStatement(explicit.getStatements(null, null, null), EXPL_TRIPLE_MARKER, EXPL_QUAD_MARKER, dataOut);
-		// write inferred only statements
-		writeStatement(inferred.getStatements(null, null, null), INF_TRIPLE_MARKER, INF_QUAD_MARKER, dataOut);
-	}
-
-	public void writeStatement(CloseableIteration<? extends Statement, SailException> stIter, int tripleMarker,
-			int quadMarker, DataOutputStream dataOut) throws IOException, SailException {
-		try {
-			while (stIter.hasNext()) {
-				Statement st = stIter.next();
-				Resource context = st.getContext();
-				if (context == null) {
-					dataOut.writeByte(tripleMarker);
-				} else {
-					dataOut.writeByte(quadMarker);
-				}
-				writeValue(st.getSubject(), dataOut);
-				writeValue(st.getPredicate(), dataOut);
-				writeValue(st.getObject(), dataOut);
-				if (context != null) {
-					writeValue(context, dataOut);
-				}
-			}
-		} finally {
-			stIter.close();
+	private void writeStatementRecord(Statement st, int tripleMarker, int quadMarker, DataOutputStream dataOut)
+			throws IOException {
+		Resource context = st.getContext();
+		if (context == null) {
+			dataOut.writeByte(tripleMarker);
+		} else {
+			dataOut.writeByte(quadMarker);
+		}
+		writeValue(st.getSubject(), dataOut);
+		writeValue(st.getPredicate(), dataOut);
+		writeValue(st.getObject(), dataOut);
+		if (context != null) {
+			writeValue(context, dataOut);
 		}
 	}
 
-	private void readStatement(boolean hasContext, boolean isExplicit, DataInputStream dataIn, SailSink explicit,
-			SailSink inferred) throws IOException, ClassCastException, SailException {
+	private void readStatement(boolean hasContext, boolean isExplicit, boolean isRemoved, DataInputStream dataIn,
+			SailSink explicit, SailSink inferred) throws IOException, ClassCastException, SailException {
 		MemResource memSubj = (MemResource) readValue(dataIn);
 		MemIRI memPred = (MemIRI) readValue(dataIn);
 		MemValue memObj = (MemValue) readValue(dataIn);
@@ -257,10 +388,11 @@ class FileIO {
 			memContext = (MemResource) readValue(dataIn);
 		}
 
-		if (isExplicit) {
-			explicit.approve(memSubj, memPred, memObj, memContext);
+		SailSink sink = isExplicit ? explicit : inferred;
+		if (isRemoved) {
+			sink.deprecate(memSubj, memPred, memObj, memContext);
 		} else {
-			inferred.approve(memSubj, memPred, memObj, memContext);
+			sink.approve(memSubj, memPred, memObj, memContext);
 		}
 	}
 
@@ -355,4 +487,293 @@ class FileIO {
 
 		return charBuf.toString();
 	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * Writes statements to value and statement blocks. Each value is written once, to the value block that precedes
+	 * the first statement block that uses it, and is assigned the next consecutive ID.
+	 */
+	private class StatementBlockWriter {
+
+		private final DataOutputStream dataOut;
+
+		private final IdentityHashMap<Value, Integer> valueIDs = new IdentityHashMap<>();
+
+		private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+
+		private final DataOutputStream valuesOut = new DataOutputStream(values);
+
+		private int firstValueID = 0;
+
+		private int valueCount = 0;
+
+		private final ByteArrayOutputStream statements = new ByteArrayOutputStream();
+
+		private final DataOutputStream statementsOut = new DataOutputStream(statements);
+
+		private int statementCount = 0;
+
+		public StatementBlockWriter(DataOutputStream dataOut) {
+			this.dataOut = dataOut;
+		}
+
+		public void write(CloseableIteration<? extends Statement, SailException> stIter, boolean isExplicit)
+				throws IOException, SailException {
+			try {
+				while (stIter.hasNext()) {
+					write(stIter.next(), isExplicit);
+				}
+			} finally {
+				stIter.close();
+			}
+		}
+
+		private void write(Statement st, boolean isExplicit) throws IOException {
+			Resource context = st.getContext();
+			if (context == null) {
+				statementsOut.writeByte(isExplicit ? EXPL_TRIPLE_MARKER : INF_TRIPLE_MARKER);
+			} else {
+				statementsOut.writeByte(isExplicit ? EXPL_QUAD_MARKER : INF_QUAD_MARKER);
+			}
+			statementsOut.writeInt(getValueID(st.getSubject()));
+			statementsOut.writeInt(getValueID(st.getPredicate()));
+			statementsOut.writeInt(getValueID(st.getObject()));
+			if (context != null) {
+				statementsOut.writeInt(getValueID(context));
+			}
+
+			if (++statementCount == STATEMENT_BLOCK_SIZE) {
+				flush();
+			}
+		}
+
+		private int getValueID(Value value) throws IOException {
+			// the values of the store are shared, so they can be compared by identity
+			Integer id = valueIDs.get(value);
+			if (id == null) {
+				id = firstValueID + valueCount++;
+				valueIDs.put(value, id);
+				writeValue(value, valuesOut);
+			}
+			return id;
+		}
+
+		public void flush() throws IOException {
+			if (valueCount > 0) {
+				writeBlock(VALUE_BLOCK_MARKER, values, dataOut, firstValueID, valueCount);
+				firstValueID += valueCount;
+				valueCount = 0;
+				values.reset();
+			}
+			if (statementCount > 0) {
+				writeBlock(STATEMENT_BLOCK_MARKER, statements, dataOut, statementCount);
+				statementCount = 0;
+				statements.reset();
+			}
+		}
+	}
+
+	/**
+	 * The values of a value block, which have consecutive IDs.
+	 */
+	private static class ValueBlock {
+
+		final int firstID;
+
+		final Value[] values;
+
+		ValueBlock(int firstID, Value[] values) {
+			this.firstID = firstID;
+			this.values = values;
+		}
+	}
+
+	/**
+	 * Loads the blocks of a data file. Blocks are decompressed and decoded in parallel, while the values are
+	 * registered with their IDs in file order. The statements are then loaded directly into the store in parallel, or
+	 * in file order through the sinks if no store has been supplied.
+	 */
+	private class BlockLoader {
+
+		/**
+		 * The number of values of each statement in a decoded statement block: the record type marker, subject,
+		 * predicate, object and context ID, -1 if none.
+		 */
+		private static final int STATEMENT_RECORD_LENGTH = 5;
+
+		private final SailSink explicit;
+
+		private final SailSink inferred;
+
+		private final MemorySailStore store;
+
+		private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+		/**
+		 * Blocks that are being decoded, in file order.
+		 */
+		private final Deque<CompletableFuture<?>> decoding = new ArrayDeque<>();
+
+		/**
+		 * Statement blocks that are being loaded into the store.
+		 */
+		private final Deque<CompletableFuture<?>> loading = new ArrayDeque<>();
+
+		/**
+		 * The values by ID. The array is replaced when it grows, so that tasks can keep using a previous array for
+		 * the values that it contains.
+		 */
+		private Value[] values = new Value[1024];
+
+		public BlockLoader(SailSink explicit, SailSink inferred, MemorySailStore store) {
+			this.explicit = explicit;
+			this.inferred = inferred;
+			this.store = store;
+		}
+
+		public void load(DataInputStream dataIn) throws IOException, SailException {
+			int maxPendingBlocks = 2 * pool.getParallelism();
+			try {
+				int blockType;
+				while ((blockType = dataIn.readByte()) != EOF_MARKER) {
+					byte[] block = new byte[dataIn.readInt()];
+					dataIn.readFully(block);
+
+					switch (blockType) {
+					case NAMESPACE_BLOCK_MARKER:
+						readRecords(openBlock(block), explicit, inferred);
+						break;
+					case VALUE_BLOCK_MARKER:
+						decoding.add(CompletableFuture.supplyAsync(() -> decodeValues(block), pool));
+						break;
+					case STATEMENT_BLOCK_MARKER:
+						decoding.add(CompletableFuture.supplyAsync(() -> decodeStatements(block), pool));
+						break;
+					default:
+						throw new IOException("Invalid block type marker: " + blockType);
+					}
+
+					while (decoding.size() > maxPendingBlocks) {
+						processDecodedBlock();
+					}
+					while (loading.size() > maxPendingBlocks) {
+						join(loading.poll());
+					}
+				}
+
+				while (!decoding.isEmpty()) {
+					processDecodedBlock();
+				}
+				while (!loading.isEmpty()) {
+					join(loading.poll());
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+
+		private void processDecodedBlock() throws IOException, SailException {
+			Object block = join(decoding.poll());
+			if (block instanceof ValueBlock) {
+				addValues((ValueBlock) block);
+			} else if (store != null) {
+				int[] statements = (int[]) block;
+				Value[] blockValues = values;
+				loading.add(CompletableFuture.runAsync(() -> loadStatements(statements, blockValues), pool));
+			} else {
+				approveStatements((int[]) block);
+			}
+		}
+
+		private void addValues(ValueBlock block) {
+			int end = block.firstID + block.values.length;
+			if (end > values.length) {
+				values = Arrays.copyOf(values, Math.max(end, values.length * 2));
+			}
+			System.arraycopy(block.values, 0, values, block.firstID, block.values.length);
+		}
+
+		private ValueBlock decodeValues(byte[] block) {
+			try (DataInputStream blockIn = openBlock(block)) {
+				// decoders can not be shared between threads
+				FileIO fileIO = new FileIO(vf);
+				fileIO.formatVersion = BMSF_VERSION;
+
+				int firstID = blockIn.readInt();
+				Value[] blockValues = new Value[blockIn.readInt()];
+				for (int i = 0; i < blockValues.length; i++) {
+					blockValues[i] = fileIO.readValue(blockIn);
+				}
+				return new ValueBlock(firstID, blockValues);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private int[] decodeStatements(byte[] block) {
+			try (DataInputStream blockIn = openBlock(block)) {
+				int[] statements = new int[blockIn.readInt() * STATEMENT_RECORD_LENGTH];
+				for (int i = 0; i < statements.length; i += STATEMENT_RECORD_LENGTH) {
+					int recordTypeMarker = blockIn.readByte();
+					statements[i] = recordTypeMarker;
+					statements[i + 1] = blockIn.readInt();
+					statements[i + 2] = blockIn.readInt();
+					statements[i + 3] = blockIn.readInt();
+					if (recordTypeMarker == EXPL_QUAD_MARKER || recordTypeMarker == INF_QUAD_MARKER) {
+						statements[i + 4] = blockIn.readInt();
+					} else if (recordTypeMarker == EXPL_TRIPLE_MARKER || recordTypeMarker == INF_TRIPLE_MARKER) {
+						statements[i + 4] = -1;
+					} else {
+						throw new IOException("Invalid record type marker: " + recordTypeMarker);
+					}
+				}
+				return statements;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void loadStatements(int[] statements, Value[] blockValues) {
+			for (int i = 0; i < statements.length; i += STATEMENT_RECORD_LENGTH) {
+				int context = statements[i + 4];
+				store.loadStatement((MemResource) blockValues[statements[i + 1]],
+						(MemIRI) blockValues[statements[i + 2]], (MemValue) blockValues[statements[i + 3]],
+						context < 0 ? null : (MemResource) blockValues[context], isExplicit(statements[i]));
+			}
+		}
+
+		private void approveStatements(int[] statements) throws SailException {
+			for (int i = 0; i < statements.length; i += STATEMENT_RECORD_LENGTH) {
+				int context = statements[i + 4];
+				SailSink sink = isExplicit(statements[i]) ? explicit : inferred;
+				sink.approve((Resource) values[statements[i + 1]], (IRI) values[statements[i + 2]],
+						values[statements[i + 3]], context < 0 ? null : (Resource) values[context]);
+			}
+		}
+
+		private boolean isExplicit(int recordTypeMarker) {
+			return recordTypeMarker == EXPL_TRIPLE_MARKER || recordTypeMarker == EXPL_QUAD_MARKER;
+		}
+
+		private Object join(CompletableFuture<?> future) throws IOException, SailException {
+			try {
+				return future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) cause).getCause();
+				} else if (cause instanceof SailException) {
+					throw (SailException) cause;
+				} else if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new SailException(cause);
+			}
+		}
+	}
 }
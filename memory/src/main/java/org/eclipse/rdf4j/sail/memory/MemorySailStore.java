@@ -7,10 +7,15 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.rdf4j.IsolationLevel;
@@ -43,18 +48,25 @@ import org.eclipse.rdf4j.sail.memory.model.MemResource;
 import org.eclipse.rdf4j.sail.memory.model.MemStatement;
 import org.eclipse.rdf4j.sail.memory.model.MemStatementIterator;
 import org.eclipse.rdf4j.sail.memory.model.MemStatementList;
+import org.eclipse.rdf4j.sail.memory.model.MemStatementTable;
 import org.eclipse.rdf4j.sail.memory.model.MemValue;
 import org.eclipse.rdf4j.sail.memory.model.MemValueFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An implementation of {@link SailStore} that keeps committed statements in a {@link MemStatementList}.
+ * An implementation of {@link SailStore} that keeps committed statements in a {@link MemStatementTable}.
  * 
  * @author James Leigh
  */
 class MemorySailStore implements SailStore {
 
+	/**
+	 * The minimum number of statements for which a value is the subject or object before these statements are indexed
+	 * by predicate.
+	 */
+	private static final int MIN_INDEXED_STATEMENTS = 32;
+
 	private final Logger logger = LoggerFactory.getLogger(MemorySailStore.class);
 
 	/**
@@ -63,9 +75,9 @@ class MemorySailStore implements SailStore {
 	private final MemValueFactory valueFactory = new MemValueFactory();
 
 	/**
-	 * List containing all available statements.
+	 * Table containing all available statements.
 	 */
-	private final MemStatementList statements = new MemStatementList(256);
+	private final MemStatementTable statements = new MemStatementTable();
 
 	/**
 	 * Identifies the current snapshot.
@@ -78,17 +90,29 @@ class MemorySailStore implements SailStore {
 	private final MemNamespaceStore namespaceStore = new MemNamespaceStore();
 
 	/**
-	 * Lock manager used to give the snapshot cleanup thread exclusive access to the statement list.
+	 * Lock manager used to prevent the statement lists from being cleared while they are being accessed.
 	 */
 	private final ReadWriteLockManager statementListLockManager;
 
+	/**
+	 * The snapshots that are being read, or that are used to detect conflicts. Statements that are visible in one of
+	 * these snapshots are not removed by {@link #cleanSnapshots()}.
+	 */
+	private final Set<SnapshotLock> activeSnapshots = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Statements that have been deprecated by committed transactions, in order of deprecation, that have not been
+	 * removed from their subject, predicate, object and context lists yet.
+	 */
+	private final Queue<MemStatement> deprecatedStatements = new ConcurrentLinkedQueue<>();
+
 	/**
 	 * Lock manager used to prevent concurrent writes.
 	 */
 	private final ReentrantLock txnLockManager = new ReentrantLock();
 
 	/**
-	 * Cleanup thread that removes deprecated statements when no other threads are accessing this list. Seee
+	 * Cleanup thread that removes deprecated statements once they are no longer visible in any active snapshot. See
 	 * {@link #scheduleSnapshotCleanup()}.
 	 */
 	private volatile Thread snapshotCleanupThread;
@@ -98,8 +122,47 @@ class MemorySailStore implements SailStore {
 	 */
 	private final Object snapshotCleanupThreadLockObject = new Object();
 
+	/**
+	 * The log that committed changes are appended to, <tt>null</tt> if changes are not logged.
+	 */
+	private volatile ChangeLog changeLog;
+
+	/**
+	 * The changes of the current transaction that have not been appended to the change log yet, <tt>null</tt> if none.
+	 * The explicit and inferred sinks of a transaction share this change, which is appended as a single entry when the
+	 * last of them releases the transaction lock. Guarded by {@link #txnLockManager}.
+	 */
+	private ChangeLog.Change pendingChange;
+
+	/**
+	 * The snapshot that the {@link #pendingChange} created, or 0 if no sink has been flushed yet. Guarded by
+	 * {@link #txnLockManager}.
+	 */
+	private int pendingChangeSnapshot;
+
+	/**
+	 * Flag indicating whether the statements of subjects are indexed by predicate.
+	 */
+	private final boolean subjectPredicateIndex;
+
+	/**
+	 * Flag indicating whether the statements of objects are indexed by predicate.
+	 */
+	private final boolean objectPredicateIndex;
+
 	public MemorySailStore(boolean debug) {
+		this(debug, false, false);
+	}
+
+	/**
+	 * @param debug                 Enables lock tracking.
+	 * @param subjectPredicateIndex Whether to index the statements of subjects with many statements by predicate.
+	 * @param objectPredicateIndex  Whether to index the statements of objects with many statements by predicate.
+	 */
+	public MemorySailStore(boolean debug, boolean subjectPredicateIndex, boolean objectPredicateIndex) {
 		statementListLockManager = new ReadPrefReadWriteLockManager(debug);
+		this.subjectPredicateIndex = subjectPredicateIndex;
+		this.objectPredicateIndex = objectPredicateIndex;
 	}
 
 	@Override
@@ -107,11 +170,29 @@ class MemorySailStore implements SailStore {
 		return valueFactory;
 	}
 
+	/**
+	 * Sets the log that the changes of subsequent commits are appended to.
+	 *
+	 * @param changeLog A change log that has been opened for appending, or <tt>null</tt> to stop logging changes.
+	 */
+	void setChangeLog(ChangeLog changeLog) {
+		this.changeLog = changeLog;
+	}
+
+	/**
+	 * Gets the snapshot that is read by new datasets. All changes that created this or an earlier snapshot have been
+	 * appended to the change log.
+	 */
+	int getCurrentSnapshot() {
+		return currentSnapshot;
+	}
+
 	@Override
 	public void close() {
 		try {
 			Lock stLock = statementListLockManager.getWriteLock();
 			try {
+				deprecatedStatements.clear();
 				valueFactory.clear();
 				statements.clear();
 			} finally {
@@ -146,6 +227,44 @@ class MemorySailStore implements SailStore {
 		}
 	}
 
+	/**
+	 * Registers the current snapshot as being in use, so that the statements in it are not removed by the snapshot
+	 * cleanup thread until the returned lock is released.
+	 */
+	private SnapshotLock openSnapshot() {
+		while (true) {
+			int snapshot = currentSnapshot;
+			SnapshotLock lock = new SnapshotLock(snapshot);
+			activeSnapshots.add(lock);
+			if (snapshot == currentSnapshot) {
+				// the snapshot has not moved on before it was registered, so the cleanup can not have missed it
+				return lock;
+			}
+			activeSnapshots.remove(lock);
+		}
+	}
+
+	/**
+	 * Gets the oldest snapshot that is still in use. Statements that have been deprecated at or before this snapshot
+	 * are no longer visible to anyone.
+	 */
+	private int getOldestActiveSnapshot() {
+		// read the current snapshot before the registered ones, see openSnapshot()
+		int oldest = currentSnapshot;
+		for (SnapshotLock lock : activeSnapshots) {
+			oldest = Math.min(oldest, lock.getSnapshot());
+		}
+		return oldest;
+	}
+
+	/**
+	 * Checks whether the oldest deprecated statement can be removed.
+	 */
+	private boolean isSnapshotCleanupRequired() {
+		MemStatement st = deprecatedStatements.peek();
+		return st != null && st.getTillSnapshot() <= getOldestActiveSnapshot();
+	}
+
 	/**
 	 * Creates a StatementIterator that contains the statements matching the specified pattern of subject, predicate,
 	 * object, context. Inferred statements are excluded when <tt>explicitOnly</tt> is set to <tt>true</tt> . Statements
@@ -174,11 +293,12 @@ class MemorySailStore implements SailStore {
 		}
 
 		MemResource[] memContexts;
+		// the smallest list of statements to iterate over, or null to iterate over all statements
 		MemStatementList smallestList;
 
 		if (contexts.length == 0) {
 			memContexts = new MemResource[0];
-			smallestList = statements;
+			smallestList = null;
 		} else if (contexts.length == 1 && contexts[0] != null) {
 			MemResource memContext = valueFactory.getMemResource(contexts[0]);
 			if (memContext == null) {
@@ -204,107 +324,130 @@ class MemorySailStore implements SailStore {
 			}
 
 			memContexts = contextSet.toArray(new MemResource[contextSet.size()]);
-			smallestList = statements;
+			smallestList = null;
 		}
 
 		if (memSubj != null) {
 			MemStatementList l = memSubj.getSubjectStatementList();
-			if (l.size() < smallestList.size()) {
+			if (isSmaller(l, smallestList)) {
 				smallestList = l;
 			}
 		}
 
 		if (memPred != null) {
 			MemStatementList l = memPred.getPredicateStatementList();
-			if (l.size() < smallestList.size()) {
+			if (isSmaller(l, smallestList)) {
 				smallestList = l;
 			}
 		}
 
 		if (memObj != null) {
 			MemStatementList l = memObj.getObjectStatementList();
-			if (l.size() < smallestList.size()) {
+			if (isSmaller(l, smallestList)) {
 				smallestList = l;
 			}
 		}
 
+		if (memPred != null) {
+			// Use the predicate indexes of the subject and object, if available
+			if (memSubj != null) {
+				MemStatementList l = memSubj.getSubjectStatementList(memPred);
+				if (l != null && isSmaller(l, smallestList)) {
+					smallestList = l;
+				}
+			}
+
+			if (memObj != null) {
+				MemStatementList l = memObj.getObjectStatementList(memPred);
+				if (l != null && isSmaller(l, smallestList)) {
+					smallestList = l;
+				}
+			}
+		}
+
+		if (smallestList == null) {
+			return new MemStatementIterator<>(statements, memSubj, memPred, memObj, explicit, snapshot, memContexts);
+		}
 		return new MemStatementIterator<>(smallestList, memSubj, memPred, memObj, explicit, snapshot, memContexts);
 	}
 
 	/**
-	 * Removes statements from old snapshots from the main statement list and resets the snapshot to 1 for the rest of
-	 * the statements.
-	 * 
-	 * @throws InterruptedException
+	 * Checks whether a list has fewer statements than the smallest list so far, or than the statement table if there
+	 * is no such list.
 	 */
-	protected void cleanSnapshots() throws InterruptedException {
-		// System.out.println("cleanSnapshots() starting...");
-		// long startTime = System.currentTimeMillis();
+	private boolean isSmaller(MemStatementList list, MemStatementList smallestList) {
+		return list.size() < (smallestList == null ? statements.size() : smallestList.size());
+	}
+
+	/**
+	 * Adds a statement that has been loaded from a data file to the current snapshot, without checking whether it is
+	 * already present. This method may be called by multiple threads concurrently, to load the statements of a data
+	 * file into an empty store before it is used.
+	 */
+	void loadStatement(MemResource subj, MemIRI pred, MemValue obj, MemResource context, boolean explicit) {
+		addNewStatement(subj, pred, obj, context, explicit, currentSnapshot);
+	}
 
+	private MemStatement addNewStatement(MemResource subj, MemIRI pred, MemValue obj, MemResource context,
+			boolean explicit, int sinceSnapshot) {
+		MemStatement st = statements.add(subj, pred, obj, context, explicit, sinceSnapshot);
+		st.addToComponentLists();
+
+		if (subjectPredicateIndex && subj.getSubjectStatementCount() >= MIN_INDEXED_STATEMENTS) {
+			subj.indexSubjectStatements();
+		}
+		if (objectPredicateIndex && obj.getObjectStatementCount() >= MIN_INDEXED_STATEMENTS) {
+			obj.indexObjectStatements();
+		}
+		return st;
+	}
+
+	/**
+	 * Removes the statements that have been deprecated by committed transactions and that are no longer visible in any
+	 * active snapshot. Only the statement lists of the values of these statements are compacted, after which the rows
+	 * of the statements in the statement table are freed for reuse. The statement lists are replaced by compacted
+	 * copies, so threads that are reading them are not blocked.
+	 */
+	protected void cleanSnapshots() {
 		// Sets used to keep track of which lists have already been processed
 		HashSet<MemValue> processedSubjects = new HashSet<>();
 		HashSet<MemValue> processedPredicates = new HashSet<>();
 		HashSet<MemValue> processedObjects = new HashSet<>();
 		HashSet<MemValue> processedContexts = new HashSet<>();
 
-		int lastStmtPos;
-		Lock stReadLock = statementListLockManager.getReadLock();
-		try {
-			lastStmtPos = statements.size() - 1;
-		} finally {
-			stReadLock.release();
-		}
+		int oldestSnapshot = getOldestActiveSnapshot();
+		List<MemStatement> removed = new ArrayList<>();
 
-		/*
-		 * The order of the statement list won't change from lastStmtPos down while we don't have the write lock (it
-		 * might shrink or grow) as (1) new statements are always appended last, (2) we are the only process that
-		 * removes statements, (3) this list is cleared on close.
-		 */
+		MemStatement st;
+		while ((st = deprecatedStatements.peek()) != null && st.getTillSnapshot() <= oldestSnapshot) {
+			deprecatedStatements.poll();
+			removed.add(st);
 
-		int nextSnapshot = currentSnapshot;
-		for (int i = lastStmtPos; i >= 0; i--) {
-			// As we are running in the background, yield the write lock frequently to other writers.
-			Lock stWriteLock = statementListLockManager.getWriteLock();
-			try {
-				// guard against shrinkage, e.g. clear() on close()
-				lastStmtPos = statements.size() - 1;
-				i = Math.min(i, lastStmtPos);
-				if (i >= 0) {
-					MemStatement st = statements.get(i);
-
-					if (st.getTillSnapshot() <= nextSnapshot) {
-						MemResource subj = st.getSubject();
-						if (processedSubjects.add(subj)) {
-							subj.cleanSnapshotsFromSubjectStatements(nextSnapshot);
-						}
-
-						MemIRI pred = st.getPredicate();
-						if (processedPredicates.add(pred)) {
-							pred.cleanSnapshotsFromPredicateStatements(nextSnapshot);
-						}
+			MemResource subj = st.getSubject();
+			if (processedSubjects.add(subj)) {
+				subj.cleanSnapshotsFromSubjectStatements(oldestSnapshot);
+			}
 
-						MemValue obj = st.getObject();
-						if (processedObjects.add(obj)) {
-							obj.cleanSnapshotsFromObjectStatements(nextSnapshot);
-						}
+			MemIRI pred = st.getPredicate();
+			if (processedPredicates.add(pred)) {
+				pred.cleanSnapshotsFromPredicateStatements(oldestSnapshot);
+			}
 
-						MemResource context = st.getContext();
-						if (context != null && processedContexts.add(context)) {
-							context.cleanSnapshotsFromContextStatements(nextSnapshot);
-						}
+			MemValue obj = st.getObject();
+			if (processedObjects.add(obj)) {
+				obj.cleanSnapshotsFromObjectStatements(oldestSnapshot);
+			}
 
-						// stale statement
-						statements.remove(i);
-					}
-				}
-			} finally {
-				stWriteLock.release();
+			MemResource context = st.getContext();
+			if (context != null && processedContexts.add(context)) {
+				context.cleanSnapshotsFromContextStatements(oldestSnapshot);
 			}
 		}
 
-		// long endTime = System.currentTimeMillis();
-		// System.out.println("cleanSnapshots() took " + (endTime - startTime) +
-		// " ms");
+		// The statements are no longer in any list, so their rows can be reused
+		for (MemStatement removedSt : removed) {
+			statements.free(removedSt);
+		}
 	}
 
 	protected void scheduleSnapshotCleanup() {
@@ -317,9 +460,16 @@ class MemorySailStore implements SailStore {
 					public void run() {
 						try {
 							cleanSnapshots();
-						} catch (InterruptedException e) {
-							Thread.currentThread().interrupt();
-							logger.warn("snapshot cleanup interrupted");
+						} finally {
+							synchronized (snapshotCleanupThreadLockObject) {
+								if (snapshotCleanupThread == Thread.currentThread()) {
+									snapshotCleanupThread = null;
+								}
+							}
+						}
+						// statements may have been deprecated while cleaning up
+						if (isSnapshotCleanupRequired()) {
+							scheduleSnapshotCleanup();
 						}
 					}
 				};
@@ -332,6 +482,41 @@ class MemorySailStore implements SailStore {
 		}
 	}
 
+	/**
+	 * Registration of a snapshot that is in use, see {@link MemorySailStore#openSnapshot()}.
+	 */
+	private final class SnapshotLock implements Lock {
+
+		private final int snapshot;
+
+		private volatile boolean active = true;
+
+		public SnapshotLock(int snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		public int getSnapshot() {
+			return snapshot;
+		}
+
+		@Override
+		public boolean isActive() {
+			return active;
+		}
+
+		@Override
+		public void release() {
+			if (active) {
+				active = false;
+				activeSnapshots.remove(this);
+
+				if (isSnapshotCleanupRequired()) {
+					scheduleSnapshotCleanup();
+				}
+			}
+		}
+	}
+
 	private final class MemorySailSource extends BackingSailSource {
 
 		private final boolean explicit;
@@ -348,7 +533,7 @@ class MemorySailStore implements SailStore {
 		@Override
 		public MemorySailDataset dataset(IsolationLevel level) throws SailException {
 			if (level.isCompatibleWith(IsolationLevels.SNAPSHOT_READ)) {
-				return new MemorySailDataset(explicit, currentSnapshot);
+				return new MemorySailDataset(explicit, openSnapshot());
 			} else {
 				return new MemorySailDataset(explicit);
 			}
@@ -363,22 +548,40 @@ class MemorySailStore implements SailStore {
 
 		private final Lock txnStLock;
 
+		/**
+		 * Keeps the statements that are used to detect conflicts from being removed, <tt>null</tt> if not serializable.
+		 */
+		private final SnapshotLock serializableLock;
+
 		private volatile int nextSnapshot;
 
 		private volatile Set<StatementPattern> observations;
 
 		private volatile boolean txnLock;
 
-		private boolean requireCleanup;
+		/**
+		 * Statements that have been deprecated by this sink, to be removed once no snapshot contains them any more.
+		 */
+		private final List<MemStatement> deprecated = new ArrayList<>();
 
 		public MemorySailSink(boolean explicit, boolean serializable) throws SailException {
 			this.explicit = explicit;
 			if (serializable) {
-				this.serializable = currentSnapshot;
+				this.serializableLock = openSnapshot();
+				this.serializable = serializableLock.getSnapshot();
 			} else {
+				this.serializableLock = null;
 				this.serializable = Integer.MAX_VALUE;
 			}
-			txnStLock = openStatementsReadLock();
+			boolean allGood = false;
+			try {
+				txnStLock = openStatementsReadLock();
+				allGood = true;
+			} finally {
+				if (!allGood && serializableLock != null) {
+					serializableLock.release();
+				}
+			}
 		}
 
 		@Override
@@ -431,24 +634,44 @@ class MemorySailStore implements SailStore {
 		@Override
 		public synchronized void flush() throws SailException {
 			if (txnLock) {
+				if (pendingChange != null) {
+					pendingChangeSnapshot = nextSnapshot;
+				}
 				currentSnapshot = Math.max(currentSnapshot, nextSnapshot);
-				if (requireCleanup) {
+				if (!deprecated.isEmpty()) {
+					deprecatedStatements.addAll(deprecated);
+					deprecated.clear();
 					scheduleSnapshotCleanup();
 				}
 			}
 		}
 
 		@Override
-		public void close() {
+		public void close() throws SailException {
 			try {
 				boolean toCloseTxnLock = txnLock;
 				txnLock = false;
 				if (toCloseTxnLock) {
-					txnLockManager.unlock();
+					try {
+						// statements that have been deprecated without a flush stay deprecated, remove them eventually
+						deprecatedStatements.addAll(deprecated);
+						deprecated.clear();
+						if (txnLockManager.getHoldCount() == 1) {
+							appendPendingChange();
+						}
+					} finally {
+						txnLockManager.unlock();
+					}
 				}
 			} finally {
-				if (txnStLock != null) {
-					txnStLock.release();
+				try {
+					if (txnStLock != null) {
+						txnStLock.release();
+					}
+				} finally {
+					if (serializableLock != null) {
+						serializableLock.release();
+					}
 				}
 			}
 		}
@@ -457,18 +680,27 @@ class MemorySailStore implements SailStore {
 		public synchronized void setNamespace(String prefix, String name) throws SailException {
 			acquireExclusiveTransactionLock();
 			namespaceStore.setNamespace(prefix, name);
+			if (isLoggingChanges()) {
+				getChange().namespaceSet(prefix, name);
+			}
 		}
 
 		@Override
 		public synchronized void removeNamespace(String prefix) throws SailException {
 			acquireExclusiveTransactionLock();
 			namespaceStore.removeNamespace(prefix);
+			if (isLoggingChanges()) {
+				getChange().namespaceRemoved(prefix);
+			}
 		}
 
 		@Override
 		public synchronized void clearNamespaces() throws SailException {
 			acquireExclusiveTransactionLock();
 			namespaceStore.clear();
+			if (isLoggingChanges()) {
+				getChange().namespacesCleared();
+			}
 		}
 
 		@Override
@@ -493,12 +725,15 @@ class MemorySailStore implements SailStore {
 		@Override
 		public synchronized void clear(Resource... contexts) throws SailException {
 			acquireExclusiveTransactionLock();
-			requireCleanup = true;
 			try (CloseableIteration<MemStatement, SailException> iter = createStatementIterator(null, null, null,
 					explicit, nextSnapshot, contexts);) {
 				while (iter.hasNext()) {
 					MemStatement st = iter.next();
 					st.setTillSnapshot(nextSnapshot);
+					deprecated.add(st);
+					if (isLoggingChanges()) {
+						getChange().statementRemoved(st, explicit);
+					}
 				}
 			}
 		}
@@ -506,18 +741,52 @@ class MemorySailStore implements SailStore {
 		@Override
 		public synchronized void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
 			acquireExclusiveTransactionLock();
-			addStatement(subj, pred, obj, ctx, explicit);
+			MemStatement st = addStatement(subj, pred, obj, ctx, explicit);
+			if (st != null && isLoggingChanges()) {
+				getChange().statementAdded(st, explicit);
+			}
 		}
 
 		@Override
 		public synchronized void deprecate(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
 			acquireExclusiveTransactionLock();
-			requireCleanup = true;
 			try (CloseableIteration<MemStatement, SailException> iter = createStatementIterator(subj, pred, obj,
 					explicit, nextSnapshot, ctx);) {
 				while (iter.hasNext()) {
 					MemStatement st = iter.next();
 					st.setTillSnapshot(nextSnapshot);
+					deprecated.add(st);
+					if (isLoggingChanges()) {
+						getChange().statementRemoved(st, explicit);
+					}
+				}
+			}
+		}
+
+		private boolean isLoggingChanges() {
+			return changeLog != null;
+		}
+
+		private ChangeLog.Change getChange() {
+			if (pendingChange == null) {
+				pendingChange = changeLog.createChange();
+			}
+			return pendingChange;
+		}
+
+		/**
+		 * Appends the changes of the transaction to the change log if they have been flushed, or discards them.
+		 */
+		private void appendPendingChange() throws SailException {
+			ChangeLog.Change toAppend = pendingChange;
+			int snapshot = pendingChangeSnapshot;
+			pendingChange = null;
+			pendingChangeSnapshot = 0;
+			if (toAppend != null && snapshot > 0 && changeLog != null) {
+				try {
+					changeLog.append(toAppend, snapshot);
+				} catch (IOException e) {
+					throw new SailException("Failed to append changes to log", e);
 				}
 			}
 		}
@@ -553,6 +822,7 @@ class MemorySailStore implements SailStore {
 						if (!st.isExplicit() && explicit) {
 							// Implicit statement is now added explicitly
 							st.setTillSnapshot(nextSnapshot);
+							deprecated.add(st);
 						} else if (!st.isInSnapshot(nextSnapshot)) {
 							st.setSinceSnapshot(nextSnapshot);
 						} else {
@@ -564,10 +834,7 @@ class MemorySailStore implements SailStore {
 			}
 
 			// completely new statement
-			MemStatement st = new MemStatement(memSubj, memPred, memObj, memContext, explicit, nextSnapshot);
-			statements.add(st);
-			st.addToComponentLists();
-			return st;
+			return addNewStatement(memSubj, memPred, memObj, memContext, explicit, nextSnapshot);
 		}
 	}
 
@@ -582,16 +849,28 @@ class MemorySailStore implements SailStore {
 
 		private final Lock lock;
 
+		private final SnapshotLock snapshotLock;
+
 		public MemorySailDataset(boolean explicit) throws SailException {
 			this.explicit = explicit;
 			this.snapshot = -1;
 			this.lock = null;
+			this.snapshotLock = null;
 		}
 
-		public MemorySailDataset(boolean explicit, int snapshot) throws SailException {
+		public MemorySailDataset(boolean explicit, SnapshotLock snapshotLock) throws SailException {
 			this.explicit = explicit;
-			this.snapshot = snapshot;
-			this.lock = openStatementsReadLock();
+			this.snapshot = snapshotLock.getSnapshot();
+			this.snapshotLock = snapshotLock;
+			boolean allGood = false;
+			try {
+				this.lock = openStatementsReadLock();
+				allGood = true;
+			} finally {
+				if (!allGood) {
+					snapshotLock.release();
+				}
+			}
 		}
 
 		@Override
@@ -614,7 +893,11 @@ class MemorySailStore implements SailStore {
 		public void close() {
 			if (lock != null) {
 				// serializable read or higher isolation
-				lock.release();
+				try {
+					lock.release();
+				} finally {
+					snapshotLock.release();
+				}
 			}
 		}
 
@@ -630,33 +913,34 @@ class MemorySailStore implements SailStore {
 
 		@Override
 		public CloseableIteration<? extends Resource, SailException> getContextIDs() throws SailException {
-			// Note: we can't do this in a streaming fashion due to concurrency
-			// issues; iterating over the set of IRIs or bnodes while another
-			// thread
-			// adds statements with new resources would result in
-			// ConcurrentModificationException's (issue SES-544).
-
-			// Create a list of all resources that are used as contexts
+			// Create a list of all resources that are used as contexts while
+			// holding the statements lock. The value factory's sets of IRIs and
+			// bnodes can be iterated while other threads create new resources.
 			ArrayList<MemResource> contextIDs = new ArrayList<>(32);
 
 			Lock stLock = openStatementsReadLock();
+			SnapshotLock snapshotLock = openSnapshotIfNeeded();
 			try {
-				synchronized (valueFactory) {
-					int snapshot = getCurrentSnapshot();
-					for (MemResource memResource : valueFactory.getMemURIs()) {
-						if (isContextResource(memResource, snapshot)) {
-							contextIDs.add(memResource);
-						}
+				int snapshot = getCurrentSnapshot(snapshotLock);
+				for (MemResource memResource : valueFactory.getMemURIs()) {
+					if (isContextResource(memResource, snapshot)) {
+						contextIDs.add(memResource);
 					}
+				}
 
-					for (MemResource memResource : valueFactory.getMemBNodes()) {
-						if (isContextResource(memResource, snapshot)) {
-							contextIDs.add(memResource);
-						}
+				for (MemResource memResource : valueFactory.getMemBNodes()) {
+					if (isContextResource(memResource, snapshot)) {
+						contextIDs.add(memResource);
 					}
 				}
 			} finally {
-				stLock.release();
+				try {
+					stLock.release();
+				} finally {
+					if (snapshotLock != null) {
+						snapshotLock.release();
+					}
+				}
 			}
 
 			return new CloseableIteratorIteration<>(contextIDs.iterator());
@@ -669,15 +953,23 @@ class MemorySailStore implements SailStore {
 			CloseableIteration<? extends Statement, SailException> stIter2 = null;
 			boolean allGood = false;
 			Lock stLock = openStatementsReadLock();
+			SnapshotLock snapshotLock = openSnapshotIfNeeded();
 			try {
-				stIter1 = createStatementIterator(subj, pred, obj, explicit, getCurrentSnapshot(), contexts);
+				stIter1 = createStatementIterator(subj, pred, obj, explicit, getCurrentSnapshot(snapshotLock),
+						contexts);
 				stIter2 = new LockingIteration<Statement, SailException>(stLock, stIter1);
+				if (snapshotLock != null) {
+					stIter2 = new LockingIteration<Statement, SailException>(snapshotLock, stIter2);
+				}
 				allGood = true;
 				return stIter2;
 			} finally {
 				if (!allGood) {
 					try {
 						stLock.release();
+						if (snapshotLock != null) {
+							snapshotLock.release();
+						}
 					} finally {
 						try {
 							if (stIter2 != null) {
@@ -693,11 +985,23 @@ class MemorySailStore implements SailStore {
 			}
 		}
 
-		private int getCurrentSnapshot() {
+		/**
+		 * Registers the current snapshot for a single read operation, if this dataset does not have a snapshot of its
+		 * own.
+		 */
+		private SnapshotLock openSnapshotIfNeeded() {
+			if (snapshot >= 0) {
+				return null;
+			} else {
+				return openSnapshot();
+			}
+		}
+
+		private int getCurrentSnapshot(SnapshotLock snapshotLock) {
 			if (snapshot >= 0) {
 				return snapshot;
 			} else {
-				return currentSnapshot;
+				return snapshotLock.getSnapshot();
 			}
 		}
 
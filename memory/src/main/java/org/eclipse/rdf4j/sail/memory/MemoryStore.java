@@ -57,6 +57,14 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 
 	protected static final String SYNC_FILE_NAME = "memorystore.sync";
 
+	protected static final String CHANGE_LOG_FILE_NAME = "memorystore.log";
+
+	/**
+	 * The size in bytes that the change log must exceed, as well as the size of the data file, before the data file is
+	 * rewritten and the log is emptied.
+	 */
+	private static final long MIN_CHANGE_LOG_COMPACTION_SIZE = 4 * 1024 * 1024;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -64,7 +72,7 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	/**
 	 * Factory/cache for MemValue objects.
 	 */
-	private SailStore store;
+	private MemorySailStore store;
 
 	private volatile boolean persist = false;
 
@@ -78,6 +86,12 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	 */
 	private volatile File syncFile;
 
+	/**
+	 * The log of changes that have been committed since the data file was written, null if this is a volatile RDF
+	 * store.
+	 */
+	private volatile ChangeLog changeLog;
+
 	/**
 	 * The directory lock, null if this is read-only or a volatile RDF store.
 	 */
@@ -95,6 +109,20 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	 */
 	private volatile long syncDelay = 0L;
 
+	/**
+	 * Flag indicating whether the statements of subjects are indexed by predicate.
+	 * 
+	 * @see #setSubjectPredicateIndex
+	 */
+	private volatile boolean subjectPredicateIndex = false;
+
+	/**
+	 * Flag indicating whether the statements of objects are indexed by predicate.
+	 * 
+	 * @see #setObjectPredicateIndex
+	 */
+	private volatile boolean objectPredicateIndex = false;
+
 	/**
 	 * Semaphore used to synchronize concurrent access to {@link #syncWithLock()} .
 	 */
@@ -194,6 +222,44 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		return syncDelay;
 	}
 
+	/**
+	 * Sets whether the statements of a subject are indexed by predicate, once the subject has a substantial number of
+	 * statements. This speeds up the evaluation of patterns with a bound subject and predicate, such as
+	 * <tt>(:s :p ?o)</tt>, at the cost of additional memory.
+	 * <p>
+	 * The default value for this parameter is <tt>false</tt>.
+	 */
+	public void setSubjectPredicateIndex(boolean subjectPredicateIndex) {
+		if (isInitialized()) {
+			throw new IllegalStateException("sail has already been initialized");
+		}
+
+		this.subjectPredicateIndex = subjectPredicateIndex;
+	}
+
+	public boolean getSubjectPredicateIndex() {
+		return subjectPredicateIndex;
+	}
+
+	/**
+	 * Sets whether the statements of an object are indexed by predicate, once the object has a substantial number of
+	 * statements. This speeds up the evaluation of patterns with a bound predicate and object, such as
+	 * <tt>(?s rdf:type :C)</tt>, at the cost of additional memory.
+	 * <p>
+	 * The default value for this parameter is <tt>false</tt>.
+	 */
+	public void setObjectPredicateIndex(boolean objectPredicateIndex) {
+		if (isInitialized()) {
+			throw new IllegalStateException("sail has already been initialized");
+		}
+
+		this.objectPredicateIndex = objectPredicateIndex;
+	}
+
+	public boolean getObjectPredicateIndex() {
+		return objectPredicateIndex;
+	}
+
 	/**
 	 * @return Returns the {@link EvaluationStrategy}.
 	 */
@@ -248,7 +314,7 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	protected void initializeInternal() throws SailException {
 		logger.debug("Initializing MemoryStore...");
 
-		this.store = new MemorySailStore(debugEnabled());
+		this.store = new MemorySailStore(debugEnabled(), subjectPredicateIndex, objectPredicateIndex);
 
 		if (persist) {
 			File dataDir = getDataDir();
@@ -277,7 +343,7 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 					SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
 					SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
 					try {
-						new FileIO(store.getValueFactory()).read(dataFile, explicit, inferred);
+						new FileIO(store.getValueFactory()).read(dataFile, explicit, inferred, store);
 						logger.debug("Data file read successfully");
 					} catch (IOException e) {
 						logger.error("Failed to read data file", e);
@@ -324,6 +390,17 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 					throw new SailException("Failed to initialize data file " + dataFile, e);
 				}
 			}
+
+			changeLog = new ChangeLog(new File(dataDir, CHANGE_LOG_FILE_NAME), store.getValueFactory());
+			replayChangeLog();
+			if (dirLock != null) {
+				try {
+					changeLog.open();
+				} catch (IOException e) {
+					throw new SailException("Failed to open change log " + changeLog.getFile(), e);
+				}
+				store.setChangeLog(changeLog);
+			}
 		}
 
 		contentsChanged = false;
@@ -331,13 +408,50 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		logger.debug("MemoryStore initialized");
 	}
 
+	/**
+	 * Applies the changes that have been committed after the data file was last written.
+	 */
+	private void replayChangeLog() throws SailException {
+		if (!changeLog.getFile().exists()) {
+			return;
+		}
+
+		logger.debug("Replaying changes from {}...", changeLog.getFile());
+		SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+		SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+		try {
+			int count = changeLog.replay(explicit, inferred);
+			logger.debug("Replayed {} changes", count);
+		} catch (IOException e) {
+			logger.error("Failed to replay change log", e);
+			throw new SailException(e);
+		} finally {
+			explicit.prepare();
+			explicit.flush();
+			explicit.close();
+			inferred.prepare();
+			inferred.flush();
+			inferred.close();
+		}
+	}
+
 	@Override
 	protected void shutDownInternal() throws SailException {
 		try {
 			cancelSyncTimer();
 			sync();
 
+			store.setChangeLog(null);
 			store.close();
+			if (changeLog != null) {
+				try {
+					changeLog.close();
+				} catch (IOException e) {
+					throw new SailException("Failed to close change log " + changeLog.getFile(), e);
+				} finally {
+					changeLog = null;
+				}
+			}
 			dataFile = null;
 			syncFile = null;
 		} finally {
@@ -441,24 +555,25 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 	/**
 	 * Synchronizes the contents of this repository with the data that is stored on disk. Data will only be written when
 	 * the contents of the repository and data in the file are out of sync.
+	 * <p>
+	 * Committed changes are appended to a change log, which only needs to be forced to disk. Once the log has grown
+	 * larger than the data file, the data file is rewritten and the log is emptied.
 	 */
 	public void sync() throws SailException {
 		// syncSemaphore prevents concurrent file synchronizations
 		synchronized (syncSemaphore) {
 			if (persist && contentsChanged) {
-				logger.debug("syncing data to file...");
 				try {
-					IsolationLevels level = IsolationLevels.SNAPSHOT;
-					SailDataset explicit = store.getExplicitSailSource().dataset(level);
-					SailDataset inferred = store.getInferredSailSource().dataset(level);
-					try {
-						new FileIO(store.getValueFactory()).write(explicit, inferred, syncFile, dataFile);
-					} finally {
-						explicit.close();
-						inferred.close();
+					if (changeLog != null && !isChangeLogCompactionRequired()) {
+						logger.debug("syncing change log to file...");
+						changeLog.force();
+						logger.debug("Change log synced to file");
+					} else {
+						logger.debug("syncing data to file...");
+						writeDataFile();
+						logger.debug("Data synced to file");
 					}
 					contentsChanged = false;
-					logger.debug("Data synced to file");
 				} catch (IOException e) {
 					logger.error("Failed to sync to file", e);
 					throw new SailException(e);
@@ -467,6 +582,33 @@ public class MemoryStore extends AbstractNotifyingSail implements FederatedServi
 		}
 	}
 
+	private boolean isChangeLogCompactionRequired() throws IOException {
+		long logSize = changeLog.size();
+		return logSize > MIN_CHANGE_LOG_COMPACTION_SIZE && logSize > dataFile.length();
+	}
+
+	/**
+	 * Writes all data to the data file and removes the changes that it contains from the change log.
+	 */
+	private void writeDataFile() throws IOException, SailException {
+		// all changes that created an earlier snapshot are visible in the datasets
+		int snapshot = store.getCurrentSnapshot();
+
+		IsolationLevels level = IsolationLevels.SNAPSHOT;
+		SailDataset explicit = store.getExplicitSailSource().dataset(level);
+		SailDataset inferred = store.getInferredSailSource().dataset(level);
+		try {
+			new FileIO(store.getValueFactory()).write(explicit, inferred, syncFile, dataFile);
+		} finally {
+			explicit.close();
+			inferred.close();
+		}
+
+		if (changeLog != null) {
+			changeLog.removeChangesUpTo(snapshot);
+		}
+	}
+
 	SailStore getSailStore() {
 		return store;
 	}
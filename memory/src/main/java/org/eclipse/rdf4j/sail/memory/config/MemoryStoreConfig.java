@@ -8,7 +8,9 @@
 package org.eclipse.rdf4j.sail.memory.config;
 
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.NAMESPACE;
+import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.OBJECT_PREDICATE_INDEX;
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.PERSIST;
+import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.SUBJECT_PREDICATE_INDEX;
 import static org.eclipse.rdf4j.sail.memory.config.MemoryStoreSchema.SYNC_DELAY;
 
 import org.eclipse.rdf4j.model.Model;
@@ -29,6 +31,10 @@ public class MemoryStoreConfig extends BaseSailConfig {
 
 	private long syncDelay = 0L;
 
+	private boolean subjectPredicateIndex = false;
+
+	private boolean objectPredicateIndex = false;
+
 	public MemoryStoreConfig() {
 		super(MemoryStoreFactory.SAIL_TYPE);
 	}
@@ -59,6 +65,22 @@ public class MemoryStoreConfig extends BaseSailConfig {
 		this.syncDelay = syncDelay;
 	}
 
+	public boolean getSubjectPredicateIndex() {
+		return subjectPredicateIndex;
+	}
+
+	public void setSubjectPredicateIndex(boolean subjectPredicateIndex) {
+		this.subjectPredicateIndex = subjectPredicateIndex;
+	}
+
+	public boolean getObjectPredicateIndex() {
+		return objectPredicateIndex;
+	}
+
+	public void setObjectPredicateIndex(boolean objectPredicateIndex) {
+		this.objectPredicateIndex = objectPredicateIndex;
+	}
+
 	@Override
 	public Resource export(Model graph) {
 		Resource implNode = super.export(graph);
@@ -72,6 +94,14 @@ public class MemoryStoreConfig extends BaseSailConfig {
 			graph.add(implNode, SYNC_DELAY, SimpleValueFactory.getInstance().createLiteral(syncDelay));
 		}
 
+		if (subjectPredicateIndex) {
+			graph.add(implNode, SUBJECT_PREDICATE_INDEX, BooleanLiteral.TRUE);
+		}
+
+		if (objectPredicateIndex) {
+			graph.add(implNode, OBJECT_PREDICATE_INDEX, BooleanLiteral.TRUE);
+		}
+
 		return implNode;
 	}
 
@@ -98,6 +128,24 @@ public class MemoryStoreConfig extends BaseSailConfig {
 							"Long integer value required for " + SYNC_DELAY + " property, found " + syncDelayValue);
 				}
 			});
+
+			Models.objectLiteral(graph.filter(implNode, SUBJECT_PREDICATE_INDEX, null)).ifPresent(indexValue -> {
+				try {
+					setSubjectPredicateIndex(indexValue.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException("Boolean value required for " + SUBJECT_PREDICATE_INDEX
+							+ " property, found " + indexValue);
+				}
+			});
+
+			Models.objectLiteral(graph.filter(implNode, OBJECT_PREDICATE_INDEX, null)).ifPresent(indexValue -> {
+				try {
+					setObjectPredicateIndex(indexValue.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException("Boolean value required for " + OBJECT_PREDICATE_INDEX
+							+ " property, found " + indexValue);
+				}
+			});
 		} catch (ModelException e) {
 			throw new SailConfigException(e.getMessage(), e);
 		}
@@ -54,6 +54,8 @@ public class MemoryStoreFactory implements SailFactory {
 
 			memoryStore.setPersist(memConfig.getPersist());
 			memoryStore.setSyncDelay(memConfig.getSyncDelay());
+			memoryStore.setSubjectPredicateIndex(memConfig.getSubjectPredicateIndex());
+			memoryStore.setObjectPredicateIndex(memConfig.getObjectPredicateIndex());
 
 			if (memConfig.getIterationCacheSyncThreshold() > 0) {
 				memoryStore.setIterationCacheSyncThreshold(memConfig.getIterationCacheSyncThreshold());
@@ -29,9 +29,17 @@ public class MemoryStoreSchema {
 	/** <tt>http://www.openrdf.org/config/sail/memory#syncDelay</tt> */
 	public final static IRI SYNC_DELAY;
 
+	/** <tt>http://www.openrdf.org/config/sail/memory#subjectPredicateIndex</tt> */
+	public final static IRI SUBJECT_PREDICATE_INDEX;
+
+	/** <tt>http://www.openrdf.org/config/sail/memory#objectPredicateIndex</tt> */
+	public final static IRI OBJECT_PREDICATE_INDEX;
+
 	static {
 		ValueFactory factory = SimpleValueFactory.getInstance();
 		PERSIST = factory.createIRI(NAMESPACE, "persist");
 		SYNC_DELAY = factory.createIRI(NAMESPACE, "syncDelay");
+		SUBJECT_PREDICATE_INDEX = factory.createIRI(NAMESPACE, "subjectPredicateIndex");
+		OBJECT_PREDICATE_INDEX = factory.createIRI(NAMESPACE, "objectPredicateIndex");
 	}
 }
@@ -30,11 +30,21 @@ public class MemBNode extends SimpleBNode implements MemResource {
 	 */
 	transient private volatile MemStatementList subjectStatements;
 
+	/**
+	 * The statements for which this MemBNode is the subject grouped by predicate, <tt>null</tt> if not indexed.
+	 */
+	transient private volatile PredicateStatementIndex subjectStatementIndex;
+
 	/**
 	 * The list of statements for which this MemBNode is the object.
 	 */
 	transient private volatile MemStatementList objectStatements;
 
+	/**
+	 * The statements for which this MemBNode is the object grouped by predicate, <tt>null</tt> if not indexed.
+	 */
+	transient private volatile PredicateStatementIndex objectStatementIndex;
+
 	/**
 	 * The list of statements for which this MemBNode represents the context.
 	 */
@@ -71,127 +81,163 @@ public class MemBNode extends SimpleBNode implements MemResource {
 
 	@Override
 	public MemStatementList getSubjectStatementList() {
-		if (subjectStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return subjectStatements;
-		}
+		MemStatementList statements = subjectStatements;
+		return statements == null ? EMPTY_LIST : statements;
 	}
 
 	@Override
 	public int getSubjectStatementCount() {
-		if (subjectStatements == null) {
-			return 0;
-		} else {
-			return subjectStatements.size();
-		}
+		MemStatementList statements = subjectStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addSubjectStatement(MemStatement st) {
+	public synchronized void addSubjectStatement(MemStatement st) {
 		if (subjectStatements == null) {
-			subjectStatements = new MemStatementList(4);
+			subjectStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		subjectStatements.add(st);
+
+		if (subjectStatementIndex != null) {
+			subjectStatementIndex.add(st);
+		}
 	}
 
 	@Override
-	public void removeSubjectStatement(MemStatement st) {
+	public synchronized void removeSubjectStatement(MemStatement st) {
 		subjectStatements.remove(st);
 
+		if (subjectStatementIndex != null) {
+			subjectStatementIndex.remove(st);
+		}
+
 		if (subjectStatements.isEmpty()) {
 			subjectStatements = null;
+			subjectStatementIndex = null;
 		}
 	}
 
 	@Override
-	public void cleanSnapshotsFromSubjectStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromSubjectStatements(int currentSnapshot) {
 		if (subjectStatements != null) {
 			subjectStatements.cleanSnapshots(currentSnapshot);
 
+			if (subjectStatementIndex != null) {
+				subjectStatementIndex.cleanSnapshots(currentSnapshot);
+			}
+
 			if (subjectStatements.isEmpty()) {
 				subjectStatements = null;
+				subjectStatementIndex = null;
 			}
 		}
 	}
 
 	@Override
-	public MemStatementList getObjectStatementList() {
-		if (objectStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return objectStatements;
+	public MemStatementList getSubjectStatementList(MemIRI predicate) {
+		PredicateStatementIndex index = subjectStatementIndex;
+		return index == null ? null : index.get(predicate);
+	}
+
+	@Override
+	public synchronized void indexSubjectStatements() {
+		if (subjectStatementIndex == null && subjectStatements != null) {
+			subjectStatementIndex = new PredicateStatementIndex(subjectStatements);
 		}
 	}
 
+	@Override
+	public MemStatementList getObjectStatementList() {
+		MemStatementList statements = objectStatements;
+		return statements == null ? EMPTY_LIST : statements;
+	}
+
 	@Override
 	public int getObjectStatementCount() {
-		if (objectStatements == null) {
-			return 0;
-		} else {
-			return objectStatements.size();
-		}
+		MemStatementList statements = objectStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addObjectStatement(MemStatement st) {
+	public synchronized void addObjectStatement(MemStatement st) {
 		if (objectStatements == null) {
-			objectStatements = new MemStatementList(4);
+			objectStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		objectStatements.add(st);
+
+		if (objectStatementIndex != null) {
+			objectStatementIndex.add(st);
+		}
 	}
 
 	@Override
-	public void removeObjectStatement(MemStatement st) {
+	public synchronized void removeObjectStatement(MemStatement st) {
 		objectStatements.remove(st);
 
+		if (objectStatementIndex != null) {
+			objectStatementIndex.remove(st);
+		}
+
 		if (objectStatements.isEmpty()) {
 			objectStatements = null;
+			objectStatementIndex = null;
 		}
 	}
 
 	@Override
-	public void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
 		if (objectStatements != null) {
 			objectStatements.cleanSnapshots(currentSnapshot);
 
+			if (objectStatementIndex != null) {
+				objectStatementIndex.cleanSnapshots(currentSnapshot);
+			}
+
 			if (objectStatements.isEmpty()) {
 				objectStatements = null;
+				objectStatementIndex = null;
 			}
 		}
 	}
 
 	@Override
-	public MemStatementList getContextStatementList() {
-		if (contextStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return contextStatements;
+	public MemStatementList getObjectStatementList(MemIRI predicate) {
+		PredicateStatementIndex index = objectStatementIndex;
+		return index == null ? null : index.get(predicate);
+	}
+
+	@Override
+	public synchronized void indexObjectStatements() {
+		if (objectStatementIndex == null && objectStatements != null) {
+			objectStatementIndex = new PredicateStatementIndex(objectStatements);
 		}
 	}
 
+	@Override
+	public MemStatementList getContextStatementList() {
+		MemStatementList statements = contextStatements;
+		return statements == null ? EMPTY_LIST : statements;
+	}
+
 	@Override
 	public int getContextStatementCount() {
-		if (contextStatements == null) {
-			return 0;
-		} else {
-			return contextStatements.size();
-		}
+		MemStatementList statements = contextStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addContextStatement(MemStatement st) {
+	public synchronized void addContextStatement(MemStatement st) {
 		if (contextStatements == null) {
-			contextStatements = new MemStatementList(4);
+			contextStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		contextStatements.add(st);
 	}
 
 	@Override
-	public void removeContextStatement(MemStatement st) {
+	public synchronized void removeContextStatement(MemStatement st) {
 		contextStatements.remove(st);
 
 		if (contextStatements.isEmpty()) {
@@ -200,7 +246,7 @@ public class MemBNode extends SimpleBNode implements MemResource {
 	}
 
 	@Override
-	public void cleanSnapshotsFromContextStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromContextStatements(int currentSnapshot) {
 		if (contextStatements != null) {
 			contextStatements.cleanSnapshots(currentSnapshot);
 
@@ -46,6 +46,11 @@ public class MemIRI implements IRI, MemResource {
 	 */
 	transient private volatile MemStatementList subjectStatements = null;
 
+	/**
+	 * The statements for which this MemIRI is the subject grouped by predicate, <tt>null</tt> if not indexed.
+	 */
+	transient private volatile PredicateStatementIndex subjectStatementIndex;
+
 	/**
 	 * The list of statements for which this MemURI is the predicate.
 	 */
@@ -56,6 +61,11 @@ public class MemIRI implements IRI, MemResource {
 	 */
 	transient private volatile MemStatementList objectStatements = null;
 
+	/**
+	 * The statements for which this MemIRI is the object grouped by predicate, <tt>null</tt> if not indexed.
+	 */
+	transient private volatile PredicateStatementIndex objectStatementIndex;
+
 	/**
 	 * The list of statements for which this MemURI represents the context.
 	 */
@@ -143,62 +153,80 @@ public class MemIRI implements IRI, MemResource {
 
 	@Override
 	public MemStatementList getSubjectStatementList() {
-		if (subjectStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return subjectStatements;
-		}
+		MemStatementList statements = subjectStatements;
+		return statements == null ? EMPTY_LIST : statements;
 	}
 
 	@Override
 	public int getSubjectStatementCount() {
-		if (subjectStatements == null) {
-			return 0;
-		} else {
-			return subjectStatements.size();
-		}
+		MemStatementList statements = subjectStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addSubjectStatement(MemStatement st) {
+	public synchronized void addSubjectStatement(MemStatement st) {
 		if (subjectStatements == null) {
-			subjectStatements = new MemStatementList(4);
+			subjectStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		subjectStatements.add(st);
+
+		if (subjectStatementIndex != null) {
+			subjectStatementIndex.add(st);
+		}
 	}
 
 	@Override
-	public void removeSubjectStatement(MemStatement st) {
+	public synchronized void removeSubjectStatement(MemStatement st) {
 		subjectStatements.remove(st);
 
+		if (subjectStatementIndex != null) {
+			subjectStatementIndex.remove(st);
+		}
+
 		if (subjectStatements.isEmpty()) {
 			subjectStatements = null;
+			subjectStatementIndex = null;
 		}
 	}
 
 	@Override
-	public void cleanSnapshotsFromSubjectStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromSubjectStatements(int currentSnapshot) {
 		if (subjectStatements != null) {
 			subjectStatements.cleanSnapshots(currentSnapshot);
 
+			if (subjectStatementIndex != null) {
+				subjectStatementIndex.cleanSnapshots(currentSnapshot);
+			}
+
 			if (subjectStatements.isEmpty()) {
 				subjectStatements = null;
+				subjectStatementIndex = null;
 			}
 		}
 	}
 
+	@Override
+	public MemStatementList getSubjectStatementList(MemIRI predicate) {
+		PredicateStatementIndex index = subjectStatementIndex;
+		return index == null ? null : index.get(predicate);
+	}
+
+	@Override
+	public synchronized void indexSubjectStatements() {
+		if (subjectStatementIndex == null && subjectStatements != null) {
+			subjectStatementIndex = new PredicateStatementIndex(subjectStatements);
+		}
+	}
+
 	/**
 	 * Gets the list of statements for which this MemURI is the predicate.
 	 * 
 	 * @return a MemStatementList containing the statements.
 	 */
 	public MemStatementList getPredicateStatementList() {
-		if (predicateStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return predicateStatements;
-		}
+		MemStatementList statements = predicateStatements;
+		return statements == null ? EMPTY_LIST : statements;
 	}
 
 	/**
@@ -207,19 +235,16 @@ public class MemIRI implements IRI, MemResource {
 	 * @return An integer larger than or equal to 0.
 	 */
 	public int getPredicateStatementCount() {
-		if (predicateStatements == null) {
-			return 0;
-		} else {
-			return predicateStatements.size();
-		}
+		MemStatementList statements = predicateStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	/**
 	 * Adds a statement to this MemURI's list of statements for which it is the predicate.
 	 */
-	public void addPredicateStatement(MemStatement st) {
+	public synchronized void addPredicateStatement(MemStatement st) {
 		if (predicateStatements == null) {
-			predicateStatements = new MemStatementList(4);
+			predicateStatements = new MemStatementList(st.getTable(), 4);
 		}
 
 		predicateStatements.add(st);
@@ -228,7 +253,7 @@ public class MemIRI implements IRI, MemResource {
 	/**
 	 * Removes a statement from this MemURI's list of statements for which it is the predicate.
 	 */
-	public void removePredicateStatement(MemStatement st) {
+	public synchronized void removePredicateStatement(MemStatement st) {
 		predicateStatements.remove(st);
 
 		if (predicateStatements.isEmpty()) {
@@ -242,7 +267,7 @@ public class MemIRI implements IRI, MemResource {
 	 * 
 	 * @param currentSnapshot The current snapshot version.
 	 */
-	public void cleanSnapshotsFromPredicateStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromPredicateStatements(int currentSnapshot) {
 		if (predicateStatements != null) {
 			predicateStatements.cleanSnapshots(currentSnapshot);
 
@@ -254,78 +279,94 @@ public class MemIRI implements IRI, MemResource {
 
 	@Override
 	public MemStatementList getObjectStatementList() {
-		if (objectStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return objectStatements;
-		}
+		MemStatementList statements = objectStatements;
+		return statements == null ? EMPTY_LIST : statements;
 	}
 
 	@Override
 	public int getObjectStatementCount() {
-		if (objectStatements == null) {
-			return 0;
-		} else {
-			return objectStatements.size();
-		}
+		MemStatementList statements = objectStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addObjectStatement(MemStatement st) {
+	public synchronized void addObjectStatement(MemStatement st) {
 		if (objectStatements == null) {
-			objectStatements = new MemStatementList(4);
+			objectStatements = new MemStatementList(st.getTable(), 1);
 		}
 		objectStatements.add(st);
+
+		if (objectStatementIndex != null) {
+			objectStatementIndex.add(st);
+		}
 	}
 
 	@Override
-	public void removeObjectStatement(MemStatement st) {
+	public synchronized void removeObjectStatement(MemStatement st) {
 		objectStatements.remove(st);
+
+		if (objectStatementIndex != null) {
+			objectStatementIndex.remove(st);
+		}
+
 		if (objectStatements.isEmpty()) {
 			objectStatements = null;
+			objectStatementIndex = null;
 		}
 	}
 
 	@Override
-	public void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
 		if (objectStatements != null) {
 			objectStatements.cleanSnapshots(currentSnapshot);
 
+			if (objectStatementIndex != null) {
+				objectStatementIndex.cleanSnapshots(currentSnapshot);
+			}
+
 			if (objectStatements.isEmpty()) {
 				objectStatements = null;
+				objectStatementIndex = null;
 			}
 		}
 	}
 
 	@Override
-	public MemStatementList getContextStatementList() {
-		if (contextStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return contextStatements;
+	public MemStatementList getObjectStatementList(MemIRI predicate) {
+		PredicateStatementIndex index = objectStatementIndex;
+		return index == null ? null : index.get(predicate);
+	}
+
+	@Override
+	public synchronized void indexObjectStatements() {
+		if (objectStatementIndex == null && objectStatements != null) {
+			objectStatementIndex = new PredicateStatementIndex(objectStatements);
 		}
 	}
 
+	@Override
+	public MemStatementList getContextStatementList() {
+		MemStatementList statements = contextStatements;
+		return statements == null ? EMPTY_LIST : statements;
+	}
+
 	@Override
 	public int getContextStatementCount() {
-		if (contextStatements == null) {
-			return 0;
-		} else {
-			return contextStatements.size();
-		}
+		MemStatementList statements = contextStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addContextStatement(MemStatement st) {
+	public synchronized void addContextStatement(MemStatement st) {
 		if (contextStatements == null) {
-			contextStatements = new MemStatementList(4);
+			contextStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		contextStatements.add(st);
 	}
 
 	@Override
-	public void removeContextStatement(MemStatement st) {
+	public synchronized void removeContextStatement(MemStatement st) {
 		contextStatements.remove(st);
 
 		if (contextStatements.isEmpty()) {
@@ -334,7 +375,7 @@ public class MemIRI implements IRI, MemResource {
 	}
 
 	@Override
-	public void cleanSnapshotsFromContextStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromContextStatements(int currentSnapshot) {
 		if (contextStatements != null) {
 			contextStatements.cleanSnapshots(currentSnapshot);
 
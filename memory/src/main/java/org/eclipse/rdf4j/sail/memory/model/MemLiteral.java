@@ -34,6 +34,11 @@ public class MemLiteral extends SimpleLiteral implements MemValue {
 	 */
 	transient private volatile MemStatementList objectStatements;
 
+	/**
+	 * The statements for which this MemLiteral is the object grouped by predicate, <tt>null</tt> if not indexed.
+	 */
+	transient private volatile PredicateStatementIndex objectStatementIndex;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -89,48 +94,69 @@ public class MemLiteral extends SimpleLiteral implements MemValue {
 
 	@Override
 	public MemStatementList getObjectStatementList() {
-		if (objectStatements == null) {
-			return EMPTY_LIST;
-		} else {
-			return objectStatements;
-		}
+		MemStatementList statements = objectStatements;
+		return statements == null ? EMPTY_LIST : statements;
 	}
 
 	@Override
 	public int getObjectStatementCount() {
-		if (objectStatements == null) {
-			return 0;
-		} else {
-			return objectStatements.size();
-		}
+		MemStatementList statements = objectStatements;
+		return statements == null ? 0 : statements.size();
 	}
 
 	@Override
-	public void addObjectStatement(MemStatement st) {
+	public synchronized void addObjectStatement(MemStatement st) {
 		if (objectStatements == null) {
-			objectStatements = new MemStatementList(1);
+			objectStatements = new MemStatementList(st.getTable(), 1);
 		}
 
 		objectStatements.add(st);
+
+		if (objectStatementIndex != null) {
+			objectStatementIndex.add(st);
+		}
 	}
 
 	@Override
-	public void removeObjectStatement(MemStatement st) {
+	public synchronized void removeObjectStatement(MemStatement st) {
 		objectStatements.remove(st);
 
+		if (objectStatementIndex != null) {
+			objectStatementIndex.remove(st);
+		}
+
 		if (objectStatements.isEmpty()) {
 			objectStatements = null;
+			objectStatementIndex = null;
 		}
 	}
 
 	@Override
-	public void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
+	public synchronized void cleanSnapshotsFromObjectStatements(int currentSnapshot) {
 		if (objectStatements != null) {
 			objectStatements.cleanSnapshots(currentSnapshot);
 
+			if (objectStatementIndex != null) {
+				objectStatementIndex.cleanSnapshots(currentSnapshot);
+			}
+
 			if (objectStatements.isEmpty()) {
 				objectStatements = null;
+				objectStatementIndex = null;
 			}
 		}
 	}
+
+	@Override
+	public MemStatementList getObjectStatementList(MemIRI predicate) {
+		PredicateStatementIndex index = objectStatementIndex;
+		return index == null ? null : index.get(predicate);
+	}
+
+	@Override
+	public synchronized void indexObjectStatements() {
+		if (objectStatementIndex == null && objectStatements != null) {
+			objectStatementIndex = new PredicateStatementIndex(objectStatements);
+		}
+	}
 }
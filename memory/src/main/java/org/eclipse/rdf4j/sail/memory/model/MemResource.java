@@ -46,6 +46,23 @@ public interface MemResource extends MemValue, Resource {
 	 */
 	public void cleanSnapshotsFromSubjectStatements(int currentSnapshot);
 
+	/**
+	 * Gets the list of statements for which this MemResource is the subject and the specified IRI is the predicate, if
+	 * the statements for which this MemResource is the subject have been {@link #indexSubjectStatements() indexed}.
+	 * 
+	 * @return a MemStatementList containing the statements, or <tt>null</tt> if the statements are not indexed.
+	 */
+	public default MemStatementList getSubjectStatementList(MemIRI predicate) {
+		return null;
+	}
+
+	/**
+	 * Groups the statements for which this MemResource is the subject by predicate, unless this has already been done.
+	 * The index is maintained as statements are added and removed, until there are no such statements left.
+	 */
+	public default void indexSubjectStatements() {
+	}
+
 	/**
 	 * Gets the list of statements for which this MemResource represents the context.
 	 * 
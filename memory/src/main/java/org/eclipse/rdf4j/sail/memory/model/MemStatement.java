@@ -11,7 +11,10 @@ import org.eclipse.rdf4j.model.impl.ContextStatement;
 
 /**
  * A MemStatement is a Statement which contains context information and a flag indicating whether the statement is
- * explicit or inferred.
+ * explicit or inferred. It is a view on a row of a {@link MemStatementTable}: the subject, predicate, object, context
+ * and flag are read from the table when the view is created, while the snapshots in which the statement is visible are
+ * read from and written to the table. Once the statement has been removed from the table, the view reports that it is
+ * not visible in any snapshot, and changes to its snapshots have no effect.
  */
 public class MemStatement extends ContextStatement {
 
@@ -26,41 +29,40 @@ public class MemStatement extends ContextStatement {
 	 *-----------*/
 
 	/**
-	 * Flag indicating whether or not this statement has been added explicitly or that it has been inferred.
+	 * The table that stores this statement.
 	 */
-	private volatile boolean explicit;
+	private final transient MemStatementTable table;
 
 	/**
-	 * Identifies the snapshot in which this statement was introduced.
+	 * The row of this statement in the table.
 	 */
-	private volatile int sinceSnapshot;
+	private final transient int row;
 
 	/**
-	 * Identifies the snapshot in which this statement was revoked, defaults to {@link Integer#MAX_VALUE}.
+	 * The generation of the row that holds this statement.
+	 */
+	private final transient int generation;
+
+	/**
+	 * Flag indicating whether or not this statement has been added explicitly or that it has been inferred.
 	 */
-	private volatile int tillSnapshot = Integer.MAX_VALUE;
+	private final boolean explicit;
 
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
 	/**
-	 * Creates a new MemStatement with the supplied subject, predicate, object and context and marks it as 'explicit'.
+	 * Creates a view on the statement with the supplied subject, predicate, object and context that is stored in a
+	 * row of a table, see {@link MemStatementTable#get(int)}.
 	 */
-	public MemStatement(MemResource subject, MemIRI predicate, MemValue object, MemResource context,
-			int sinceSnapshot) {
-		this(subject, predicate, object, context, true, sinceSnapshot);
-	}
-
-	/**
-	 * Creates a new MemStatement with the supplied subject, predicate, object and context. The value of the
-	 * <tt>explicit</tt> parameter determines if this statement is marked as 'explicit' or not.
-	 */
-	public MemStatement(MemResource subject, MemIRI predicate, MemValue object, MemResource context, boolean explicit,
-			int sinceSnapshot) {
+	MemStatement(MemStatementTable table, int row, int generation, boolean explicit, MemResource subject,
+			MemIRI predicate, MemValue object, MemResource context) {
 		super(subject, predicate, object, context);
-		setExplicit(explicit);
-		setSinceSnapshot(sinceSnapshot);
+		this.table = table;
+		this.row = row;
+		this.generation = generation;
+		this.explicit = explicit;
 	}
 
 	/*---------*
@@ -87,28 +89,36 @@ public class MemStatement extends ContextStatement {
 		return (MemResource) super.getContext();
 	}
 
+	MemStatementTable getTable() {
+		return table;
+	}
+
+	int getRow() {
+		return row;
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+
 	public void setSinceSnapshot(int snapshot) {
-		sinceSnapshot = snapshot;
+		table.setSinceSnapshot(row, generation, snapshot);
 	}
 
 	public int getSinceSnapshot() {
-		return sinceSnapshot;
+		return table.getSinceSnapshot(row, generation);
 	}
 
 	public void setTillSnapshot(int snapshot) {
-		tillSnapshot = snapshot;
+		table.setTillSnapshot(row, generation, snapshot);
 	}
 
 	public int getTillSnapshot() {
-		return tillSnapshot;
+		return table.getTillSnapshot(row, generation);
 	}
 
 	public boolean isInSnapshot(int snapshot) {
-		return snapshot >= sinceSnapshot && snapshot < tillSnapshot;
-	}
-
-	public void setExplicit(boolean explicit) {
-		this.explicit = explicit;
+		return snapshot >= getSinceSnapshot() && snapshot < getTillSnapshot();
 	}
 
 	public boolean isExplicit() {
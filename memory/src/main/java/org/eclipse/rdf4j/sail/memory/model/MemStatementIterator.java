@@ -11,9 +11,10 @@ import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
 import org.eclipse.rdf4j.common.lang.ObjectUtil;
 
 /**
- * A StatementIterator that can iterate over a list of Statement objects. This iterator compares Resource and Literal
- * objects using the '==' operator, which is possible thanks to the extensive sharing of these objects in the
- * MemoryStore.
+ * A StatementIterator that can iterate over a list of statements, or over all statements in a
+ * {@link MemStatementTable}. This iterator compares Resource and Literal objects using the '==' operator, which is
+ * possible thanks to the extensive sharing of these objects in the MemoryStore. Statements are filtered by snapshot on
+ * the snapshot columns of the table, before their values are read.
  */
 public class MemStatementIterator<X extends Exception> extends LookAheadIteration<MemStatement, X> {
 
@@ -22,9 +23,20 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	 *-----------*/
 
 	/**
-	 * The lists of statements over which to iterate.
+	 * The table that stores the statements.
 	 */
-	private final MemStatementList statementList;
+	private final MemStatementTable table;
+
+	/**
+	 * The rows over which to iterate, followed by <tt>-1</tt> values if the array is not full, or <tt>null</tt> to
+	 * iterate over all rows of the table.
+	 */
+	private final int[] rows;
+
+	/**
+	 * The number of rows, or of elements of {@link #rows}, over which to iterate.
+	 */
+	private final int end;
 
 	/**
 	 * The subject of statements to return, or null if any subject is OK.
@@ -79,7 +91,30 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	 */
 	public MemStatementIterator(MemStatementList statementList, MemResource subject, MemIRI predicate, MemValue object,
 			Boolean explicit, int snapshot, MemResource... contexts) {
-		this.statementList = statementList;
+		this(statementList.getTable(), statementList.getRowArray(), subject, predicate, object, explicit, snapshot,
+				contexts);
+	}
+
+	/**
+	 * Creates a new MemStatementIterator that will iterate over all statements in the supplied MemStatementTable
+	 * searching for statements that match the specified pattern of subject, predicate, object and context(s).
+	 * 
+	 * @param table     the statements over which to iterate.
+	 * @param subject   subject of pattern.
+	 * @param predicate predicate of pattern.
+	 * @param object    object of pattern.
+	 * @param contexts  context(s) of pattern.
+	 */
+	public MemStatementIterator(MemStatementTable table, MemResource subject, MemIRI predicate, MemValue object,
+			Boolean explicit, int snapshot, MemResource... contexts) {
+		this(table, null, subject, predicate, object, explicit, snapshot, contexts);
+	}
+
+	private MemStatementIterator(MemStatementTable table, int[] rows, MemResource subject, MemIRI predicate,
+			MemValue object, Boolean explicit, int snapshot, MemResource... contexts) {
+		this.table = table;
+		this.rows = rows;
+		this.end = rows == null ? table.getRowCount() : rows.length;
 		this.subject = subject;
 		this.predicate = predicate;
 		this.object = object;
@@ -95,28 +130,46 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 	 *---------*/
 
 	/**
-	 * Searches through statementList, starting from index <tt>_nextStatementIdx + 1</tt>, for statements that match the
-	 * constraints that have been set for this iterator. If a matching statement has been found it will be stored in
+	 * Searches through the statements, starting from index <tt>_nextStatementIdx + 1</tt>, for statements that match
+	 * the constraints that have been set for this iterator. If a matching statement has been found it will be stored in
 	 * <tt>_nextStatement</tt> and <tt>_nextStatementIdx</tt> points to the index of this statement in
-	 * <tt>_statementList</tt>. Otherwise, <tt>_nextStatement</tt> will set to <tt>null</tt>.
+	 * <tt>_statements</tt>. Otherwise, <tt>_nextStatement</tt> will set to <tt>null</tt>.
 	 */
 	@Override
 	protected MemStatement getNextElement() {
 		statementIdx++;
 
-		for (; statementIdx < statementList.size(); statementIdx++) {
-			MemStatement st = statementList.get(statementIdx);
+		for (; statementIdx < end; statementIdx++) {
+			int row = rows == null ? statementIdx : rows[statementIdx];
+			if (row < 0) {
+				// Reached the end of the list
+				break;
+			}
+
+			if (snapshot >= 0 && !table.isInSnapshot(row, snapshot)) {
+				continue;
+			}
+
+			// the generation is read first, so that a view on a row that is freed meanwhile is never current
+			int generation = table.getGeneration(row);
+			MemResource stSubject = table.getSubject(row);
+			MemIRI stPredicate = table.getPredicate(row);
+			MemValue stObject = table.getObject(row);
+			if (stSubject == null || stPredicate == null || stObject == null) {
+				// The row has been freed
+				continue;
+			}
 
-			if (isInSnapshot(st) && (subject == null || subject == st.getSubject())
-					&& (predicate == null || predicate == st.getPredicate())
-					&& (object == null || object == st.getObject())) {
+			if ((subject == null || subject == stSubject) && (predicate == null || predicate == stPredicate)
+					&& (object == null || object == stObject)) {
 				// A matching statement has been found, check if it should be
 				// skipped due to explicitOnly, contexts and readMode requirements
 
+				MemResource stContext = table.getContext(row);
 				if (contexts != null && contexts.length > 0) {
 					boolean matchingContext = false;
 					for (int i = 0; i < contexts.length && !matchingContext; i++) {
-						matchingContext = ObjectUtil.nullEquals(st.getContext(), contexts[i]);
+						matchingContext = ObjectUtil.nullEquals(stContext, contexts[i]);
 					}
 					if (!matchingContext) {
 						// statement does not appear in one of the specified contexts,
@@ -125,20 +178,18 @@ public class MemStatementIterator<X extends Exception> extends LookAheadIteratio
 					}
 				}
 
-				if (explicit != null && explicit.booleanValue() != st.isExplicit()) {
+				boolean stExplicit = table.isExplicit(row);
+				if (explicit != null && explicit.booleanValue() != stExplicit) {
 					// Explicit flag does not match
 					continue;
 				}
 
-				return st;
+				return new MemStatement(table, row, generation, stExplicit, stSubject, stPredicate, stObject,
+						stContext);
 			}
 		}
 
 		// No more matching statements.
 		return null;
 	}
-
-	private boolean isInSnapshot(MemStatement st) {
-		return snapshot < 0 || st.isInSnapshot(snapshot);
-	}
 }
@@ -8,39 +8,69 @@
 package org.eclipse.rdf4j.sail.memory.model;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntPredicate;
 
 /**
- * A dedicated data structure for storing MemStatement objects, offering operations optimized for their use in the
- * memory Sail.
+ * A dedicated data structure for storing the statements of a value, offering operations optimized for their use in the
+ * memory Sail. The list holds the rows of the statements in a {@link MemStatementTable}, instead of references to
+ * statement objects, and {@link MemStatement} views on these rows are only created when statements are returned.
+ * <p>
+ * The list can be read without locking while it is being modified. Statements are appended in place, but statements
+ * are removed by replacing the array of rows with a copy, so an array that has been obtained through
+ * {@link #getRowArray()} keeps its rows in the same positions. Removed statements are collected until the list is read
+ * again, so that a series of removals is applied with a single copy of the array. Modifications are synchronized on the
+ * list.
  */
 public class MemStatementList {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int[] EMPTY_ROWS = new int[0];
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
 
-	private volatile MemStatement[] statements;
+	private final MemStatementTable table;
+
+	/**
+	 * The rows of the statements, followed by <tt>-1</tt> values if the array is not full.
+	 */
+	private volatile int[] rows;
 
 	private volatile int size;
 
+	/**
+	 * The rows of the statements that have been removed but that are still in the array, or <tt>null</tt> if there are
+	 * none.
+	 */
+	private Set<Integer> removedRows;
+
+	private volatile int removedCount;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
 
 	/**
-	 * Creates a new MemStatementList.
+	 * Creates a new MemStatementList for statements in the specified table.
 	 */
-	public MemStatementList() {
-		this(4);
+	public MemStatementList(MemStatementTable table) {
+		this(table, 4);
 	}
 
-	public MemStatementList(int capacity) {
-		statements = new MemStatement[capacity];
+	public MemStatementList(MemStatementTable table, int capacity) {
+		this.table = table;
+		rows = newRowArray(capacity);
 		size = 0;
 	}
 
 	public MemStatementList(MemStatementList other) {
-		this(other.size);
+		this(other.table, other.size);
 		addAll(other);
 	}
 
@@ -49,99 +79,196 @@ public class MemStatementList {
 	 *---------*/
 
 	public int size() {
-		return size;
+		return size - removedCount;
 	}
 
 	public boolean isEmpty() {
-		return size == 0;
+		return size() == 0;
+	}
+
+	/**
+	 * Gets the table that stores the statements in this list.
+	 */
+	MemStatementTable getTable() {
+		return table;
 	}
 
-	public MemStatement get(int index) {
+	/**
+	 * Gets the statement at the specified index. As statements may be removed concurrently, threads that do not hold
+	 * the lock on this list should iterate over {@link #getRowArray()} instead.
+	 */
+	public synchronized MemStatement get(int index) {
+		compactRemovedStatements();
+
 		assert index >= 0 : "index < 0";
 		assert index < size : "index >= size";
 
-		return statements[index];
+		return table.get(rows[index]);
+	}
+
+	/**
+	 * Gets the current array of rows, for iterating over the statements without locking. The rows in the array are
+	 * followed by <tt>-1</tt> values, if any. Statements that are added to the list may or may not appear in a
+	 * previously obtained array; removed statements remain in it.
+	 * <p>
+	 * The table can be read for all rows in the array that have been added before the array was obtained.
+	 */
+	int[] getRowArray() {
+		if (removedCount > 0) {
+			synchronized (this) {
+				compactRemovedStatements();
+			}
+		}
+		// the size is read before the array, which makes the rows that have been added visible, see add()
+		if (size == 0) {
+			return EMPTY_ROWS;
+		}
+		return rows;
 	}
 
-	public void add(MemStatement st) {
-		if (size == statements.length) {
+	public synchronized void add(MemStatement st) {
+		assert st.getTable() == table : "statement is stored in another table";
+
+		// the row may have been removed and reused since
+		compactRemovedStatements();
+
+		if (size == rows.length) {
 			// Grow array
 			growArray((size == 0) ? 1 : 2 * size);
 		}
 
-		statements[size] = st;
+		rows[size] = st.getRow();
 		++size;
 	}
 
-	public void addAll(MemStatementList other) {
-		if (size + other.size >= statements.length) {
+	public synchronized void addAll(MemStatementList other) {
+		int[] otherArray;
+		int otherSize;
+		synchronized (other) {
+			otherArray = other.getRowArray();
+			otherSize = other.size;
+		}
+
+		compactRemovedStatements();
+
+		if (size + otherSize >= rows.length) {
 			// Grow array
-			growArray(size + other.size);
+			growArray(size + otherSize);
 		}
 
-		System.arraycopy(other.statements, 0, statements, size, other.size);
-		size += other.size;
+		System.arraycopy(otherArray, 0, rows, size, otherSize);
+		size += otherSize;
 	}
 
-	public void remove(int index) {
+	public synchronized void remove(int index) {
+		compactRemovedStatements();
+
 		assert index >= 0 : "index < 0";
 		assert index < size : "index >= size";
 
-		if (index == size - 1) {
-			// Last statement in array
-			statements[index] = null;
-			--size;
-		} else {
-			// Not last statement in array, move last
-			// statement over the one at [index]
-			--size;
-			statements[index] = statements[size];
-			statements[size] = null;
-		}
+		markRemoved(rows[index]);
 	}
 
-	public void remove(MemStatement st) {
+	/**
+	 * Removes a statement from the list. The statement is removed from the array of rows when the list is read again,
+	 * together with the other statements that are removed until then.
+	 */
+	public synchronized void remove(MemStatement st) {
+		int row = st.getRow();
+		if (removedRows != null && removedRows.contains(row)) {
+			return;
+		}
 		for (int i = 0; i < size; ++i) {
-			if (statements[i] == st) {
-				remove(i);
+			if (rows[i] == row) {
+				markRemoved(row);
 				return;
 			}
 		}
 	}
 
-	public void clear() {
-		Arrays.fill(statements, 0, size, null);
-		size = 0;
+	private void markRemoved(int row) {
+		if (removedRows == null) {
+			removedRows = new HashSet<>();
+		}
+		removedRows.add(row);
+		removedCount = removedRows.size();
+	}
+
+	public synchronized void clear() {
+		// readers may still be iterating over the current array, so it is replaced instead of cleared
+		removedRows = null;
+		removedCount = 0;
+		replaceArray(newRowArray(Math.min(rows.length, 4)), 0);
+	}
+
+	/**
+	 * Removes the statements that have been deprecated at or before the specified snapshot. The statements are
+	 * compacted into a new array, keeping their order.
+	 *
+	 * @param currentSnapshot The oldest snapshot that is still in use.
+	 */
+	public synchronized void cleanSnapshots(int currentSnapshot) {
+		compact(row -> table.getTillSnapshot(row) > currentSnapshot);
 	}
 
-	public void cleanSnapshots(int currentSnapshot) {
-		int i = size - 1;
+	/**
+	 * Applies the removals of statements that are still in the array, see {@link #remove(MemStatement)}.
+	 */
+	private void compactRemovedStatements() {
+		if (removedRows != null) {
+			compact(row -> true);
+		}
+	}
+
+	/**
+	 * Compacts the rows that are kept and have not been removed into a new array, keeping their order.
+	 */
+	private void compact(IntPredicate keep) {
+		int[] oldArray = rows;
+		int oldSize = size;
+		Set<Integer> removed = removedRows;
 
-		// remove all deprecated statements from the end of the list
-		for (; i >= 0; i--) {
-			if (statements[i].getTillSnapshot() <= currentSnapshot) {
-				--size;
-				statements[i] = null;
-			} else {
-				i--;
-				break;
+		int newSize = 0;
+		for (int i = 0; i < oldSize; i++) {
+			if (isKept(oldArray[i], keep, removed)) {
+				newSize++;
 			}
 		}
 
-		// remove all deprecated statements that are not at the end of the list
-		for (; i >= 0; i--) {
-			if (statements[i].getTillSnapshot() <= currentSnapshot) {
-				// replace statement with last statement in the list
-				--size;
-				statements[i] = statements[size];
-				statements[size] = null;
+		// reset before publishing the new array, so that lock-free readers never see a size that is too small
+		removedRows = null;
+		removedCount = 0;
+
+		if (newSize < oldSize) {
+			int[] newArray = newRowArray(Math.max(newSize + (newSize >> 1), 1));
+			int j = 0;
+			for (int i = 0; i < oldSize; i++) {
+				if (isKept(oldArray[i], keep, removed)) {
+					newArray[j++] = oldArray[i];
+				}
 			}
+			replaceArray(newArray, newSize);
 		}
 	}
 
+	private static boolean isKept(int row, IntPredicate keep, Set<Integer> removed) {
+		return keep.test(row) && (removed == null || !removed.contains(row));
+	}
+
+	private void replaceArray(int[] newArray, int newSize) {
+		rows = newArray;
+		size = newSize;
+	}
+
 	private void growArray(int newSize) {
-		MemStatement[] newArray = new MemStatement[newSize];
-		System.arraycopy(statements, 0, newArray, 0, size);
-		statements = newArray;
+		int[] newArray = newRowArray(newSize);
+		System.arraycopy(rows, 0, newArray, 0, size);
+		rows = newArray;
+	}
+
+	private static int[] newRowArray(int capacity) {
+		int[] array = new int[capacity];
+		Arrays.fill(array, -1);
+		return array;
 	}
 }
@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A table that stores the statements of a MemoryStore in columns. Each statement is a row of the table, which is
+ * identified by its index. The {@link MemStatementList statement lists} of the values hold these indexes instead of
+ * references to statement objects, and {@link MemStatement} objects are only created as views on rows that are
+ * returned to callers.
+ * <p>
+ * The table is stored in pages of a fixed number of rows, so that it never has to be copied as it grows. The snapshots
+ * in which a statement is visible are stored in primitive <tt>int</tt> columns, so that statements can be filtered by
+ * snapshot without reading any objects.
+ * <p>
+ * Rows are reused once the statements in them have been {@link #free(MemStatement) freed}. A row may only be freed
+ * when its statement is no longer visible in any snapshot that is being read, and when it has been removed from all
+ * statement lists. A freed row is invisible in all snapshots and no longer references its values, and a row that is
+ * reused only becomes visible, together with its new values, when its till-snapshot is written. The table can
+ * therefore be read without locking while rows are added, freed and reused. Modifications are synchronized on the
+ * table.
+ * <p>
+ * Every row has a generation, which changes when the row is freed and when it is reused. A view remembers the
+ * generation of its row, so a view that is used after its statement has been freed, or after the table has been
+ * cleared, does not read or write the statement that reuses the row. Such a view reports a statement that is not
+ * visible in any snapshot.
+ */
+public class MemStatementTable {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int PAGE_SHIFT = 12;
+
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/**
+	 * The since-snapshot of rows that have been freed, which is after every snapshot that is read.
+	 */
+	private static final int FREE = Integer.MAX_VALUE;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private volatile Page[] pages = new Page[0];
+
+	/**
+	 * The number of rows that have been used, including the rows that have been freed.
+	 */
+	private volatile int rowCount;
+
+	/**
+	 * The number of rows that hold a statement.
+	 */
+	private volatile int size;
+
+	/**
+	 * The rows that have been freed and that can be reused, of which the first {@link #freeCount} are valid.
+	 */
+	private int[] freeRows = new int[16];
+
+	private int freeCount;
+
+	/**
+	 * The last generation that has been assigned to a row. It is not reset when the table is cleared, so that views on
+	 * rows of a cleared table never match new rows.
+	 */
+	private int lastGeneration;
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Gets the number of statements in this table.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of rows that can be read, including rows that have been freed. Rows that have been freed have
+	 * no subject.
+	 */
+	int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Adds a statement to this table, reusing a row that has been freed if possible.
+	 *
+	 * @return A view on the row of the new statement.
+	 */
+	public MemStatement add(MemResource subject, MemIRI predicate, MemValue object, MemResource context,
+			boolean explicit, int sinceSnapshot) {
+		long rowAndGeneration = addRow(subject, predicate, object, context, explicit, sinceSnapshot);
+		return new MemStatement(this, (int) (rowAndGeneration >>> 32), (int) rowAndGeneration, explicit, subject,
+				predicate, object, context);
+	}
+
+	/**
+	 * Adds a row and returns its index in the upper half and its generation in the lower half of the result.
+	 */
+	private synchronized long addRow(MemResource subject, MemIRI predicate, MemValue object, MemResource context,
+			boolean explicit, int sinceSnapshot) {
+		int row;
+		if (freeCount > 0) {
+			row = freeRows[--freeCount];
+		} else {
+			row = rowCount;
+			if ((row >>> PAGE_SHIFT) == pages.length) {
+				Page[] newPages = Arrays.copyOf(pages, pages.length + 1);
+				newPages[pages.length] = new Page();
+				pages = newPages;
+			}
+		}
+
+		Page page = pages[row >>> PAGE_SHIFT];
+		int i = row & PAGE_MASK;
+		page.subjects[i] = subject;
+		page.predicates[i] = predicate;
+		page.objects[i] = object;
+		page.contexts[i] = context;
+		page.explicit[i] = explicit;
+		page.sinceSnapshots[i] = sinceSnapshot;
+		int generation = ++lastGeneration;
+		page.generations[i] = generation;
+		// publishes the values of a reused row to readers that see the row become visible
+		page.tillSnapshots.set(i, Integer.MAX_VALUE);
+
+		if (row == rowCount) {
+			rowCount = row + 1;
+		}
+		size++;
+		return ((long) row << 32) | (generation & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets a view on the statement in the specified row.
+	 */
+	public MemStatement get(int row) {
+		Page page = getPage(row);
+		if (page == null) {
+			throw new IndexOutOfBoundsException("Row " + row + " is not in the table");
+		}
+		int i = row & PAGE_MASK;
+		// the till-snapshot is read first, see isInSnapshot(int, int)
+		page.tillSnapshots.get(i);
+		return new MemStatement(this, row, page.generations[i], page.explicit[i], page.subjects[i],
+				page.predicates[i], page.objects[i], page.contexts[i]);
+	}
+
+	/**
+	 * Frees the row of a statement that is no longer visible in any snapshot that is being read, and that has been
+	 * removed from all statement lists, so that the row can be reused. The statement must not be used afterwards.
+	 *
+	 * @return <tt>true</tt> if the row has been freed, <tt>false</tt> if it was already free or if the table has been
+	 *         cleared.
+	 */
+	public synchronized boolean free(MemStatement st) {
+		assert st.getTable() == this : "statement is stored in another table";
+		int row = st.getRow();
+		Page page = getCurrentPage(row, st.getGeneration());
+		if (page == null) {
+			return false;
+		}
+
+		int i = row & PAGE_MASK;
+		assert page.tillSnapshots.get(i) != Integer.MAX_VALUE : "statement has not been deprecated";
+		page.generations[i] = ++lastGeneration;
+		page.sinceSnapshots[i] = FREE;
+		page.subjects[i] = null;
+		page.predicates[i] = null;
+		page.objects[i] = null;
+		page.contexts[i] = null;
+
+		if (freeCount == freeRows.length) {
+			freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+		}
+		freeRows[freeCount++] = row;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes all statements from this table.
+	 */
+	public synchronized void clear() {
+		// readers may still be reading the current pages, so these are replaced instead of cleared
+		pages = new Page[0];
+		rowCount = 0;
+		size = 0;
+		freeRows = new int[16];
+		freeCount = 0;
+	}
+
+	/*
+	 * The following methods are used to read rows without locking. They return null, false or 0 for rows of a table
+	 * that has been cleared, which is what they return for rows that have been freed.
+	 */
+
+	public MemResource getSubject(int row) {
+		Page page = getPage(row);
+		return page == null ? null : page.subjects[row & PAGE_MASK];
+	}
+
+	public MemIRI getPredicate(int row) {
+		Page page = getPage(row);
+		return page == null ? null : page.predicates[row & PAGE_MASK];
+	}
+
+	public MemValue getObject(int row) {
+		Page page = getPage(row);
+		return page == null ? null : page.objects[row & PAGE_MASK];
+	}
+
+	public MemResource getContext(int row) {
+		Page page = getPage(row);
+		return page == null ? null : page.contexts[row & PAGE_MASK];
+	}
+
+	public boolean isExplicit(int row) {
+		Page page = getPage(row);
+		return page != null && page.explicit[row & PAGE_MASK];
+	}
+
+	public int getTillSnapshot(int row) {
+		Page page = getPage(row);
+		return page == null ? 0 : page.tillSnapshots.get(row & PAGE_MASK);
+	}
+
+	/**
+	 * Gets the generation of the statement in the specified row. Generations start at 1, so 0 is never the generation
+	 * of a statement.
+	 */
+	int getGeneration(int row) {
+		Page page = getPage(row);
+		return page == null ? 0 : page.generations[row & PAGE_MASK];
+	}
+
+	private Page getPage(int row) {
+		Page[] pages = this.pages;
+		int pageIndex = row >>> PAGE_SHIFT;
+		return pageIndex < pages.length ? pages[pageIndex] : null;
+	}
+
+	/**
+	 * Gets the page of a row if it still holds the statement of the specified generation, or <tt>null</tt> if the
+	 * statement has been freed or the table has been cleared.
+	 */
+	private Page getCurrentPage(int row, int generation) {
+		Page page = getPage(row);
+		return page != null && page.generations[row & PAGE_MASK] == generation ? page : null;
+	}
+
+	/**
+	 * Gets the since-snapshot of the statement of the specified generation, or 0 if it is no longer in the table.
+	 */
+	int getSinceSnapshot(int row, int generation) {
+		Page page = getCurrentPage(row, generation);
+		if (page != null) {
+			int i = row & PAGE_MASK;
+			// the till-snapshot is read first, see isInSnapshot(int, int)
+			page.tillSnapshots.get(i);
+			int snapshot = page.sinceSnapshots[i];
+			if (page.generations[i] == generation) {
+				return snapshot;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the till-snapshot of the statement of the specified generation, or 0 if it is no longer in the table.
+	 */
+	int getTillSnapshot(int row, int generation) {
+		Page page = getCurrentPage(row, generation);
+		if (page != null) {
+			int i = row & PAGE_MASK;
+			int snapshot = page.tillSnapshots.get(i);
+			if (page.generations[i] == generation) {
+				return snapshot;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Sets the since-snapshot of the statement of the specified generation, if it is still in the table.
+	 */
+	synchronized void setSinceSnapshot(int row, int generation, int snapshot) {
+		Page page = getCurrentPage(row, generation);
+		if (page != null) {
+			page.sinceSnapshots[row & PAGE_MASK] = snapshot;
+		}
+	}
+
+	/**
+	 * Sets the till-snapshot of the statement of the specified generation, if it is still in the table.
+	 */
+	synchronized void setTillSnapshot(int row, int generation, int snapshot) {
+		Page page = getCurrentPage(row, generation);
+		if (page != null) {
+			page.tillSnapshots.set(row & PAGE_MASK, snapshot);
+		}
+	}
+
+	/**
+	 * Checks whether the statement in the specified row is visible in a snapshot. The till-snapshot is read first, so
+	 * that the values of a row that is reused are only read once it has become visible.
+	 */
+	public boolean isInSnapshot(int row, int snapshot) {
+		Page page = getPage(row);
+		int i = row & PAGE_MASK;
+		return page != null && snapshot < page.tillSnapshots.get(i) && snapshot >= page.sinceSnapshots[i];
+	}
+
+	/**
+	 * A fixed number of rows of the table, stored in one array per column.
+	 */
+	private static final class Page {
+
+		final MemResource[] subjects = new MemResource[PAGE_SIZE];
+
+		final MemIRI[] predicates = new MemIRI[PAGE_SIZE];
+
+		final MemValue[] objects = new MemValue[PAGE_SIZE];
+
+		final MemResource[] contexts = new MemResource[PAGE_SIZE];
+
+		final boolean[] explicit = new boolean[PAGE_SIZE];
+
+		final int[] sinceSnapshots = new int[PAGE_SIZE];
+
+		final int[] generations = new int[PAGE_SIZE];
+
+		/**
+		 * The till-snapshots, which are written last when a row is reused. Rows that have never been used have a
+		 * till-snapshot of 0, so they are not visible in any snapshot.
+		 */
+		final AtomicIntegerArray tillSnapshots = new AtomicIntegerArray(PAGE_SIZE);
+	}
+}
@@ -20,9 +20,9 @@ public interface MemValue extends Value {
 
 	/**
 	 * A shared empty MemStatementList that is returned by MemURI and MemBNode to represent an empty list. The use of a
-	 * shared list reduces memory usage.
+	 * shared list reduces memory usage. The list is never added to, so it does not belong to a statement table.
 	 */
-	static final MemStatementList EMPTY_LIST = new MemStatementList(0);
+	static final MemStatementList EMPTY_LIST = new MemStatementList(null, 0);
 
 	/*---------*
 	 * Methods *
@@ -74,4 +74,21 @@ public interface MemValue extends Value {
 	 * @param currentSnapshot The current snapshot version.
 	 */
 	public void cleanSnapshotsFromObjectStatements(int currentSnapshot);
+
+	/**
+	 * Gets the list of statements for which this MemValue is the object and the specified IRI is the predicate, if the
+	 * statements for which this MemValue is the object have been {@link #indexObjectStatements() indexed}.
+	 * 
+	 * @return A MemStatementList containing the statements, or <tt>null</tt> if the statements are not indexed.
+	 */
+	public default MemStatementList getObjectStatementList(MemIRI predicate) {
+		return null;
+	}
+
+	/**
+	 * Groups the statements for which this MemValue is the object by predicate, unless this has already been done. The
+	 * index is maintained as statements are added and removed, until there are no such statements left.
+	 */
+	public default void indexObjectStatements() {
+	}
 }
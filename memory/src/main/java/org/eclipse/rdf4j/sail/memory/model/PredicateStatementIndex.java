@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A secondary index on one of the statement lists of a {@link MemValue}, which groups the statements by predicate. Like
+ * {@link MemStatementList}, the index can be read by multiple threads while a single thread adds statements to it.
+ */
+class PredicateStatementIndex {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final ConcurrentHashMap<MemIRI, MemStatementList> statementLists = new ConcurrentHashMap<>();
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * Creates an index on the statements in the supplied list.
+	 */
+	public PredicateStatementIndex(MemStatementList statements) {
+		for (int i = 0; i < statements.size(); i++) {
+			add(statements.get(i));
+		}
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Gets the list of indexed statements with the specified predicate.
+	 */
+	public MemStatementList get(MemIRI predicate) {
+		MemStatementList statements = statementLists.get(predicate);
+		return statements == null ? MemValue.EMPTY_LIST : statements;
+	}
+
+	public void add(MemStatement st) {
+		MemStatementList statements = statementLists.get(st.getPredicate());
+		if (statements == null) {
+			statements = new MemStatementList(st.getTable(), 1);
+			statementLists.put(st.getPredicate(), statements);
+		}
+		statements.add(st);
+	}
+
+	public void remove(MemStatement st) {
+		MemStatementList statements = statementLists.get(st.getPredicate());
+		if (statements != null) {
+			statements.remove(st);
+
+			if (statements.isEmpty()) {
+				statementLists.remove(st.getPredicate());
+			}
+		}
+	}
+
+	/**
+	 * Removes statements from old snapshots (those that have expired at or before the specified snapshot version).
+	 *
+	 * @param currentSnapshot The current snapshot version.
+	 */
+	public void cleanSnapshots(int currentSnapshot) {
+		Iterator<MemStatementList> iter = statementLists.values().iterator();
+		while (iter.hasNext()) {
+			MemStatementList statements = iter.next();
+			statements.cleanSnapshots(currentSnapshot);
+
+			if (statements.isEmpty()) {
+				iter.remove();
+			}
+		}
+	}
+}
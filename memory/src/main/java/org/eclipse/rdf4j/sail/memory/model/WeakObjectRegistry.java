@@ -7,29 +7,45 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.memory.model;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An object registry that uses weak references to keep track of the stored objects. The registry can be used to
  * retrieve stored objects using another, equivalent object. As such, it can be used to prevent the use of duplicates in
  * another data structure, reducing memory usage. The objects that are being stored should properly implement the
  * {@link Object#equals} and {@link Object#hashCode} methods.
+ * <p>
+ * The registry is safe for use by multiple threads. It is divided into segments that are selected by hash code: lookups
+ * do not lock at all and updates only lock the segment of the affected object. Iterators are weakly consistent: they
+ * never throw {@link java.util.ConcurrentModificationException} and may or may not reflect updates that are made while
+ * iterating.
  */
 public class WeakObjectRegistry<E> extends AbstractSet<E> {
 
 	/*-----------*
-	 * Variables *
+	 * Constants *
 	 *-----------*/
 
 	/**
-	 * The hash map that is used to store the objects.
+	 * The number of segments, a power of two.
 	 */
-	private final Map<E, WeakReference<E>> objectMap = new WeakHashMap<>();
+	private static final int SEGMENT_COUNT = 64;
+
+	private static final int SEGMENT_SHIFT = Integer.numberOfLeadingZeros(SEGMENT_COUNT - 1);
+
+	private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final Segment<E>[] segments;
 
 	/*--------------*
 	 * Constructors *
@@ -38,13 +54,18 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 	/**
 	 * Constructs a new, empty object registry.
 	 */
+	@SuppressWarnings("unchecked")
 	public WeakObjectRegistry() {
 		super();
+		segments = new Segment[SEGMENT_COUNT];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment<>();
+		}
 	}
 
 	/**
 	 * Constructs a new WeakObjectRegistry containing the elements in the specified collection.
-	 * 
+	 *
 	 * @param c The collection whose elements are to be placed into this object registry.
 	 * @throws NullPointerException If the specified collection is null.
 	 */
@@ -57,30 +78,62 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 	 * Methods *
 	 *---------*/
 
+	/**
+	 * Spreads the bits of a hash code, as the low bits select the bucket and the high bits select the segment.
+	 */
+	private static int hash(Object o) {
+		int h = o.hashCode();
+		return h ^ (h >>> 16) ^ (h << 16);
+	}
+
+	private Segment<E> segmentFor(int hash) {
+		return segments[hash >>> SEGMENT_SHIFT];
+	}
+
 	/**
 	 * Retrieves the stored object that is equal to the supplied <tt>key</tt> object.
-	 * 
+	 *
 	 * @param key The object that should be used as the search key for the operation.
 	 * @return A stored object that is equal to the supplied key, or <tt>null</tt> if no such object was found.
 	 */
 	public E get(Object key) {
-		WeakReference<E> weakRef = objectMap.get(key);
-
-		if (weakRef != null) {
-			return weakRef.get();
+		if (key == null) {
+			return null;
 		}
+		int hash = hash(key);
+		return segmentFor(hash).get(key, hash);
+	}
 
-		return null;
+	/**
+	 * Retrieves the stored object that is equal to the supplied object, storing the supplied object if there is no such
+	 * object yet. This is an atomic operation: concurrent calls with equal objects all return the same object.
+	 *
+	 * @param object The object to look up or store.
+	 * @return The stored object that is equal to the supplied object, or the supplied object itself if it has been
+	 *         stored by this call.
+	 */
+	public E getOrAdd(E object) {
+		int hash = hash(object);
+		Segment<E> segment = segmentFor(hash);
+		E stored = segment.get(object, hash);
+		if (stored == null) {
+			stored = segment.add(object, hash);
+		}
+		return stored;
 	}
 
 	@Override
 	public Iterator<E> iterator() {
-		return objectMap.keySet().iterator();
+		return new RegistryIterator();
 	}
 
 	@Override
 	public int size() {
-		return objectMap.size();
+		long size = 0;
+		for (Segment<E> segment : segments) {
+			size += segment.size();
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
 	}
 
 	@Override
@@ -90,28 +143,242 @@ public class WeakObjectRegistry<E> extends AbstractSet<E> {
 
 	@Override
 	public boolean add(E object) {
-		WeakReference<E> ref = new WeakReference<>(object);
-
-		ref = objectMap.put(object, ref);
-
-		if (ref != null && ref.get() != null) {
-			// A duplicate was added which replaced the existing object. Undo this
-			// operation.
-			objectMap.put(ref.get(), ref);
-			return false;
-		}
-
-		return true;
+		int hash = hash(object);
+		return segmentFor(hash).add(object, hash) == object;
 	}
 
 	@Override
 	public boolean remove(Object o) {
-		WeakReference<E> ref = objectMap.remove(o);
-		return ref != null && ref.get() != null;
+		if (o == null) {
+			return false;
+		}
+		int hash = hash(o);
+		return segmentFor(hash).remove(o, hash);
 	}
 
 	@Override
 	public void clear() {
-		objectMap.clear();
+		for (Segment<E> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * An entry in a bucket of a segment. Entries are never changed after they have been published, so buckets can be
+	 * read without locking; updates replace the part of the bucket that precedes the affected entry.
+	 */
+	private static final class Entry<E> extends WeakReference<E> {
+
+		final int hash;
+
+		final Entry<E> next;
+
+		Entry(E object, int hash, Entry<E> next, ReferenceQueue<? super E> queue) {
+			super(object, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * A hash table with weakly referenced entries for a part of the hash space. Updates lock the segment, lookups read
+	 * the current table without locking.
+	 */
+	private static final class Segment<E> {
+
+		private final ReferenceQueue<E> queue = new ReferenceQueue<>();
+
+		private volatile AtomicReferenceArray<Entry<E>> table = new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+
+		/**
+		 * The number of entries in the table, including entries of objects that have been garbage collected but that
+		 * have not been expunged yet.
+		 */
+		private volatile int count;
+
+		E get(Object key, int hash) {
+			AtomicReferenceArray<Entry<E>> tab = table;
+			for (Entry<E> e = tab.get(hash & (tab.length() - 1)); e != null; e = e.next) {
+				if (e.hash == hash) {
+					E object = e.get();
+					if (object != null && key.equals(object)) {
+						return object;
+					}
+				}
+			}
+			return null;
+		}
+
+		synchronized int size() {
+			expungeStaleEntries();
+			return count;
+		}
+
+		/**
+		 * Adds an object if there is no equal object yet.
+		 *
+		 * @return The stored object that is equal to the supplied object, or the supplied object itself if it has been
+		 *         added.
+		 */
+		synchronized E add(E object, int hash) {
+			expungeStaleEntries();
+
+			E stored = get(object, hash);
+			if (stored != null) {
+				return stored;
+			}
+
+			if (count >= table.length() * 3 / 4) {
+				resize();
+			}
+			AtomicReferenceArray<Entry<E>> tab = table;
+			int index = hash & (tab.length() - 1);
+			tab.set(index, new Entry<>(object, hash, tab.get(index), queue));
+			count++;
+			return object;
+		}
+
+		synchronized boolean remove(Object key, int hash) {
+			expungeStaleEntries();
+
+			AtomicReferenceArray<Entry<E>> tab = table;
+			int index = hash & (tab.length() - 1);
+			for (Entry<E> e = tab.get(index); e != null; e = e.next) {
+				if (e.hash == hash) {
+					E object = e.get();
+					if (object != null && key.equals(object)) {
+						removeEntry(tab, index, e);
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		synchronized void clear() {
+			table = new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+			count = 0;
+			while (queue.poll() != null) {
+				// entries of the old table no longer need to be expunged
+			}
+		}
+
+		private void expungeStaleEntries() {
+			Object ref;
+			while ((ref = queue.poll()) != null) {
+				removeStaleEntry(ref);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void removeStaleEntry(Object ref) {
+			Entry<E> stale = (Entry<E>) ref;
+			AtomicReferenceArray<Entry<E>> tab = table;
+			int index = stale.hash & (tab.length() - 1);
+			for (Entry<E> e = tab.get(index); e != null; e = e.next) {
+				if (e == stale) {
+					removeEntry(tab, index, e);
+					return;
+				}
+			}
+			// The entry has already been dropped by a resize, a removal or clear()
+		}
+
+		/**
+		 * Replaces the entries that precede the removed entry in its bucket, dropping entries of objects that have been
+		 * garbage collected along the way.
+		 */
+		private void removeEntry(AtomicReferenceArray<Entry<E>> tab, int index, Entry<E> removed) {
+			Entry<E> head = removed.next;
+			int removedCount = 1;
+			for (Entry<E> e = tab.get(index); e != removed; e = e.next) {
+				E object = e.get();
+				if (object == null) {
+					removedCount++;
+				} else {
+					head = new Entry<>(object, e.hash, head, queue);
+				}
+			}
+			tab.set(index, head);
+			count -= removedCount;
+		}
+
+		private void resize() {
+			AtomicReferenceArray<Entry<E>> oldTab = table;
+			AtomicReferenceArray<Entry<E>> newTab = new AtomicReferenceArray<>(oldTab.length() * 2);
+			int newCount = 0;
+			for (int i = 0; i < oldTab.length(); i++) {
+				for (Entry<E> e = oldTab.get(i); e != null; e = e.next) {
+					E object = e.get();
+					if (object != null) {
+						int index = e.hash & (newTab.length() - 1);
+						newTab.set(index, new Entry<>(object, e.hash, newTab.get(index), queue));
+						newCount++;
+					}
+				}
+			}
+			table = newTab;
+			count = newCount;
+		}
+	}
+
+	/**
+	 * A weakly consistent iterator over the objects in the registry, which holds on to the next object so that it can
+	 * not be garbage collected between {@link #hasNext()} and {@link #next()}.
+	 */
+	private class RegistryIterator implements Iterator<E> {
+
+		private int segmentIndex = 0;
+
+		private AtomicReferenceArray<Entry<E>> table;
+
+		private int bucketIndex = 0;
+
+		private Entry<E> entry;
+
+		private E next;
+
+		private E last;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (entry != null) {
+					next = entry.get();
+					entry = entry.next;
+				} else if (table != null && bucketIndex < table.length()) {
+					entry = table.get(bucketIndex++);
+				} else if (segmentIndex < segments.length) {
+					table = segments[segmentIndex++].table;
+					bucketIndex = 0;
+				} else {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = null;
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			WeakObjectRegistry.this.remove(last);
+			last = null;
+		}
 	}
 }
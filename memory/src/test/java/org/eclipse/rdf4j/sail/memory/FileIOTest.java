@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.base.SailDataset;
+import org.eclipse.rdf4j.sail.base.SailSink;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for class {@link FileIO}.
+ */
+public class FileIOTest {
+
+	private static final String NS = "http://example.org/";
+
+	/**
+	 * More than fit in a single statement block.
+	 */
+	private static final int STATEMENT_COUNT = 150_000;
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndLoad() throws Exception {
+		File dataFile = writeDataFile();
+
+		MemorySailStore store = new MemorySailStore(false);
+		readDataFile(dataFile, store, store);
+		assertContents(store);
+	}
+
+	@Test
+	public void testWriteAndReadThroughSinks() throws Exception {
+		File dataFile = writeDataFile();
+
+		MemorySailStore store = new MemorySailStore(false);
+		readDataFile(dataFile, store, null);
+		assertContents(store);
+	}
+
+	private File writeDataFile() throws Exception {
+		MemorySailStore store = new MemorySailStore(false);
+		ValueFactory vf = store.getValueFactory();
+		SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+		SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+		try {
+			explicit.setNamespace("ex", NS);
+			for (int i = 0; i < STATEMENT_COUNT; i++) {
+				IRI resource = vf.createIRI(NS, "resource" + i);
+				if (i % 3 == 0) {
+					explicit.approve(resource, RDFS.LABEL, vf.createLiteral("label " + i, "en"),
+							vf.createIRI(NS, "context" + (i % 7)));
+				} else {
+					explicit.approve(resource, RDF.VALUE, vf.createLiteral(i), null);
+				}
+			}
+			inferred.approve(vf.createIRI(NS, "resource0"), RDF.TYPE, RDFS.RESOURCE, null);
+		} finally {
+			explicit.flush();
+			explicit.close();
+			inferred.flush();
+			inferred.close();
+		}
+
+		File dataFile = new File(tempDir.getRoot(), MemoryStore.DATA_FILE_NAME);
+		File syncFile = new File(tempDir.getRoot(), MemoryStore.SYNC_FILE_NAME);
+		SailDataset explicitData = store.getExplicitSailSource().dataset(IsolationLevels.SNAPSHOT);
+		SailDataset inferredData = store.getInferredSailSource().dataset(IsolationLevels.SNAPSHOT);
+		try {
+			new FileIO(vf).write(explicitData, inferredData, syncFile, dataFile);
+		} finally {
+			explicitData.close();
+			inferredData.close();
+		}
+		store.close();
+		return dataFile;
+	}
+
+	private void readDataFile(File dataFile, MemorySailStore store, MemorySailStore loadedStore) throws Exception {
+		SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+		SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+		try {
+			new FileIO(store.getValueFactory()).read(dataFile, explicit, inferred, loadedStore);
+		} finally {
+			explicit.flush();
+			explicit.close();
+			inferred.flush();
+			inferred.close();
+		}
+	}
+
+	private void assertContents(MemorySailStore store) throws Exception {
+		ValueFactory vf = store.getValueFactory();
+		SailDataset explicit = store.getExplicitSailSource().dataset(IsolationLevels.SNAPSHOT);
+		SailDataset inferred = store.getInferredSailSource().dataset(IsolationLevels.SNAPSHOT);
+		try {
+			assertEquals(NS, explicit.getNamespace("ex"));
+
+			Set<Statement> statements = new HashSet<>(Iterations.asList(explicit.getStatements(null, null, null)));
+			assertEquals(STATEMENT_COUNT, statements.size());
+			assertTrue(statements.contains(vf.createStatement(vf.createIRI(NS, "resource3"), RDFS.LABEL,
+					vf.createLiteral("label 3", "en"), vf.createIRI(NS, "context3"))));
+			assertTrue(statements.contains(
+					vf.createStatement(vf.createIRI(NS, "resource4"), RDF.VALUE, vf.createLiteral(4))));
+
+			// resources 3, 24, 45, ...
+			IRI context3 = vf.createIRI(NS, "context3");
+			assertEquals(7143, Iterations.asList(explicit.getStatements(null, null, null, context3)).size());
+			assertEquals(1, Iterations.asList(inferred.getStatements(null, null, null)).size());
+		} finally {
+			explicit.close();
+			inferred.close();
+		}
+	}
+}
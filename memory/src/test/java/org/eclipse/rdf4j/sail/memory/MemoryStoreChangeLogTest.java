@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.base.SailSink;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that a persistent {@link MemoryStore} restores the changes from its change log.
+ */
+public class MemoryStoreChangeLogTest {
+
+	private static final String NS = "http://example.org/";
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI painter = vf.createIRI(NS, "Painter");
+
+	private final IRI picasso = vf.createIRI(NS, "picasso");
+
+	private final IRI rembrandt = vf.createIRI(NS, "rembrandt");
+
+	private final IRI context = vf.createIRI(NS, "context");
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = tempDir.newFolder();
+	}
+
+	@Test
+	public void testReplayChanges() throws Exception {
+		MemoryStore sail = createSail();
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(picasso, RDF.TYPE, painter);
+			con.addStatement(rembrandt, RDF.TYPE, painter, context);
+			con.setNamespace("ex", NS);
+			con.commit();
+
+			con.begin();
+			con.removeStatements(picasso, RDF.TYPE, painter);
+			con.commit();
+
+			con.begin();
+			con.addStatement(picasso, RDF.TYPE, painter, context);
+			con.removeNamespace("ex");
+			con.setNamespace("rdf", RDF.NAMESPACE);
+			con.commit();
+		}
+		sail.shutDown();
+
+		File changeLogFile = new File(dataDir, MemoryStore.CHANGE_LOG_FILE_NAME);
+		assertTrue(changeLogFile.length() > 0L);
+
+		sail = createSail();
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(2, count(con));
+			assertTrue(con.hasStatement(picasso, RDF.TYPE, painter, false, context));
+			assertTrue(con.hasStatement(rembrandt, RDF.TYPE, painter, false, context));
+			assertFalse(con.hasStatement(picasso, RDF.TYPE, painter, false, (IRI) null));
+			assertNull(con.getNamespace("ex"));
+			assertEquals(RDF.NAMESPACE, con.getNamespace("rdf"));
+		} finally {
+			sail.shutDown();
+		}
+	}
+
+	@Test
+	public void testIncompleteChangeIsIgnored() throws Exception {
+		MemoryStore sail = createSail();
+		try (SailConnection con = sail.getConnection()) {
+			con.begin();
+			con.addStatement(picasso, RDF.TYPE, painter);
+			con.commit();
+		}
+		sail.shutDown();
+
+		// simulate a commit that was interrupted while its entry was being written
+		File changeLogFile = new File(dataDir, MemoryStore.CHANGE_LOG_FILE_NAME);
+		long length = changeLogFile.length();
+		try (OutputStream out = new FileOutputStream(changeLogFile, true)) {
+			out.write(new byte[] { 0, 0, 1, 0, 0, 0, 0, 2, 1, 2, 3 });
+		}
+
+		sail = createSail();
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(1, count(con));
+			assertEquals(length, changeLogFile.length());
+
+			con.begin();
+			con.addStatement(rembrandt, RDF.TYPE, painter);
+			con.commit();
+		} finally {
+			sail.shutDown();
+		}
+
+		sail = createSail();
+		try (SailConnection con = sail.getConnection()) {
+			assertEquals(2, count(con));
+		} finally {
+			sail.shutDown();
+		}
+	}
+
+	@Test
+	public void testCommitIsLoggedAsSingleEntry() throws Exception {
+		MemoryStore sail = createSail();
+		try (InferencerConnection con = (InferencerConnection) sail.getConnection()) {
+			con.begin();
+			con.addStatement(picasso, RDF.TYPE, painter);
+			con.addInferredStatement(rembrandt, RDF.TYPE, painter);
+			con.commit();
+		} finally {
+			sail.shutDown();
+		}
+
+		assertEquals(1, countEntries(new File(dataDir, MemoryStore.CHANGE_LOG_FILE_NAME)));
+	}
+
+	@Test
+	public void testChangesOfEarlierSessionsAreRemoved() throws Exception {
+		File file = new File(dataDir, "test.log");
+		ChangeLog log = new ChangeLog(file, vf);
+		log.open();
+		log.append(createChange(log, picasso), 1);
+		log.append(createChange(log, rembrandt), 2);
+		log.close();
+
+		// snapshots start at 1 again in the next session
+		log = new ChangeLog(file, vf);
+		log.open();
+		log.append(createChange(log, picasso), 1);
+		// a data file written before the first commit of this session contains the changes of earlier sessions
+		log.removeChangesUpTo(0);
+		log.close();
+		assertEquals(1, countEntries(file));
+
+		log = new ChangeLog(file, vf);
+		log.open();
+		log.removeChangesUpTo(0);
+		log.close();
+		assertEquals(0, countEntries(file));
+	}
+
+	private ChangeLog.Change createChange(ChangeLog log, Resource subject) {
+		ChangeLog.Change change = log.createChange();
+		change.statementAdded(vf.createStatement(subject, RDF.TYPE, painter), true);
+		return change;
+	}
+
+	private int countEntries(File file) throws Exception {
+		MemorySailStore store = new MemorySailStore(false);
+		try {
+			SailSink explicit = store.getExplicitSailSource().sink(IsolationLevels.NONE);
+			SailSink inferred = store.getInferredSailSource().sink(IsolationLevels.NONE);
+			try {
+				return new ChangeLog(file, store.getValueFactory()).replay(explicit, inferred);
+			} finally {
+				explicit.close();
+				inferred.close();
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	private MemoryStore createSail() {
+		MemoryStore sail = new MemoryStore(dataDir);
+		sail.init();
+		return sail;
+	}
+
+	private int count(SailConnection con) {
+		return Iterations.asList(con.getStatements(null, null, null, false)).size();
+	}
+}
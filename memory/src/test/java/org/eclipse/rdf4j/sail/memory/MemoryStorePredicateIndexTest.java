@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+/**
+ * Runs the {@link MemoryStoreTest}s against a MemoryStore that indexes the statements of subjects and objects by
+ * predicate.
+ */
+public class MemoryStorePredicateIndexTest extends MemoryStoreTest {
+
+	private static final String NS = "http://example.org/";
+
+	@Override
+	protected NotifyingSail createSail() throws SailException {
+		MemoryStore sail = new MemoryStore();
+		sail.setSubjectPredicateIndex(true);
+		sail.setObjectPredicateIndex(true);
+		return sail;
+	}
+
+	@Test
+	public void testIndexedLookups() throws Exception {
+		con.begin();
+		for (int i = 0; i < 100; i++) {
+			IRI resource = vf.createIRI(NS, "resource" + i);
+			con.addStatement(picasso, vf.createIRI(NS, "p" + (i % 10)), resource);
+			con.addStatement(resource, RDF.TYPE, painting);
+			if (i % 2 == 0) {
+				con.addStatement(resource, RDF.TYPE, painter, context1);
+			}
+		}
+		con.commit();
+
+		IRI p3 = vf.createIRI(NS, "p3");
+		assertEquals(10, count(picasso, p3, null));
+		assertEquals(1, count(picasso, p3, vf.createIRI(NS, "resource13")));
+		assertEquals(0, count(picasso, RDF.TYPE, null));
+		assertEquals(100, count(null, RDF.TYPE, painting));
+		assertEquals(50, count(null, RDF.TYPE, painter, context1));
+		assertEquals(0, count(null, p3, painting));
+
+		con.begin();
+		con.removeStatements(picasso, p3, null);
+		con.removeStatements(vf.createIRI(NS, "resource0"), RDF.TYPE, painting);
+		con.commit();
+
+		assertEquals(0, count(picasso, p3, null));
+		assertEquals(10, count(picasso, vf.createIRI(NS, "p4"), null));
+		assertEquals(99, count(null, RDF.TYPE, painting));
+
+		con.begin();
+		con.addStatement(picasso, p3, guernica);
+		con.commit();
+
+		assertEquals(1, count(picasso, p3, null));
+	}
+
+	private int count(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		return Iterations.asList(con.getStatements(subj, pred, obj, false, contexts)).size();
+	}
+}
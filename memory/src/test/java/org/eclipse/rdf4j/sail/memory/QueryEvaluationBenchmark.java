@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.evaluation.batch.BatchEvaluationStrategyFactory;
+import org.eclipse.rdf4j.query.algebra.evaluation.impl.StrictEvaluationStrategyFactory;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.parser.ParsedQuery;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the evaluation of filters, extensions and hash joins by the strict, tuple-at-a-time evaluation strategy
+ * with the batch evaluation strategy, on a generated social network.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@BenchmarkMode({ Mode.AverageTime })
+@Fork(value = 1, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class QueryEvaluationBenchmark {
+
+	private static final int PERSON_COUNT = 200_000;
+
+	private static final String NS = "http://example.org/";
+
+	private static final String PREFIX = "PREFIX foaf: <" + FOAF.NAMESPACE + ">\nPREFIX ex: <" + NS + ">\n";
+
+	@Param({ "strict", "batch" })
+	public String strategy;
+
+	private MemoryStore memoryStore;
+
+	private ParsedQuery filterQuery;
+
+	private ParsedQuery extensionQuery;
+
+	private ParsedQuery subqueryJoinQuery;
+
+	@Setup
+	public void setUp() {
+		memoryStore = new MemoryStore();
+		if ("batch".equals(strategy)) {
+			memoryStore.setEvaluationStrategyFactory(new BatchEvaluationStrategyFactory());
+		} else {
+			memoryStore.setEvaluationStrategyFactory(new StrictEvaluationStrategyFactory());
+		}
+		memoryStore.initialize();
+
+		ValueFactory vf = memoryStore.getValueFactory();
+		IRI age = vf.createIRI(NS, "age");
+		try (NotifyingSailConnection connection = memoryStore.getConnection()) {
+			connection.begin();
+			for (int i = 0; i < PERSON_COUNT; i++) {
+				IRI person = vf.createIRI(NS, "person" + i);
+				connection.addStatement(person, RDF.TYPE, FOAF.PERSON);
+				connection.addStatement(person, FOAF.NAME, vf.createLiteral("Person " + i));
+				connection.addStatement(person, age, vf.createLiteral(i % 90));
+				connection.addStatement(person, FOAF.KNOWS, vf.createIRI(NS, "person" + (i * 31 + 7) % PERSON_COUNT));
+			}
+			connection.commit();
+		}
+
+		filterQuery = parse("SELECT ?p ?name WHERE { ?p foaf:name ?name ; ex:age ?age "
+				+ "FILTER (?age >= 18 && ?age < 65 && strlen(?name) > 10) }");
+		extensionQuery = parse("SELECT ?p ?decade WHERE { ?p ex:age ?age "
+				+ "BIND (floor(?age / 10) AS ?decade) BIND (concat(str(?decade), \"0s\") AS ?label) }");
+		subqueryJoinQuery = parse("SELECT ?p ?name ?age WHERE { ?p foaf:name ?name . "
+				+ "{ SELECT ?p ?age WHERE { ?p ex:age ?age FILTER (?age > 80) } } }");
+	}
+
+	@TearDown
+	public void tearDown() {
+		memoryStore.shutDown();
+	}
+
+	@Benchmark
+	public long filter() {
+		return count(filterQuery);
+	}
+
+	@Benchmark
+	public long extension() {
+		return count(extensionQuery);
+	}
+
+	@Benchmark
+	public long subqueryJoin() {
+		return count(subqueryJoinQuery);
+	}
+
+	private static ParsedQuery parse(String query) {
+		return QueryParserUtil.parseQuery(QueryLanguage.SPARQL, PREFIX + query, null);
+	}
+
+	private long count(ParsedQuery query) {
+		long count = 0;
+		try (NotifyingSailConnection connection = memoryStore.getConnection()) {
+			try (CloseableIteration<? extends BindingSet, QueryEvaluationException> result = connection
+					.evaluate(query.getTupleExpr(), query.getDataset(), EmptyBindingSet.getInstance(), false)) {
+				while (result.hasNext()) {
+					result.next();
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for class {@link MemStatementList}.
+ */
+public class MemStatementListTest {
+
+	private final MemIRI subject = new MemIRI(this, "http://example.org/", "subject");
+
+	private final MemIRI predicate = new MemIRI(this, "http://example.org/", "predicate");
+
+	private final MemStatementTable table = new MemStatementTable();
+
+	@Test
+	public void testCleanSnapshotsKeepsOrder() {
+		MemStatementList list = new MemStatementList(table);
+		MemStatement[] statements = new MemStatement[10];
+		for (int i = 0; i < statements.length; i++) {
+			statements[i] = createStatement(i);
+			list.add(statements[i]);
+			if (i % 3 == 0) {
+				statements[i].setTillSnapshot(2);
+			}
+		}
+
+		list.cleanSnapshots(1);
+		assertEquals(10, list.size());
+
+		list.cleanSnapshots(2);
+		assertEquals(6, list.size());
+		int index = 0;
+		for (int i = 0; i < statements.length; i++) {
+			if (i % 3 != 0) {
+				assertEquals(statements[i], list.get(index++));
+			}
+		}
+	}
+
+	@Test
+	public void testAddGrowsSingleStatementList() {
+		MemStatementList list = new MemStatementList(table, 1);
+		for (int i = 0; i < 100; i++) {
+			list.add(createStatement(i));
+			assertEquals(i + 1, list.size());
+		}
+		assertEquals("object99", ((MemIRI) list.get(99).getObject()).getLocalName());
+		assertEquals(100, countStatements(list.getRowArray()));
+	}
+
+	@Test
+	public void testRemovalDoesNotChangeObtainedArray() {
+		MemStatementList list = new MemStatementList(table);
+		for (int i = 0; i < 4; i++) {
+			list.add(createStatement(i));
+		}
+		MemStatement first = list.get(0);
+
+		int[] array = list.getRowArray();
+		list.remove(first);
+		first.setTillSnapshot(1);
+		list.cleanSnapshots(1);
+
+		assertEquals(3, list.size());
+		assertEquals(first.getRow(), array[0]);
+		assertEquals(4, countStatements(array));
+		assertEquals(3, countStatements(list.getRowArray()));
+
+		list.clear();
+		assertEquals(0, countStatements(list.getRowArray()));
+	}
+
+	@Test
+	public void testRemovalsAreAppliedTogether() {
+		MemStatementList list = new MemStatementList(table);
+		MemStatement[] statements = new MemStatement[10];
+		for (int i = 0; i < statements.length; i++) {
+			statements[i] = createStatement(i);
+			list.add(statements[i]);
+		}
+
+		int[] array = list.getRowArray();
+		for (int i = 0; i < statements.length; i += 2) {
+			list.remove(statements[i]);
+		}
+		// removing a statement twice has no effect
+		list.remove(statements[0]);
+
+		assertEquals(5, list.size());
+		int[] compacted = list.getRowArray();
+		assertEquals(10, countStatements(array));
+		assertEquals(5, countStatements(compacted));
+		for (int i = 0; i < 5; i++) {
+			assertEquals(statements[2 * i + 1].getRow(), compacted[i]);
+			assertEquals(statements[2 * i + 1], list.get(i));
+		}
+	}
+
+	@Test
+	public void testClearDoesNotChangeObtainedArray() {
+		MemStatementList list = new MemStatementList(table);
+		for (int i = 0; i < 4; i++) {
+			list.add(createStatement(i));
+		}
+
+		int[] array = list.getRowArray();
+		list.clear();
+
+		assertEquals(0, list.size());
+		assertEquals(4, countStatements(array));
+		assertEquals(0, countStatements(list.getRowArray()));
+	}
+
+	private MemStatement createStatement(int i) {
+		MemIRI object = new MemIRI(this, "http://example.org/", "object" + i);
+		return table.add(subject, predicate, object, null, true, 1);
+	}
+
+	private int countStatements(int[] array) {
+		int count = 0;
+		while (count < array.length && array[count] >= 0) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for class {@link MemStatementTable}.
+ */
+public class MemStatementTableTest {
+
+	private final MemIRI subject = new MemIRI(this, "http://example.org/", "subject");
+
+	private final MemIRI predicate = new MemIRI(this, "http://example.org/", "predicate");
+
+	private final MemStatementTable table = new MemStatementTable();
+
+	@Test
+	public void testStatementsSpanPages() {
+		for (int i = 0; i < 10000; i++) {
+			MemStatement st = createStatement(i, 1);
+			assertEquals(i, st.getRow());
+		}
+		assertEquals(10000, table.size());
+
+		MemStatement st = table.get(9999);
+		assertEquals("object9999", ((MemIRI) st.getObject()).getLocalName());
+		assertTrue(st.isInSnapshot(1));
+		assertFalse(st.isInSnapshot(0));
+		assertEquals(10000, count(-1));
+	}
+
+	@Test
+	public void testFreedRowIsReused() {
+		MemStatement first = createStatement(0, 1);
+		createStatement(1, 1);
+		first.setTillSnapshot(2);
+
+		assertTrue(table.free(first));
+		assertFalse(table.free(first));
+		assertEquals(1, table.size());
+		assertEquals(1, count(-1));
+		assertEquals(1, count(1));
+
+		MemStatement reused = createStatement(2, 3);
+		assertEquals(first.getRow(), reused.getRow());
+		assertEquals(2, table.size());
+		assertFalse(reused.isInSnapshot(2));
+		assertTrue(reused.isInSnapshot(3));
+		assertEquals(Integer.MAX_VALUE, reused.getTillSnapshot());
+		assertEquals(1, count(2));
+		assertEquals(2, count(3));
+	}
+
+	@Test
+	public void testClear() {
+		MemStatement st = createStatement(0, 1);
+		st.setTillSnapshot(2);
+		table.clear();
+
+		assertEquals(0, table.size());
+		assertEquals(0, count(-1));
+		assertFalse(table.free(st));
+		assertFalse(st.isInSnapshot(1));
+		assertEquals(0, st.getTillSnapshot());
+		assertTrue(st.isExplicit());
+	}
+
+	@Test
+	public void testStaleViewAfterReuse() {
+		MemStatement first = table.add(subject, predicate, subject, null, false, 1);
+		first.setTillSnapshot(2);
+		assertTrue(table.free(first));
+
+		MemStatement reused = createStatement(1, 3);
+		assertEquals(first.getRow(), reused.getRow());
+		assertFalse(first.isExplicit());
+		assertFalse(first.isInSnapshot(1));
+		assertFalse(first.isInSnapshot(3));
+		assertEquals(0, first.getTillSnapshot());
+
+		first.setTillSnapshot(4);
+		first.setSinceSnapshot(4);
+		assertFalse(table.free(first));
+		assertEquals(3, reused.getSinceSnapshot());
+		assertEquals(Integer.MAX_VALUE, reused.getTillSnapshot());
+		assertTrue(table.get(reused.getRow()).isExplicit());
+	}
+
+	@Test
+	public void testClearWhileIterating() {
+		createStatement(0, 1);
+		createStatement(1, 1);
+		try (MemStatementIterator<RuntimeException> iter = new MemStatementIterator<>(table, null, null, null, null,
+				1)) {
+			assertTrue(iter.hasNext());
+			iter.next();
+			table.clear();
+			assertFalse(iter.hasNext());
+		}
+	}
+
+	private MemStatement createStatement(int i, int snapshot) {
+		MemIRI object = new MemIRI(this, "http://example.org/", "object" + i);
+		return table.add(subject, predicate, object, null, true, snapshot);
+	}
+
+	private int count(int snapshot) {
+		int count = 0;
+		try (MemStatementIterator<RuntimeException> iter = new MemStatementIterator<>(table, null, null, null, null,
+				snapshot)) {
+			while (iter.hasNext()) {
+				iter.next();
+				count++;
+			}
+		}
+		return count;
+	}
+}
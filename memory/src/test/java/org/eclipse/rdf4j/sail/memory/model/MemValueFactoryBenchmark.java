@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of looking up and creating values in a {@link MemValueFactory} that is shared by all
+ * benchmark threads. Run {@link #main(String[])} to measure how the throughput scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@BenchmarkMode({ Mode.Throughput })
+@Fork(value = 1, jvmArgs = { "-Xms4G", "-Xmx4G" })
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemValueFactoryBenchmark {
+
+	private static final int VALUE_COUNT = 100_000;
+
+	private MemValueFactory valueFactory;
+
+	/**
+	 * Values that are not created by the factory, to look up their shared equivalents.
+	 */
+	private final List<Value> values = new ArrayList<>(VALUE_COUNT);
+
+	/**
+	 * Strong references to the shared values, so that they are not garbage collected.
+	 */
+	private final List<Value> sharedValues = new ArrayList<>(VALUE_COUNT);
+
+	private final AtomicLong newValueCounter = new AtomicLong();
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		SimpleValueFactory vf = SimpleValueFactory.getInstance();
+		valueFactory = new MemValueFactory();
+		values.clear();
+		sharedValues.clear();
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			Value value = i % 2 == 0 ? vf.createIRI("http://example.org/ns" + (i % 100) + "#resource" + i)
+					: vf.createLiteral("literal " + i);
+			values.add(value);
+			sharedValues.add(valueFactory.getOrCreateMemValue(value));
+		}
+		System.gc();
+	}
+
+	@Benchmark
+	public MemValue getMemValue() {
+		return valueFactory.getMemValue(values.get(ThreadLocalRandom.current().nextInt(VALUE_COUNT)));
+	}
+
+	@Benchmark
+	public MemValue getOrCreateExistingMemValue() {
+		return valueFactory.getOrCreateMemValue(values.get(ThreadLocalRandom.current().nextInt(VALUE_COUNT)));
+	}
+
+	@Benchmark
+	public IRI createNewIRI() {
+		return valueFactory.createIRI("http://example.org/new#resource" + newValueCounter.incrementAndGet());
+	}
+
+	@Benchmark
+	public Literal createNewLiteral() {
+		return valueFactory.createLiteral(newValueCounter.incrementAndGet());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			new Runner(new OptionsBuilder().include(MemValueFactoryBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build()).run();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.memory.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for class {@link WeakObjectRegistry}.
+ */
+public class WeakObjectRegistryTest {
+
+	@Test
+	public void testAddGetRemove() {
+		WeakObjectRegistry<String> registry = new WeakObjectRegistry<>();
+		String a = new String("a");
+		String b = new String("b");
+
+		assertTrue(registry.add(a));
+		assertFalse(registry.add(new String("a")));
+		assertTrue(registry.add(b));
+		assertEquals(2, registry.size());
+
+		assertSame(a, registry.get("a"));
+		assertSame(a, registry.getOrAdd(new String("a")));
+		assertNull(registry.get("c"));
+
+		assertTrue(registry.remove("a"));
+		assertFalse(registry.remove("a"));
+		assertNull(registry.get("a"));
+		assertEquals(1, registry.size());
+
+		registry.clear();
+		assertTrue(registry.isEmpty());
+		assertNull(registry.get("b"));
+	}
+
+	@Test
+	public void testIterator() {
+		List<String> objects = new ArrayList<>();
+		WeakObjectRegistry<String> registry = new WeakObjectRegistry<>();
+		for (int i = 0; i < 10_000; i++) {
+			objects.add(String.valueOf(i));
+			registry.add(objects.get(i));
+		}
+		assertEquals(10_000, registry.size());
+		assertEquals(new HashSet<>(objects), new HashSet<>(registry));
+
+		// removal while iterating
+		for (Iterator<String> iter = registry.iterator(); iter.hasNext();) {
+			if (Integer.parseInt(iter.next()) % 2 == 0) {
+				iter.remove();
+			}
+		}
+		assertEquals(5_000, registry.size());
+		assertFalse(registry.contains("0"));
+		assertTrue(registry.contains("1"));
+	}
+
+	@Test
+	public void testConcurrentGetOrAdd() throws Exception {
+		int threadCount = 8;
+		int objectCount = 20_000;
+		WeakObjectRegistry<String> registry = new WeakObjectRegistry<>();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int t = 0; t < threadCount; t++) {
+				futures.add(executor.submit((Callable<List<String>>) () -> {
+					start.await();
+					List<String> stored = new ArrayList<>(objectCount);
+					for (int i = 0; i < objectCount; i++) {
+						stored.add(registry.getOrAdd(new String("object" + i)));
+					}
+					return stored;
+				}));
+			}
+			start.countDown();
+
+			List<String> first = futures.get(0).get();
+			for (Future<List<String>> future : futures) {
+				List<String> stored = future.get();
+				for (int i = 0; i < objectCount; i++) {
+					// all threads must have received the same instance
+					assertSame(first.get(i), stored.get(i));
+				}
+			}
+			assertEquals(objectCount, registry.size());
+
+			Set<String> distinct = new HashSet<>(registry);
+			assertEquals(objectCount, distinct.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
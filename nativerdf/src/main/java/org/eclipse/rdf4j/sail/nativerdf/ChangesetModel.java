@@ -0,0 +1,521 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.OpenRDFUtil;
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.AbstractModel;
+import org.eclipse.rdf4j.model.impl.FilteredModel;
+import org.eclipse.rdf4j.model.impl.SimpleNamespace;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.util.ModelException;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * Model implementation for the uncommitted changes of a transaction. Values are assigned local IDs and statements are
+ * stored as records of four IDs in a {@link SpillingRecordSet}, which keeps them in off-heap memory up to a fixed
+ * number of bytes and spills sorted runs to disk beyond that. Statements are kept in subject, predicate, object,
+ * context order, so patterns with a bound subject are answered by a range scan; other patterns scan all statements.
+ * <p>
+ * The model is {@link #close() closed} by the changeset that owns it, once the changeset has been discarded and is no
+ * longer read.
+ */
+class ChangesetModel extends AbstractModel implements AutoCloseable {
+
+	private static final long serialVersionUID = -3585437263213040178L;
+
+	private static final ValueFactory VF = SimpleValueFactory.getInstance();
+
+	/**
+	 * The ID of the default context.
+	 */
+	private static final int NULL_CONTEXT_ID = 0;
+
+	private static final int SUBJ_IDX = 0;
+
+	private static final int PRED_IDX = 4;
+
+	private static final int OBJ_IDX = 8;
+
+	private static final int CONTEXT_IDX = 12;
+
+	private static final int RECORD_LENGTH = 16;
+
+	private final File tmpDir;
+
+	private final long memoryBudget;
+
+	private final Set<Namespace> namespaces = new LinkedHashSet<>();
+
+	/**
+	 * The values by ID, the value with ID <tt>n</tt> is stored at index <tt>n - 1</tt>.
+	 */
+	private transient List<Value> values;
+
+	private transient Map<Value, Integer> valueIDs;
+
+	private transient SpillingRecordSet statements;
+
+	/**
+	 * @param tmpDir       The directory to spill statements to, <tt>null</tt> for the default temporary directory.
+	 * @param memoryBudget The maximum number of bytes of off-heap memory for the statements.
+	 */
+	public ChangesetModel(File tmpDir, long memoryBudget) {
+		this.tmpDir = tmpDir;
+		this.memoryBudget = memoryBudget;
+		init();
+	}
+
+	private void init() {
+		values = new ArrayList<>();
+		valueIDs = new HashMap<>();
+		statements = new SpillingRecordSet(tmpDir, RECORD_LENGTH, memoryBudget);
+	}
+
+	@Override
+	public synchronized Set<Namespace> getNamespaces() {
+		return namespaces;
+	}
+
+	@Override
+	public synchronized Optional<Namespace> getNamespace(String prefix) {
+		for (Namespace namespace : namespaces) {
+			if (namespace.getPrefix().equals(prefix)) {
+				return Optional.of(namespace);
+			}
+		}
+		return Optional.empty();
+	}
+
+	@Override
+	public synchronized Namespace setNamespace(String prefix, String name) {
+		Namespace namespace = new SimpleNamespace(prefix, name);
+		setNamespace(namespace);
+		return namespace;
+	}
+
+	@Override
+	public synchronized void setNamespace(Namespace namespace) {
+		removeNamespace(namespace.getPrefix());
+		namespaces.add(namespace);
+	}
+
+	@Override
+	public synchronized Optional<Namespace> removeNamespace(String prefix) {
+		Optional<Namespace> namespace = getNamespace(prefix);
+		namespace.ifPresent(namespaces::remove);
+		return namespace;
+	}
+
+	@Override
+	public int size() {
+		long size = statements.size();
+		return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return statements.size() == 0L;
+	}
+
+	@Override
+	public synchronized boolean add(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		if (subj == null || pred == null || obj == null) {
+			throw new UnsupportedOperationException("Incomplete statement");
+		}
+		OpenRDFUtil.verifyContextNotNull(contexts);
+		if (contexts.length == 0) {
+			contexts = new Resource[] { null };
+		}
+
+		try {
+			boolean changed = false;
+			for (Resource context : contexts) {
+				changed |= statements.add(getRecord(storeValue(subj), storeValue(pred), storeValue(obj),
+						context == null ? NULL_CONTEXT_ID : storeValue(context)));
+			}
+			return changed;
+		} catch (IOException e) {
+			throw new ModelException(e);
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		OpenRDFUtil.verifyContextNotNull(contexts);
+		try {
+			if (subj != null && pred != null && obj != null && contexts.length > 0) {
+				// Look up the statements directly
+				for (Resource context : contexts) {
+					byte[] record = getRecord(subj, pred, obj, context);
+					if (record != null && statements.contains(record)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			RecordIterator iter = getRecords(subj, pred, obj, contexts);
+			try {
+				return iter.next() != null;
+			} finally {
+				iter.close();
+			}
+		} catch (IOException e) {
+			throw new ModelException(e);
+		}
+	}
+
+	@Override
+	public synchronized boolean remove(Resource subj, IRI pred, Value obj, Resource... contexts) {
+		OpenRDFUtil.verifyContextNotNull(contexts);
+		try {
+			if (subj == null && pred == null && obj == null && contexts.length == 0) {
+				boolean changed = !isEmpty();
+				clear();
+				return changed;
+			}
+
+			if (subj != null && pred != null && obj != null && contexts.length > 0) {
+				boolean changed = false;
+				for (Resource context : contexts) {
+					byte[] record = getRecord(subj, pred, obj, context);
+					if (record != null) {
+						changed |= statements.remove(record);
+					}
+				}
+				return changed;
+			}
+
+			// Iterators operate on a snapshot, the matching statements can be removed while iterating
+			boolean changed = false;
+			RecordIterator iter = getRecords(subj, pred, obj, contexts);
+			try {
+				byte[] record;
+				while ((record = iter.next()) != null) {
+					changed |= statements.remove(record);
+				}
+			} finally {
+				iter.close();
+			}
+			return changed;
+		} catch (IOException e) {
+			throw new ModelException(e);
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		try {
+			statements.clear();
+		} catch (IOException e) {
+			throw new ModelException(e);
+		}
+	}
+
+	/**
+	 * Frees the off-heap memory and deletes the temporary files of the statements. The model can no longer be used
+	 * afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		try {
+			statements.close();
+		} catch (IOException e) {
+			throw new ModelException(e);
+		}
+	}
+
+	@Override
+	public Iterator<Statement> iterator() {
+		return new StatementIterator(null, null, null);
+	}
+
+	@Override
+	public Model filter(final Resource subj, final IRI pred, final Value obj, final Resource... contexts) {
+		return new FilteredModel(this, subj, pred, obj, contexts) {
+
+			private static final long serialVersionUID = 7950863384373416405L;
+
+			@Override
+			public int size() {
+				int size = 0;
+				Iterator<Statement> iter = iterator();
+				while (iter.hasNext()) {
+					iter.next();
+					size++;
+				}
+				return size;
+			}
+
+			@Override
+			public boolean isEmpty() {
+				return !ChangesetModel.this.contains(subj, pred, obj, contexts);
+			}
+
+			@Override
+			public Iterator<Statement> iterator() {
+				return new StatementIterator(subj, pred, obj, contexts);
+			}
+
+			@Override
+			protected void removeFilteredTermIteration(Iterator<Statement> iter, Resource subj, IRI pred, Value obj,
+					Resource... contexts) {
+				ChangesetModel.this.removeTermIteration(iter, subj, pred, obj, contexts);
+			}
+		};
+	}
+
+	@Override
+	public void removeTermIteration(Iterator<Statement> iter, Resource subj, IRI pred, Value obj,
+			Resource... contexts) {
+		// The iterators operate on snapshots and are not affected by the removal
+		remove(subj, pred, obj, contexts);
+	}
+
+	private int storeValue(Value value) {
+		Integer id = valueIDs.get(value);
+		if (id == null) {
+			values.add(value);
+			id = values.size();
+			valueIDs.put(value, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the ID of a value, or <tt>-1</tt> if the model doesn't contain the value.
+	 */
+	private int getID(Value value) {
+		Integer id = valueIDs.get(value);
+		return id == null ? -1 : id;
+	}
+
+	private Value getValue(int id) {
+		return values.get(id - 1);
+	}
+
+	private static byte[] getRecord(int subj, int pred, int obj, int context) {
+		byte[] record = new byte[RECORD_LENGTH];
+		ByteArrayUtil.putInt(subj, record, SUBJ_IDX);
+		ByteArrayUtil.putInt(pred, record, PRED_IDX);
+		ByteArrayUtil.putInt(obj, record, OBJ_IDX);
+		ByteArrayUtil.putInt(context, record, CONTEXT_IDX);
+		return record;
+	}
+
+	/**
+	 * Gets the record for a statement, or <tt>null</tt> if the model doesn't contain one of its values.
+	 */
+	private byte[] getRecord(Resource subj, IRI pred, Value obj, Resource context) {
+		int subjID = getID(subj);
+		int predID = getID(pred);
+		int objID = getID(obj);
+		int contextID = context == null ? NULL_CONTEXT_ID : getID(context);
+		if (subjID < 0 || predID < 0 || objID < 0 || contextID < 0) {
+			return null;
+		}
+		return getRecord(subjID, predID, objID, contextID);
+	}
+
+	/**
+	 * Gets the records that match the specified pattern, from a snapshot of the model.
+	 */
+	private synchronized RecordIterator getRecords(Resource subj, IRI pred, Value obj, Resource... contexts)
+			throws IOException {
+		int subjID = subj == null ? 0 : getID(subj);
+		int predID = pred == null ? 0 : getID(pred);
+		int objID = obj == null ? 0 : getID(obj);
+		if (subjID < 0 || predID < 0 || objID < 0) {
+			return new EmptyRecordIterator();
+		}
+
+		Set<Integer> contextIDs = null;
+		if (contexts.length > 0) {
+			contextIDs = new LinkedHashSet<>();
+			for (Resource context : contexts) {
+				int contextID = context == null ? NULL_CONTEXT_ID : getID(context);
+				if (contextID >= 0) {
+					contextIDs.add(contextID);
+				}
+			}
+			if (contextIDs.isEmpty()) {
+				return new EmptyRecordIterator();
+			}
+		}
+		int contextID = contextIDs != null && contextIDs.size() == 1 ? contextIDs.iterator().next() : -1;
+
+		// Scan the range of records that start with the leading bound IDs
+		byte[] minValue = getRecord(0, 0, 0, 0);
+		byte[] maxValue = getRecord(-1, -1, -1, -1);
+		int[] ids = { subjID, predID, objID, contextID };
+		for (int i = 0; i < ids.length && (i < 3 ? ids[i] > 0 : ids[i] >= 0); i++) {
+			ByteArrayUtil.putInt(ids[i], minValue, i * 4);
+			ByteArrayUtil.putInt(ids[i], maxValue, i * 4);
+		}
+
+		RecordIterator records = statements.iterateRange(minValue, maxValue);
+		Set<Integer> matchingContexts = contextIDs;
+		return new RecordIterator() {
+
+			@Override
+			public byte[] next() throws IOException {
+				byte[] record;
+				while ((record = records.next()) != null) {
+					if ((subjID == 0 || ByteArrayUtil.getInt(record, SUBJ_IDX) == subjID)
+							&& (predID == 0 || ByteArrayUtil.getInt(record, PRED_IDX) == predID)
+							&& (objID == 0 || ByteArrayUtil.getInt(record, OBJ_IDX) == objID)
+							&& (matchingContexts == null
+									|| matchingContexts.contains(ByteArrayUtil.getInt(record, CONTEXT_IDX)))) {
+						return record;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public void set(byte[] record) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() throws IOException {
+				records.close();
+			}
+		};
+	}
+
+	private synchronized Statement getStatement(byte[] record) {
+		Resource subj = (Resource) getValue(ByteArrayUtil.getInt(record, SUBJ_IDX));
+		IRI pred = (IRI) getValue(ByteArrayUtil.getInt(record, PRED_IDX));
+		Value obj = getValue(ByteArrayUtil.getInt(record, OBJ_IDX));
+		int contextID = ByteArrayUtil.getInt(record, CONTEXT_IDX);
+		if (contextID == NULL_CONTEXT_ID) {
+			return VF.createStatement(subj, pred, obj);
+		}
+		return VF.createStatement(subj, pred, obj, (Resource) getValue(contextID));
+	}
+
+	private void writeObject(ObjectOutputStream s) throws IOException {
+		// Write out any hidden serialization magic
+		s.defaultWriteObject();
+		// Write in size
+		s.writeInt(size());
+		// Write in all elements
+		for (Statement st : this) {
+			s.writeObject(st);
+		}
+	}
+
+	private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+		// Read in any hidden serialization magic
+		s.defaultReadObject();
+		init();
+		// Read in size
+		int size = s.readInt();
+		// Read in all elements
+		for (int i = 0; i < size; i++) {
+			add((Statement) s.readObject());
+		}
+	}
+
+	/**
+	 * Iterates over the statements that match a pattern, in a snapshot of the model.
+	 */
+	private class StatementIterator implements Iterator<Statement> {
+
+		private final RecordIterator records;
+
+		private Statement next;
+
+		private Statement last;
+
+		public StatementIterator(Resource subj, IRI pred, Value obj, Resource... contexts) {
+			OpenRDFUtil.verifyContextNotNull(contexts);
+			try {
+				records = getRecords(subj, pred, obj, contexts);
+			} catch (IOException e) {
+				throw new ModelException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				try {
+					byte[] record = records.next();
+					if (record == null) {
+						records.close();
+					} else {
+						next = getStatement(record);
+					}
+				} catch (IOException e) {
+					throw new ModelException(e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = null;
+			return last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException("next() not yet called");
+			}
+			ChangesetModel.this.remove(last.getSubject(), last.getPredicate(), last.getObject(), last.getContext());
+			last = null;
+		}
+	}
+
+	private static class EmptyRecordIterator implements RecordIterator {
+
+		@Override
+		public byte[] next() {
+			return null;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -7,45 +7,164 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.nativerdf;
 
-import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
- * Limited-size concurrent cache. The actual cleanup to keep the size limited is done once per
- * <code>CLEANUP_INTERVAL</code> invocations of the protected method <code>cleanUp</code>. <code>cleanUp</code> method
- * is called every time by <code>put</code> The maximum size is maintained approximately. Cleanup is not done if size is
- * less than <code>capacity + CLEANUP_INTERVAL / 2</code>.
+ * Limited-size concurrent cache using the W-TinyLFU eviction policy. Lookups are served lock-free from a
+ * {@link ConcurrentHashMap}; modifications are guarded by one of a number of lock stripes, each of which manages the
+ * eviction of its share of the entries independently. Lookups record their accesses in a small, lossy read buffer of
+ * the stripe, which is drained into the stripe's frequency sketch by the next thread that holds the stripe's lock.
+ * <p>
+ * Within a stripe, new entries enter a small admission window. Entries that are pushed out of the window compete with
+ * the eviction victim of the main region: only the entry that has been accessed most frequently, according to an
+ * approximate frequency sketch, is retained. Both regions select their victims using the CLOCK algorithm, so that an
+ * entry that is accessed again before the clock hand reaches it gets a second chance. Eviction is O(1) amortized.
+ * <p>
+ * Subclasses can veto the removal of an entry through {@link #onEntryRemoval(Object)}, in which case the cache may
+ * temporarily grow beyond its capacity. The backing map is not exposed to subclasses, which use
+ * {@link #peek(Object)}, {@link #compute(Object, BiFunction)} and {@link #forEachValue(Consumer)} instead.
  *
  * @author Oleg Mirzov
  */
 public class ConcurrentCache<K, V> {
 
-	private static final int CLEANUP_INTERVAL = 1024;
+	/**
+	 * The maximum number of lock stripes.
+	 */
+	private static final int MAX_STRIPES = Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The minimum number of entries per lock stripe, smaller caches use fewer stripes.
+	 */
+	private static final int MIN_STRIPE_CAPACITY = 16;
+
+	/**
+	 * The percentage of a stripe's capacity that is used for the admission window.
+	 */
+	private static final int WINDOW_PERCENTAGE = 1;
+
+	/**
+	 * The number of accesses that a stripe's read buffer holds. Accesses beyond this number are dropped until the
+	 * buffer has been drained.
+	 */
+	private static final int READ_BUFFER_SIZE = 32;
+
+	/**
+	 * Marks the slots of a read buffer that hold a read, since any hash, including zero, can be read.
+	 */
+	private static final long READ_MARKER = 1L << 32;
 
 	private static final float LOAD_FACTOR = 0.75f;
 
 	private final int capacity;
 
-	private volatile int cleanupTick = 0;
+	private final ConcurrentHashMap<K, Entry<K, V>> cache;
+
+	private final Stripe[] stripes;
+
+	private final int stripeMask;
+
+	private final LongAdder hitCount = new LongAdder();
 
-	protected final ConcurrentHashMap<K, V> cache;
+	private final LongAdder missCount = new LongAdder();
 
+	private final LongAdder evictionCount = new LongAdder();
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public ConcurrentCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
 		this.capacity = capacity;
 		this.cache = new ConcurrentHashMap<>((int) (capacity / LOAD_FACTOR), LOAD_FACTOR);
+
+		int stripeCount = Math.min(MAX_STRIPES, Math.max(1, Integer.highestOneBit(capacity / MIN_STRIPE_CAPACITY)));
+		this.stripes = (Stripe[]) new ConcurrentCache.Stripe[stripeCount];
+		this.stripeMask = stripeCount - 1;
+		for (int i = 0; i < stripeCount; i++) {
+			int stripeCapacity = capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0);
+			stripes[i] = new Stripe(stripeCapacity);
+		}
 	}
 
 	public V get(Object key) {
-		return cache.get(key);
+		Entry<K, V> entry = cache.get(key);
+		if (entry == null) {
+			missCount.increment();
+			return null;
+		}
+
+		hitCount.increment();
+		entry.referenced = true;
+		stripeFor(entry.hash).recordRead(entry.hash);
+
+		return entry.value;
 	}
 
 	public V put(K key, V value) {
-		cleanUp();
-		return cache.put(key, value);
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		return compute(key, (k, v) -> value, true);
 	}
 
 	public void clear() {
-		cache.clear();
+		for (Stripe stripe : stripes) {
+			stripe.lock();
+		}
+		try {
+			cache.clear();
+			for (Stripe stripe : stripes) {
+				stripe.drainReads();
+				stripe.window.clear();
+				stripe.main.clear();
+			}
+		} finally {
+			for (Stripe stripe : stripes) {
+				stripe.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Gets the maximum number of entries that this cache retains.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the (approximate) number of entries in this cache.
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Gets the number of lookups that found a cached value.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that didn't find a cached value.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Gets the number of entries that have been evicted to keep the size of this cache limited.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
 	}
 
 	/**
@@ -57,32 +176,425 @@ public class ConcurrentCache<K, V> {
 		return true;
 	}
 
+	/**
+	 * Gets the value for the specified key without recording the access.
+	 */
+	protected V peek(Object key) {
+		Entry<K, V> entry = cache.get(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Atomically computes a new value for the specified key, similar to {@link ConcurrentHashMap#compute}. A
+	 * <tt>null</tt> result removes the entry without calling {@link #onEntryRemoval(Object)}. Other operations on keys
+	 * that share the same lock stripe are blocked while the function is executing.
+	 *
+	 * @return The new value for the key, or <tt>null</tt> if there is none.
+	 */
+	protected V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		return compute(key, remappingFunction, false);
+	}
+
+	/**
+	 * @param isPut Flag indicating whether this is a {@link #put(Object, Object)}, which returns the previous value
+	 *              and doesn't count as a lookup.
+	 */
+	private V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, boolean isPut) {
+		int hash = spread(key.hashCode());
+		Stripe stripe = stripeFor(hash);
+
+		stripe.lock();
+		try {
+			stripe.drainReads();
+
+			Entry<K, V> entry = cache.get(key);
+			V oldValue = entry == null ? null : entry.value;
+			if (!isPut) {
+				(entry == null ? missCount : hitCount).increment();
+			}
+
+			V newValue = remappingFunction.apply(key, oldValue);
+
+			if (newValue == null) {
+				if (entry != null) {
+					stripe.remove(entry);
+				}
+			} else if (entry != null) {
+				entry.value = newValue;
+				entry.referenced = true;
+				stripe.sketch.increment(hash);
+			} else {
+				entry = new Entry<>(key, newValue, hash);
+				cache.put(key, entry);
+				stripe.sketch.increment(hash);
+				stripe.window.add(entry);
+				stripe.evict();
+			}
+
+			return isPut ? oldValue : newValue;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Performs the supplied action for every value in the cache. Concurrent modifications may or may not be
+	 * reflected.
+	 */
+	protected void forEachValue(Consumer<? super V> action) {
+		cache.forEachValue(Long.MAX_VALUE, entry -> action.accept(entry.value));
+	}
+
+	/**
+	 * Evicts entries from the lock stripe of the specified key if it holds more entries than its capacity, which can
+	 * happen when {@link #onEntryRemoval(Object)} vetoed earlier evictions.
+	 */
+	protected void cleanUp(K key) {
+		Stripe stripe = stripeFor(spread(key.hashCode()));
+		if (stripe.isOverCapacity() && stripe.tryLock()) {
+			try {
+				stripe.drainReads();
+				stripe.evict();
+			} finally {
+				stripe.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Evicts entries from all lock stripes that hold more entries than their capacity.
+	 *
+	 * @deprecated Entries are evicted as soon as they are added, use {@link #cleanUp(Object)} to retry evictions that
+	 *             were vetoed by {@link #onEntryRemoval(Object)}.
+	 */
+	@Deprecated
 	protected void cleanUp() {
-		// This is not thread-safe, but the worst that can happen is that we may (rarely) get slightly longer
-		// cleanup intervals or run cleanUp twice
-		cleanupTick++;
-		if (cleanupTick <= CLEANUP_INTERVAL)
-			return;
+		for (Stripe stripe : stripes) {
+			if (stripe.isOverCapacity() && stripe.tryLock()) {
+				try {
+					stripe.drainReads();
+					stripe.evict();
+				} finally {
+					stripe.unlock();
+				}
+			}
+		}
+	}
 
-		cleanupTick %= CLEANUP_INTERVAL;
+	private Stripe stripeFor(int hash) {
+		return stripes[(hash >>> 16) & stripeMask];
+	}
 
-		synchronized (cache) {
+	private static int spread(int hashCode) {
+		int h = hashCode * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
 
-			final int size = cache.size();
-			if (size < capacity + CLEANUP_INTERVAL / 2)
-				return;
+	/*-------------------*
+	 * Inner class Entry *
+	 *-------------------*/
 
-			Iterator<K> iter = cache.keySet().iterator();
+	private static final class Entry<K, V> {
 
-			float removeEachTh = (float) size / (size - capacity);
+		final K key;
 
-			for (int i = 0; iter.hasNext(); i++) {
+		final int hash;
 
-				K key = iter.next();
+		volatile V value;
 
-				if (i % removeEachTh < 1)
-					cache.computeIfPresent(key, (k, v) -> onEntryRemoval(k) ? null : v);
+		/**
+		 * Set on every access, cleared when the clock hand passes.
+		 */
+		volatile boolean referenced;
+
+		// The clock ring this entry is part of and its links in that ring, guarded by the stripe's lock
+		Object clock;
+
+		Entry<K, V> prev;
+
+		Entry<K, V> next;
+
+		Entry(K key, V value, int hash) {
+			this.key = key;
+			this.value = value;
+			this.hash = hash;
+		}
+	}
+
+	/*-------------------*
+	 * Inner class Clock *
+	 *-------------------*/
+
+	/**
+	 * A circular list of entries with a clock hand pointing to the next eviction candidate. New entries are inserted
+	 * just behind the hand, so that they are considered last.
+	 */
+	private final class Clock {
+
+		Entry<K, V> hand;
+
+		int size;
+
+		void add(Entry<K, V> entry) {
+			entry.clock = this;
+			if (hand == null) {
+				entry.prev = entry;
+				entry.next = entry;
+				hand = entry;
+			} else {
+				entry.prev = hand.prev;
+				entry.next = hand;
+				hand.prev.next = entry;
+				hand.prev = entry;
+			}
+			size++;
+		}
+
+		void unlink(Entry<K, V> entry) {
+			if (entry.next == entry) {
+				hand = null;
+			} else {
+				entry.prev.next = entry.next;
+				entry.next.prev = entry.prev;
+				if (hand == entry) {
+					hand = entry.next;
+				}
 			}
+			entry.clock = null;
+			entry.prev = null;
+			entry.next = null;
+			size--;
+		}
+
+		/**
+		 * Advances the clock hand to the first entry that hasn't been referenced since the hand last passed it,
+		 * clearing the reference bits along the way. The hand stays at the returned entry.
+		 */
+		Entry<K, V> victim() {
+			if (hand == null) {
+				return null;
+			}
+			while (hand.referenced) {
+				hand.referenced = false;
+				hand = hand.next;
+			}
+			return hand;
+		}
+
+		/**
+		 * Gives the entry at the clock hand a second chance.
+		 */
+		void skip() {
+			hand = hand.next;
+		}
+
+		void clear() {
+			hand = null;
+			size = 0;
+		}
+	}
+
+	/*--------------------*
+	 * Inner class Stripe *
+	 *--------------------*/
+
+	private final class Stripe extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		final int windowCapacity;
+
+		final int mainCapacity;
+
+		final Clock window = new Clock();
+
+		final Clock main = new Clock();
+
+		final FrequencySketch sketch;
+
+		/**
+		 * The hashes of the entries that have been read since the buffer was last drained, each marked with
+		 * {@link #READ_MARKER} so that slots that are claimed but not yet written can be told apart.
+		 */
+		final AtomicLongArray readBuffer = new AtomicLongArray(READ_BUFFER_SIZE);
+
+		/**
+		 * The number of slots of the read buffer that have been claimed, which may exceed the size of the buffer.
+		 */
+		final AtomicInteger readCount = new AtomicInteger();
+
+		Stripe(int capacity) {
+			this.windowCapacity = capacity == 0 ? 0 : Math.max(1, capacity * WINDOW_PERCENTAGE / 100);
+			this.mainCapacity = capacity - windowCapacity;
+			this.sketch = new FrequencySketch(capacity);
+		}
+
+		/**
+		 * Records a read of the entry with the specified hash in the read buffer. The read is dropped if the buffer is
+		 * full. A thread that finds the buffer full drains it if the lock is available, otherwise the buffer is drained
+		 * by the next thread that takes the lock.
+		 */
+		void recordRead(int hash) {
+			int slot = readCount.getAndIncrement();
+			if (slot < READ_BUFFER_SIZE) {
+				readBuffer.lazySet(slot, READ_MARKER | (hash & 0xFFFFFFFFL));
+			}
+			if (slot >= READ_BUFFER_SIZE - 1 && !isLocked() && tryLock()) {
+				try {
+					drainReads();
+				} finally {
+					unlock();
+				}
+			}
+		}
+
+		/**
+		 * Adds the reads in the read buffer to the frequency sketch. Must be called while holding the lock.
+		 */
+		void drainReads() {
+			int count = Math.min(readCount.get(), READ_BUFFER_SIZE);
+			for (int i = 0; i < count; i++) {
+				long read = readBuffer.get(i);
+				if (read != 0L) {
+					sketch.increment((int) read);
+					readBuffer.lazySet(i, 0L);
+				}
+			}
+			readCount.set(0);
+		}
+
+		boolean isOverCapacity() {
+			// Unguarded read, only used as a hint
+			return window.size + main.size > windowCapacity + mainCapacity;
+		}
+
+		void remove(Entry<K, V> entry) {
+			cache.remove(entry.key, entry);
+			if (entry.clock == main) {
+				main.unlink(entry);
+			} else if (entry.clock == window) {
+				window.unlink(entry);
+			}
+		}
+
+		/**
+		 * Evicts entries until the window and main regions are within their capacities. Entries for which
+		 * {@link #onEntryRemoval(Object)} returns <tt>false</tt> are retained; the number of attempts is bounded to
+		 * keep the amortized costs constant.
+		 */
+		void evict() {
+			int attempts = 2 * (window.size + main.size) + 1;
+
+			while (window.size > windowCapacity && attempts-- > 0) {
+				Entry<K, V> candidate = window.victim();
+				window.unlink(candidate);
+
+				if (main.size < mainCapacity) {
+					main.add(candidate);
+					continue;
+				}
+
+				Entry<K, V> victim = main.victim();
+				if (victim != null && sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+					// The candidate is accessed more frequently, prefer it over the victim
+					main.add(candidate);
+					if (tryEvict(main, victim)) {
+						continue;
+					}
+				} else if (!tryEvict(null, candidate)) {
+					main.add(candidate);
+				}
+			}
+
+			while (main.size > mainCapacity && attempts-- > 0) {
+				tryEvict(main, main.victim());
+			}
+		}
+
+		private boolean tryEvict(Clock clock, Entry<K, V> entry) {
+			if (!onEntryRemoval(entry.key)) {
+				if (clock != null) {
+					clock.skip();
+				}
+				return false;
+			}
+
+			if (clock != null) {
+				clock.unlink(entry);
+			}
+			cache.remove(entry.key, entry);
+			evictionCount.increment();
+			return true;
+		}
+	}
+
+	/*-----------------------------*
+	 * Inner class FrequencySketch *
+	 *-----------------------------*/
+
+	/**
+	 * A count-min sketch with four 4-bit counters per key that approximates how often keys have been accessed. All
+	 * counters are halved periodically so that the sketch adapts to changing access patterns.
+	 */
+	private static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final long[] table;
+
+		private final int tableMask;
+
+		private final int sampleSize;
+
+		private int additions;
+
+		FrequencySketch(int capacity) {
+			// Use four longs, i.e. 64 counters, per cached entry
+			int size = Integer.highestOneBit(Math.max(4 * capacity, 8) - 1) << 1;
+			this.table = new long[size];
+			this.tableMask = size - 1;
+			this.sampleSize = 10 * size;
+		}
+
+		int frequency(int hash) {
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int offset = (start + i) << 2;
+				int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+
+		void increment(int hash) {
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				int index = indexOf(hash, i);
+				int offset = (start + i) << 2;
+				long mask = 0xfL << offset;
+				if ((table[index] & mask) != mask) {
+					table[index] += 1L << offset;
+					added = true;
+				}
+			}
+
+			if (added && ++additions == sampleSize) {
+				for (int i = 0; i < table.length; i++) {
+					table[i] = (table[i] >>> 1) & RESET_MASK;
+				}
+				additions /= 2;
+			}
+		}
+
+		private int indexOf(int hash, int i) {
+			long h = (hash + SEEDS[i]) * SEEDS[i];
+			h += h >>> 32;
+			return (int) h & tableMask;
 		}
 	}
 }
@@ -119,6 +119,18 @@ class ContextStore implements Iterable<Resource> {
 		contentsChanged = true;
 	}
 
+	/**
+	 * Increase the size of the context by the given amount. If the context was not yet known, it is created with the
+	 * given size.
+	 * 
+	 * @param context the context identifier.
+	 * @param amount  the number by which to increase the size
+	 */
+	void incrementBy(Resource context, long amount) {
+		contextInfoMap.merge(context, amount, (size, a) -> size + a);
+		contentsChanged = true;
+	}
+
 	/**
 	 * Decrease the size of the context by the given amount. If the size reaches zero, the context is removed.
 	 * 
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Frees the memory of direct and mapped buffers when they are no longer used, instead of when they are garbage
+ * collected. There is no public API for this, so the JVM's internal cleaner is called by reflection. On JVMs where that
+ * fails, the memory is freed by the garbage collector as usual.
+ */
+final class DirectBuffers {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectBuffers.class);
+
+	/**
+	 * <tt>sun.misc.Unsafe.invokeCleaner(ByteBuffer)</tt>, on Java 9 and later.
+	 */
+	private static final Method INVOKE_CLEANER;
+
+	private static final Object UNSAFE;
+
+	/**
+	 * <tt>sun.nio.ch.DirectBuffer.cleaner()</tt> and <tt>sun.misc.Cleaner.clean()</tt>, on Java 8.
+	 */
+	private static final Method CLEANER;
+
+	private static final Method CLEAN;
+
+	static {
+		Method invokeCleaner = null;
+		Object unsafe = null;
+		Method cleaner = null;
+		Method clean = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+			try {
+				cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+				clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			} catch (ReflectiveOperationException | RuntimeException e2) {
+				logger.debug("Direct buffers are freed by the garbage collector", e2);
+				cleaner = null;
+				clean = null;
+			}
+		}
+		INVOKE_CLEANER = invokeCleaner;
+		UNSAFE = unsafe;
+		CLEANER = cleaner;
+		CLEAN = clean;
+	}
+
+	private DirectBuffers() {
+	}
+
+	/**
+	 * Frees the memory of a direct buffer that has been allocated with {@link ByteBuffer#allocateDirect(int)}, or
+	 * unmaps a buffer that has been mapped with {@link java.nio.channels.FileChannel#map}. The buffer, and any buffer
+	 * that has been derived from it, must not be used afterwards.
+	 */
+	public static void free(ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			return;
+		}
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} else if (CLEANER != null) {
+				Object cleaner = CLEANER.invoke(buffer);
+				if (cleaner != null) {
+					CLEAN.invoke(cleaner);
+				}
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.debug("Failed to free direct buffer, it is freed by the garbage collector", e);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordComparator;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * Sorts an arbitrary number of fixed size byte array records using a bounded amount of memory. Records are collected
+ * in memory until a configurable number of records has been reached, at which point they are sorted and written to a
+ * temporary file (a "run"). The sorted records are returned by merging all runs. All temporary files are deleted upon
+ * calling {@link #close()}.
+ */
+final class ExternalRecordSorter implements Closeable {
+
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/*------------*
+	 * Attributes *
+	 *------------*/
+
+	private final File tmpDir;
+
+	private final int recordSize;
+
+	private final Comparator<byte[]> comparator;
+
+	private final byte[][] buffer;
+
+	private int bufferedRecords = 0;
+
+	private final List<File> runs = new ArrayList<>();
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param tmpDir             The directory to create the temporary run files in.
+	 * @param recordSize         The size of the records.
+	 * @param comparator         The comparator that determines the sort order.
+	 * @param maxRecordsInMemory The maximum number of records to keep in memory before spilling a sorted run to disk.
+	 */
+	public ExternalRecordSorter(File tmpDir, int recordSize, RecordComparator comparator, int maxRecordsInMemory) {
+		if (maxRecordsInMemory <= 0) {
+			throw new IllegalArgumentException("maxRecordsInMemory must be larger than 0");
+		}
+		this.tmpDir = tmpDir;
+		this.recordSize = recordSize;
+		this.comparator = (r1, r2) -> comparator.compareBTreeValues(r1, r2, 0, recordSize);
+		this.buffer = new byte[maxRecordsInMemory][];
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Adds a record to the sorter. The supplied array is stored as-is and should not be modified afterwards.
+	 */
+	public void add(byte[] record) throws IOException {
+		assert record.length == recordSize : "invalid record size: " + record.length;
+
+		if (bufferedRecords == buffer.length) {
+			spill();
+		}
+		buffer[bufferedRecords++] = record;
+	}
+
+	/**
+	 * Returns an iterator over all added records in sorted order. Duplicate records (according to the comparator) are
+	 * all returned.
+	 */
+	public RecordIterator sortedRecords() throws IOException {
+		Arrays.sort(buffer, 0, bufferedRecords, comparator);
+
+		if (runs.isEmpty()) {
+			return new BufferIterator();
+		}
+
+		List<RecordIterator> sources = new ArrayList<>(runs.size() + 1);
+		try {
+			for (File run : runs) {
+				sources.add(new RunIterator(run));
+			}
+		} catch (IOException e) {
+			for (RecordIterator source : sources) {
+				source.close();
+			}
+			throw e;
+		}
+		sources.add(new BufferIterator());
+
+		return new MergeIterator(sources);
+	}
+
+	@Override
+	public void close() throws IOException {
+		Arrays.fill(buffer, null);
+		bufferedRecords = 0;
+
+		for (File run : runs) {
+			if (!run.delete() && run.exists()) {
+				throw new IOException("Unable to delete temporary file " + run);
+			}
+		}
+		runs.clear();
+	}
+
+	private void spill() throws IOException {
+		Arrays.sort(buffer, 0, bufferedRecords, comparator);
+
+		File run = File.createTempFile("sortrun", ".dat", tmpDir);
+		runs.add(run);
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(run), STREAM_BUFFER_SIZE))) {
+			for (int i = 0; i < bufferedRecords; i++) {
+				out.write(buffer[i]);
+				buffer[i] = null;
+			}
+		}
+
+		bufferedRecords = 0;
+	}
+
+	/*----------------------------*
+	 * Inner class BufferIterator *
+	 *----------------------------*/
+
+	private class BufferIterator implements RecordIterator {
+
+		private int position = 0;
+
+		@Override
+		public byte[] next() {
+			if (position < bufferedRecords) {
+				return buffer[position++];
+			}
+			return null;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/*-------------------------*
+	 * Inner class RunIterator *
+	 *-------------------------*/
+
+	private class RunIterator implements RecordIterator {
+
+		private final DataInputStream in;
+
+		public RunIterator(File run) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), STREAM_BUFFER_SIZE));
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			byte[] record = new byte[recordSize];
+			try {
+				in.readFully(record);
+				return record;
+			} catch (EOFException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/*---------------------------*
+	 * Inner class MergeIterator *
+	 *---------------------------*/
+
+	/**
+	 * Merges a number of sorted record iterators into a single sorted stream.
+	 */
+	private class MergeIterator implements RecordIterator {
+
+		private final List<RecordIterator> sources;
+
+		private final PriorityQueue<Head> heads;
+
+		public MergeIterator(List<RecordIterator> sources) throws IOException {
+			this.sources = sources;
+			this.heads = new PriorityQueue<>(sources.size(), (h1, h2) -> comparator.compare(h1.record, h2.record));
+
+			for (RecordIterator source : sources) {
+				byte[] record = source.next();
+				if (record != null) {
+					heads.add(new Head(record, source));
+				}
+			}
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			Head head = heads.poll();
+			if (head == null) {
+				return null;
+			}
+
+			byte[] result = head.record;
+
+			head.record = head.source.next();
+			if (head.record != null) {
+				heads.add(head);
+			}
+
+			return result;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			heads.clear();
+
+			IOException exception = null;
+			for (RecordIterator source : sources) {
+				try {
+					source.close();
+				} catch (IOException e) {
+					if (exception == null) {
+						exception = e;
+					}
+				}
+			}
+			if (exception != null) {
+				throw exception;
+			}
+		}
+	}
+
+	private static class Head {
+
+		byte[] record;
+
+		final RecordIterator source;
+
+		Head(byte[] record, RecordIterator source) {
+			this.record = record;
+			this.source = source;
+		}
+	}
+}
@@ -0,0 +1,587 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.rdf4j.common.io.NioFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link NioFile} wrapper that can optionally serve reads from memory-mapped segments of the file instead of issuing
+ * a positional read for every request. Writes always go through the underlying {@link NioFile}; the mapped segments
+ * are shared with the operating system's page cache and therefore observe these writes.
+ * <p>
+ * The file is mapped read-only in segments of {@link #SEGMENT_SIZE} bytes. A segment only covers the part of the file
+ * that existed when it was mapped and is remapped when a read extends beyond it. Segments are dropped when the file is
+ * truncated. If a segment can not be mapped, memory mapping is disabled for the file and all reads fall back to the
+ * {@link NioFile}. Segments are unmapped explicitly with {@link DirectBuffers#free(ByteBuffer)} once no read can be
+ * using them anymore, rather than when they are garbage collected, so that the file can be truncated and deleted on
+ * all platforms.
+ * <p>
+ * Writes can optionally be logged in a {@link RedoLog} before they are applied to the file, see
+ * {@link #setRedoLog(RedoLog, boolean)}. The writes and truncations of a transactional file are kept in memory as
+ * {@link PendingChanges} until the barrier that preceded them is durable, so that they never have to wait for the log
+ * to be forced. Reads and {@link #size()} see these pending changes.
+ */
+public final class MappedNioFile implements Closeable {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int SEGMENT_SHIFT = 26;
+
+	/**
+	 * The size of the memory-mapped segments: 64 MiB.
+	 */
+	static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * The number of bytes of pending writes after which the log is forced, so that they can be applied: 16 MiB.
+	 */
+	static final long MAX_PENDING_BYTES = 16L * 1024L * 1024L;
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedNioFile.class);
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final NioFile nioFile;
+
+	/**
+	 * Flag indicating whether reads are served from memory-mapped segments.
+	 */
+	private volatile boolean memoryMapped;
+
+	/**
+	 * The currently mapped segments, replaced as a whole whenever a segment is (re)mapped or dropped.
+	 */
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+	/**
+	 * The segments that have been replaced or dropped while reads may still be using them. They are unmapped as soon as
+	 * the write lock of {@link #mappingLock} is held. Guarded by <tt>this</tt>.
+	 */
+	private final List<MappedByteBuffer> retiredSegments = new ArrayList<>();
+
+	private volatile boolean hasRetiredSegments;
+
+	/**
+	 * Lock preventing the file from being truncated or closed while a read from one of the mapped segments is in
+	 * progress; accessing a mapping beyond the end of the file is not allowed.
+	 */
+	private final ReentrantReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
+	/**
+	 * The log that writes to this file are logged in, <tt>null</tt> if writes are not logged.
+	 */
+	private volatile RedoLog redoLog;
+
+	/**
+	 * Flag indicating whether writes must wait for the last barrier of the redo log to become durable.
+	 */
+	private volatile boolean transactional;
+
+	/**
+	 * The changes to this transactional file that wait for their barrier to become durable. Guarded by
+	 * {@link #pendingLock}.
+	 */
+	private final PendingChanges pendingChanges = new PendingChanges();
+
+	/**
+	 * Lock that is held for reading while a read is served from the pending changes, and for writing while they are
+	 * modified or applied.
+	 */
+	private final ReentrantReadWriteLock pendingLock = new ReentrantReadWriteLock();
+
+	private volatile boolean hasPendingChanges;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * Creates a new MappedNioFile for the specified file.
+	 *
+	 * @param file         The file to open, will be created if it doesn't exist yet.
+	 * @param memoryMapped Flag indicating whether reads should be served from memory-mapped segments of the file.
+	 * @throws IOException If the file could not be opened.
+	 */
+	public MappedNioFile(File file, boolean memoryMapped) throws IOException {
+		this.nioFile = new NioFile(file);
+		this.memoryMapped = memoryMapped;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	public File getFile() {
+		return nioFile.getFile();
+	}
+
+	/**
+	 * Starts or stops logging the writes to this file in a redo log. Any previous writes are forced to disk first.
+	 *
+	 * @param redoLog       The log to log writes in, or <tt>null</tt> to stop logging.
+	 * @param transactional Flag indicating whether the file is described by the transaction status of its store, in
+	 *                      which case writes are only applied once the last barrier of the log is durable.
+	 */
+	public void setRedoLog(RedoLog redoLog, boolean transactional) throws IOException {
+		RedoLog previousLog = this.redoLog;
+		if (previousLog != null) {
+			applyAllPendingChanges(previousLog);
+			previousLog.detach(this);
+		}
+
+		nioFile.force(false);
+
+		if (redoLog != null) {
+			redoLog.attach(this);
+		}
+		this.transactional = transactional;
+		this.redoLog = redoLog;
+	}
+
+	/**
+	 * Checks whether writes to this file are logged in a redo log.
+	 */
+	public boolean hasRedoLog() {
+		return redoLog != null;
+	}
+
+	/**
+	 * Checks whether reads are currently served from memory-mapped segments.
+	 */
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Closes the file. If writes to the file are logged, any pending changes are applied and the file is forced to
+	 * disk first since the log's checkpoints no longer cover it.
+	 */
+	@Override
+	public void close() throws IOException {
+		RedoLog log = redoLog;
+		if (log != null) {
+			applyAllPendingChanges(log);
+		}
+
+		mappingLock.writeLock().lock();
+		try {
+			dropSegments(0L);
+			if (log != null) {
+				log.detach(this);
+				nioFile.force(false);
+			}
+			nioFile.close();
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+	}
+
+	public boolean delete() throws IOException {
+		RedoLog log = redoLog;
+		if (log != null) {
+			return log.delete(this);
+		}
+		return deleteUnlogged();
+	}
+
+	boolean deleteUnlogged() throws IOException {
+		mappingLock.writeLock().lock();
+		try {
+			dropSegments(0L);
+			return nioFile.delete();
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+	}
+
+	public void force(boolean metaData) throws IOException {
+		nioFile.force(metaData);
+	}
+
+	public long size() throws IOException {
+		if (hasPendingChanges) {
+			pendingLock.readLock().lock();
+			try {
+				if (!pendingChanges.isEmpty()) {
+					return pendingChanges.size();
+				}
+			} finally {
+				pendingLock.readLock().unlock();
+			}
+		}
+		return nioFile.size();
+	}
+
+	public void truncate(long size) throws IOException {
+		RedoLog log = redoLog;
+		if (log != null) {
+			log.truncate(this, size, transactional);
+		} else {
+			truncateUnlogged(size);
+		}
+	}
+
+	/**
+	 * Truncates this transactional file once the specified barrier is durable. Called by the redo log after it has
+	 * logged the truncation.
+	 */
+	void truncateAfterBarrier(RedoLog log, long size, long barrier) throws IOException {
+		pendingLock.writeLock().lock();
+		try {
+			long forcedPosition = log.getForcedPosition();
+			applyPendingChanges(forcedPosition);
+			if (pendingChanges.isEmpty() && barrier <= forcedPosition) {
+				truncateUnlogged(size);
+			} else {
+				pendingChanges.truncate(size, barrier, nioFile.size());
+				hasPendingChanges = true;
+			}
+		} finally {
+			pendingLock.writeLock().unlock();
+		}
+	}
+
+	void truncateUnlogged(long size) throws IOException {
+		mappingLock.writeLock().lock();
+		try {
+			dropSegments(size);
+			nioFile.truncate(size);
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+	}
+
+	public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+		return nioFile.transferTo(position, count, target);
+	}
+
+	public int write(ByteBuffer buf, long offset) throws IOException {
+		RedoLog log = redoLog;
+		if (log != null) {
+			return log.write(this, buf, offset, transactional);
+		}
+		return writeUnlogged(buf, offset);
+	}
+
+	/**
+	 * Writes to this transactional file once the specified barrier is durable. Called by the redo log after it has
+	 * logged the write. If the pending writes grow too large, the log is forced so that they can be applied.
+	 *
+	 * @param data A copy of the data to write.
+	 */
+	int writeAfterBarrier(RedoLog log, ByteBuffer buf, byte[] data, long offset, long barrier) throws IOException {
+		boolean forceLog;
+		pendingLock.writeLock().lock();
+		try {
+			long forcedPosition = log.getForcedPosition();
+			applyPendingChanges(forcedPosition);
+			if (pendingChanges.isEmpty() && barrier <= forcedPosition) {
+				return writeUnlogged(buf, offset);
+			}
+
+			pendingChanges.write(offset, data, barrier, nioFile.size());
+			hasPendingChanges = true;
+			buf.position(buf.limit());
+			forceLog = pendingChanges.getByteCount() > MAX_PENDING_BYTES;
+		} finally {
+			pendingLock.writeLock().unlock();
+		}
+
+		if (forceLog) {
+			// Bounds the memory used by the pending writes of a large transaction
+			log.sync(barrier);
+		}
+		return data.length;
+	}
+
+	int writeUnlogged(ByteBuffer buf, long offset) throws IOException {
+		return nioFile.write(buf, offset);
+	}
+
+	/**
+	 * Applies the pending changes whose barrier is durable. Called by the redo log whenever it has been forced.
+	 *
+	 * @param forcedPosition The log position up to which the log has been forced to disk.
+	 */
+	void applyPendingChanges(long forcedPosition) throws IOException {
+		if (hasPendingChanges) {
+			pendingLock.writeLock().lock();
+			try {
+				pendingChanges.apply(forcedPosition, this);
+				hasPendingChanges = !pendingChanges.isEmpty();
+			} finally {
+				pendingLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Forces the log up to its current position and applies all pending changes.
+	 */
+	private void applyAllPendingChanges(RedoLog log) throws IOException {
+		if (hasPendingChanges) {
+			log.sync(log.getPosition());
+			applyPendingChanges(Long.MAX_VALUE);
+		}
+	}
+
+	public void writeBytes(byte[] value, long offset) throws IOException {
+		write(ByteBuffer.wrap(value), offset);
+	}
+
+	public void writeByte(byte value, long offset) throws IOException {
+		write(ByteBuffer.wrap(new byte[] { value }), offset);
+	}
+
+	public void writeInt(int value, long offset) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		buf.putInt(0, value);
+		write(buf, offset);
+	}
+
+	public void writeLong(long value, long offset) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(8);
+		buf.putLong(0, value);
+		write(buf, offset);
+	}
+
+	/**
+	 * Reads a sequence of bytes from the file into the supplied buffer, starting at the specified offset.
+	 *
+	 * @return The number of bytes read, or -1 if the offset is beyond the end of the file.
+	 * @see NioFile#read(ByteBuffer, long)
+	 */
+	public int read(ByteBuffer buf, long offset) throws IOException {
+		if (hasPendingChanges) {
+			pendingLock.readLock().lock();
+			try {
+				if (!pendingChanges.isEmpty()) {
+					return readPending(buf, offset);
+				}
+			} finally {
+				pendingLock.readLock().unlock();
+			}
+		}
+		return readFile(buf, offset);
+	}
+
+	/**
+	 * Reads from the state of the file after all pending changes. Must be called while holding the read lock of the
+	 * pending changes.
+	 */
+	private int readPending(ByteBuffer buf, long offset) throws IOException {
+		long size = pendingChanges.size();
+		if (offset >= size) {
+			return -1;
+		}
+
+		int start = buf.position();
+		int length = (int) Math.min(buf.remaining(), size - offset);
+
+		ByteBuffer dst = buf.duplicate();
+		dst.limit(start + (int) Math.min(length, pendingChanges.getFileBytes(offset)));
+		while (dst.hasRemaining() && readFile(dst, offset + dst.position() - start) > 0) {
+			// Read until the end of the file or of its smallest pending truncation
+		}
+		dst.limit(start + length);
+		while (dst.hasRemaining()) {
+			dst.put((byte) 0);
+		}
+
+		pendingChanges.copyWrites(buf, start, offset, length);
+		buf.position(start + length);
+		return length;
+	}
+
+	private int readFile(ByteBuffer buf, long offset) throws IOException {
+		if (hasRetiredSegments && mappingLock.writeLock().tryLock()) {
+			try {
+				unmapRetiredSegments();
+			} finally {
+				mappingLock.writeLock().unlock();
+			}
+		}
+
+		if (!memoryMapped) {
+			return nioFile.read(buf, offset);
+		}
+
+		int bytesRead = 0;
+
+		mappingLock.readLock().lock();
+		try {
+			while (buf.hasRemaining()) {
+				int segmentOffset = (int) (offset & SEGMENT_MASK);
+				int length = Math.min(buf.remaining(), SEGMENT_SIZE - segmentOffset);
+
+				MappedByteBuffer segment = getSegment((int) (offset >>> SEGMENT_SHIFT), segmentOffset + length);
+				if (segment == null) {
+					// Reading beyond the end of the file, or mapping failed
+					int n = nioFile.read(buf, offset);
+					if (n >= 0) {
+						bytesRead += n;
+					} else if (bytesRead == 0) {
+						bytesRead = -1;
+					}
+					break;
+				}
+
+				ByteBuffer src = segment.duplicate();
+				src.limit(segmentOffset + length);
+				src.position(segmentOffset);
+				buf.put(src);
+
+				bytesRead += length;
+				offset += length;
+			}
+		} finally {
+			mappingLock.readLock().unlock();
+		}
+
+		return bytesRead;
+	}
+
+	public byte[] readBytes(long offset, int length) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(length);
+		read(buf, offset);
+		return buf.array();
+	}
+
+	public byte readByte(long offset) throws IOException {
+		return readBytes(offset, 1)[0];
+	}
+
+	public int readInt(long offset) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		read(buf, offset);
+		return buf.getInt(0);
+	}
+
+	public long readLong(long offset) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(8);
+		read(buf, offset);
+		return buf.getLong(0);
+	}
+
+	/**
+	 * Gets the segment with the specified index, making sure that it covers at least <tt>minSize</tt> bytes.
+	 *
+	 * @return The mapped segment, or <tt>null</tt> if the file is not large enough or the segment could not be mapped.
+	 */
+	private MappedByteBuffer getSegment(int index, int minSize) {
+		MappedByteBuffer[] segments = this.segments;
+		if (index < segments.length) {
+			MappedByteBuffer segment = segments[index];
+			if (segment != null && segment.capacity() >= minSize) {
+				return segment;
+			}
+		}
+		return mapSegment(index, minSize);
+	}
+
+	private synchronized MappedByteBuffer mapSegment(int index, int minSize) {
+		if (!memoryMapped) {
+			return null;
+		}
+
+		if (index < segments.length) {
+			// Check whether another thread has remapped the segment in the meantime
+			MappedByteBuffer segment = segments[index];
+			if (segment != null && segment.capacity() >= minSize) {
+				return segment;
+			}
+		}
+
+		try {
+			long segmentStart = (long) index << SEGMENT_SHIFT;
+			long segmentSize = Math.min(SEGMENT_SIZE, nioFile.size() - segmentStart);
+			if (segmentSize < minSize) {
+				return null;
+			}
+
+			MappedByteBuffer segment;
+			try (FileChannel channel = FileChannel.open(nioFile.getFile().toPath(), StandardOpenOption.READ)) {
+				segment = channel.map(MapMode.READ_ONLY, segmentStart, segmentSize);
+			}
+
+			MappedByteBuffer[] newSegments = Arrays.copyOf(segments, Math.max(segments.length, index + 1));
+			if (newSegments[index] != null) {
+				// Other reads may still be using the smaller mapping
+				retireSegment(newSegments[index]);
+			}
+			newSegments[index] = segment;
+			segments = newSegments;
+
+			return segment;
+		} catch (IOException e) {
+			logger.warn("Unable to memory-map {}, falling back to regular file reads", nioFile.getFile(), e);
+			memoryMapped = false;
+			for (MappedByteBuffer segment : segments) {
+				retireSegment(segment);
+			}
+			segments = new MappedByteBuffer[0];
+			return null;
+		}
+	}
+
+	/**
+	 * Drops and unmaps all segments that extend beyond the specified file size. Must be called while holding the write
+	 * lock.
+	 */
+	private synchronized void dropSegments(long fileSize) {
+		int keep = (int) Math.min(segments.length, fileSize >>> SEGMENT_SHIFT);
+		if (keep < segments.length) {
+			for (int i = keep; i < segments.length; i++) {
+				retireSegment(segments[i]);
+			}
+			segments = Arrays.copyOf(segments, keep);
+		}
+		unmapRetiredSegments();
+	}
+
+	private synchronized void retireSegment(MappedByteBuffer segment) {
+		if (segment != null) {
+			retiredSegments.add(segment);
+			hasRetiredSegments = true;
+		}
+	}
+
+	/**
+	 * Unmaps the segments that have been replaced or dropped. Must be called while holding the write lock, so that no
+	 * read is using them.
+	 */
+	private synchronized void unmapRetiredSegments() {
+		for (MappedByteBuffer segment : retiredSegments) {
+			DirectBuffers.free(segment);
+		}
+		retiredSegments.clear();
+		hasRetiredSegments = false;
+	}
+}
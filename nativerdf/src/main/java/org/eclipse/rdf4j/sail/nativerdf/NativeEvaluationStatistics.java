@@ -12,7 +12,9 @@ import java.io.IOException;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.algebra.Join;
 import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.query.algebra.evaluation.impl.EvaluationStatistics;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
@@ -75,6 +77,77 @@ class NativeEvaluationStatistics extends EvaluationStatistics {
 		protected Value getConstantValue(Var var) {
 			return (var != null) ? var.getValue() : null;
 		}
+
+		/**
+		 * Estimates the size of a join of two statement patterns that share a variable from the number of distinct
+		 * values of that variable, instead of assuming that every pair of solutions is compatible.
+		 */
+		@Override
+		public void meet(Join node) {
+			node.getLeftArg().visit(this);
+			double leftArgCardinality = this.cardinality;
+
+			node.getRightArg().visit(this);
+			double rightArgCardinality = this.cardinality;
+
+			double distinctValues = getJoinVarDistinctValues(node.getLeftArg(), node.getRightArg());
+			cardinality = leftArgCardinality * rightArgCardinality / Math.max(1.0, distinctValues);
+		}
+
+		/**
+		 * Gets the largest number of distinct values of a variable that is shared by the supplied statement patterns,
+		 * or <tt>0</tt> if this is not known.
+		 */
+		private double getJoinVarDistinctValues(TupleExpr leftArg, TupleExpr rightArg) {
+			if (!(leftArg instanceof StatementPattern) || !(rightArg instanceof StatementPattern)) {
+				return 0;
+			}
+
+			StatementPattern left = (StatementPattern) leftArg;
+			StatementPattern right = (StatementPattern) rightArg;
+
+			try {
+				double distinctValues = 0;
+				for (Var var : left.getVarList()) {
+					if (!var.hasValue() && right.getBindingNames().contains(var.getName())) {
+						distinctValues = Math.max(distinctValues, getDistinctValues(left, var.getName()));
+						distinctValues = Math.max(distinctValues, getDistinctValues(right, var.getName()));
+					}
+				}
+				return distinctValues;
+			} catch (IOException e) {
+				log.error("Failed to estimate join cardinality", e);
+				return 0;
+			}
+		}
+
+		/**
+		 * Gets the number of distinct values of the named variable in the subject or object position of a statement
+		 * pattern with a constant predicate, or <tt>0</tt> if this is not known.
+		 */
+		private double getDistinctValues(StatementPattern sp, String varName) throws IOException {
+			Value pred = getConstantValue(sp.getPredicateVar());
+			if (!(pred instanceof IRI)) {
+				return 0;
+			}
+
+			int predID = valueStore.getID(pred);
+			if (predID == NativeValue.UNKNOWN_ID) {
+				return 0;
+			}
+
+			TripleStatistics statistics = tripleStore.getStatistics();
+			if (isVar(sp.getSubjectVar(), varName)) {
+				return statistics.getDistinctSubjectCount(predID);
+			} else if (isVar(sp.getObjectVar(), varName)) {
+				return statistics.getDistinctObjectCount(predID);
+			}
+			return 0;
+		}
+
+		private boolean isVar(Var var, String varName) {
+			return var != null && !var.hasValue() && varName.equals(var.getName());
+		}
 	}
 
 	private double cardinality(Resource subj, IRI pred, Value obj, Resource context) throws IOException {
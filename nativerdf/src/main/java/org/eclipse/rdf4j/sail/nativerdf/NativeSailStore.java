@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.rdf4j.IsolationLevel;
 import org.eclipse.rdf4j.OpenRDFUtil;
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
@@ -40,6 +42,7 @@ import org.eclipse.rdf4j.sail.base.SailSink;
 import org.eclipse.rdf4j.sail.base.SailSource;
 import org.eclipse.rdf4j.sail.base.SailStore;
 import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.eclipse.rdf4j.sail.nativerdf.model.LazyValueGroup;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +56,18 @@ class NativeSailStore implements SailStore {
 
 	final Logger logger = LoggerFactory.getLogger(NativeSailStore.class);
 
+	/**
+	 * The maximum number of statement records that statement iterators read ahead to resolve their values at once.
+	 */
+	private static final int STATEMENT_BATCH_SIZE = 1024;
+
+	/**
+	 * The maximum number of changes that a {@link NativeSailSink} keeps in memory before spilling them to disk.
+	 */
+	private static final int SINK_MAX_CHANGES_IN_MEMORY = 64 * 1024;
+
+	private final File dataDir;
+
 	private final TripleStore tripleStore;
 
 	private final ValueStore valueStore;
@@ -61,10 +76,16 @@ class NativeSailStore implements SailStore {
 
 	private final ContextStore contextStore;
 
+	/**
+	 * The log that makes committed transactions durable if <tt>forceSync</tt> is enabled, <tt>null</tt> otherwise.
+	 */
+	private final RedoLog redoLog;
+
 	/**
 	 * A lock to control concurrent access by {@link NativeSailSink} to the TripleStore, ValueStore, and NamespaceStore.
 	 * Each sink method that directly accesses one of these store obtains the lock and releases it immediately when
-	 * done.
+	 * done. Added and removed statements are collected by each sink without the lock and are only merged into the
+	 * TripleStore under the lock when the sink is flushed.
 	 */
 	private final ReentrantLock sinkStoreAccessLock = new ReentrantLock();
 
@@ -86,12 +107,30 @@ class NativeSailStore implements SailStore {
 	 */
 	public NativeSailStore(File dataDir, String tripleIndexes, boolean forceSync, int valueCacheSize,
 			int valueIDCacheSize, int namespaceCacheSize, int namespaceIDCacheSize) throws IOException, SailException {
+		this(dataDir, tripleIndexes, forceSync, false, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
+				namespaceIDCacheSize);
+	}
+
+	/**
+	 * Creates a new {@link NativeSailStore}, optionally reading the index and value files through memory mappings.
+	 */
+	public NativeSailStore(File dataDir, String tripleIndexes, boolean forceSync, boolean memoryMapped,
+			int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize, int namespaceIDCacheSize)
+			throws IOException, SailException {
+		this.dataDir = dataDir;
 		boolean initialized = false;
 		try {
+			// The log replays any logged writes, so it must be opened before the files are
+			redoLog = forceSync ? new RedoLog(dataDir) : null;
 			namespaceStore = new NamespaceStore(dataDir);
-			valueStore = new ValueStore(dataDir, forceSync, valueCacheSize, valueIDCacheSize, namespaceCacheSize,
-					namespaceIDCacheSize);
-			tripleStore = new TripleStore(dataDir, tripleIndexes, forceSync);
+			// The stores do not force their files to disk themselves, the redo log takes care of durability
+			valueStore = new ValueStore(dataDir, false, memoryMapped, valueCacheSize, valueIDCacheSize,
+					namespaceCacheSize, namespaceIDCacheSize);
+			tripleStore = new TripleStore(dataDir, tripleIndexes, false, memoryMapped);
+			if (redoLog != null) {
+				valueStore.setRedoLog(redoLog);
+				tripleStore.setRedoLog(redoLog);
+			}
 			contextStore = new ContextStore(this, dataDir);
 			initialized = true;
 		} finally {
@@ -124,8 +163,14 @@ class NativeSailStore implements SailStore {
 							valueStore.close();
 						}
 					} finally {
-						if (tripleStore != null) {
-							tripleStore.close();
+						try {
+							if (tripleStore != null) {
+								tripleStore.close();
+							}
+						} finally {
+							if (redoLog != null) {
+								redoLog.close();
+							}
 						}
 					}
 				}
@@ -196,7 +241,10 @@ class NativeSailStore implements SailStore {
 		return new ConvertingIteration<Statement, Resource, SailException>(stIter2) {
 			@Override
 			protected Resource convert(Statement sourceObject) throws SailException {
-				return sourceObject.getContext();
+				Resource context = sourceObject.getContext();
+				// context IDs are returned to the users of the store, so lazy contexts must be loaded
+				LazyValueGroup.load(context);
+				return context;
 			}
 		};
 	}
@@ -260,7 +308,7 @@ class NativeSailStore implements SailStore {
 		for (int contextID : contextIDList) {
 			RecordIterator btreeIter = tripleStore.getTriples(subjID, predID, objID, contextID, explicit, false);
 
-			perContextIterList.add(new NativeStatementIterator(btreeIter, valueStore));
+			perContextIterList.add(new NativeStatementIterator(btreeIter, valueStore, STATEMENT_BATCH_SIZE));
 		}
 
 		if (perContextIterList.size() == 1) {
@@ -306,6 +354,119 @@ class NativeSailStore implements SailStore {
 		return tripleStore.cardinality(subjID, predID, objID, contextID);
 	}
 
+	/**
+	 * Gets the triple indexes that are currently in use, e.g. <tt>spoc,posc</tt>.
+	 */
+	String getTripleIndexes() {
+		return tripleStore.getIndexSpecString();
+	}
+
+	/**
+	 * Adds a triple index while the store remains in use. See {@link TripleStore#addIndex(String, int,
+	 * TripleIndexListener)}.
+	 */
+	void addTripleIndex(String indexSpec, int maxRecordsInMemory, TripleIndexListener listener)
+			throws SailException {
+		try {
+			tripleStore.addIndex(indexSpec, maxRecordsInMemory, listener);
+		} catch (IOException e) {
+			throw new SailException("Unable to add triple index " + indexSpec, e);
+		}
+	}
+
+	/**
+	 * Removes a triple index while the store remains in use. See {@link TripleStore#removeIndex(String,
+	 * TripleIndexListener)}.
+	 */
+	void removeTripleIndex(String indexSpec, TripleIndexListener listener) throws SailException {
+		try {
+			tripleStore.removeIndex(indexSpec, listener);
+		} catch (IOException e) {
+			throw new SailException("Unable to remove triple index " + indexSpec, e);
+		}
+	}
+
+	/**
+	 * Loads the supplied statements into an empty store, bypassing the transaction mechanism of the
+	 * {@link TripleStore}. See {@link TripleStore#bulkLoad(RecordIterator, int)}.
+	 *
+	 * @param statements         The statements to load.
+	 * @param explicit           Whether the statements should be stored as explicit or inferred statements.
+	 * @param maxRecordsInMemory The maximum number of statements to keep in memory while sorting.
+	 * @return The number of statements that were loaded.
+	 */
+	long bulkLoad(Iterator<? extends Statement> statements, boolean explicit, int maxRecordsInMemory)
+			throws SailException {
+		sinkStoreAccessLock.lock();
+		try {
+			if (storeTxnStarted.get()) {
+				throw new SailException("Bulk loading is not possible while a transaction is active");
+			}
+
+			if (redoLog != null) {
+				// The loaded files are forced to disk when logging is resumed
+				redoLog.suspend();
+			}
+
+			try {
+				RecordIterator records = new RecordIterator() {
+
+					@Override
+					public byte[] next() throws IOException {
+						if (!statements.hasNext()) {
+							return null;
+						}
+
+						Statement st = statements.next();
+						byte[] data = new byte[TripleStore.RECORD_LENGTH];
+						ByteArrayUtil.putInt(valueStore.storeValue(st.getSubject()), data, TripleStore.SUBJ_IDX);
+						ByteArrayUtil.putInt(valueStore.storeValue(st.getPredicate()), data, TripleStore.PRED_IDX);
+						ByteArrayUtil.putInt(valueStore.storeValue(st.getObject()), data, TripleStore.OBJ_IDX);
+						if (st.getContext() != null) {
+							ByteArrayUtil.putInt(valueStore.storeValue(st.getContext()), data, TripleStore.CONTEXT_IDX);
+						}
+						if (explicit) {
+							data[TripleStore.FLAG_IDX] = TripleStore.EXPLICIT_FLAG;
+						}
+						return data;
+					}
+
+					@Override
+					public void set(byte[] record) {
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void close() {
+					}
+				};
+
+				Map<Integer, Long> perContextCounts = tripleStore.bulkLoad(records, maxRecordsInMemory);
+				valueStore.sync();
+
+				long loadCount = 0;
+				for (Entry<Integer, Long> entry : perContextCounts.entrySet()) {
+					Integer contextId = entry.getKey();
+					if (contextId > 0) {
+						contextStore.incrementBy((Resource) valueStore.getValue(contextId), entry.getValue());
+					}
+					loadCount += entry.getValue();
+				}
+				contextStore.sync();
+
+				return loadCount;
+			} finally {
+				if (redoLog != null) {
+					redoLog.resume();
+				}
+			}
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			sinkStoreAccessLock.unlock();
+		}
+	}
+
 	private final class NativeSailSource extends BackingSailSource {
 
 		private final boolean explicit;
@@ -335,13 +496,28 @@ class NativeSailStore implements SailStore {
 
 		private final boolean explicit;
 
+		/**
+		 * The statements added and removed through this sink that have not been merged into the TripleStore yet,
+		 * <tt>null</tt> until the first change.
+		 */
+		private TripleDelta delta;
+
 		public NativeSailSink(boolean explicit) throws SailException {
 			this.explicit = explicit;
 		}
 
 		@Override
-		public void close() {
-			// no-op
+		public synchronized void close() {
+			// changes that have not been flushed are discarded
+			if (delta != null) {
+				try {
+					delta.close();
+				} catch (IOException e) {
+					logger.warn("Failed to discard unflushed changes", e);
+				} finally {
+					delta = null;
+				}
+			}
 		}
 
 		@Override
@@ -351,8 +527,10 @@ class NativeSailStore implements SailStore {
 
 		@Override
 		public synchronized void flush() throws SailException {
+			long logPosition = -1L;
 			sinkStoreAccessLock.lock();
 			try {
+				mergeDelta();
 				try {
 					valueStore.sync();
 				} finally {
@@ -370,6 +548,9 @@ class NativeSailStore implements SailStore {
 						}
 					}
 				}
+				if (redoLog != null) {
+					logPosition = redoLog.getPosition();
+				}
 			} catch (IOException e) {
 				logger.error("Encountered an unexpected problem while trying to commit", e);
 				throw new SailException(e);
@@ -379,6 +560,16 @@ class NativeSailStore implements SailStore {
 			} finally {
 				sinkStoreAccessLock.unlock();
 			}
+
+			if (logPosition >= 0L) {
+				// Force the log outside of the lock, so that concurrent commits can share a single force
+				try {
+					redoLog.sync(logPosition);
+				} catch (IOException e) {
+					logger.error("Encountered an unexpected problem while trying to commit", e);
+					throw new SailException(e);
+				}
+			}
 		}
 
 		@Override
@@ -420,18 +611,55 @@ class NativeSailStore implements SailStore {
 		}
 
 		@Override
-		public void clear(Resource... contexts) throws SailException {
+		public synchronized void clear(Resource... contexts) throws SailException {
 			removeStatements(null, null, null, explicit, contexts);
 		}
 
 		@Override
-		public void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
-			addStatement(subj, pred, obj, explicit, ctx);
+		public synchronized void approve(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
+			try {
+				// values are stored outside of the lock, the ValueStore handles concurrent writers
+				int subjID = valueStore.storeValue(subj);
+				int predID = valueStore.storeValue(pred);
+				int objID = valueStore.storeValue(obj);
+				int contextID = ctx == null ? 0 : valueStore.storeValue(ctx);
+
+				getDelta().add(subjID, predID, objID, contextID);
+			} catch (IOException e) {
+				throw new SailException(e);
+			} catch (RuntimeException e) {
+				logger.error("Encountered an unexpected problem while trying to add a statement", e);
+				throw e;
+			}
 		}
 
 		@Override
-		public void deprecate(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
-			removeStatements(subj, pred, obj, explicit, ctx);
+		public synchronized void deprecate(Resource subj, IRI pred, Value obj, Resource ctx) throws SailException {
+			try {
+				int subjID = valueStore.getID(subj);
+				int predID = valueStore.getID(pred);
+				int objID = valueStore.getID(obj);
+				int contextID = ctx == null ? 0 : valueStore.getID(ctx);
+				if (subjID == NativeValue.UNKNOWN_ID || predID == NativeValue.UNKNOWN_ID
+						|| objID == NativeValue.UNKNOWN_ID || contextID == NativeValue.UNKNOWN_ID) {
+					// the statement can not be stored
+					return;
+				}
+
+				getDelta().remove(subjID, predID, objID, contextID);
+			} catch (IOException e) {
+				throw new SailException(e);
+			} catch (RuntimeException e) {
+				logger.error("Encountered an unexpected problem while trying to remove statements", e);
+				throw e;
+			}
+		}
+
+		private TripleDelta getDelta() {
+			if (delta == null) {
+				delta = new TripleDelta(dataDir, SINK_MAX_CHANGES_IN_MEMORY);
+			}
+			return delta;
 		}
 
 		/**
@@ -451,43 +679,42 @@ class NativeSailStore implements SailStore {
 			}
 		}
 
-		private boolean addStatement(Resource subj, IRI pred, Value obj, boolean explicit, Resource... contexts)
-				throws SailException {
-			OpenRDFUtil.verifyContextNotNull(contexts);
-			boolean result = false;
-			sinkStoreAccessLock.lock();
-			try {
-				startTriplestoreTransaction();
-				int subjID = valueStore.storeValue(subj);
-				int predID = valueStore.storeValue(pred);
-				int objID = valueStore.storeValue(obj);
+		/**
+		 * Merges the statements that have been added and removed through this sink into the TripleStore in two sorted
+		 * batches. Must be called while holding the {@link #sinkStoreAccessLock}.
+		 */
+		private void mergeDelta() throws IOException, SailException {
+			if (delta == null || delta.isEmpty()) {
+				return;
+			}
 
-				if (contexts.length == 0) {
-					contexts = new Resource[] { null };
-				}
+			startTriplestoreTransaction();
+			RecordCache addedTriples = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			RecordCache removedTriples = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			try {
+				delta.getChanges(addedTriples, removedTriples);
+				delta.clear();
 
-				for (Resource context : contexts) {
-					int contextID = 0;
-					if (context != null) {
-						contextID = valueStore.storeValue(context);
+				Map<Integer, Long> removed = tripleStore.removeTriples(removedTriples.getRecords(), explicit);
+				for (Entry<Integer, Long> entry : removed.entrySet()) {
+					if (entry.getKey() > 0) {
+						contextStore.decrementBy((Resource) valueStore.getValue(entry.getKey()), entry.getValue());
 					}
+				}
 
-					boolean wasNew = tripleStore.storeTriple(subjID, predID, objID, contextID, explicit);
-					if (wasNew && context != null) {
-						contextStore.increment(context);
+				Map<Integer, Long> added = tripleStore.storeTriples(addedTriples.getRecords(), explicit);
+				for (Entry<Integer, Long> entry : added.entrySet()) {
+					if (entry.getKey() > 0) {
+						contextStore.incrementBy((Resource) valueStore.getValue(entry.getKey()), entry.getValue());
 					}
-					result |= wasNew;
 				}
-			} catch (IOException e) {
-				throw new SailException(e);
-			} catch (RuntimeException e) {
-				logger.error("Encountered an unexpected problem while trying to add a statement", e);
-				throw e;
 			} finally {
-				sinkStoreAccessLock.unlock();
+				try {
+					addedTriples.discard();
+				} finally {
+					removedTriples.discard();
+				}
 			}
-
-			return result;
 		}
 
 		private long removeStatements(Resource subj, IRI pred, Value obj, boolean explicit, Resource... contexts)
@@ -496,6 +723,8 @@ class NativeSailStore implements SailStore {
 
 			sinkStoreAccessLock.lock();
 			try {
+				// earlier changes through this sink must be visible to the pattern
+				mergeDelta();
 				startTriplestoreTransaction();
 				int subjID = NativeValue.UNKNOWN_ID;
 				if (subj != null) {
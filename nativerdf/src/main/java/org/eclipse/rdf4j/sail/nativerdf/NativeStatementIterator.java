@@ -8,6 +8,10 @@
 package org.eclipse.rdf4j.sail.nativerdf;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.common.iteration.LookAheadIteration;
@@ -21,9 +25,22 @@ import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
 /**
  * A statement iterator that wraps a RecordIterator containing statement records and translates these records to
  * {@link Statement} objects.
+ * <p>
+ * Optionally, records are read ahead in batches. The values of a batch are not read right away: the statements are
+ * created with lazy values (see {@link ValueStore#getLazyValues(int[])}) that only carry their internal IDs. Query
+ * evaluation looks up and joins statements using these IDs, so values that are never returned or compared by their
+ * string representation are never read. The lazy subjects, predicates, objects and contexts of a batch each form a
+ * group that is read at once, in file order, when one of its values is first inspected. The batch size starts small,
+ * so that the first statements are returned quickly, and grows as more statements are consumed.
  */
 class NativeStatementIterator extends LookAheadIteration<Statement, SailException> {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final int INITIAL_BATCH_SIZE = 16;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -32,6 +49,17 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 
 	private final ValueStore valueStore;
 
+	/**
+	 * The maximum number of records that are read ahead, <tt>1</tt> if records are not read ahead.
+	 */
+	private final int maxBatchSize;
+
+	private int batchSize;
+
+	private final Deque<Statement> batch = new ArrayDeque<>();
+
+	private boolean btreeIterExhausted;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -40,8 +68,18 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 	 * Creates a new NativeStatementIterator.
 	 */
 	public NativeStatementIterator(RecordIterator btreeIter, ValueStore valueStore) throws IOException {
+		this(btreeIter, valueStore, 1);
+	}
+
+	/**
+	 * Creates a new NativeStatementIterator that reads ahead up to <tt>maxBatchSize</tt> records.
+	 */
+	public NativeStatementIterator(RecordIterator btreeIter, ValueStore valueStore, int maxBatchSize)
+			throws IOException {
 		this.btreeIter = btreeIter;
 		this.valueStore = valueStore;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.batchSize = Math.min(INITIAL_BATCH_SIZE, this.maxBatchSize);
 	}
 
 	/*---------*
@@ -50,6 +88,13 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 
 	@Override
 	public Statement getNextElement() throws SailException {
+		if (maxBatchSize > 1) {
+			if (batch.isEmpty() && !btreeIterExhausted) {
+				readBatch();
+			}
+			return batch.poll();
+		}
+
 		try {
 			byte[] nextValue = btreeIter.next();
 
@@ -78,6 +123,45 @@ class NativeStatementIterator extends LookAheadIteration<Statement, SailExceptio
 		}
 	}
 
+	/**
+	 * Reads the next batch of records and creates statements with lazy values for them.
+	 */
+	private void readBatch() throws SailException {
+		try {
+			List<byte[]> records = new ArrayList<>(batchSize);
+			while (records.size() < batchSize) {
+				byte[] record = btreeIter.next();
+				if (record == null) {
+					btreeIterExhausted = true;
+					break;
+				}
+				records.add(record);
+			}
+			batchSize = Math.min(2 * batchSize, maxBatchSize);
+
+			Value[] subjects = getLazyValues(records, TripleStore.SUBJ_IDX);
+			Value[] predicates = getLazyValues(records, TripleStore.PRED_IDX);
+			Value[] objects = getLazyValues(records, TripleStore.OBJ_IDX);
+			// context ID 0 is the default context, which is resolved to null
+			Value[] contexts = getLazyValues(records, TripleStore.CONTEXT_IDX);
+
+			for (int i = 0; i < records.size(); i++) {
+				batch.add(valueStore.createStatement((Resource) subjects[i], (IRI) predicates[i], objects[i],
+						(Resource) contexts[i]));
+			}
+		} catch (IOException e) {
+			throw causeIOException(e);
+		}
+	}
+
+	private Value[] getLazyValues(List<byte[]> records, int fieldIdx) throws IOException {
+		int[] ids = new int[records.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = ByteArrayUtil.getInt(records.get(i), fieldIdx);
+		}
+		return valueStore.getLazyValues(ids);
+	}
+
 	@Override
 	protected void handleClose() throws SailException {
 		try {
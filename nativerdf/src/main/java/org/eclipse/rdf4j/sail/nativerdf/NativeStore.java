@@ -9,6 +9,12 @@ package org.eclipse.rdf4j.sail.nativerdf;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.FileUtils;
@@ -19,6 +25,7 @@ import org.eclipse.rdf4j.common.concurrent.locks.LockManager;
 import org.eclipse.rdf4j.common.io.MavenUtil;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.ModelFactory;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategy;
 import org.eclipse.rdf4j.query.algebra.evaluation.EvaluationStrategyFactory;
@@ -57,6 +64,17 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 
 	private static final String VERSION = MavenUtil.loadVersion("org.eclipse.rdf4j", "rdf4j-sail-nativerdf", "devel");
 
+	/**
+	 * The default maximum number of statements that are sorted in memory during a {@link #bulkLoad(Iterator) bulk
+	 * load}.
+	 */
+	private static final int BULK_LOAD_MAX_RECORDS_IN_MEMORY = 2 * 1024 * 1024;
+
+	/**
+	 * The default maximum number of bytes of off-heap memory for the statements of a changeset: 32 MiB.
+	 */
+	public static final long DEFAULT_CHANGESET_BUFFER_SIZE = 32 * 1024 * 1024;
+
 	/**
 	 * Specifies which triple indexes this native store must use.
 	 */
@@ -68,6 +86,17 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 	 */
 	private volatile boolean forceSync = false;
 
+	/**
+	 * Flag indicating whether the index and value files should be read through memory mappings. By default, this
+	 * feature is disabled.
+	 */
+	private volatile boolean memoryMapped = false;
+
+	/**
+	 * The maximum number of bytes of off-heap memory for the statements of a changeset.
+	 */
+	private volatile long changesetBufferSize = DEFAULT_CHANGESET_BUFFER_SIZE;
+
 	private volatile int valueCacheSize = ValueStore.VALUE_CACHE_SIZE;
 
 	private volatile int valueIDCacheSize = ValueStore.VALUE_ID_CACHE_SIZE;
@@ -78,6 +107,16 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 
 	private SailStore store;
 
+	/**
+	 * The store that holds the data of this native store, <tt>null</tt> if the store is not initialized.
+	 */
+	private volatile NativeSailStore backingStore;
+
+	/**
+	 * Executor that adds and removes triple indexes in the background, created lazily.
+	 */
+	private ExecutorService indexChangeExecutor;
+
 	/**
 	 * Data directory lock.
 	 */
@@ -153,8 +192,9 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 
 	/**
 	 * Specifiec whether updates should be synced to disk forcefully, must be called before initialization. Enabling
-	 * this feature may prevent corruption in case of events like power loss, but can have a severe impact on write
-	 * performance. By default, this feature is disabled.
+	 * this feature may prevent corruption in case of events like power loss. Updates are then written to a redo log,
+	 * which is synced to disk once per commit; concurrent commits share a single sync. The data files themselves are
+	 * synced in the background at checkpoints of the log. By default, this feature is disabled.
 	 */
 	public void setForceSync(boolean forceSync) {
 		this.forceSync = forceSync;
@@ -164,6 +204,34 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		return forceSync;
 	}
 
+	/**
+	 * Specifies whether the index and value files should be read through memory mappings instead of regular file
+	 * reads, must be called before initialization. This avoids a system call for every read and can significantly
+	 * speed up read-heavy workloads when the files fit in the operating system's page cache. Reads automatically fall
+	 * back to regular file reads if a file can not be mapped. By default, this feature is disabled.
+	 */
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
+	public boolean getMemoryMapped() {
+		return memoryMapped;
+	}
+
+	/**
+	 * Specifies the maximum number of bytes of off-heap memory in which the uncommitted statements that a transaction
+	 * adds or removes are kept; beyond this size, they are spilled to sorted files in the data directory. Each
+	 * transaction holds separate buffers for the added and the removed statements, which only grow as far as needed.
+	 * Defaults to {@link #DEFAULT_CHANGESET_BUFFER_SIZE}.
+	 */
+	public void setChangesetBufferSize(long changesetBufferSize) {
+		this.changesetBufferSize = changesetBufferSize;
+	}
+
+	public long getChangesetBufferSize() {
+		return changesetBufferSize;
+	}
+
 	public void setValueCacheSize(int valueCacheSize) {
 		this.valueCacheSize = valueCacheSize;
 	}
@@ -235,46 +303,30 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		logger.debug("Initializing NativeStore...");
 
 		// Check initialization parameters
-		File dataDir = getDataDir();
-
-		if (dataDir == null) {
-			throw new SailException("Data dir has not been set");
-		} else if (!dataDir.exists()) {
-			boolean success = dataDir.mkdirs();
-			if (!success) {
-				throw new SailException("Unable to create data directory: " + dataDir);
-			}
-		} else if (!dataDir.isDirectory()) {
-			throw new SailException("The specified path does not denote a directory: " + dataDir);
-		} else if (!dataDir.canRead()) {
-			throw new SailException("Not allowed to read from the specified directory: " + dataDir);
-		}
+		File dataDir = checkDataDir();
 
 		// try to lock the directory or fail
 		dirLock = new DirectoryLockManager(dataDir).lockOrFail();
 
 		logger.debug("Data dir is " + dataDir);
 
+		// changesets spill to the data dir, runs that are left behind by a crash are no longer used
+		SpillingRecordSet.deleteRuns(dataDir);
+
 		try {
 			File versionFile = new File(dataDir, "nativerdf.ver");
 			String version = versionFile.exists() ? FileUtils.readFileToString(versionFile) : null;
 			if (!VERSION.equals(version) && upgradeStore(dataDir, version)) {
 				FileUtils.writeStringToFile(versionFile, VERSION);
 			}
-			final NativeSailStore master = new NativeSailStore(dataDir, tripleIndexes, forceSync, valueCacheSize,
-					valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize);
+			final NativeSailStore master = new NativeSailStore(dataDir, tripleIndexes, forceSync, memoryMapped,
+					valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize);
+			this.backingStore = master;
 			this.store = new SnapshotSailStore(master, new ModelFactory() {
 
 				@Override
 				public Model createEmptyModel() {
-					return new MemoryOverflowModel() {
-
-						@Override
-						protected SailStore createSailStore(File dataDir) throws IOException, SailException {
-							// Model can't fit into memory, use another NativeSailStore to store delta
-							return new NativeSailStore(dataDir, getTripleIndexes());
-						}
-					};
+					return new ChangesetModel(dataDir, changesetBufferSize);
 				}
 			}) {
 
@@ -300,6 +352,7 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 			};
 		} catch (Throwable e) {
 			// NativeStore initialization failed, release any allocated files
+			backingStore = null;
 			dirLock.release();
 
 			throw new SailException(e);
@@ -308,11 +361,172 @@ public class NativeStore extends AbstractNotifyingSail implements FederatedServi
 		logger.debug("NativeStore initialized");
 	}
 
+	/**
+	 * Loads the supplied statements into a new, empty native store. This is an offline operation that must be called
+	 * before initialization. Instead of adding the statements one by one in a transaction, the statements are sorted
+	 * externally for each triple index and the indexes are built bottom-up. This is considerably faster than regular
+	 * transactional loading and results in smaller index files. The contexts of the statements are preserved.
+	 * 
+	 * @param statements The statements to load, in any order. Duplicates are ignored.
+	 * @return The number of (distinct) statements that were loaded.
+	 * @throws SailException         If the data could not be loaded.
+	 * @throws IllegalStateException If the store has already been initialized or already contains statements.
+	 */
+	public long bulkLoad(Iterator<? extends Statement> statements) throws SailException {
+		return bulkLoad(statements, BULK_LOAD_MAX_RECORDS_IN_MEMORY);
+	}
+
+	/**
+	 * Loads the supplied statements into a new, empty native store, see {@link #bulkLoad(Iterator)}.
+	 * 
+	 * @param statements         The statements to load, in any order. Duplicates are ignored.
+	 * @param maxRecordsInMemory The maximum number of statements that are sorted in memory before a sorted run is
+	 *                           written to a temporary file.
+	 * @return The number of (distinct) statements that were loaded.
+	 */
+	public long bulkLoad(Iterator<? extends Statement> statements, int maxRecordsInMemory) throws SailException {
+		if (isInitialized()) {
+			throw new IllegalStateException("sail has already been intialized");
+		}
+
+		File dataDir = checkDataDir();
+		Lock bulkLoadLock = new DirectoryLockManager(dataDir).lockOrFail();
+		try {
+			File versionFile = new File(dataDir, "nativerdf.ver");
+			boolean newStore = !versionFile.exists();
+
+			long loadCount;
+			NativeSailStore master = new NativeSailStore(dataDir, tripleIndexes, forceSync, memoryMapped,
+					valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize);
+			try {
+				loadCount = master.bulkLoad(statements, true, maxRecordsInMemory);
+			} finally {
+				master.close();
+			}
+
+			if (newStore) {
+				// Freshly loaded data doesn't need to be upgraded
+				FileUtils.writeStringToFile(versionFile, VERSION);
+			}
+
+			logger.debug("Bulk loaded {} statements", loadCount);
+			return loadCount;
+		} catch (IOException e) {
+			throw new SailException(e);
+		} finally {
+			bulkLoadLock.release();
+		}
+	}
+
+	/**
+	 * Adds a triple index to the initialized store in the background. The store remains available for queries and
+	 * updates while the index is being built; new transactions are only held back briefly while the index is put into
+	 * use. Index changes are performed one at a time, in the order in which they were requested.
+	 * <p>
+	 * The change is persisted in the store's data directory, but an explicitly configured set of triple indexes (see
+	 * {@link #setTripleIndexes(String)}) takes precedence when the store is initialized again; such a configuration
+	 * should be updated accordingly.
+	 *
+	 * @param indexSpec The index to add, e.g. <tt>opsc</tt>.
+	 * @param listener  A listener that is notified of the progress, may be <tt>null</tt>.
+	 * @return A future that completes once the index is used for queries. If the index could not be added, the
+	 *         future fails with a {@link SailException} or an {@link IllegalArgumentException}.
+	 * @throws IllegalStateException If the store is not initialized.
+	 */
+	public Future<Void> addTripleIndex(String indexSpec, TripleIndexListener listener) {
+		NativeSailStore backingStore = getBackingStore();
+		return submitIndexChange(() -> {
+			backingStore.addTripleIndex(indexSpec, BULK_LOAD_MAX_RECORDS_IN_MEMORY, listener);
+			tripleIndexes = backingStore.getTripleIndexes();
+			return null;
+		});
+	}
+
+	/**
+	 * Removes a triple index from the initialized store in the background. The store remains available for queries
+	 * and updates. The index files are deleted once all queries that use the index have finished.
+	 * <p>
+	 * As with {@link #addTripleIndex(String, TripleIndexListener)}, an explicitly configured set of triple indexes
+	 * should be updated accordingly.
+	 *
+	 * @param indexSpec The index to remove, e.g. <tt>opsc</tt>.
+	 * @param listener  A listener that is notified of the progress, may be <tt>null</tt>.
+	 * @return A future that completes once the index has been removed. If the index could not be removed, the future
+	 *         fails with a {@link SailException}, an {@link IllegalArgumentException} or an
+	 *         {@link IllegalStateException}.
+	 * @throws IllegalStateException If the store is not initialized.
+	 */
+	public Future<Void> removeTripleIndex(String indexSpec, TripleIndexListener listener) {
+		NativeSailStore backingStore = getBackingStore();
+		return submitIndexChange(() -> {
+			backingStore.removeTripleIndex(indexSpec, listener);
+			tripleIndexes = backingStore.getTripleIndexes();
+			return null;
+		});
+	}
+
+	private NativeSailStore getBackingStore() {
+		NativeSailStore backingStore = this.backingStore;
+		if (backingStore == null) {
+			throw new IllegalStateException("sail has not been initialized");
+		}
+		return backingStore;
+	}
+
+	private synchronized Future<Void> submitIndexChange(Callable<Void> indexChange) {
+		if (indexChangeExecutor == null) {
+			indexChangeExecutor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "rdf4j-nativerdf-index-change");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return indexChangeExecutor.submit(indexChange);
+	}
+
+	/**
+	 * Interrupts a running index change and waits for it to finish.
+	 */
+	private synchronized void shutDownIndexChangeExecutor() {
+		if (indexChangeExecutor != null) {
+			indexChangeExecutor.shutdownNow();
+			try {
+				if (!indexChangeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+					logger.warn("Index change did not finish in time, shutting down regardless");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			indexChangeExecutor = null;
+		}
+	}
+
+	private File checkDataDir() throws SailException {
+		File dataDir = getDataDir();
+
+		if (dataDir == null) {
+			throw new SailException("Data dir has not been set");
+		} else if (!dataDir.exists()) {
+			boolean success = dataDir.mkdirs();
+			if (!success) {
+				throw new SailException("Unable to create data directory: " + dataDir);
+			}
+		} else if (!dataDir.isDirectory()) {
+			throw new SailException("The specified path does not denote a directory: " + dataDir);
+		} else if (!dataDir.canRead()) {
+			throw new SailException("Not allowed to read from the specified directory: " + dataDir);
+		}
+
+		return dataDir;
+	}
+
 	@Override
 	protected void shutDownInternal() throws SailException {
 		logger.debug("Shutting down NativeStore...");
 
 		try {
+			shutDownIndexChangeExecutor();
+			backingStore = null;
 			store.close();
 
 			logger.debug("NativeStore shut down");
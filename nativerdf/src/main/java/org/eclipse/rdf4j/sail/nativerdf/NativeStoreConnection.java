@@ -11,13 +11,22 @@ import java.io.IOException;
 
 import org.eclipse.rdf4j.IsolationLevels;
 import org.eclipse.rdf4j.common.concurrent.locks.Lock;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.SailReadOnlyException;
 import org.eclipse.rdf4j.sail.base.SailSourceConnection;
 import org.eclipse.rdf4j.sail.helpers.DefaultSailChangedEvent;
+import org.eclipse.rdf4j.sail.nativerdf.model.LazyValueGroup;
 
 /**
  * @author Arjohn Kampman
@@ -141,6 +150,65 @@ public class NativeStoreConnection extends SailSourceConnection {
 		return ret;
 	}
 
+	/**
+	 * Loads the lazy values of the query results, see {@link LazyValueGroup}. Values that are only used during
+	 * evaluation are not loaded.
+	 */
+	@Override
+	protected CloseableIteration<? extends BindingSet, QueryEvaluationException> evaluateInternal(TupleExpr tupleExpr,
+			Dataset dataset, BindingSet bindings, boolean includeInferred) throws SailException {
+		return new ConvertingIteration<BindingSet, BindingSet, QueryEvaluationException>(
+				super.evaluateInternal(tupleExpr, dataset, bindings, includeInferred)) {
+
+			@Override
+			protected BindingSet convert(BindingSet bindingSet) throws QueryEvaluationException {
+				try {
+					for (Binding binding : bindingSet) {
+						LazyValueGroup.load(binding.getValue());
+					}
+				} catch (SailException e) {
+					throw new QueryEvaluationException(e);
+				}
+				return bindingSet;
+			}
+		};
+	}
+
+	/**
+	 * Loads the lazy values of the returned statements, see {@link LazyValueGroup}.
+	 */
+	@Override
+	protected CloseableIteration<? extends Statement, SailException> getStatementsInternal(Resource subj, IRI pred,
+			Value obj, boolean includeInferred, Resource... contexts) throws SailException {
+		return new ConvertingIteration<Statement, Statement, SailException>(
+				super.getStatementsInternal(subj, pred, obj, includeInferred, contexts)) {
+
+			@Override
+			protected Statement convert(Statement st) throws SailException {
+				loadValues(st);
+				return st;
+			}
+		};
+	}
+
+	/**
+	 * Loads the lazy values of removed statements before they are passed to the connection listeners.
+	 */
+	@Override
+	protected void notifyStatementRemoved(Statement st) {
+		if (hasConnectionListeners()) {
+			loadValues(st);
+			super.notifyStatementRemoved(st);
+		}
+	}
+
+	private void loadValues(Statement st) throws SailException {
+		LazyValueGroup.load(st.getSubject());
+		LazyValueGroup.load(st.getPredicate());
+		LazyValueGroup.load(st.getObject());
+		LazyValueGroup.load(st.getContext());
+	}
+
 	@Override
 	protected void clearInternal(Resource... contexts) throws SailException {
 		super.clearInternal(contexts);
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The writes and truncations of a transactional {@link MappedNioFile} that have been logged in a {@link RedoLog}, but
+ * that may not be applied to the file before the barrier that preceded them is durable. The changes are applied to the
+ * file in the order in which they were made, as soon as the log has been forced far enough.
+ * <p>
+ * Reads of the file must see the state after all pending changes. For this purpose, the data of the pending writes is
+ * also kept in a map of non-overlapping ranges that holds the latest data for every offset. Bytes of the file itself
+ * beyond the smallest pending truncation are read as zeros, unless a range covers them.
+ * <p>
+ * This class is not thread-safe; {@link MappedNioFile} guards it with a read/write lock.
+ */
+final class PendingChanges {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	/**
+	 * The pending changes, in the order in which they were made and therefore in the order of their barriers.
+	 */
+	private final ArrayDeque<Change> changes = new ArrayDeque<>();
+
+	/**
+	 * The latest data of the pending writes, by file offset.
+	 */
+	private final TreeMap<Long, Range> ranges = new TreeMap<>();
+
+	private long nextSequence;
+
+	/**
+	 * The size of the file after all pending changes.
+	 */
+	private long size;
+
+	/**
+	 * The smallest size that the file is truncated to by a pending change, or {@link Long#MAX_VALUE} if no truncation
+	 * is pending.
+	 */
+	private long truncatedSize = Long.MAX_VALUE;
+
+	/**
+	 * The number of bytes written by the pending changes.
+	 */
+	private long byteCount;
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Gets the size of the file after all pending changes.
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of bytes that may be read from the file itself at the specified offset, before pending
+	 * truncations are taken into account.
+	 */
+	long getFileBytes(long offset) {
+		return Math.max(0L, truncatedSize - offset);
+	}
+
+	/**
+	 * Adds a pending write.
+	 *
+	 * @param offset   The file offset of the write.
+	 * @param data     The written data, which must not be modified afterwards.
+	 * @param barrier  The log position that must be durable before the write may be applied.
+	 * @param fileSize The current size of the file, used if no other changes are pending.
+	 */
+	void write(long offset, byte[] data, long barrier, long fileSize) {
+		if (changes.isEmpty()) {
+			size = fileSize;
+		}
+		long sequence = nextSequence++;
+		changes.add(new Change(sequence, barrier, offset, data));
+		byteCount += data.length;
+
+		if (data.length > 0) {
+			long end = offset + data.length;
+			removeRanges(offset, end);
+			ranges.put(offset, new Range(data, 0, data.length, sequence));
+			size = Math.max(size, end);
+		}
+	}
+
+	/**
+	 * Adds a pending truncation.
+	 *
+	 * @param newSize  The size to truncate the file to.
+	 * @param barrier  The log position that must be durable before the truncation may be applied.
+	 * @param fileSize The current size of the file, used if no other changes are pending.
+	 */
+	void truncate(long newSize, long barrier, long fileSize) {
+		if (changes.isEmpty()) {
+			size = fileSize;
+		}
+		changes.add(new Change(nextSequence++, barrier, newSize, null));
+
+		if (newSize < size) {
+			removeRanges(newSize, Long.MAX_VALUE);
+			size = newSize;
+			truncatedSize = Math.min(truncatedSize, newSize);
+		}
+	}
+
+	/**
+	 * Copies the data of the pending writes that overlap the specified part of the file into a buffer.
+	 *
+	 * @param buf    The buffer to copy the data to.
+	 * @param start  The position in the buffer that corresponds to the offset.
+	 * @param offset The file offset of the part of the file.
+	 * @param length The length of the part of the file.
+	 */
+	void copyWrites(ByteBuffer buf, int start, long offset, int length) {
+		long end = offset + length;
+		Map.Entry<Long, Range> floor = ranges.floorEntry(offset);
+		long from = floor != null && floor.getKey() + floor.getValue().length > offset ? floor.getKey() : offset;
+
+		for (Map.Entry<Long, Range> entry : ranges.subMap(from, end).entrySet()) {
+			long rangeOffset = entry.getKey();
+			Range range = entry.getValue();
+			long copyStart = Math.max(rangeOffset, offset);
+			long copyEnd = Math.min(rangeOffset + range.length, end);
+
+			ByteBuffer dst = buf.duplicate();
+			dst.position(start + (int) (copyStart - offset));
+			dst.put(range.data, range.from + (int) (copyStart - rangeOffset), (int) (copyEnd - copyStart));
+		}
+	}
+
+	/**
+	 * Applies the pending changes whose barrier is durable to the file, in the order in which they were made.
+	 *
+	 * @param forcedPosition The log position up to which the log has been forced to disk.
+	 * @param file           The file to apply the changes to.
+	 */
+	void apply(long forcedPosition, MappedNioFile file) throws IOException {
+		long appliedSequence = -1L;
+		Change change;
+		while ((change = changes.peek()) != null && change.barrier <= forcedPosition) {
+			if (change.data != null) {
+				file.writeUnlogged(ByteBuffer.wrap(change.data), change.offset);
+				byteCount -= change.data.length;
+			} else {
+				file.truncateUnlogged(change.offset);
+			}
+			changes.remove();
+			appliedSequence = change.sequence;
+		}
+
+		if (appliedSequence >= 0L) {
+			long applied = appliedSequence;
+			ranges.values().removeIf(range -> range.sequence <= applied);
+
+			truncatedSize = Long.MAX_VALUE;
+			for (Change pending : changes) {
+				if (pending.data == null) {
+					truncatedSize = Math.min(truncatedSize, pending.offset);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the parts of the ranges that overlap the specified part of the file, splitting ranges that extend beyond
+	 * it.
+	 */
+	private void removeRanges(long start, long end) {
+		Map.Entry<Long, Range> lower = ranges.lowerEntry(start);
+		if (lower != null) {
+			long rangeOffset = lower.getKey();
+			Range range = lower.getValue();
+			long rangeEnd = rangeOffset + range.length;
+			if (rangeEnd > start) {
+				ranges.put(rangeOffset, range.head((int) (start - rangeOffset)));
+				if (rangeEnd > end) {
+					ranges.put(end, range.tail((int) (end - rangeOffset)));
+				}
+			}
+		}
+
+		SortedMap<Long, Range> overlapped = ranges.subMap(start, end);
+		if (!overlapped.isEmpty()) {
+			long lastOffset = overlapped.lastKey();
+			Range last = overlapped.get(lastOffset);
+			overlapped.clear();
+			if (lastOffset + last.length > end) {
+				ranges.put(end, last.tail((int) (end - lastOffset)));
+			}
+		}
+	}
+
+	/*---------------*
+	 * Inner classes *
+	 *---------------*/
+
+	/**
+	 * A pending write, or a pending truncation if it has no data.
+	 */
+	private static final class Change {
+
+		final long sequence;
+
+		final long barrier;
+
+		/**
+		 * The file offset of a write, or the new file size of a truncation.
+		 */
+		final long offset;
+
+		final byte[] data;
+
+		Change(long sequence, long barrier, long offset, byte[] data) {
+			this.sequence = sequence;
+			this.barrier = barrier;
+			this.offset = offset;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * A part of the data of a pending write.
+	 */
+	private static final class Range {
+
+		final byte[] data;
+
+		final int from;
+
+		final int length;
+
+		/**
+		 * The sequence number of the write, the range can be dropped once the write has been applied.
+		 */
+		final long sequence;
+
+		Range(byte[] data, int from, int length, long sequence) {
+			this.data = data;
+			this.from = from;
+			this.length = length;
+			this.sequence = sequence;
+		}
+
+		Range head(int length) {
+			return new Range(data, from, length, sequence);
+		}
+
+		Range tail(int skip) {
+			return new Range(data, from + skip, length - skip, sequence);
+		}
+	}
+}
@@ -0,0 +1,696 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only redo log for the files of a native store. Every write to a {@link MappedNioFile} that is attached to
+ * the log is first appended to the log and then applied to the file itself, without forcing the file to disk. A
+ * transaction is made durable with a single {@link #sync(long) sync} of the log; committers that sync concurrently
+ * share a single force of the log file.
+ * <p>
+ * The attached files are forced to disk lazily by checkpoints, which run in the background once the log has grown
+ * beyond {@link #CHECKPOINT_SIZE} bytes. A checkpoint starts a new log segment, forces all attached files and then
+ * deletes the older segments. When the log is opened, the writes in any remaining segments are replayed, restoring the
+ * files to the state of the last write that was logged completely.
+ * <p>
+ * The transaction status of the {@link TripleStore} describes the state of its index files. To keep the two
+ * consistent, a write to a file that is attached as <em>transactional</em> is only applied once all writes that
+ * preceded the last {@link #setBarrier() barrier} have been logged durably. Such writes do not force the log
+ * themselves: they are kept as pending changes of their file, which are applied whenever a {@link #sync(long) sync} or
+ * a checkpoint has forced the log far enough. A transaction therefore forces the log only once, when it is committed.
+ * <p>
+ * Each log segment starts with a 4-byte header consisting of a magic number and a format version, followed by the
+ * records. A record consists of:
+ *
+ * <pre>
+ *   byte 1 - 4      : the length of the record body, as an int.
+ *   byte 5 - 8      : the CRC-32 checksum of the record body, as an int.
+ *   byte 9          : the record type: write, truncate or delete.
+ *   byte 10 - 11    : the length of the UTF-8 encoded file name, as a short.
+ *   byte 12 - A     : the UTF-8 encoded name of the file.
+ *   byte A+1 - A+8  : the file offset of a write, or the new file size of a truncate, as a long.
+ *   byte A+9 - B    : the written data.
+ * </pre>
+ */
+public class RedoLog implements Closeable {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	static final String FILE_PREFIX = "redo-log.";
+
+	/**
+	 * Magic number "Native Redo Log" to detect whether the file is actually a redo log segment. The first three bytes
+	 * of the file should be equal to this magic number.
+	 */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'n', 'r', 'l' };
+
+	/**
+	 * File format version, stored as the fourth byte in redo log segments.
+	 */
+	private static final byte FILE_FORMAT_VERSION = 1;
+
+	private static final int HEADER_LENGTH = MAGIC_NUMBER.length + 1;
+
+	/**
+	 * The number of bytes that may be appended to the log before a checkpoint is started: 64 MiB.
+	 */
+	static final long CHECKPOINT_SIZE = 64L * 1024L * 1024L;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final byte WRITE_RECORD = 1;
+
+	private static final byte TRUNCATE_RECORD = 2;
+
+	private static final byte DELETE_RECORD = 3;
+
+	private static final Logger logger = LoggerFactory.getLogger(RedoLog.class);
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final File dir;
+
+	/**
+	 * The files whose writes are logged, forced to disk by checkpoints.
+	 */
+	private final Set<MappedNioFile> attachedFiles = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Lock that is held for reading while a write is logged and applied to its file, and for writing while a new
+	 * segment is started. All writes that were logged in older segments have therefore been applied to their files
+	 * once a new segment has been started.
+	 */
+	private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Lock ensuring that only one thread forces the log at a time; threads that wait for this lock are likely to find
+	 * their records forced already.
+	 */
+	private final Object forceLock = new Object();
+
+	/**
+	 * Buffer for records that have been appended but not yet been written to the current segment.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private FileChannel segment;
+
+	private long segmentNumber;
+
+	/**
+	 * The log position at which the current segment starts. Positions count the bytes of all records that have been
+	 * appended since the log was opened, over all segments.
+	 */
+	private volatile long segmentStart;
+
+	/**
+	 * The log position up to which records have been appended, including buffered records.
+	 */
+	private long position;
+
+	/**
+	 * The log position up to which records have been written to the current segment.
+	 */
+	private long writtenPosition;
+
+	/**
+	 * The log position up to which records have been forced to disk.
+	 */
+	private volatile long forcedPosition;
+
+	/**
+	 * The log position of the last barrier.
+	 */
+	private long barrierPosition;
+
+	/**
+	 * Flag indicating whether writes are applied to their files without logging them.
+	 */
+	private volatile boolean suspended;
+
+	private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+
+	/**
+	 * Executor used to run checkpoints in the background, created lazily.
+	 */
+	private ExecutorService checkpointExecutor;
+
+	private volatile boolean closed;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * Opens the redo log in the specified directory. The writes of any existing log segments are replayed and these
+	 * segments are deleted, so this must happen before the logged files are opened.
+	 *
+	 * @param dir The directory for the log segments, which must also contain the logged files.
+	 * @throws IOException If the existing segments could not be replayed or a new segment could not be created.
+	 */
+	public RedoLog(File dir) throws IOException {
+		this.dir = dir;
+
+		List<File> segmentFiles = getSegmentFiles();
+		if (!segmentFiles.isEmpty()) {
+			replay(segmentFiles);
+			segmentNumber = getSegmentNumber(segmentFiles.get(segmentFiles.size() - 1));
+			for (File segmentFile : segmentFiles) {
+				Files.delete(segmentFile.toPath());
+			}
+		}
+
+		startSegment();
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Gets the log position up to which records have been appended. Passing this position to {@link #sync(long)} makes
+	 * all writes that have been logged so far durable.
+	 */
+	public synchronized long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Makes sure that the log has been forced to disk up to the specified position. If another thread is forcing the
+	 * log, this method waits for it and then only forces the log itself if the position has not been reached yet.
+	 * Afterwards, the pending changes of transactional files whose barrier is durable are applied.
+	 *
+	 * @param position A log position obtained from {@link #getPosition()}.
+	 * @throws IOException If the log could not be forced to disk.
+	 */
+	public void sync(long position) throws IOException {
+		if (forcedPosition < position) {
+			synchronized (forceLock) {
+				if (forcedPosition < position) {
+					FileChannel channel;
+					long targetPosition;
+					synchronized (this) {
+						flushBuffer();
+						channel = segment;
+						targetPosition = writtenPosition;
+					}
+					channel.force(false);
+					forcedPosition = targetPosition;
+				}
+			}
+		}
+
+		applyPendingChanges();
+
+		if (position - segmentStart > CHECKPOINT_SIZE) {
+			scheduleCheckpoint();
+		}
+	}
+
+	/**
+	 * Sets a barrier at the current log position. Subsequent writes to transactional files are only applied once the
+	 * log has been forced up to this position.
+	 */
+	public synchronized void setBarrier() {
+		barrierPosition = position;
+	}
+
+	/**
+	 * Gets the log position up to which records have been forced to disk.
+	 */
+	long getForcedPosition() {
+		return forcedPosition;
+	}
+
+	/**
+	 * Starts a new log segment, applies the pending changes of all attached files, forces these files to disk and
+	 * deletes the older segments. Writes can continue while the files are forced.
+	 *
+	 * @throws IOException If the files could not be forced or a new segment could not be started.
+	 */
+	public void checkpoint() throws IOException {
+		long previousSegmentNumber;
+
+		checkpointLock.writeLock().lock();
+		try {
+			synchronized (forceLock) {
+				synchronized (this) {
+					if (closed) {
+						return;
+					}
+
+					flushBuffer();
+					segment.force(false);
+					forcedPosition = writtenPosition;
+					segment.close();
+
+					previousSegmentNumber = segmentNumber;
+					startSegment();
+				}
+			}
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+
+		for (MappedNioFile file : attachedFiles) {
+			try {
+				// The changes that were logged in the older segments are durable now
+				file.applyPendingChanges(forcedPosition);
+				file.force(false);
+			} catch (ClosedChannelException e) {
+				// The file has been forced when it was closed
+			}
+		}
+
+		for (File segmentFile : getSegmentFiles()) {
+			if (getSegmentNumber(segmentFile) <= previousSegmentNumber) {
+				Files.delete(segmentFile.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Stops logging writes until {@link #resume()} is called, for example while a large amount of data is loaded
+	 * into empty files. The files are not protected by the log in the meantime.
+	 */
+	public void suspend() throws IOException {
+		checkpoint();
+		checkpointLock.writeLock().lock();
+		try {
+			// Unlogged writes must not be overwritten by pending changes later on
+			sync(getPosition());
+			suspended = true;
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Resumes logging writes after a call to {@link #suspend()}, forcing all files that have been written in the
+	 * meantime to disk.
+	 */
+	public void resume() throws IOException {
+		checkpointLock.writeLock().lock();
+		try {
+			suspended = false;
+		} finally {
+			checkpointLock.writeLock().unlock();
+		}
+		checkpoint();
+	}
+
+	/**
+	 * Closes the log after a final checkpoint and deletes its segments. The attached files should have been closed
+	 * before.
+	 */
+	@Override
+	public void close() throws IOException {
+		ExecutorService executor;
+		synchronized (this) {
+			executor = checkpointExecutor;
+			checkpointExecutor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		try {
+			checkpoint();
+		} finally {
+			synchronized (this) {
+				if (!closed) {
+					closed = true;
+					segment.close();
+				}
+			}
+		}
+
+		// All logged writes have been forced to disk
+		for (File segmentFile : getSegmentFiles()) {
+			Files.delete(segmentFile.toPath());
+		}
+	}
+
+	/**
+	 * Registers a file whose writes are to be logged. Called by {@link MappedNioFile#setRedoLog(RedoLog, boolean)}.
+	 */
+	void attach(MappedNioFile file) {
+		if (!dir.getAbsoluteFile().equals(file.getFile().getAbsoluteFile().getParentFile())) {
+			throw new IllegalArgumentException(
+					"File is not stored in the directory of the redo log: " + file.getFile());
+		}
+		attachedFiles.add(file);
+	}
+
+	void detach(MappedNioFile file) {
+		attachedFiles.remove(file);
+	}
+
+	/**
+	 * Logs a write to an attached file and then applies it to the file, or adds it to the pending changes of a
+	 * transactional file if the last barrier is not durable yet.
+	 *
+	 * @param file          The file that is written.
+	 * @param buf           The data to write.
+	 * @param offset        The file offset to write the data at.
+	 * @param transactional Flag indicating whether the write must wait for the last barrier to become durable.
+	 * @return The number of bytes written.
+	 */
+	int write(MappedNioFile file, ByteBuffer buf, long offset, boolean transactional) throws IOException {
+		checkpointLock.readLock().lock();
+		try {
+			if (!suspended) {
+				ByteBuffer data = buf.duplicate();
+				byte[] bytes = new byte[data.remaining()];
+				data.get(bytes);
+				long barrier = append(WRITE_RECORD, file, offset, bytes);
+				if (transactional) {
+					return file.writeAfterBarrier(this, buf, bytes, offset, barrier);
+				}
+			}
+			return file.writeUnlogged(buf, offset);
+		} finally {
+			checkpointLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Logs the truncation of an attached file and then truncates the file, or adds the truncation to the pending
+	 * changes of a transactional file if the last barrier is not durable yet.
+	 */
+	void truncate(MappedNioFile file, long size, boolean transactional) throws IOException {
+		checkpointLock.readLock().lock();
+		try {
+			if (!suspended) {
+				long barrier = append(TRUNCATE_RECORD, file, size, null);
+				if (transactional) {
+					file.truncateAfterBarrier(this, size, barrier);
+					return;
+				}
+			}
+			file.truncateUnlogged(size);
+		} finally {
+			checkpointLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Logs the deletion of an attached file and then deletes the file.
+	 */
+	boolean delete(MappedNioFile file) throws IOException {
+		checkpointLock.readLock().lock();
+		try {
+			if (!suspended) {
+				append(DELETE_RECORD, file, 0L, null);
+			}
+			detach(file);
+			return file.deleteUnlogged();
+		} finally {
+			checkpointLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Appends a record to the log.
+	 *
+	 * @return The position of the last barrier before the record.
+	 */
+	private long append(byte type, MappedNioFile file, long offset, byte[] data) throws IOException {
+		byte[] name = file.getFile().getName().getBytes(StandardCharsets.UTF_8);
+		int dataLength = data == null ? 0 : data.length;
+
+		ByteBuffer record = ByteBuffer.allocate(8 + 1 + 2 + name.length + 8 + dataLength);
+		record.putInt(record.capacity() - 8);
+		record.putInt(0);
+		record.put(type);
+		record.putShort((short) name.length);
+		record.put(name);
+		record.putLong(offset);
+		if (data != null) {
+			record.put(data);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, record.capacity() - 8);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+
+		synchronized (this) {
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+
+			if (record.remaining() > buffer.remaining()) {
+				flushBuffer();
+			}
+			if (record.remaining() > buffer.remaining()) {
+				writeFully(segment, record, HEADER_LENGTH + writtenPosition - segmentStart);
+				writtenPosition += record.capacity();
+			} else {
+				buffer.put(record);
+			}
+			position += record.capacity();
+
+			return barrierPosition;
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the current segment. Must be called while synchronized on this object.
+	 */
+	private void flushBuffer() throws IOException {
+		if (buffer.position() > 0) {
+			buffer.flip();
+			int length = buffer.remaining();
+			writeFully(segment, buffer, HEADER_LENGTH + writtenPosition - segmentStart);
+			writtenPosition += length;
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Creates a new segment, starting at the current log position. Must be called while synchronized on this object
+	 * and with an empty buffer.
+	 */
+	private void startSegment() throws IOException {
+		segmentNumber++;
+		File segmentFile = new File(dir, FILE_PREFIX + segmentNumber);
+		segment = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.put(MAGIC_NUMBER);
+		header.put(FILE_FORMAT_VERSION);
+		header.flip();
+		writeFully(segment, header, 0L);
+
+		segmentStart = position;
+	}
+
+	private void applyPendingChanges() throws IOException {
+		long forced = forcedPosition;
+		for (MappedNioFile file : attachedFiles) {
+			try {
+				file.applyPendingChanges(forced);
+			} catch (ClosedChannelException e) {
+				// The pending changes have been applied when the file was closed
+			}
+		}
+	}
+
+	private void scheduleCheckpoint() {
+		if (checkpointScheduled.compareAndSet(false, true)) {
+			ExecutorService executor = getCheckpointExecutor();
+			if (executor == null) {
+				checkpointScheduled.set(false);
+				return;
+			}
+			executor.execute(() -> {
+				try {
+					checkpoint();
+				} catch (IOException e) {
+					logger.warn("Failed to checkpoint redo log", e);
+				} finally {
+					checkpointScheduled.set(false);
+				}
+			});
+		}
+	}
+
+	private synchronized ExecutorService getCheckpointExecutor() {
+		if (checkpointExecutor == null && !closed) {
+			checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "rdf4j-nativerdf-checkpoint");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return checkpointExecutor;
+	}
+
+	private List<File> getSegmentFiles() {
+		File[] files = dir.listFiles((d, name) -> name.startsWith(FILE_PREFIX) && getSegmentNumber(name) > 0L);
+		List<File> segmentFiles = new ArrayList<>(files == null ? Arrays.asList() : Arrays.asList(files));
+		segmentFiles.sort((f1, f2) -> Long.compare(getSegmentNumber(f1), getSegmentNumber(f2)));
+		return segmentFiles;
+	}
+
+	private static long getSegmentNumber(File segmentFile) {
+		return getSegmentNumber(segmentFile.getName());
+	}
+
+	private static long getSegmentNumber(String fileName) {
+		try {
+			return Long.parseLong(fileName.substring(FILE_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	/**
+	 * Applies the writes in the specified segments to their files. Replaying stops at the first record that has not
+	 * been logged completely.
+	 */
+	private void replay(List<File> segmentFiles) throws IOException {
+		logger.info("Detected redo log, replaying logged writes");
+
+		Map<String, FileChannel> channels = new HashMap<>();
+		long recordCount = 0L;
+		try {
+			for (File segmentFile : segmentFiles) {
+				byte[] segmentData = Files.readAllBytes(segmentFile.toPath());
+				ByteBuffer buf = ByteBuffer.wrap(segmentData);
+
+				if (segmentData.length < HEADER_LENGTH) {
+					// Segment was created just before a crash
+					continue;
+				}
+
+				byte[] magicNumber = new byte[MAGIC_NUMBER.length];
+				buf.get(magicNumber);
+				if (!Arrays.equals(MAGIC_NUMBER, magicNumber)) {
+					throw new IOException("File doesn't contain a redo log segment: " + segmentFile);
+				}
+				if (buf.get() != FILE_FORMAT_VERSION) {
+					throw new IOException("Unable to read redo log segment " + segmentFile
+							+ "; invalid file format version");
+				}
+
+				while (buf.remaining() >= 8) {
+					int bodyLength = buf.getInt();
+					int checksum = buf.getInt();
+					if (bodyLength < 11 || bodyLength > buf.remaining()) {
+						break;
+					}
+
+					CRC32 crc = new CRC32();
+					crc.update(segmentData, buf.position(), bodyLength);
+					if ((int) crc.getValue() != checksum) {
+						break;
+					}
+
+					ByteBuffer body = buf.slice();
+					body.limit(bodyLength);
+					buf.position(buf.position() + bodyLength);
+
+					replayRecord(body, channels);
+					recordCount++;
+				}
+
+				if (buf.hasRemaining()) {
+					logger.warn("Redo log segment {} ends with an incomplete record, ignoring the remainder of the log",
+							segmentFile);
+					break;
+				}
+			}
+
+			for (FileChannel channel : channels.values()) {
+				channel.force(false);
+			}
+		} finally {
+			for (FileChannel channel : channels.values()) {
+				channel.close();
+			}
+		}
+
+		logger.info("Replayed {} logged writes", recordCount);
+	}
+
+	private void replayRecord(ByteBuffer body, Map<String, FileChannel> channels) throws IOException {
+		byte type = body.get();
+		byte[] name = new byte[body.getShort()];
+		body.get(name);
+		long offset = body.getLong();
+
+		String fileName = new String(name, StandardCharsets.UTF_8);
+		File file = new File(dir, fileName);
+
+		if (type == DELETE_RECORD) {
+			FileChannel channel = channels.remove(fileName);
+			if (channel != null) {
+				channel.close();
+			}
+			Files.deleteIfExists(file.toPath());
+			return;
+		}
+
+		FileChannel channel = channels.get(fileName);
+		if (channel == null) {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			channels.put(fileName, channel);
+		}
+
+		if (type == WRITE_RECORD) {
+			writeFully(channel, body, offset);
+		} else if (type == TRUNCATE_RECORD) {
+			channel.truncate(offset);
+		} else {
+			throw new IOException("Unable to replay redo log; invalid record type: " + type);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long offset) throws IOException {
+		while (buf.hasRemaining()) {
+			offset += channel.write(buf, offset);
+		}
+	}
+}
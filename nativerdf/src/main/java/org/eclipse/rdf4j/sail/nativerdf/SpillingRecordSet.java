@@ -0,0 +1,898 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * A set of fixed size records that is held in off-heap memory up to a configurable number of bytes. Records are kept
+ * in a hash table in a direct buffer. Once the table has reached the memory budget, its records are sorted and written
+ * to a temporary file (a "run") and the table is cleared. Lookups check the table and then the runs, newest first,
+ * using a binary search. Removing a record that is stored in a run adds a tombstone for it. Once there are more than
+ * {@link #MAX_RUNS} runs, they are merged into a single run.
+ * <p>
+ * Records are iterated in unsigned byte order. An iterator operates on a snapshot of the set: changes that are made
+ * after it has been created are not visible to it. A run that is no longer part of the set stays open until the
+ * iterators that read it are closed or exhausted.
+ * <p>
+ * The set must be {@link #close() closed} once it is no longer used, to free the table and close the runs.
+ */
+final class SpillingRecordSet {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	/**
+	 * The states of an entry, stored in the byte that follows the record.
+	 */
+	private static final byte EMPTY = 0;
+
+	private static final byte PRESENT = 1;
+
+	private static final byte REMOVED = 2;
+
+	private static final int MIN_SLOTS = 1024;
+
+	/**
+	 * The maximum number of runs, before they are merged into one.
+	 */
+	private static final int MAX_RUNS = 8;
+
+	/**
+	 * The maximum number of changes to the table that are sorted separately when iterating, before all records in the
+	 * table are sorted again.
+	 */
+	private static final int MAX_UNSORTED_CHANGES = 4096;
+
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The number of entries that are read from a run at once while iterating.
+	 */
+	private static final int RUN_BATCH_SIZE = 1024;
+
+	private static final String RUN_FILE_PREFIX = "changes";
+
+	private static final String RUN_FILE_SUFFIX = ".run";
+
+	/*------------*
+	 * Attributes *
+	 *------------*/
+
+	private final File tmpDir;
+
+	private final int recordSize;
+
+	private final int entrySize;
+
+	private final long memoryBudget;
+
+	/**
+	 * The hash table, consisting of slots of {@link #entrySize} bytes: a record followed by its state.
+	 */
+	private ByteBuffer table;
+
+	private int slotCount;
+
+	private int usedSlots;
+
+	/**
+	 * The number of records in the set.
+	 */
+	private long size;
+
+	/**
+	 * The runs, oldest first.
+	 */
+	private final List<Run> runs = new ArrayList<>();
+
+	/**
+	 * The runs that are no longer part of the set, but may still be read by iterators.
+	 */
+	private final List<Run> retiredRuns = new ArrayList<>();
+
+	/**
+	 * The entries in the table in sorted order, <tt>null</tt> if they have to be sorted again.
+	 */
+	private byte[] sortedEntries;
+
+	/**
+	 * The slots that have changed since {@link #sortedEntries} were sorted.
+	 */
+	private int[] changedSlots = new int[64];
+
+	private int changedCount;
+
+	/**
+	 * The entries in the slots that have changed in sorted order, <tt>null</tt> if they have to be sorted again.
+	 */
+	private byte[] sortedChanges;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param tmpDir       The directory to create the runs in, <tt>null</tt> for the default temporary directory.
+	 * @param recordSize   The size of the records.
+	 * @param memoryBudget The maximum number of bytes of the hash table.
+	 */
+	public SpillingRecordSet(File tmpDir, int recordSize, long memoryBudget) {
+		this.tmpDir = tmpDir;
+		this.recordSize = recordSize;
+		this.entrySize = recordSize + 1;
+		// The table is a single direct buffer, which is limited to 2 GB
+		this.memoryBudget = Math.min(Math.max(memoryBudget, (long) MIN_SLOTS * entrySize), Integer.MAX_VALUE);
+		initTable(MIN_SLOTS);
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Deletes the runs that were left behind in a directory, for example by a process that crashed. Must only be
+	 * called while no record set creates its runs in the directory.
+	 */
+	static void deleteRuns(File dir) {
+		File[] files = dir.listFiles((d, name) -> name.startsWith(RUN_FILE_PREFIX) && name.endsWith(RUN_FILE_SUFFIX));
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+	}
+
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of runs that the records have been spilled to.
+	 */
+	synchronized int getRunCount() {
+		return runs.size();
+	}
+
+	public synchronized boolean contains(byte[] record) throws IOException {
+		assert record.length == recordSize : "invalid record size: " + record.length;
+		return getState(record, findSlot(record)) == PRESENT;
+	}
+
+	/**
+	 * Adds a record to the set.
+	 *
+	 * @return <tt>true</tt> if the set did not contain the record yet.
+	 */
+	public synchronized boolean add(byte[] record) throws IOException {
+		assert record.length == recordSize : "invalid record size: " + record.length;
+		int slot = findSlot(record);
+		if (getState(record, slot) == PRESENT) {
+			return false;
+		}
+		setState(record, slot, PRESENT);
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes a record from the set.
+	 *
+	 * @return <tt>true</tt> if the set contained the record.
+	 */
+	public synchronized boolean remove(byte[] record) throws IOException {
+		assert record.length == recordSize : "invalid record size: " + record.length;
+		int slot = findSlot(record);
+		if (getState(record, slot) != PRESENT) {
+			return false;
+		}
+		setState(record, slot, REMOVED);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Removes all records and deletes all runs.
+	 */
+	public synchronized void clear() throws IOException {
+		initTable(MIN_SLOTS);
+		size = 0L;
+		retireRuns();
+	}
+
+	/**
+	 * Frees the table and closes and deletes all runs, including the runs that are still read by iterators. The set
+	 * and its iterators can no longer be used afterwards.
+	 */
+	public synchronized void close() throws IOException {
+		if (table == null) {
+			return;
+		}
+		DirectBuffers.free(table);
+		table = null;
+		sortedEntries = null;
+		sortedChanges = null;
+		try {
+			retireRuns();
+		} finally {
+			for (Run run : retiredRuns) {
+				run.close();
+			}
+			retiredRuns.clear();
+		}
+	}
+
+	/**
+	 * Returns an iterator over the records in the specified range in sorted order.
+	 *
+	 * @param minValue The smallest record to return (inclusive), <tt>null</tt> for no lower bound.
+	 * @param maxValue The largest record to return (inclusive), <tt>null</tt> for no upper bound.
+	 */
+	public synchronized RecordIterator iterateRange(byte[] minValue, byte[] maxValue) throws IOException {
+		if (size == 0L) {
+			return new MergeIterator(new ArrayList<>(), maxValue);
+		}
+
+		// Sources in order of precedence, oldest first
+		List<EntrySource> sources = openRuns(minValue);
+		sources.add(new ArraySource(getSortedEntries(), minValue));
+		sources.add(new ArraySource(getSortedChanges(), minValue));
+		return new MergeIterator(sources, maxValue);
+	}
+
+	/*------------*
+	 * Hash table *
+	 *------------*/
+
+	/**
+	 * Replaces the table with an empty table, freeing the current table if there is one.
+	 */
+	private void initTable(int slots) {
+		if (table != null) {
+			DirectBuffers.free(table);
+		}
+		slotCount = slots;
+		usedSlots = 0;
+		table = ByteBuffer.allocateDirect(slots * entrySize);
+		sortedEntries = new byte[0];
+		changedCount = 0;
+		sortedChanges = null;
+	}
+
+	/**
+	 * Finds the slot that holds the record, or the empty slot where it should be stored.
+	 */
+	private int findSlot(byte[] record) {
+		int mask = slotCount - 1;
+		int slot = hash(record) & mask;
+		while (true) {
+			int offset = slot * entrySize;
+			if (table.get(offset + recordSize) == EMPTY || matches(record, offset)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean matches(byte[] record, int offset) {
+		for (int i = 0; i < recordSize; i++) {
+			if (table.get(offset + i) != record[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int hash(byte[] record) {
+		int h = 1;
+		for (int i = 0; i < recordSize; i++) {
+			h = 31 * h + record[i];
+		}
+		// Spread the bits, the table size is a power of two
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Gets the state of a record from the table or, if the table doesn't contain it, from the runs.
+	 */
+	private byte getState(byte[] record, int slot) throws IOException {
+		byte state = table.get(slot * entrySize + recordSize);
+		for (int i = runs.size() - 1; state == EMPTY && i >= 0; i--) {
+			state = runs.get(i).getState(record);
+		}
+		return state;
+	}
+
+	private void setState(byte[] record, int slot, byte state) throws IOException {
+		if (table.get(slot * entrySize + recordSize) == EMPTY) {
+			// New entry
+			if (usedSlots + 1 > slotCount / 4 * 3) {
+				if ((long) slotCount * 2 * entrySize <= memoryBudget) {
+					growTable();
+				} else {
+					spill();
+				}
+				slot = findSlot(record);
+			}
+			int offset = slot * entrySize;
+			for (int i = 0; i < recordSize; i++) {
+				table.put(offset + i, record[i]);
+			}
+			usedSlots++;
+		}
+		table.put(slot * entrySize + recordSize, state);
+		recordChange(slot);
+	}
+
+	private void growTable() {
+		ByteBuffer oldTable = table;
+		int oldSlotCount = slotCount;
+		// The old table is freed once its entries have been copied
+		table = null;
+		initTable(oldSlotCount * 2);
+
+		byte[] entry = new byte[entrySize];
+		for (int slot = 0; slot < oldSlotCount; slot++) {
+			oldTable.position(slot * entrySize);
+			oldTable.get(entry);
+			if (entry[recordSize] != EMPTY) {
+				table.position(findSlot(entry) * entrySize);
+				table.put(entry);
+				usedSlots++;
+			}
+		}
+		table.clear();
+		DirectBuffers.free(oldTable);
+
+		// Slots have moved, all entries need to be sorted again
+		sortedEntries = null;
+	}
+
+	private void recordChange(int slot) {
+		sortedChanges = null;
+		if (sortedEntries == null) {
+			return;
+		}
+		if (changedCount == MAX_UNSORTED_CHANGES) {
+			// Too many changes, sort all entries again when needed
+			sortedEntries = null;
+			changedCount = 0;
+			return;
+		}
+		if (changedCount == changedSlots.length) {
+			changedSlots = Arrays.copyOf(changedSlots, changedCount * 2);
+		}
+		changedSlots[changedCount++] = slot;
+	}
+
+	private byte[] getSortedEntries() {
+		if (sortedEntries == null) {
+			int[] slots = new int[usedSlots];
+			int count = 0;
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (table.get(slot * entrySize + recordSize) != EMPTY) {
+					slots[count++] = slot;
+				}
+			}
+			sortedEntries = copyEntries(sortSlots(slots, count), count);
+			changedCount = 0;
+			sortedChanges = null;
+		}
+		return sortedEntries;
+	}
+
+	private byte[] getSortedChanges() {
+		if (sortedChanges == null) {
+			int[] slots = sortSlots(Arrays.copyOf(changedSlots, changedCount), changedCount);
+
+			// A slot can have changed more than once
+			int count = 0;
+			for (int i = 0; i < changedCount; i++) {
+				if (count == 0 || slots[count - 1] != slots[i]) {
+					slots[count++] = slots[i];
+				}
+			}
+			sortedChanges = copyEntries(slots, count);
+		}
+		return sortedChanges;
+	}
+
+	private byte[] copyEntries(int[] slots, int count) {
+		byte[] entries = new byte[count * entrySize];
+		ByteBuffer src = table.duplicate();
+		for (int i = 0; i < count; i++) {
+			src.position(slots[i] * entrySize);
+			src.get(entries, i * entrySize, entrySize);
+		}
+		return entries;
+	}
+
+	/**
+	 * Sorts the first <tt>count</tt> slots by the records that they hold.
+	 */
+	private int[] sortSlots(int[] slots, int count) {
+		quickSort(slots, 0, count - 1);
+		return slots;
+	}
+
+	private void quickSort(int[] slots, int low, int high) {
+		while (low < high) {
+			int pivot = slots[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compareSlots(slots[i], pivot) < 0) {
+					i++;
+				}
+				while (compareSlots(slots[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = slots[i];
+					slots[i++] = slots[j];
+					slots[j--] = tmp;
+				}
+			}
+			// Recurse into the smaller part to limit the stack depth
+			if (j - low < high - i) {
+				quickSort(slots, low, j);
+				low = i;
+			} else {
+				quickSort(slots, i, high);
+				high = j;
+			}
+		}
+	}
+
+	private int compareSlots(int slot1, int slot2) {
+		if (slot1 == slot2) {
+			return 0;
+		}
+		int offset1 = slot1 * entrySize;
+		int offset2 = slot2 * entrySize;
+		for (int i = 0; i < recordSize; i++) {
+			int diff = (table.get(offset1 + i) & 0xff) - (table.get(offset2 + i) & 0xff);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return 0;
+	}
+
+	/*------*
+	 * Runs *
+	 *------*/
+
+	/**
+	 * Writes the entries in the table to a new run and clears the table.
+	 */
+	private void spill() throws IOException {
+		int[] slots = new int[usedSlots];
+		int count = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (table.get(slot * entrySize + recordSize) != EMPTY) {
+				slots[count++] = slot;
+			}
+		}
+		sortSlots(slots, count);
+
+		File file = File.createTempFile(RUN_FILE_PREFIX, RUN_FILE_SUFFIX, tmpDir);
+		long entryCount = 0L;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_SIZE)) {
+			byte[] entry = new byte[entrySize];
+			ByteBuffer src = table.duplicate();
+			for (int i = 0; i < count; i++) {
+				src.position(slots[i] * entrySize);
+				src.get(entry);
+				if (entry[recordSize] == PRESENT || !runs.isEmpty()) {
+					out.write(entry);
+					entryCount++;
+				}
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+		runs.add(new Run(file, entrySize, entryCount));
+
+		// Keep the table at its current size, it will likely fill up again
+		initTable(slotCount);
+
+		if (runs.size() > MAX_RUNS) {
+			mergeRuns();
+		}
+	}
+
+	/**
+	 * Merges all runs into a single run, dropping the tombstones.
+	 */
+	private void mergeRuns() throws IOException {
+		File file = File.createTempFile(RUN_FILE_PREFIX, RUN_FILE_SUFFIX, tmpDir);
+		long entryCount = 0L;
+		try (RecordIterator iter = new MergeIterator(openRuns(null), null);
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER_SIZE)) {
+			byte[] record;
+			while ((record = iter.next()) != null) {
+				out.write(record);
+				out.write(PRESENT);
+				entryCount++;
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+
+		retireRuns();
+		runs.add(new Run(file, entrySize, entryCount));
+	}
+
+	/**
+	 * Creates a source for each run, oldest first, leaving room for two more sources.
+	 */
+	private List<EntrySource> openRuns(byte[] minValue) throws IOException {
+		List<EntrySource> sources = new ArrayList<>(runs.size() + 2);
+		try {
+			for (Run run : runs) {
+				sources.add(new RunSource(run, minValue));
+			}
+		} catch (IOException | RuntimeException e) {
+			for (EntrySource source : sources) {
+				try {
+					source.close();
+				} catch (IOException e2) {
+					e.addSuppressed(e2);
+				}
+			}
+			throw e;
+		}
+		return sources;
+	}
+
+	private void retireRuns() throws IOException {
+		// Forget the runs that have been closed by their last iterator
+		retiredRuns.removeIf(Run::isClosed);
+		try {
+			for (Run run : runs) {
+				// Open iterators may still read the run, it is closed once it is no longer used
+				if (!run.retire()) {
+					retiredRuns.add(run);
+				}
+			}
+		} finally {
+			runs.clear();
+		}
+	}
+
+	/**
+	 * A sorted file of entries.
+	 */
+	private static final class Run {
+
+		private final File file;
+
+		private final MappedNioFile nioFile;
+
+		private final int entrySize;
+
+		private final long entryCount;
+
+		/**
+		 * The number of users of the run: the set, as long as the run is part of it, and the iterators that read it.
+		 */
+		private int useCount = 1;
+
+		private boolean closed;
+
+		public Run(File file, int entrySize, long entryCount) throws IOException {
+			this.file = file;
+			this.nioFile = new MappedNioFile(file, true);
+			this.entrySize = entrySize;
+			this.entryCount = entryCount;
+		}
+
+		public long getEntryCount() {
+			return entryCount;
+		}
+
+		/**
+		 * Gets the state of the supplied record in this run, {@link #EMPTY} if it doesn't contain it.
+		 */
+		public byte getState(byte[] record) throws IOException {
+			long index = findFirst(record);
+			if (index < entryCount) {
+				byte[] entry = readEntries(index, 1);
+				if (ByteArrayUtil.compareRegion(record, 0, entry, 0, record.length) == 0) {
+					return entry[record.length];
+				}
+			}
+			return EMPTY;
+		}
+
+		/**
+		 * Finds the index of the first entry whose record is equal to or larger than the supplied record.
+		 */
+		public long findFirst(byte[] record) throws IOException {
+			long low = 0L;
+			long high = entryCount;
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				byte[] entry = readEntries(mid, 1);
+				if (ByteArrayUtil.compareRegion(entry, 0, record, 0, record.length) < 0) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		public byte[] readEntries(long index, int count) throws IOException {
+			ByteBuffer buf = ByteBuffer.allocate(count * entrySize);
+			long offset = index * entrySize;
+			while (buf.hasRemaining()) {
+				if (nioFile.read(buf, offset + buf.position()) < 0) {
+					throw new IOException("Unexpected end of file " + file);
+				}
+			}
+			return buf.array();
+		}
+
+		/**
+		 * Registers an iterator that reads the run.
+		 */
+		public synchronized void acquire() {
+			useCount++;
+		}
+
+		/**
+		 * Unregisters an iterator or the set, closing the run if it is no longer used.
+		 */
+		public synchronized void release() throws IOException {
+			if (--useCount == 0) {
+				close();
+			}
+		}
+
+		/**
+		 * Deletes the file of the run, while keeping it open for iterators that still read it.
+		 *
+		 * @return <tt>true</tt> if the run has been closed, <tt>false</tt> if it is still read by iterators.
+		 */
+		public synchronized boolean retire() throws IOException {
+			try {
+				release();
+			} finally {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+			return closed;
+		}
+
+		public synchronized boolean isClosed() {
+			return closed;
+		}
+
+		public synchronized void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				nioFile.close();
+			}
+		}
+	}
+
+	/*-----------*
+	 * Iterators *
+	 *-----------*/
+
+	/**
+	 * A sorted sequence of entries.
+	 */
+	private interface EntrySource {
+
+		/**
+		 * Gets the current entry, <tt>null</tt> if there are no more entries.
+		 */
+		byte[] current();
+
+		void advance() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	private final class ArraySource implements EntrySource {
+
+		private final byte[] entries;
+
+		private int offset;
+
+		private byte[] current;
+
+		public ArraySource(byte[] entries, byte[] minValue) {
+			this.entries = entries;
+			if (minValue != null) {
+				// Binary search for the first entry that is not smaller than the minimum value
+				int low = 0;
+				int high = entries.length / entrySize;
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (ByteArrayUtil.compareRegion(entries, mid * entrySize, minValue, 0, recordSize) < 0) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				offset = low * entrySize;
+			}
+			advance();
+		}
+
+		@Override
+		public byte[] current() {
+			return current;
+		}
+
+		@Override
+		public void advance() {
+			if (offset < entries.length) {
+				current = Arrays.copyOfRange(entries, offset, offset + entrySize);
+				offset += entrySize;
+			} else {
+				current = null;
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private final class RunSource implements EntrySource {
+
+		private final Run run;
+
+		private long index;
+
+		private byte[] batch = new byte[0];
+
+		private int batchOffset;
+
+		private byte[] current;
+
+		private boolean closed;
+
+		public RunSource(Run run, byte[] minValue) throws IOException {
+			this.run = run;
+			run.acquire();
+			try {
+				this.index = minValue == null ? 0L : run.findFirst(minValue);
+				advance();
+			} catch (IOException | RuntimeException e) {
+				close();
+				throw e;
+			}
+		}
+
+		@Override
+		public byte[] current() {
+			return current;
+		}
+
+		@Override
+		public void advance() throws IOException {
+			if (batchOffset == batch.length) {
+				int count = (int) Math.min(RUN_BATCH_SIZE, run.getEntryCount() - index);
+				if (count <= 0) {
+					current = null;
+					return;
+				}
+				batch = run.readEntries(index, count);
+				batchOffset = 0;
+				index += count;
+			}
+			current = Arrays.copyOfRange(batch, batchOffset, batchOffset + entrySize);
+			batchOffset += entrySize;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				current = null;
+				run.release();
+			}
+		}
+	}
+
+	/**
+	 * Merges sorted entry sources, returning the records that are present according to the source with the highest
+	 * precedence that contains them. The sources are closed once the iterator is closed or exhausted.
+	 */
+	private final class MergeIterator implements RecordIterator {
+
+		/**
+		 * The sources, in increasing order of precedence.
+		 */
+		private final List<EntrySource> sources;
+
+		private final byte[] maxValue;
+
+		public MergeIterator(List<EntrySource> sources, byte[] maxValue) {
+			this.sources = sources;
+			this.maxValue = maxValue;
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			while (true) {
+				// Find the smallest record, preferring the source with the highest precedence
+				EntrySource next = null;
+				for (EntrySource source : sources) {
+					byte[] entry = source.current();
+					if (entry != null && (next == null
+							|| ByteArrayUtil.compareRegion(entry, 0, next.current(), 0, recordSize) <= 0)) {
+						next = source;
+					}
+				}
+				if (next == null) {
+					close();
+					return null;
+				}
+
+				byte[] entry = next.current();
+				if (maxValue != null && ByteArrayUtil.compareRegion(entry, 0, maxValue, 0, recordSize) > 0) {
+					close();
+					return null;
+				}
+
+				// Skip the same record in all other sources
+				for (EntrySource source : sources) {
+					byte[] other = source.current();
+					if (other != null && ByteArrayUtil.compareRegion(entry, 0, other, 0, recordSize) == 0) {
+						source.advance();
+					}
+				}
+
+				if (entry[recordSize] == PRESENT) {
+					return Arrays.copyOf(entry, recordSize);
+				}
+			}
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				for (EntrySource source : sources) {
+					source.close();
+				}
+			} finally {
+				sources.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordComparator;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * The triples that are added and removed by a single writer, collected without touching the triple indexes. The
+ * changes are kept sorted in "spoc" order, spilling to temporary files once the configured number of changes is
+ * exceeded, so that they can be merged into the indexes in one sorted batch. Only the last change to a triple is
+ * applied.
+ */
+final class TripleDelta implements Closeable {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	private static final byte ADD = 1;
+
+	private static final byte REMOVE = 2;
+
+	private static final int OP_IDX = TripleStore.FLAG_IDX;
+
+	private static final int SEQUENCE_IDX = OP_IDX + 1;
+
+	/**
+	 * The length of a change: the triple IDs, the operation and a sequence number that orders changes to the same
+	 * triple.
+	 */
+	private static final int RECORD_LENGTH = SEQUENCE_IDX + 8;
+
+	/*------------*
+	 * Attributes *
+	 *------------*/
+
+	private final ExternalRecordSorter sorter;
+
+	private long sequence = 0L;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param tmpDir             The directory to create temporary files in.
+	 * @param maxRecordsInMemory The maximum number of changes to keep in memory.
+	 */
+	public TripleDelta(File tmpDir, int maxRecordsInMemory) {
+		this.sorter = new ExternalRecordSorter(tmpDir, RECORD_LENGTH, new ChangeComparator(), maxRecordsInMemory);
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	public boolean isEmpty() {
+		return sequence == 0L;
+	}
+
+	public void add(int subj, int pred, int obj, int context) throws IOException {
+		sorter.add(getChange(subj, pred, obj, context, ADD));
+	}
+
+	public void remove(int subj, int pred, int obj, int context) throws IOException {
+		sorter.add(getChange(subj, pred, obj, context, REMOVE));
+	}
+
+	private byte[] getChange(int subj, int pred, int obj, int context, byte op) {
+		byte[] change = new byte[RECORD_LENGTH];
+		ByteArrayUtil.putInt(subj, change, TripleStore.SUBJ_IDX);
+		ByteArrayUtil.putInt(pred, change, TripleStore.PRED_IDX);
+		ByteArrayUtil.putInt(obj, change, TripleStore.OBJ_IDX);
+		ByteArrayUtil.putInt(context, change, TripleStore.CONTEXT_IDX);
+		change[OP_IDX] = op;
+		ByteArrayUtil.putLong(sequence++, change, SEQUENCE_IDX);
+		return change;
+	}
+
+	/**
+	 * Stores the net changes in the supplied caches, as triple records in "spoc" order. Each triple is stored at most
+	 * once, in the cache that corresponds to the last change to it.
+	 *
+	 * @param addedTriples   The cache for the triples that were added.
+	 * @param removedTriples The cache for the triples that were removed.
+	 */
+	public void getChanges(RecordCache addedTriples, RecordCache removedTriples) throws IOException {
+		try (RecordIterator iter = sorter.sortedRecords()) {
+			byte[] last = null;
+			byte[] change;
+			while ((change = iter.next()) != null) {
+				if (last != null && ByteArrayUtil.compareRegion(last, 0, change, 0, OP_IDX) != 0) {
+					storeChange(last, addedTriples, removedTriples);
+				}
+				last = change;
+			}
+			if (last != null) {
+				storeChange(last, addedTriples, removedTriples);
+			}
+		}
+	}
+
+	private void storeChange(byte[] change, RecordCache addedTriples, RecordCache removedTriples)
+			throws IOException {
+		byte[] triple = new byte[TripleStore.RECORD_LENGTH];
+		System.arraycopy(change, 0, triple, 0, OP_IDX);
+
+		if (change[OP_IDX] == ADD) {
+			addedTriples.storeRecord(triple);
+		} else {
+			removedTriples.storeRecord(triple);
+		}
+	}
+
+	/**
+	 * Discards all changes.
+	 */
+	public void clear() throws IOException {
+		sorter.close();
+		sequence = 0L;
+	}
+
+	@Override
+	public void close() throws IOException {
+		clear();
+	}
+
+	/**
+	 * Orders changes by triple and, for the same triple, in the order in which they were made.
+	 */
+	private static class ChangeComparator implements RecordComparator {
+
+		@Override
+		public int compareBTreeValues(byte[] key, byte[] data, int offset, int length) {
+			int diff = ByteArrayUtil.compareRegion(key, 0, data, offset, OP_IDX);
+			if (diff == 0) {
+				diff = Long.compare(ByteArrayUtil.getLong(key, SEQUENCE_IDX),
+						ByteArrayUtil.getLong(data, offset + SEQUENCE_IDX));
+			}
+			return diff;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+/**
+ * Receives progress notifications while a triple index is added to or removed from a {@link NativeStore}. All methods
+ * are called from the thread that performs the index change.
+ *
+ * @see NativeStore#addTripleIndex(String, TripleIndexListener)
+ * @see NativeStore#removeTripleIndex(String, TripleIndexListener)
+ */
+public interface TripleIndexListener {
+
+	/**
+	 * Called periodically while the existing statements are copied to a new index.
+	 *
+	 * @param indexSpec        The index that is being added, e.g. <tt>opsc</tt>.
+	 * @param copiedRecords    The number of statements copied so far.
+	 * @param estimatedRecords The estimated total number of statements to copy.
+	 */
+	default void copyProgress(String indexSpec, long copiedRecords, long estimatedRecords) {
+	}
+
+	/**
+	 * Called after the statements that were changed by concurrent transactions have been copied to a new index.
+	 *
+	 * @param indexSpec      The index that is being added, e.g. <tt>opsc</tt>.
+	 * @param changedRecords The number of changed statements that were copied.
+	 */
+	default void catchUpProgress(String indexSpec, long changedRecords) {
+	}
+
+	/**
+	 * Called once a new index is used for queries.
+	 *
+	 * @param indexSpec The index that has been added, e.g. <tt>opsc</tt>.
+	 */
+	default void indexAdded(String indexSpec) {
+	}
+
+	/**
+	 * Called once an index is no longer used and its files have been deleted.
+	 *
+	 * @param indexSpec The index that has been removed, e.g. <tt>opsc</tt>.
+	 */
+	default void indexRemoved(String indexSpec) {
+	}
+}
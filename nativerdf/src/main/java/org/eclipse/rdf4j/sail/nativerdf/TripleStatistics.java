@@ -0,0 +1,366 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * Statistics about the triples in a {@link TripleStore}, used to estimate the cardinality of triple patterns without
+ * probing the triple indexes. For every predicate, the number of triples and the number of distinct subjects and
+ * objects are maintained. The statistics are updated incrementally when a transaction is committed and are stored in
+ * the triple store's directory.
+ * <p>
+ * Distinct subjects and objects are counted with small HyperLogLog sketches. A sketch can not forget values, so after
+ * triples have been removed the distinct counts are too high; they are capped by the number of triples and the owner
+ * is expected to {@link #rebuild(RecordIterator) rebuild} the statistics once {@link #needsRebuild()} says so.
+ * <p>
+ * The statistics file is only written every {@link #STORE_INTERVAL} milliseconds. To detect that the stored
+ * statistics are out of date after a crash, the first change after the file has been written sets a flag in the file.
+ * Statistics that are loaded with this flag set are ignored, so that they are rebuilt.
+ */
+class TripleStatistics {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	static final String FILE_NAME = "triples-stats.dat";
+
+	private static final int MAGIC_NUMBER = 0x6e737473; // 'nsts'
+
+	private static final int FILE_FORMAT_VERSION = 2;
+
+	/**
+	 * The offset of the flag that indicates whether the statistics have been changed after they were stored.
+	 */
+	private static final int CHANGED_FLAG_OFFSET = 8;
+
+	/**
+	 * The number of bits of a hash that select a register of a sketch; 128 registers give a standard error of about
+	 * 9%.
+	 */
+	private static final int REGISTER_BITS = 7;
+
+	private static final int REGISTER_COUNT = 1 << REGISTER_BITS;
+
+	private static final double ALPHA = 0.7213 / (1.0 + 1.079 / REGISTER_COUNT);
+
+	/**
+	 * The minimum number of removed triples before a rebuild is requested.
+	 */
+	private static final long MIN_REBUILD_REMOVALS = 10_000L;
+
+	/**
+	 * The minimum time in milliseconds between two writes of the statistics file, except when the triple store is
+	 * closed. Changes made in this period are lost if the process crashes.
+	 */
+	private static final long STORE_INTERVAL = 10_000L;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final File file;
+
+	private final boolean forceSync;
+
+	private final Map<Integer, PredicateStatistics> predicates = new ConcurrentHashMap<>();
+
+	private final AtomicLong tripleCount = new AtomicLong();
+
+	/**
+	 * The number of triples that have been removed since the statistics were last rebuilt.
+	 */
+	private final AtomicLong removedCount = new AtomicLong();
+
+	/**
+	 * Flag indicating whether the statistics have been changed since they were stored, in which case the stored
+	 * statistics have been flagged as changed.
+	 */
+	private volatile boolean dirty;
+
+	private long lastStoreTime;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * @param dir       The directory to store the statistics in.
+	 * @param forceSync Flag indicating whether the flag that marks the stored statistics as changed is forced to disk.
+	 */
+	public TripleStatistics(File dir, boolean forceSync) {
+		this.file = new File(dir, FILE_NAME);
+		this.forceSync = forceSync;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Gets the total number of triples.
+	 */
+	public long getTripleCount() {
+		return tripleCount.get();
+	}
+
+	/**
+	 * Gets the number of triples with the specified predicate.
+	 */
+	public long getTripleCount(int predID) {
+		PredicateStatistics stats = predicates.get(predID);
+		return stats == null ? 0 : stats.count.get();
+	}
+
+	/**
+	 * Gets an estimate of the number of distinct subjects of the triples with the specified predicate.
+	 */
+	public long getDistinctSubjectCount(int predID) {
+		PredicateStatistics stats = predicates.get(predID);
+		return stats == null ? 0 : Math.min(stats.count.get(), estimate(stats.subjects));
+	}
+
+	/**
+	 * Gets an estimate of the number of distinct objects of the triples with the specified predicate.
+	 */
+	public long getDistinctObjectCount(int predID) {
+		PredicateStatistics stats = predicates.get(predID);
+		return stats == null ? 0 : Math.min(stats.count.get(), estimate(stats.objects));
+	}
+
+	/**
+	 * Registers a triple that has been added to the triple store.
+	 */
+	public void add(byte[] data) throws IOException {
+		markChanged();
+		int predID = ByteArrayUtil.getInt(data, TripleStore.PRED_IDX);
+		PredicateStatistics stats = predicates.computeIfAbsent(predID, id -> new PredicateStatistics());
+		stats.count.incrementAndGet();
+		offer(stats.subjects, ByteArrayUtil.getInt(data, TripleStore.SUBJ_IDX));
+		offer(stats.objects, ByteArrayUtil.getInt(data, TripleStore.OBJ_IDX));
+		tripleCount.incrementAndGet();
+	}
+
+	/**
+	 * Registers a triple that has been removed from the triple store.
+	 */
+	public void remove(byte[] data) throws IOException {
+		markChanged();
+		int predID = ByteArrayUtil.getInt(data, TripleStore.PRED_IDX);
+		PredicateStatistics stats = predicates.get(predID);
+		if (stats != null && stats.count.decrementAndGet() <= 0) {
+			predicates.remove(predID);
+		}
+		tripleCount.decrementAndGet();
+		removedCount.incrementAndGet();
+	}
+
+	/**
+	 * Checks whether so many triples have been removed that the distinct counts have become unreliable.
+	 */
+	public boolean needsRebuild() {
+		long removed = removedCount.get();
+		return removed >= MIN_REBUILD_REMOVALS && removed > tripleCount.get();
+	}
+
+	public void clear() throws IOException {
+		markChanged();
+		predicates.clear();
+		tripleCount.set(0L);
+		removedCount.set(0L);
+	}
+
+	/**
+	 * Recomputes the statistics from all triples in the triple store.
+	 *
+	 * @param triples An iterator over all (committed) triples.
+	 */
+	public void rebuild(RecordIterator triples) throws IOException {
+		clear();
+		try {
+			byte[] data;
+			while ((data = triples.next()) != null) {
+				add(data);
+			}
+		} finally {
+			triples.close();
+		}
+	}
+
+	/**
+	 * Loads the statistics from the triple store's directory.
+	 *
+	 * @return <tt>false</tt> if no (valid) statistics were found, or if the statistics were changed after they were
+	 *         stored, in which case the statistics need to be rebuilt.
+	 */
+	public boolean load() throws IOException {
+		if (!file.exists()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC_NUMBER || in.readInt() != FILE_FORMAT_VERSION || in.readBoolean()) {
+				return false;
+			}
+
+			predicates.clear();
+			tripleCount.set(in.readLong());
+			removedCount.set(in.readLong());
+			int predicateCount = in.readInt();
+			for (int i = 0; i < predicateCount; i++) {
+				int predID = in.readInt();
+				PredicateStatistics stats = new PredicateStatistics();
+				stats.count.set(in.readLong());
+				in.readFully(stats.subjects);
+				in.readFully(stats.objects);
+				predicates.put(predID, stats);
+			}
+			dirty = false;
+			return true;
+		} catch (IOException e) {
+			// Incomplete file, rebuild
+			predicates.clear();
+			tripleCount.set(0L);
+			removedCount.set(0L);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the statistics to the triple store's directory if they have been changed.
+	 *
+	 * @param force Flag indicating whether the statistics should be written even if they were written recently.
+	 */
+	public synchronized void store(boolean force) throws IOException {
+		long now = System.currentTimeMillis();
+		if (!dirty || !force && now - lastStoreTime < STORE_INTERVAL) {
+			return;
+		}
+		dirty = false;
+		lastStoreTime = now;
+
+		File tmpFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC_NUMBER);
+			out.writeInt(FILE_FORMAT_VERSION);
+			out.writeBoolean(false);
+			out.writeLong(tripleCount.get());
+			out.writeLong(removedCount.get());
+			Map<Integer, PredicateStatistics> snapshot = new HashMap<>(predicates);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<Integer, PredicateStatistics> entry : snapshot.entrySet()) {
+				PredicateStatistics stats = entry.getValue();
+				out.writeInt(entry.getKey());
+				out.writeLong(stats.count.get());
+				out.write(stats.subjects);
+				out.write(stats.objects);
+			}
+		} catch (IOException e) {
+			dirty = true;
+			throw e;
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Flags the stored statistics as changed, if this is the first change since they were stored.
+	 */
+	private void markChanged() throws IOException {
+		if (!dirty) {
+			synchronized (this) {
+				if (!dirty && file.exists()) {
+					try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+						if (raf.length() > CHANGED_FLAG_OFFSET) {
+							raf.seek(CHANGED_FLAG_OFFSET);
+							raf.writeBoolean(true);
+							if (forceSync) {
+								raf.getChannel().force(false);
+							}
+						}
+					}
+				}
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Adds a value ID to a HyperLogLog sketch.
+	 */
+	private static void offer(byte[] registers, int id) {
+		long hash = hash(id);
+		int index = (int) (hash >>> (64 - REGISTER_BITS));
+		int rank = Math.min(Long.numberOfLeadingZeros(hash << REGISTER_BITS), 64 - REGISTER_BITS) + 1;
+		if (registers[index] < rank) {
+			registers[index] = (byte) rank;
+		}
+	}
+
+	private static long estimate(byte[] registers) {
+		double sum = 0.0;
+		int zeroRegisters = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0) {
+				zeroRegisters++;
+			}
+		}
+
+		double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+		if (estimate <= 2.5 * REGISTER_COUNT && zeroRegisters > 0) {
+			// Small range correction
+			estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeroRegisters);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Spreads the bits of a value ID over a 64-bit hash (the finalizer of MurmurHash3).
+	 */
+	private static long hash(int id) {
+		long h = id;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/*---------------------------------*
+	 * Inner class PredicateStatistics *
+	 *---------------------------------*/
+
+	private static class PredicateStatistics {
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final byte[] subjects = new byte[REGISTER_COUNT];
+
+		private final byte[] objects = new byte[REGISTER_COUNT];
+	}
+}
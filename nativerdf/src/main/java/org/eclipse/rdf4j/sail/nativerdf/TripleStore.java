@@ -13,7 +13,10 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -23,6 +26,15 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.sail.SailException;
@@ -75,9 +87,11 @@ class TripleStore implements Closeable {
 	 * <li>version 1: Introduces configurable triple indexes and the properties file.
 	 * <li>version 10: Introduces a context field, essentially making this a quad store.
 	 * <li>version 10a: Introduces transaction flags, this is backwards compatible with version 10.
+	 * <li>version 11: Stores the leaf nodes of the triple indexes in compressed form. Version 10 indexes are converted
+	 * when the triple store is opened.
 	 * </ul>
 	 */
-	private static final int SCHEME_VERSION = 10;
+	private static final int SCHEME_VERSION = 11;
 
 	// 17 bytes are used to represent a triple:
 	// byte 0-3 : subject
@@ -118,6 +132,23 @@ class TripleStore implements Closeable {
 	 */
 	static final byte TOGGLE_EXPLICIT_FLAG = (byte) 0x8; // 0000 1000
 
+	/**
+	 * The number of changed records below which an index that is being added stops catching up with concurrent
+	 * transactions and holds back new transactions to copy the remaining changes.
+	 */
+	private static final int INDEX_BUILD_CATCH_UP_THRESHOLD = 1000;
+
+	/**
+	 * The number of records between progress reports while an index is being added.
+	 */
+	private static final int INDEX_BUILD_PROGRESS_INTERVAL = 100_000;
+
+	/**
+	 * The maximum number of removed patterns that a transaction keeps track of. Triples matching further patterns are
+	 * removed from the indexes one by one upon commit.
+	 */
+	private static final int MAX_REMOVED_PATTERNS = 16;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -135,16 +166,73 @@ class TripleStore implements Closeable {
 	private final Properties properties;
 
 	/**
-	 * The list of triple indexes that are used to store and retrieve triples.
+	 * The list of triple indexes that are used to store and retrieve triples. Indexes can be added and removed while
+	 * the triple store is in use, see {@link #addIndex(String, TripleIndexListener)}.
 	 */
-	private final List<TripleIndex> indexes = new ArrayList<>();
+	private final List<TripleIndex> indexes = new CopyOnWriteArrayList<>();
 
 	private final boolean forceSync;
 
+	/**
+	 * Flag indicating whether the index files should be read through memory mappings.
+	 */
+	private final boolean memoryMapped;
+
 	private final TxnStatusFile txnStatusFile;
 
+	/**
+	 * Journal of the records that are updated by the transaction that is being committed or rolled back, used to
+	 * complete the transaction after a crash.
+	 */
+	private final TxnJournalFile txnJournalFile;
+
+	/**
+	 * The log in which writes to the transaction status file and the index files are logged, <tt>null</tt> if writes
+	 * are not logged.
+	 */
+	private volatile RedoLog redoLog;
+
 	private volatile RecordCache updatedTriplesCache;
 
+	/**
+	 * Statistics used to estimate the cardinality of triple patterns, <tt>null</tt> while the triple store is being
+	 * opened.
+	 */
+	private TripleStatistics statistics;
+
+	/**
+	 * Executor used to apply updates to the triple indexes concurrently, created lazily.
+	 */
+	private ExecutorService indexUpdateExecutor;
+
+	/**
+	 * Lock ensuring that only one index is added or removed at a time.
+	 */
+	private final ReentrantLock indexChangeLock = new ReentrantLock();
+
+	/**
+	 * Monitor for {@link #txnActive} and {@link #indexChangePending}, used to hold back new transactions while the set
+	 * of indexes is changed.
+	 */
+	private final Object txnMonitor = new Object();
+
+	private boolean txnActive;
+
+	private boolean indexChangePending;
+
+	/**
+	 * Tracks the records that are changed by transactions while a new index is being built, <tt>null</tt> if no index
+	 * is being built.
+	 */
+	private volatile IndexBuild indexBuild;
+
+	/**
+	 * The patterns for which the current transaction has removed all matching triples, without storing any matching
+	 * triples afterwards. Upon commit, indexes in which the matching triples form a single key range remove the triples
+	 * with {@link BTree#removeRange(byte[], byte[])}.
+	 */
+	private final RemovedPatternSet removedPatterns = new RemovedPatternSet();
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -154,11 +242,19 @@ class TripleStore implements Closeable {
 	}
 
 	public TripleStore(File dir, String indexSpecStr, boolean forceSync) throws IOException, SailException {
+		this(dir, indexSpecStr, forceSync, false);
+	}
+
+	public TripleStore(File dir, String indexSpecStr, boolean forceSync, boolean memoryMapped)
+			throws IOException, SailException {
 		this.dir = dir;
 		this.forceSync = forceSync;
+		this.memoryMapped = memoryMapped;
 		this.txnStatusFile = new TxnStatusFile(dir);
+		this.txnJournalFile = new TxnJournalFile(dir, RECORD_LENGTH, forceSync);
 
 		File propFile = new File(dir, PROPERTIES_FILE);
+		boolean indexesScanned = false;
 
 		if (!propFile.exists()) {
 			// newly created native store
@@ -176,7 +272,7 @@ class TripleStore implements Closeable {
 		} else {
 			// Read triple properties file and check format version number
 			properties = loadProperties(propFile);
-			checkVersion();
+			int version = checkVersion();
 
 			// Initialize existing indexes
 			Set<String> indexSpecs = getIndexSpecs();
@@ -187,7 +283,7 @@ class TripleStore implements Closeable {
 			if (txnStatus == TxnStatus.NONE) {
 				logger.trace("No uncompleted transactions found");
 			} else {
-				processUncompletedTransaction(txnStatus);
+				indexesScanned = processUncompletedTransaction(txnStatus);
 			}
 
 			// Compare the existing indexes with the requested indexes
@@ -200,6 +296,10 @@ class TripleStore implements Closeable {
 				// Set of indexes needs to be changed
 				reindex(indexSpecs, reqIndexSpecs);
 			}
+
+			if (version < SCHEME_VERSION) {
+				compressIndexes();
+			}
 		}
 
 		if (!String.valueOf(SCHEME_VERSION).equals(properties.getProperty(VERSION_KEY))
@@ -209,13 +309,47 @@ class TripleStore implements Closeable {
 			properties.setProperty(INDEXES_KEY, indexSpecStr);
 			storeProperties(propFile);
 		}
+
+		TripleStatistics statistics = new TripleStatistics(dir, forceSync);
+		if (indexesScanned || !statistics.load()) {
+			logger.debug("Computing triple statistics...");
+			statistics.rebuild(indexes.get(0).getBTree().iterateAll());
+			statistics.store(true);
+		}
+		this.statistics = statistics;
 	}
 
 	/*---------*
 	 * Methods *
 	 *---------*/
 
-	private void checkVersion() throws SailException {
+	/**
+	 * Gets the statistics about the triples in this triple store.
+	 */
+	TripleStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Gets the current triple indexes as a comma-separated list, e.g. <tt>spoc,posc</tt>.
+	 */
+	public String getIndexSpecString() {
+		StringBuilder sb = new StringBuilder();
+		for (TripleIndex index : indexes) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(index.getFieldSeq());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Checks the version number in the properties file.
+	 * 
+	 * @return The version number, or <tt>-1</tt> if it is missing or malformed.
+	 */
+	private int checkVersion() throws SailException {
 		// Check version number
 		String versionStr = properties.getProperty(VERSION_KEY);
 		if (versionStr == null) {
@@ -228,10 +362,12 @@ class TripleStore implements Closeable {
 				} else if (version > SCHEME_VERSION) {
 					throw new SailException("Directory contains data that uses a newer data format");
 				}
+				return version;
 			} catch (NumberFormatException e) {
 				logger.warn("Malformed version number in TripleStore's properties file");
 			}
 		}
+		return -1;
 	}
 
 	private Set<String> getIndexSpecs() throws SailException {
@@ -285,12 +421,21 @@ class TripleStore implements Closeable {
 		}
 	}
 
-	private void processUncompletedTransaction(TxnStatus txnStatus) throws IOException {
+	/**
+	 * Completes or rolls back a transaction that was interrupted by a crash. An interrupted commit or rollback is
+	 * completed using the records in the transaction journal, if it is valid. Otherwise, all indexes are scanned for
+	 * records with transaction flags.
+	 * 
+	 * @return <tt>true</tt> if the indexes have been scanned.
+	 */
+	private boolean processUncompletedTransaction(TxnStatus txnStatus) throws IOException {
+		boolean journaled = false;
 		switch (txnStatus) {
 		case COMMITTING:
 			logger.info("Detected uncompleted commit, trying to complete");
 			try {
-				commit();
+				journaled = readTxnJournal();
+				completeCommit();
 				logger.info("Uncompleted commit completed successfully");
 			} catch (IOException e) {
 				logger.error("Failed to restore from uncompleted commit", e);
@@ -300,7 +445,8 @@ class TripleStore implements Closeable {
 		case ROLLING_BACK:
 			logger.info("Detected uncompleted rollback, trying to complete");
 			try {
-				rollback();
+				journaled = readTxnJournal();
+				completeRollback();
 				logger.info("Uncompleted rollback completed successfully");
 			} catch (IOException e) {
 				logger.error("Failed to restore from uncompleted rollback", e);
@@ -328,6 +474,37 @@ class TripleStore implements Closeable {
 			}
 			break;
 		}
+		return !journaled;
+	}
+
+	/**
+	 * Reads the records of an interrupted commit or rollback from the transaction journal.
+	 * 
+	 * @return <tt>false</tt> if the journal is invalid, in which case the indexes will have to be scanned.
+	 */
+	private boolean readTxnJournal() throws IOException {
+		RecordCache journaledRecords = new SortedRecordCache(dir, RECORD_LENGTH, new TripleComparator("spoc"));
+		if (txnJournalFile.read(journaledRecords)) {
+			logger.debug("Read {} records from transaction journal", journaledRecords.getRecordCount());
+			updatedTriplesCache = journaledRecords;
+			return true;
+		}
+
+		logger.info("Transaction journal is not valid, scanning indexes");
+		journaledRecords.discard();
+		return false;
+	}
+
+	/**
+	 * Writes the records that were updated by the current transaction to the transaction journal, or invalidates the
+	 * journal if these records are not known.
+	 */
+	private void writeTxnJournal() throws IOException {
+		if (updatedTriplesCache != null && updatedTriplesCache.isValid()) {
+			txnJournalFile.write(updatedTriplesCache.getRecords());
+		} else {
+			txnJournalFile.invalidate();
+		}
 	}
 
 	private void reindex(Set<String> currentIndexSpecs, Set<String> newIndexSpecs) throws IOException, SailException {
@@ -347,6 +524,7 @@ class TripleStore implements Closeable {
 			for (String fieldSeq : addedIndexSpecs) {
 				logger.debug("Initializing new index '{}'...", fieldSeq);
 
+				deleteIndexFiles(getFilenamePrefix(fieldSeq));
 				TripleIndex addedIndex = new TripleIndex(fieldSeq);
 				BTree addedBTree = null;
 				RecordIterator sourceIter = null;
@@ -408,10 +586,333 @@ class TripleStore implements Closeable {
 		}
 	}
 
+	/**
+	 * Converts the triple indexes that do not store their leaf nodes in compressed form yet (version 10 and older).
+	 * Each index is bulk loaded into a temporary B-Tree, the files of which then replace the files of the original
+	 * index. An interrupted conversion is simply restarted the next time the triple store is opened.
+	 */
+	private void compressIndexes() throws IOException {
+		for (int i = 0; i < indexes.size(); i++) {
+			TripleIndex index = indexes.get(i);
+			if (index.getBTree().hasCompressedLeaves()) {
+				continue;
+			}
+
+			String fieldSeq = new String(index.getFieldSeq());
+			logger.info("Converting {} index to compressed format...", fieldSeq);
+
+			String filenamePrefix = getFilenamePrefix(fieldSeq);
+			String tmpFilenamePrefix = filenamePrefix + "-tmp";
+
+			// Remove any left-overs from an interrupted conversion
+			deleteIndexFiles(tmpFilenamePrefix);
+
+			TripleIndex compressedIndex = new TripleIndex(fieldSeq, tmpFilenamePrefix);
+			try (RecordIterator sourceIter = index.getBTree().iterateAll()) {
+				long valueCount = compressedIndex.getBTree().bulkLoad(sourceIter);
+				compressedIndex.getBTree().close();
+				logger.debug("Converted {} values of {} index", valueCount, fieldSeq);
+			} catch (IOException | RuntimeException e) {
+				compressedIndex.getBTree().delete();
+				throw e;
+			}
+
+			index.getBTree().close();
+			moveIndexFiles(tmpFilenamePrefix, filenamePrefix);
+
+			indexes.set(i, new TripleIndex(fieldSeq));
+			logger.info("Converted {} index to compressed format", fieldSeq);
+		}
+	}
+
+	private static String getFilenamePrefix(String fieldSeq) {
+		return "triples-" + fieldSeq;
+	}
+
+	private void deleteIndexFiles(String filenamePrefix) throws IOException {
+		for (String suffix : new String[] { ".dat", ".alloc" }) {
+			Files.deleteIfExists(new File(dir, filenamePrefix + suffix).toPath());
+		}
+	}
+
+	/**
+	 * Replaces the files of a (closed) index with the files of another (closed) index.
+	 */
+	private void moveIndexFiles(String sourceFilenamePrefix, String targetFilenamePrefix) throws IOException {
+		// The allocated nodes file is rebuilt from the B-Tree file if it is missing
+		Files.deleteIfExists(new File(dir, targetFilenamePrefix + ".alloc").toPath());
+		for (String suffix : new String[] { ".dat", ".alloc" }) {
+			Files.move(new File(dir, sourceFilenamePrefix + suffix).toPath(),
+					new File(dir, targetFilenamePrefix + suffix).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Adds a triple index while the triple store remains available for reading and writing. The new index is first
+	 * filled with a copy of an existing index. Records that are changed by transactions in the meantime are tracked
+	 * and copied again afterwards, until only few changes remain. New transactions are then held back while the last
+	 * changes are copied and the index is made available to queries.
+	 * <p>
+	 * If a transaction changes too many records to be tracked, the index is rebuilt from scratch.
+	 *
+	 * @param fieldSeq           The index to add, e.g. <tt>opsc</tt>.
+	 * @param maxRecordsInMemory The maximum number of records to keep in memory while sorting the copied records.
+	 * @param listener           A listener that is notified of the progress, may be <tt>null</tt>.
+	 * @throws IOException              If an I/O error occurred; the triple store is left unchanged.
+	 * @throws IllegalArgumentException If the index specification is invalid or the index already exists.
+	 */
+	public void addIndex(String fieldSeq, int maxRecordsInMemory, TripleIndexListener listener)
+			throws IOException {
+		fieldSeq = checkIndexSpec(fieldSeq);
+		if (listener == null) {
+			listener = new TripleIndexListener() {
+			};
+		}
+
+		indexChangeLock.lock();
+		try {
+			if (getIndex(fieldSeq) != null) {
+				throw new IllegalArgumentException("Index " + fieldSeq + " already exists");
+			}
+
+			String filenamePrefix = getFilenamePrefix(fieldSeq);
+			String tmpFilenamePrefix = filenamePrefix + "-tmp";
+
+			while (true) {
+				logger.debug("Building {} index...", fieldSeq);
+
+				deleteIndexFiles(tmpFilenamePrefix);
+				TripleIndex newIndex = new TripleIndex(fieldSeq, tmpFilenamePrefix);
+				IndexBuild build = new IndexBuild();
+				boolean published = false;
+
+				// Start tracking changes before reading the first record
+				indexBuild = build;
+				try {
+					TripleIndex sourceIndex = indexes.get(0);
+					copyIndex(sourceIndex, newIndex, maxRecordsInMemory, listener);
+
+					// Copy changed records until the remaining changes are few
+					long changeCount;
+					do {
+						changeCount = build.copyChanges(sourceIndex, newIndex);
+						listener.catchUpProgress(fieldSeq, changeCount);
+					} while (changeCount > INDEX_BUILD_CATCH_UP_THRESHOLD && !build.isInvalid());
+
+					beginIndexChange();
+					try {
+						if (build.isInvalid()) {
+							logger.info("Too many changes during build of {} index, starting over", fieldSeq);
+							continue;
+						}
+
+						changeCount = build.copyChanges(sourceIndex, newIndex);
+						listener.catchUpProgress(fieldSeq, changeCount);
+
+						newIndex.getBTree().close();
+						moveIndexFiles(tmpFilenamePrefix, filenamePrefix);
+
+						indexes.add(new TripleIndex(fieldSeq));
+						published = true;
+						storeIndexSpecs();
+					} finally {
+						indexBuild = null;
+						endIndexChange();
+					}
+				} finally {
+					indexBuild = null;
+					try {
+						build.discard();
+					} finally {
+						if (!published) {
+							newIndex.getBTree().delete();
+						}
+					}
+				}
+
+				logger.info("Added {} index", fieldSeq);
+				listener.indexAdded(fieldSeq);
+				return;
+			}
+		} finally {
+			indexChangeLock.unlock();
+		}
+	}
+
+	/**
+	 * Copies all records from one index to another, (empty) index. The records are copied while transactions may be
+	 * changing them; the changed records are tracked by the {@link IndexBuild}.
+	 */
+	private void copyIndex(TripleIndex sourceIndex, TripleIndex targetIndex, int maxRecordsInMemory,
+			TripleIndexListener listener) throws IOException {
+		String fieldSeq = targetIndex.toString();
+		long estimatedRecords = sourceIndex.getBTree().getValueCountEstimate();
+		long copiedRecords = 0;
+
+		try (ExternalRecordSorter sorter = new ExternalRecordSorter(dir, RECORD_LENGTH, targetIndex.tripleComparator,
+				maxRecordsInMemory)) {
+			try (RecordIterator iter = sourceIndex.getBTree().iterateAll()) {
+				byte[] data;
+				while ((data = iter.next()) != null) {
+					sorter.add(data);
+
+					if (++copiedRecords % INDEX_BUILD_PROGRESS_INTERVAL == 0) {
+						if (Thread.currentThread().isInterrupted()) {
+							throw new InterruptedIOException("Build of " + fieldSeq + " index was interrupted");
+						}
+						listener.copyProgress(fieldSeq, copiedRecords, estimatedRecords);
+					}
+				}
+			}
+			listener.copyProgress(fieldSeq, copiedRecords, copiedRecords);
+
+			// A record that was changed while it was being read can appear twice; its
+			// final state is copied when catching up, so either copy will do
+			try (RecordIterator sortedIter = new DuplicateMergingIterator(sorter.sortedRecords(),
+					targetIndex.tripleComparator)) {
+				targetIndex.getBTree().bulkLoad(sortedIter);
+			}
+		}
+
+		targetIndex.getBTree().sync();
+	}
+
+	/**
+	 * Removes a triple index while the triple store remains available for reading and writing. New transactions are
+	 * briefly held back while the index is removed from the set of indexes. The index files are deleted once all
+	 * iterators that were reading from the index have been closed.
+	 *
+	 * @param fieldSeq The index to remove, e.g. <tt>opsc</tt>.
+	 * @param listener A listener that is notified of the progress, may be <tt>null</tt>.
+	 * @throws IOException              If an I/O error occurred.
+	 * @throws IllegalArgumentException If the index specification is invalid or the index does not exist.
+	 * @throws IllegalStateException    If the index is the only remaining index.
+	 */
+	public void removeIndex(String fieldSeq, TripleIndexListener listener) throws IOException {
+		fieldSeq = checkIndexSpec(fieldSeq);
+
+		indexChangeLock.lock();
+		try {
+			TripleIndex index = getIndex(fieldSeq);
+			if (index == null) {
+				throw new IllegalArgumentException("Index " + fieldSeq + " does not exist");
+			}
+			if (indexes.size() == 1) {
+				throw new IllegalStateException("Unable to remove the only triple index " + fieldSeq);
+			}
+
+			// Transactions update all indexes, wait until none is active
+			beginIndexChange();
+			try {
+				indexes.remove(index);
+				storeIndexSpecs();
+			} finally {
+				endIndexChange();
+			}
+
+			index.awaitUnused();
+			if (index.getBTree().delete()) {
+				logger.info("Removed {} index", fieldSeq);
+			} else {
+				logger.warn("Unable to delete file(s) for removed {} index", fieldSeq);
+			}
+
+			if (listener != null) {
+				listener.indexRemoved(fieldSeq);
+			}
+		} finally {
+			indexChangeLock.unlock();
+		}
+	}
+
+	private String checkIndexSpec(String fieldSeq) throws IllegalArgumentException {
+		Set<String> indexSpecs;
+		try {
+			indexSpecs = parseIndexSpecList(fieldSeq);
+		} catch (SailException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+		if (indexSpecs.size() != 1) {
+			throw new IllegalArgumentException("Expected a single index specification: " + fieldSeq);
+		}
+		return indexSpecs.iterator().next();
+	}
+
+	private TripleIndex getIndex(String fieldSeq) {
+		for (TripleIndex index : indexes) {
+			if (fieldSeq.equals(index.toString())) {
+				return index;
+			}
+		}
+		return null;
+	}
+
+	private void storeIndexSpecs() throws IOException {
+		properties.setProperty(INDEXES_KEY, getIndexSpecString());
+		storeProperties(new File(dir, PROPERTIES_FILE));
+	}
+
+	/**
+	 * Holds back new transactions and waits until the active transaction, if any, has finished.
+	 */
+	private void beginIndexChange() throws InterruptedIOException {
+		synchronized (txnMonitor) {
+			indexChangePending = true;
+			try {
+				while (txnActive) {
+					txnMonitor.wait();
+				}
+			} catch (InterruptedException e) {
+				indexChangePending = false;
+				txnMonitor.notifyAll();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the active transaction to finish");
+			}
+		}
+	}
+
+	private void endIndexChange() {
+		synchronized (txnMonitor) {
+			indexChangePending = false;
+			txnMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Logs the writes to the transaction status file and the index files in the specified redo log. Every change of
+	 * the transaction status sets a barrier in the log, so that the status is durable before any index node that is
+	 * changed by the transaction is written. Until then, the changed nodes are kept as pending changes of the index
+	 * files, so that neither the status changes nor the node writes force the log.
+	 *
+	 * @param redoLog The redo log, or <tt>null</tt> to stop logging writes.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		indexChangeLock.lock();
+		try {
+			this.redoLog = redoLog;
+			txnStatusFile.setRedoLog(redoLog);
+			txnJournalFile.setRedoLog(redoLog);
+			for (TripleIndex index : indexes) {
+				index.getBTree().setRedoLog(redoLog);
+			}
+		} finally {
+			indexChangeLock.unlock();
+		}
+	}
+
 	@Override
 	public void close() throws IOException {
 		try {
 			List<Throwable> caughtExceptions = new ArrayList<>();
+			try {
+				if (statistics != null) {
+					statistics.store(true);
+				}
+			} catch (Throwable e) {
+				logger.warn("Failed to store triple statistics");
+				caughtExceptions.add(e);
+			}
 			for (TripleIndex index : indexes) {
 				try {
 					index.getBTree().close();
@@ -425,8 +926,19 @@ class TripleStore implements Closeable {
 			}
 		} finally {
 			try {
-				txnStatusFile.close();
+				try {
+					txnJournalFile.close();
+				} finally {
+					txnStatusFile.close();
+				}
 			} finally {
+				synchronized (this) {
+					if (indexUpdateExecutor != null) {
+						indexUpdateExecutor.shutdown();
+						indexUpdateExecutor = null;
+					}
+				}
+
 				// Should have been removed upon commit() or rollback(), but just to be sure
 				RecordCache toCloseUpdatedTriplesCache = updatedTriplesCache;
 				updatedTriplesCache = null;
@@ -580,14 +1092,14 @@ class TripleStore implements Closeable {
 
 	private RecordIterator getTriples(int subj, int pred, int obj, int context, int flags, int flagsMask)
 			throws IOException {
-		TripleIndex index = getBestIndex(subj, pred, obj, context);
+		TripleIndex index = acquireBestIndex(subj, pred, obj, context);
 		boolean doRangeSearch = index.getPatternScore(subj, pred, obj, context) > 0;
 		return getTriplesUsingIndex(subj, pred, obj, context, flags, flagsMask, index, doRangeSearch);
 	}
 
 	private RecordIterator getAllTriplesSortedByContext(int flags, int flagsMask) throws IOException {
 		for (TripleIndex index : indexes) {
-			if (index.getFieldSeq()[0] == 'c') {
+			if (index.getFieldSeq()[0] == 'c' && index.acquire()) {
 				// found a context-first index
 				return getTriplesUsingIndex(-1, -1, -1, -1, flags, flagsMask, index, false);
 			}
@@ -596,38 +1108,74 @@ class TripleStore implements Closeable {
 		return null;
 	}
 
+	/**
+	 * Creates an iterator over the triples in the supplied index, which must have been acquired by the caller. The
+	 * index is released when the iterator is closed.
+	 */
 	private RecordIterator getTriplesUsingIndex(int subj, int pred, int obj, int context, int flags, int flagsMask,
 			TripleIndex index, boolean rangeSearch) {
 		byte[] searchKey = getSearchKey(subj, pred, obj, context, flags);
 		byte[] searchMask = getSearchMask(subj, pred, obj, context, flagsMask);
 
+		RecordIterator btreeIter;
 		if (rangeSearch) {
 			// Use ranged search
 			byte[] minValue = getMinValue(subj, pred, obj, context);
 			byte[] maxValue = getMaxValue(subj, pred, obj, context);
 
-			return index.getBTree().iterateRangedValues(searchKey, searchMask, minValue, maxValue);
+			btreeIter = index.getBTree().iterateRangedValues(searchKey, searchMask, minValue, maxValue);
 		} else {
 			// Use sequential scan
-			return index.getBTree().iterateValues(searchKey, searchMask);
+			btreeIter = index.getBTree().iterateValues(searchKey, searchMask);
 		}
+
+		return new IndexReleasingIterator(btreeIter, index);
 	}
 
 	protected double cardinality(int subj, int pred, int obj, int context) throws IOException {
-		TripleIndex index = getBestIndex(subj, pred, obj, context);
-		BTree btree = index.btree;
+		if (pred >= 0 && context < 0 && (subj < 0 || obj < 0)) {
+			// Estimate from the statistics instead of probing the indexes
+			double tripleCount = statistics.getTripleCount(pred);
+			if (subj >= 0) {
+				return tripleCount / Math.max(1L, statistics.getDistinctSubjectCount(pred));
+			} else if (obj >= 0) {
+				return tripleCount / Math.max(1L, statistics.getDistinctObjectCount(pred));
+			} else {
+				return tripleCount;
+			}
+		}
+
+		TripleIndex index = acquireBestIndex(subj, pred, obj, context);
+		try {
+			BTree btree = index.btree;
 
-		double rangeSize;
+			double rangeSize;
 
-		if (index.getPatternScore(subj, pred, obj, context) == 0) {
-			rangeSize = btree.getValueCountEstimate();
-		} else {
-			byte[] minValue = getMinValue(subj, pred, obj, context);
-			byte[] maxValue = getMaxValue(subj, pred, obj, context);
-			rangeSize = btree.getValueCountEstimate(minValue, maxValue);
+			if (index.getPatternScore(subj, pred, obj, context) == 0) {
+				rangeSize = btree.getValueCountEstimate();
+			} else {
+				byte[] minValue = getMinValue(subj, pred, obj, context);
+				byte[] maxValue = getMaxValue(subj, pred, obj, context);
+				rangeSize = btree.getValueCountEstimate(minValue, maxValue);
+			}
+
+			return rangeSize;
+		} finally {
+			index.release();
 		}
+	}
 
-		return rangeSize;
+	/**
+	 * Gets the best index for the supplied pattern and makes sure that it is not removed until it is released again.
+	 */
+	private TripleIndex acquireBestIndex(int subj, int pred, int obj, int context) {
+		while (true) {
+			TripleIndex index = getBestIndex(subj, pred, obj, context);
+			if (index.acquire()) {
+				return index;
+			}
+			// The index has just been removed, try again
+		}
 	}
 
 	protected TripleIndex getBestIndex(int subj, int pred, int obj, int context) {
@@ -646,83 +1194,408 @@ class TripleStore implements Closeable {
 	}
 
 	public void clear() throws IOException {
+		IndexBuild build = indexBuild;
+		if (build != null) {
+			build.recordChanges(null);
+		}
+
 		for (TripleIndex index : indexes) {
 			index.getBTree().clear();
 		}
-	}
 
-	public boolean storeTriple(int subj, int pred, int obj, int context) throws IOException {
-		return storeTriple(subj, pred, obj, context, true);
+		removedPatterns.clear();
+		statistics.clear();
 	}
 
-	public boolean storeTriple(int subj, int pred, int obj, int context, boolean explicit) throws IOException {
-		boolean stAdded = false;
+	/**
+	 * Loads the supplied triples into an empty triple store, bypassing the transaction mechanism. The records are
+	 * sorted externally for each index, after which the index B-trees are built bottom-up using
+	 * {@link BTree#bulkLoad(RecordIterator)}. Records may be supplied in any order and may contain duplicates; the
+	 * explicit flags of duplicate records are combined.
+	 *
+	 * @param records            The records to load, with only the {@link #EXPLICIT_FLAG} possibly set.
+	 * @param maxRecordsInMemory The maximum number of records to keep in memory (summed over all indexes) while
+	 *                           sorting.
+	 * @return A mapping of each context to the number of statements loaded in that context.
+	 * @throws IOException           If an I/O error occurred.
+	 * @throws IllegalStateException If the triple store is not empty or a transaction is active.
+	 */
+	public Map<Integer, Long> bulkLoad(RecordIterator records, int maxRecordsInMemory) throws IOException {
+		if (txnStatusFile.getTxnStatus() != TxnStatus.NONE) {
+			throw new IllegalStateException("Bulk loading is not possible while a transaction is active");
+		}
+		for (TripleIndex index : indexes) {
+			if (!index.getBTree().isEmpty()) {
+				throw new IllegalStateException("Bulk loading is only possible into an empty triple store");
+			}
+		}
 
-		byte[] data = getData(subj, pred, obj, context, 0);
-		byte[] storedData = indexes.get(0).getBTree().get(data);
+		IndexBuild build = indexBuild;
+		if (build != null) {
+			build.recordChanges(null);
+		}
 
-		if (storedData == null) {
-			// Statement does not yet exist
-			data[FLAG_IDX] |= ADDED_FLAG;
-			if (explicit) {
-				data[FLAG_IDX] |= EXPLICIT_FLAG;
+		final Map<Integer, Long> perContextCounts = new HashMap<>();
+		statistics.clear();
+
+		int maxRecordsPerIndex = Math.max(1, maxRecordsInMemory / indexes.size());
+		List<ExternalRecordSorter> sorters = new ArrayList<>(indexes.size());
+		try {
+			for (TripleIndex index : indexes) {
+				sorters.add(new ExternalRecordSorter(dir, RECORD_LENGTH, index.tripleComparator, maxRecordsPerIndex));
 			}
 
-			stAdded = true;
-		} else {
-			// Statement already exists, only modify its flags, see txn-flags.txt
-			// for a description of the flag transformations
-			byte flags = storedData[FLAG_IDX];
-			boolean wasExplicit = (flags & EXPLICIT_FLAG) != 0;
-			boolean wasAdded = (flags & ADDED_FLAG) != 0;
-			boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
-			boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
-
-			if (wasAdded) {
-				// Statement has been added in the current transaction and is
-				// invisible to other connections, we can simply modify its flags
-				data[FLAG_IDX] |= ADDED_FLAG;
-				if (explicit || wasExplicit) {
-					data[FLAG_IDX] |= EXPLICIT_FLAG;
-				}
-			} else {
-				// Committed statement, must keep explicit flag the same
-				if (wasExplicit) {
-					data[FLAG_IDX] |= EXPLICIT_FLAG;
+			byte[] data;
+			while ((data = records.next()) != null) {
+				data[FLAG_IDX] &= EXPLICIT_FLAG;
+				for (ExternalRecordSorter sorter : sorters) {
+					sorter.add(data);
 				}
+			}
 
-				if (explicit) {
-					if (!wasExplicit) {
-						// Make inferred statement explicit
-						data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
-					}
-				} else {
-					if (wasRemoved) {
-						if (wasExplicit) {
-							// Re-add removed explicit statement as inferred
-							data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
-						}
-					} else if (wasToggled) {
-						data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
+			for (int i = 0; i < indexes.size(); i++) {
+				TripleIndex index = indexes.get(i);
+				logger.debug("Bulk loading {} index...", index);
+
+				try (RecordIterator sortedIter = new DuplicateMergingIterator(sorters.get(i).sortedRecords(),
+						index.tripleComparator)) {
+					RecordIterator iter = sortedIter;
+					if (i == 0) {
+						iter = new RecordIterator() {
+
+							@Override
+							public byte[] next() throws IOException {
+								byte[] next = sortedIter.next();
+								if (next != null) {
+									int context = ByteArrayUtil.getInt(next, CONTEXT_IDX);
+									perContextCounts.merge(context, 1L, (c, one) -> c + one);
+									statistics.add(next);
+								}
+								return next;
+							}
+
+							@Override
+							public void set(byte[] record) throws IOException {
+								sortedIter.set(record);
+							}
+
+							@Override
+							public void close() throws IOException {
+								sortedIter.close();
+							}
+						};
 					}
+
+					long count = index.getBTree().bulkLoad(iter);
+					logger.debug("Loaded {} records into {} index", count, index);
+				}
+
+				// Release the memory and files used for this index
+				sorters.get(i).close();
+			}
+		} finally {
+			try {
+				for (ExternalRecordSorter sorter : sorters) {
+					sorter.close();
+				}
+			} finally {
+				sync();
+				statistics.store(true);
+			}
+		}
+
+		return perContextCounts;
+	}
+
+	/*------------------------------------*
+	 * Inner class IndexReleasingIterator *
+	 *------------------------------------*/
+
+	/**
+	 * Releases a {@link TripleIndex} once the iterator over its records is closed.
+	 */
+	private static class IndexReleasingIterator implements RecordIterator {
+
+		private final RecordIterator wrappedIter;
+
+		private final TripleIndex index;
+
+		private boolean closed;
+
+		public IndexReleasingIterator(RecordIterator wrappedIter, TripleIndex index) {
+			this.wrappedIter = wrappedIter;
+			this.index = index;
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			return wrappedIter.next();
+		}
+
+		@Override
+		public void set(byte[] value) throws IOException {
+			wrappedIter.set(value);
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					wrappedIter.close();
+				} finally {
+					index.release();
+				}
+			}
+		}
+	} // end inner class IndexReleasingIterator
+
+	/*--------------------------------------*
+	 * Inner class DuplicateMergingIterator *
+	 *--------------------------------------*/
+
+	/**
+	 * Filters duplicate records from a sorted record stream, combining the explicit flags of the duplicates.
+	 */
+	private static class DuplicateMergingIterator implements RecordIterator {
+
+		private final RecordIterator wrappedIter;
+
+		private final RecordComparator comparator;
+
+		private byte[] nextRecord;
+
+		public DuplicateMergingIterator(RecordIterator wrappedIter, RecordComparator comparator) throws IOException {
+			this.wrappedIter = wrappedIter;
+			this.comparator = comparator;
+			this.nextRecord = wrappedIter.next();
+		}
+
+		@Override
+		public byte[] next() throws IOException {
+			byte[] result = nextRecord;
+
+			if (result != null) {
+				result = result.clone();
+				while ((nextRecord = wrappedIter.next()) != null
+						&& comparator.compareBTreeValues(result, nextRecord, 0, RECORD_LENGTH) == 0) {
+					result[FLAG_IDX] |= nextRecord[FLAG_IDX];
 				}
 			}
 
-			// Statement is new if it was removed before
-			stAdded = wasRemoved;
+			return result;
+		}
+
+		@Override
+		public void set(byte[] value) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() throws IOException {
+			wrappedIter.close();
 		}
+	} // end inner class DuplicateMergingIterator
+
+	public boolean storeTriple(int subj, int pred, int obj, int context) throws IOException {
+		return storeTriple(subj, pred, obj, context, true);
+	}
+
+	public boolean storeTriple(int subj, int pred, int obj, int context, boolean explicit) throws IOException {
+		byte[] data = getData(subj, pred, obj, context, 0);
+		byte[] storedData = indexes.get(0).getBTree().get(data);
+
+		boolean stAdded = setStoreFlags(data, storedData, explicit);
 
 		if (storedData == null || !Arrays.equals(data, storedData)) {
 			for (TripleIndex index : indexes) {
 				index.getBTree().insert(data);
 			}
 
+			// Not all triples matching these patterns are removed anymore
+			removedPatterns.removeMatching(data);
+
 			updatedTriplesCache.storeRecord(data);
 		}
 
 		return stAdded;
 	}
 
+	/**
+	 * Stores a batch of distinct triples. The triples are looked up in the first index one by one, after which the
+	 * changed records are inserted into all indexes concurrently. Lookups are cheapest if the triples are sorted in the
+	 * order of the first index.
+	 *
+	 * @param triples  The triples to store, as records of {@link #RECORD_LENGTH} bytes whose flags are ignored.
+	 * @param explicit Flag indicating whether the triples are explicit or inferred.
+	 * @return The number of triples that are new, per context ID.
+	 */
+	public Map<Integer, Long> storeTriples(RecordIterator triples, boolean explicit) throws IOException {
+		final Map<Integer, Long> perContextCounts = new HashMap<>();
+
+		RecordCache changedTriplesCache = new SequentialRecordCache(dir, RECORD_LENGTH);
+		try {
+			BTree firstIndex = indexes.get(0).getBTree();
+			try {
+				byte[] triple;
+				while ((triple = triples.next()) != null) {
+					byte[] data = Arrays.copyOf(triple, RECORD_LENGTH);
+					data[FLAG_IDX] = 0;
+					byte[] storedData = firstIndex.get(data);
+
+					if (setStoreFlags(data, storedData, explicit)) {
+						perContextCounts.merge(ByteArrayUtil.getInt(data, CONTEXT_IDX), 1L, (c, one) -> c + one);
+					}
+					if (storedData == null || !Arrays.equals(data, storedData)) {
+						changedTriplesCache.storeRecord(data);
+					}
+				}
+			} finally {
+				triples.close();
+			}
+
+			storeUpdatedTriples(changedTriplesCache);
+		} finally {
+			changedTriplesCache.discard();
+		}
+
+		return perContextCounts;
+	}
+
+	/**
+	 * Sets the flags of a triple that is stored, see txn-flags.txt for a description of the flag transformations.
+	 *
+	 * @param data       The record of the triple, without flags.
+	 * @param storedData The record of the triple in the indexes, or <tt>null</tt> if it does not exist.
+	 * @param explicit   Flag indicating whether the triple is explicit or inferred.
+	 * @return <tt>true</tt> if the triple is new.
+	 */
+	private boolean setStoreFlags(byte[] data, byte[] storedData, boolean explicit) {
+		if (storedData == null) {
+			// Statement does not yet exist
+			data[FLAG_IDX] |= ADDED_FLAG;
+			if (explicit) {
+				data[FLAG_IDX] |= EXPLICIT_FLAG;
+			}
+
+			return true;
+		}
+
+		// Statement already exists, only modify its flags
+		byte flags = storedData[FLAG_IDX];
+		boolean wasExplicit = (flags & EXPLICIT_FLAG) != 0;
+		boolean wasAdded = (flags & ADDED_FLAG) != 0;
+		boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
+		boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
+
+		if (wasAdded) {
+			// Statement has been added in the current transaction and is
+			// invisible to other connections, we can simply modify its flags
+			data[FLAG_IDX] |= ADDED_FLAG;
+			if (explicit || wasExplicit) {
+				data[FLAG_IDX] |= EXPLICIT_FLAG;
+			}
+		} else {
+			// Committed statement, must keep explicit flag the same
+			if (wasExplicit) {
+				data[FLAG_IDX] |= EXPLICIT_FLAG;
+			}
+
+			if (explicit) {
+				if (!wasExplicit) {
+					// Make inferred statement explicit
+					data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
+				}
+			} else {
+				if (wasRemoved) {
+					if (wasExplicit) {
+						// Re-add removed explicit statement as inferred
+						data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
+					}
+				} else if (wasToggled) {
+					data[FLAG_IDX] |= TOGGLE_EXPLICIT_FLAG;
+				}
+			}
+		}
+
+		// Statement is new if it was removed before
+		return wasRemoved;
+	}
+
+	/**
+	 * Removes a batch of distinct triples. The triples are looked up in the first index one by one, after which the
+	 * REMOVED flag is set in all indexes concurrently. Lookups are cheapest if the triples are sorted in the order of
+	 * the first index.
+	 *
+	 * @param triples  The triples to remove, as records of {@link #RECORD_LENGTH} bytes whose flags are ignored.
+	 * @param explicit Flag indicating whether explicit or inferred triples should be removed.
+	 * @return The number of triples that were removed, per context ID.
+	 */
+	public Map<Integer, Long> removeTriples(RecordIterator triples, boolean explicit) throws IOException {
+		final Map<Integer, Long> perContextCounts = new HashMap<>();
+		byte flags = explicit ? EXPLICIT_FLAG : 0;
+
+		RecordCache removedTriplesCache = new SequentialRecordCache(dir, RECORD_LENGTH);
+		try {
+			BTree firstIndex = indexes.get(0).getBTree();
+			try {
+				byte[] triple;
+				while ((triple = triples.next()) != null) {
+					byte[] data = firstIndex.get(triple);
+
+					if (data != null && (data[FLAG_IDX] & EXPLICIT_FLAG) == flags
+							&& (data[FLAG_IDX] & REMOVED_FLAG) == 0) {
+						data[FLAG_IDX] |= REMOVED_FLAG;
+						removedTriplesCache.storeRecord(data);
+						perContextCounts.merge(ByteArrayUtil.getInt(data, CONTEXT_IDX), 1L, (c, one) -> c + one);
+					}
+				}
+			} finally {
+				triples.close();
+			}
+
+			storeUpdatedTriples(removedTriplesCache);
+		} finally {
+			removedTriplesCache.discard();
+		}
+
+		return perContextCounts;
+	}
+
+	/**
+	 * Writes the supplied updated records to all indexes concurrently and registers them as updated by the current
+	 * transaction.
+	 */
+	private void storeUpdatedTriples(RecordCache updatedTriples) throws IOException {
+		if (updatedTriples.getRecordCount() == 0L) {
+			return;
+		}
+
+		forEachIndex(index -> {
+			BTree btree = index.getBTree();
+
+			try (RecordIterator recIter = updatedTriples.getRecords()) {
+				byte[] record;
+				while ((record = recIter.next()) != null) {
+					btree.insert(record);
+				}
+			}
+		});
+
+		if (!removedPatterns.isEmpty()) {
+			try (RecordIterator recIter = updatedTriples.getRecords()) {
+				for (byte[] record = recIter.next(); record != null; record = recIter.next()) {
+					// Not all triples matching these patterns are removed anymore, unless the triple itself is removed
+					if ((record[FLAG_IDX] & REMOVED_FLAG) == 0) {
+						removedPatterns.removeMatching(record);
+					}
+				}
+			}
+		}
+
+		updatedTriplesCache.storeRecords(updatedTriples);
+	}
+
 	/**
 	 * Remove triples
 	 * 
@@ -758,8 +1631,7 @@ class TripleStore implements Closeable {
 	 * @since 2.5.3
 	 */
 	public Map<Integer, Long> removeTriplesByContext(int subj, int pred, int obj, int context) throws IOException {
-		RecordIterator iter = getTriples(subj, pred, obj, context, 0, 0);
-		return removeTriples(iter);
+		return removeTriples(subj, pred, obj, context, (byte) 0, (byte) 0);
 	}
 
 	/**
@@ -796,16 +1668,21 @@ class TripleStore implements Closeable {
 	public Map<Integer, Long> removeTriplesByContext(int subj, int pred, int obj, int context, boolean explicit)
 			throws IOException {
 		byte flags = explicit ? EXPLICIT_FLAG : 0;
-		RecordIterator iter = getTriples(subj, pred, obj, context, flags, EXPLICIT_FLAG);
-		return removeTriples(iter);
+		return removeTriples(subj, pred, obj, context, flags, EXPLICIT_FLAG);
 	}
 
-	private Map<Integer, Long> removeTriples(RecordIterator iter) throws IOException {
+	private Map<Integer, Long> removeTriples(int subj, int pred, int obj, int context, byte flags, byte flagsMask)
+			throws IOException {
 		final Map<Integer, Long> perContextCounts = new HashMap<>();
 
+		// Iterate over all triples matching the pattern, to find out whether the flags select all of them
+		RecordIterator iter = getTriples(subj, pred, obj, context, 0, 0);
+		boolean removedAllMatches = true;
+
 		byte[] data = iter.next();
 		if (data == null) {
 			// no triples to remove
+			iter.close();
 			return perContextCounts;
 		}
 
@@ -814,11 +1691,13 @@ class TripleStore implements Closeable {
 		RecordCache removedTriplesCache = new SequentialRecordCache(dir, RECORD_LENGTH);
 		try {
 			while (data != null) {
-				if ((data[FLAG_IDX] & REMOVED_FLAG) == 0) {
+				if ((data[FLAG_IDX] & flagsMask) != flags) {
+					removedAllMatches = false;
+				} else if ((data[FLAG_IDX] & REMOVED_FLAG) == 0) {
 					data[FLAG_IDX] |= REMOVED_FLAG;
 					removedTriplesCache.storeRecord(data);
-					int context = ByteArrayUtil.getInt(data, CONTEXT_IDX);
-					perContextCounts.merge(context, 1L, (c, one) -> c + one);
+					int recordContext = ByteArrayUtil.getInt(data, CONTEXT_IDX);
+					perContextCounts.merge(recordContext, 1L, (c, one) -> c + one);
 				}
 				data = iter.next();
 			}
@@ -826,24 +1705,41 @@ class TripleStore implements Closeable {
 
 			updatedTriplesCache.storeRecords(removedTriplesCache);
 
-			// Set the REMOVED flag by overwriting the affected records
-			for (TripleIndex index : indexes) {
+			// Set the REMOVED flag by overwriting the affected records, in all indexes concurrently
+			forEachIndex(index -> {
 				BTree btree = index.getBTree();
 
 				try (RecordIterator recIter = removedTriplesCache.getRecords()) {
-					while ((data = recIter.next()) != null) {
-						btree.insert(data);
+					byte[] record;
+					while ((record = recIter.next()) != null) {
+						btree.insert(record);
 					}
 				}
-			}
+			});
 		} finally {
 			removedTriplesCache.discard();
 		}
 
+		if (removedAllMatches) {
+			removedPatterns.add(subj, pred, obj, context);
+		}
+
 		return perContextCounts;
 	}
 
 	public void startTransaction() throws IOException {
+		synchronized (txnMonitor) {
+			try {
+				while (indexChangePending) {
+					txnMonitor.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for an index change to finish");
+			}
+			txnActive = true;
+		}
+
 		txnStatusFile.setTxnStatus(TxnStatus.ACTIVE);
 
 		// Create a record cache for storing updated triples with a maximum of
@@ -859,18 +1755,32 @@ class TripleStore implements Closeable {
 	}
 
 	public void commit() throws IOException {
+		writeTxnJournal();
 		txnStatusFile.setTxnStatus(TxnStatus.COMMITTING);
+		completeCommit();
+	}
 
-		// updatedTriplesCache will be null when recovering from a crashed commit
+	private void completeCommit() throws IOException {
+		// updatedTriplesCache will be null when recovering from a crashed commit without a valid journal
 		boolean validCache = updatedTriplesCache != null && updatedTriplesCache.isValid();
 
-		for (TripleIndex index : indexes) {
+		// Every index is a separate B-tree; apply the changes to all of them concurrently
+		forEachIndex(index -> {
 			BTree btree = index.getBTree();
 
 			RecordIterator iter;
+			List<RemovedPattern> removedRanges = new ArrayList<>();
 			if (validCache) {
 				// Use the cached set of updated triples
 				iter = updatedTriplesCache.getRecords();
+
+				// Drop the key ranges in which all triples have been removed at once
+				for (RemovedPattern pattern : removedPatterns.getPatterns()) {
+					if (pattern.isKeyRangeOf(index)) {
+						btree.removeRange(pattern.getMinValue(), pattern.getMaxValue());
+						removedRanges.add(pattern);
+					}
+				}
 			} else {
 				// Cache is invalid; too much updates(?). Iterate over all triples
 				iter = btree.iterateAll();
@@ -885,7 +1795,9 @@ class TripleStore implements Closeable {
 					boolean wasToggled = (flags & TOGGLE_EXPLICIT_FLAG) != 0;
 
 					if (wasRemoved) {
-						btree.remove(data);
+						if (!isInRemovedRange(data, removedRanges)) {
+							btree.remove(data);
+						}
 					} else if (wasAdded || wasToggled) {
 						if (wasToggled) {
 							data[FLAG_IDX] ^= EXPLICIT_FLAG;
@@ -906,15 +1818,21 @@ class TripleStore implements Closeable {
 			} finally {
 				iter.close();
 			}
-		}
+		});
+
+		recordIndexBuildChanges(validCache);
+		updateStatistics(validCache);
 
 		if (updatedTriplesCache != null) {
 			updatedTriplesCache.clear();
 		}
+		removedPatterns.clear();
 
 		sync();
 
 		txnStatusFile.setTxnStatus(TxnStatus.NONE);
+		txnJournalFile.clear();
+		endTransaction();
 		// checkAllCommitted();
 	}
 
@@ -937,14 +1855,18 @@ class TripleStore implements Closeable {
 	}
 
 	public void rollback() throws IOException {
+		writeTxnJournal();
 		txnStatusFile.setTxnStatus(TxnStatus.ROLLING_BACK);
+		completeRollback();
+	}
 
-		// updatedTriplesCache will be null when recovering from a crash
+	private void completeRollback() throws IOException {
+		// updatedTriplesCache will be null when recovering from a crash without a valid journal
 		boolean validCache = updatedTriplesCache != null && updatedTriplesCache.isValid();
 
 		byte txnFlagsMask = ~(ADDED_FLAG | REMOVED_FLAG | TOGGLE_EXPLICIT_FLAG);
 
-		for (TripleIndex index : indexes) {
+		forEachIndex(index -> {
 			BTree btree = index.getBTree();
 
 			RecordIterator iter;
@@ -983,29 +1905,162 @@ class TripleStore implements Closeable {
 			} finally {
 				iter.close();
 			}
-		}
+		});
+
+		recordIndexBuildChanges(validCache);
 
 		if (updatedTriplesCache != null) {
 			updatedTriplesCache.clear();
 		}
+		removedPatterns.clear();
 
 		sync();
 
 		txnStatusFile.setTxnStatus(TxnStatus.NONE);
+		txnJournalFile.clear();
+		endTransaction();
+	}
+
+	/**
+	 * Passes the records that were updated by the current transaction to the index that is being built, if any.
+	 */
+	private void recordIndexBuildChanges(boolean validCache) throws IOException {
+		IndexBuild build = indexBuild;
+		if (build != null) {
+			build.recordChanges(validCache ? updatedTriplesCache : null);
+		}
+	}
+
+	/**
+	 * Applies the records that were updated by the committed transaction to the statistics, or recomputes the
+	 * statistics if these records are not known.
+	 */
+	private void updateStatistics(boolean validCache) throws IOException {
+		if (statistics == null) {
+			// Completing a commit while opening the triple store, statistics are computed afterwards
+			return;
+		}
+
+		if (validCache) {
+			try (RecordIterator iter = updatedTriplesCache.getRecords()) {
+				byte[] data;
+				while ((data = iter.next()) != null) {
+					byte flags = data[FLAG_IDX];
+					boolean wasAdded = (flags & ADDED_FLAG) != 0;
+					boolean wasRemoved = (flags & REMOVED_FLAG) != 0;
+
+					if (wasAdded && !wasRemoved) {
+						statistics.add(data);
+					} else if (wasRemoved && !wasAdded) {
+						statistics.remove(data);
+					}
+				}
+			}
+		}
+
+		if (!validCache || statistics.needsRebuild()) {
+			logger.debug("Recomputing triple statistics...");
+			statistics.rebuild(indexes.get(0).getBTree().iterateAll());
+		}
+
+		statistics.store(false);
+	}
+
+	private void endTransaction() {
+		synchronized (txnMonitor) {
+			txnActive = false;
+			txnMonitor.notifyAll();
+		}
 	}
 
 	protected void sync() throws IOException {
-		List<Throwable> exceptions = new ArrayList<>();
+		// Syncing each index may involve an fsync, do these concurrently
+		forEachIndex(index -> index.getBTree().sync());
+	}
+
+	/**
+	 * An operation on a single triple index.
+	 */
+	@FunctionalInterface
+	private interface IndexOperation {
+
+		void execute(TripleIndex index) throws IOException;
+	}
+
+	/**
+	 * Executes the supplied operation on all triple indexes. Each index is backed by a separate B-tree file, so the
+	 * operations are executed concurrently when there is more than one index. This method waits for the operation to
+	 * finish on all indexes, even if it fails on one or more of them.
+	 * 
+	 * @throws IOException If the operation failed on any of the indexes. Failures on other indexes are added as
+	 *                     suppressed exceptions.
+	 */
+	private void forEachIndex(IndexOperation operation) throws IOException {
+		if (indexes.size() == 1) {
+			operation.execute(indexes.get(0));
+			return;
+		}
+
+		ExecutorService executor = getIndexUpdateExecutor();
+		List<Future<?>> futures = new ArrayList<>(indexes.size());
 		for (TripleIndex index : indexes) {
-			try {
-				index.getBTree().sync();
-			} catch (Throwable e) {
-				exceptions.add(e);
+			futures.add(executor.submit(() -> {
+				operation.execute(index);
+				return null;
+			}));
+		}
+
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					// The index updates can't be abandoned halfway, keep waiting
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					} else {
+						failure.addSuppressed(e.getCause());
+					}
+					break;
+				}
 			}
 		}
-		if (!exceptions.isEmpty()) {
-			throw new IOException(exceptions.get(0));
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IOException(failure);
+		}
+	}
+
+	private synchronized ExecutorService getIndexUpdateExecutor() {
+		if (indexUpdateExecutor == null) {
+			int threads = Math.min(indexes.size(), Runtime.getRuntime().availableProcessors());
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), runnable -> {
+						Thread thread = new Thread(runnable,
+								"rdf4j-nativerdf-index-update-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+			indexUpdateExecutor = executor;
 		}
+		return indexUpdateExecutor;
 	}
 
 	private byte[] getData(int subj, int pred, int obj, int context, int flags) {
@@ -1044,6 +2099,18 @@ class TripleStore implements Closeable {
 		return mask;
 	}
 
+	/**
+	 * Checks whether a record matches any of the specified patterns, whose key ranges have already been removed.
+	 */
+	private static boolean isInRemovedRange(byte[] data, List<RemovedPattern> removedRanges) {
+		for (RemovedPattern pattern : removedRanges) {
+			if (pattern.matches(data)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private byte[] getMinValue(int subj, int pred, int obj, int context) {
 		byte[] minValue = new byte[RECORD_LENGTH];
 
@@ -1082,6 +2149,87 @@ class TripleStore implements Closeable {
 		}
 	}
 
+	/*------------------------*
+	 * Inner class IndexBuild *
+	 *------------------------*/
+
+	/**
+	 * Tracks the records that are changed by transactions while an index is being added, so that these records can be
+	 * copied to the new index afterwards.
+	 */
+	private class IndexBuild {
+
+		private SequentialRecordCache changedRecords;
+
+		/**
+		 * Flag indicating that the changed records could not be tracked and the new index has to be rebuilt.
+		 */
+		private boolean invalid;
+
+		public IndexBuild() throws IOException {
+			changedRecords = new SequentialRecordCache(dir, RECORD_LENGTH);
+		}
+
+		/**
+		 * Records the records that have been changed by a transaction.
+		 *
+		 * @param records The changed records, or <tt>null</tt> if these are not known.
+		 */
+		public synchronized void recordChanges(RecordCache records) throws IOException {
+			if (invalid) {
+				return;
+			}
+
+			if (records == null) {
+				invalid = true;
+				changedRecords.clear();
+			} else {
+				changedRecords.storeRecords(records);
+			}
+		}
+
+		public synchronized boolean isInvalid() {
+			return invalid;
+		}
+
+		/**
+		 * Copies the current state of the records that have been changed since the previous call from the source
+		 * index to the target index.
+		 *
+		 * @return The number of copied records.
+		 */
+		public long copyChanges(TripleIndex sourceIndex, TripleIndex targetIndex) throws IOException {
+			SequentialRecordCache changes;
+			synchronized (this) {
+				changes = changedRecords;
+				changedRecords = new SequentialRecordCache(dir, RECORD_LENGTH);
+			}
+
+			try {
+				long count = 0;
+				try (RecordIterator iter = changes.getRecords()) {
+					byte[] key;
+					while ((key = iter.next()) != null) {
+						byte[] data = sourceIndex.getBTree().get(key);
+						if (data != null) {
+							targetIndex.getBTree().insert(data);
+						} else {
+							targetIndex.getBTree().remove(key);
+						}
+						count++;
+					}
+				}
+				return count;
+			} finally {
+				changes.discard();
+			}
+		}
+
+		public synchronized void discard() throws IOException {
+			changedRecords.discard();
+		}
+	} // end inner class IndexBuild
+
 	/*-------------------------*
 	 * Inner class TripleIndex *
 	 *-------------------------*/
@@ -1092,13 +2240,25 @@ class TripleStore implements Closeable {
 
 		private final BTree btree;
 
+		/**
+		 * The number of readers that are currently using this index, or <tt>-1</tt> if the index has been removed.
+		 */
+		private final AtomicInteger readerCount = new AtomicInteger();
+
 		public TripleIndex(String fieldSeq) throws IOException {
-			tripleComparator = new TripleComparator(fieldSeq);
-			btree = new BTree(dir, getFilenamePrefix(fieldSeq), 2048, RECORD_LENGTH, tripleComparator, forceSync);
+			this(fieldSeq, getFilenamePrefix(fieldSeq));
+
+			// Temporary indexes are not logged, their files are discarded after a crash
+			RedoLog log = redoLog;
+			if (log != null) {
+				btree.setRedoLog(log);
+			}
 		}
 
-		private String getFilenamePrefix(String fieldSeq) {
-			return "triples-" + fieldSeq;
+		public TripleIndex(String fieldSeq, String filenamePrefix) throws IOException {
+			tripleComparator = new TripleComparator(fieldSeq);
+			btree = new BTree(dir, filenamePrefix, 2048, RECORD_LENGTH, tripleComparator, forceSync, memoryMapped,
+					true);
 		}
 
 		public char[] getFieldSeq() {
@@ -1109,6 +2269,47 @@ class TripleStore implements Closeable {
 			return btree;
 		}
 
+		/**
+		 * Registers a reader of this index.
+		 *
+		 * @return <tt>false</tt> if the index has been removed and can no longer be used.
+		 */
+		boolean acquire() {
+			int count;
+			do {
+				count = readerCount.get();
+				if (count < 0) {
+					return false;
+				}
+			} while (!readerCount.compareAndSet(count, count + 1));
+			return true;
+		}
+
+		void release() {
+			int count = readerCount.decrementAndGet();
+			assert count >= 0 : "index released more often than acquired";
+		}
+
+		/**
+		 * Waits until this (removed) index is no longer used by any readers and marks it as unusable.
+		 */
+		void awaitUnused() throws InterruptedIOException {
+			long nextWarning = System.currentTimeMillis() + 60_000L;
+			while (!readerCount.compareAndSet(0, -1)) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for readers of " + this + " index");
+				}
+				if (System.currentTimeMillis() > nextWarning) {
+					logger.warn("Still waiting for {} readers of removed {} index to close their iterators",
+							readerCount.get(), this);
+					nextWarning += 60_000L;
+				}
+			}
+		}
+
 		/**
 		 * Determines the 'score' of this index on the supplied pattern of subject, predicate, object and context IDs.
 		 * The higher the score, the better the index is suited for matching the pattern. Lowest score is 0, which means
@@ -1162,6 +2363,209 @@ class TripleStore implements Closeable {
 		}
 	}
 
+	/*----------------------------*
+	 * Inner class RemovedPattern *
+	 *----------------------------*/
+
+	/**
+	 * A pattern of subject, predicate, object and context IDs for which all matching triples have been removed.
+	 */
+	private class RemovedPattern {
+
+		private final int subj;
+
+		private final int pred;
+
+		private final int obj;
+
+		private final int context;
+
+		public RemovedPattern(int subj, int pred, int obj, int context) {
+			this.subj = subj;
+			this.pred = pred;
+			this.obj = obj;
+			this.context = context;
+		}
+
+		/**
+		 * Checks whether all triples matching the specified pattern also match this pattern.
+		 */
+		public boolean subsumes(RemovedPattern other) {
+			return (subj == -1 || subj == other.subj) && (pred == -1 || pred == other.pred)
+					&& (obj == -1 || obj == other.obj) && (context == -1 || context == other.context);
+		}
+
+		/**
+		 * Gets the record index of the first bound field of this pattern, or <tt>-1</tt> if no field is bound.
+		 */
+		public int getFirstBoundField() {
+			if (subj != -1) {
+				return SUBJ_IDX;
+			} else if (pred != -1) {
+				return PRED_IDX;
+			} else if (obj != -1) {
+				return OBJ_IDX;
+			} else if (context != -1) {
+				return CONTEXT_IDX;
+			}
+			return -1;
+		}
+
+		/**
+		 * Gets the ID of the field at the specified record index.
+		 */
+		public int getField(int fieldIdx) {
+			switch (fieldIdx) {
+			case SUBJ_IDX:
+				return subj;
+			case PRED_IDX:
+				return pred;
+			case OBJ_IDX:
+				return obj;
+			default:
+				return context;
+			}
+		}
+
+		public boolean matches(byte[] data) {
+			return (subj == -1 || subj == ByteArrayUtil.getInt(data, SUBJ_IDX))
+					&& (pred == -1 || pred == ByteArrayUtil.getInt(data, PRED_IDX))
+					&& (obj == -1 || obj == ByteArrayUtil.getInt(data, OBJ_IDX))
+					&& (context == -1 || context == ByteArrayUtil.getInt(data, CONTEXT_IDX));
+		}
+
+		/**
+		 * Checks whether the triples matching this pattern form a single key range in the specified index, which is
+		 * the case when the bound fields of the pattern are the leading fields of the index.
+		 */
+		public boolean isKeyRangeOf(TripleIndex index) {
+			int boundFields = (subj == -1 ? 0 : 1) + (pred == -1 ? 0 : 1) + (obj == -1 ? 0 : 1)
+					+ (context == -1 ? 0 : 1);
+			return index.getPatternScore(subj, pred, obj, context) == boundFields;
+		}
+
+		public byte[] getMinValue() {
+			return TripleStore.this.getMinValue(subj, pred, obj, context);
+		}
+
+		public byte[] getMaxValue() {
+			return TripleStore.this.getMaxValue(subj, pred, obj, context);
+		}
+	}
+
+	/*-------------------------------*
+	 * Inner class RemovedPatternSet *
+	 *-------------------------------*/
+
+	/**
+	 * The {@link RemovedPattern}s of a transaction. Only patterns with at least one wildcard are kept, since the triple
+	 * of a fully bound pattern is removed from the indexes as a single record anyway. Patterns that are subsumed by
+	 * another pattern are dropped, and at most {@link #MAX_REMOVED_PATTERNS} patterns are kept; the triples of any
+	 * further patterns are removed one by one. The patterns are indexed by their first bound field, so that a stored
+	 * triple only needs to be compared to the patterns that share the value of one of its fields.
+	 */
+	private class RemovedPatternSet {
+
+		private final List<RemovedPattern> patterns = new ArrayList<>();
+
+		/**
+		 * The patterns by the index and value of their first bound field, see {@link #getKey(int, int)}.
+		 */
+		private final Map<Long, List<RemovedPattern>> patternsByField = new HashMap<>();
+
+		/**
+		 * The pattern without any bound fields, which matches all triples, or <tt>null</tt>.
+		 */
+		private RemovedPattern allPattern;
+
+		public boolean isEmpty() {
+			return patterns.isEmpty();
+		}
+
+		public List<RemovedPattern> getPatterns() {
+			return patterns;
+		}
+
+		public void add(int subj, int pred, int obj, int context) {
+			if (subj != -1 && pred != -1 && obj != -1 && context != -1) {
+				return;
+			}
+
+			RemovedPattern pattern = new RemovedPattern(subj, pred, obj, context);
+			for (RemovedPattern existing : patterns) {
+				if (existing.subsumes(pattern)) {
+					return;
+				}
+			}
+			for (RemovedPattern existing : new ArrayList<>(patterns)) {
+				if (pattern.subsumes(existing)) {
+					remove(existing);
+				}
+			}
+
+			if (patterns.size() < MAX_REMOVED_PATTERNS) {
+				patterns.add(pattern);
+				if (pattern.getFirstBoundField() == -1) {
+					allPattern = pattern;
+				} else {
+					patternsByField.computeIfAbsent(getKey(pattern), key -> new ArrayList<>(2)).add(pattern);
+				}
+			}
+		}
+
+		/**
+		 * Removes the patterns that match the specified triple.
+		 */
+		public void removeMatching(byte[] data) {
+			if (patterns.isEmpty()) {
+				return;
+			}
+			if (allPattern != null) {
+				remove(allPattern);
+			}
+			for (int fieldIdx = SUBJ_IDX; fieldIdx <= CONTEXT_IDX; fieldIdx += 4) {
+				int id = ByteArrayUtil.getInt(data, fieldIdx);
+				List<RemovedPattern> candidates = patternsByField.get(getKey(fieldIdx, id));
+				if (candidates != null) {
+					for (RemovedPattern pattern : new ArrayList<>(candidates)) {
+						if (pattern.matches(data)) {
+							remove(pattern);
+						}
+					}
+				}
+			}
+		}
+
+		public void clear() {
+			patterns.clear();
+			patternsByField.clear();
+			allPattern = null;
+		}
+
+		private void remove(RemovedPattern pattern) {
+			patterns.remove(pattern);
+			if (pattern == allPattern) {
+				allPattern = null;
+			} else {
+				Long key = getKey(pattern);
+				List<RemovedPattern> list = patternsByField.get(key);
+				list.remove(pattern);
+				if (list.isEmpty()) {
+					patternsByField.remove(key);
+				}
+			}
+		}
+
+		private long getKey(RemovedPattern pattern) {
+			int fieldIdx = pattern.getFirstBoundField();
+			return getKey(fieldIdx, pattern.getField(fieldIdx));
+		}
+
+		private long getKey(int fieldIdx, int id) {
+			return ((long) fieldIdx << 32) | (id & 0xFFFFFFFFL);
+		}
+	}
+
 	/*------------------------------*
 	 * Inner class TripleComparator *
 	 *------------------------------*/
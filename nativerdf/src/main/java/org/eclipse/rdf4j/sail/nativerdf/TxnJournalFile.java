@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+
+/**
+ * Writes the records that are updated by a transaction to a file, so that an interrupted commit or rollback can be
+ * completed by processing only these records instead of scanning all triple indexes. The journal is written before the
+ * transaction status is set to {@link TxnStatusFile.TxnStatus#COMMITTING COMMITTING} or
+ * {@link TxnStatusFile.TxnStatus#ROLLING_BACK ROLLING_BACK} and is cleared once the transaction has completed.
+ * <p>
+ * The file starts with a magic number, a format version and the number of records, followed by the records and a
+ * CRC-32 checksum of the records. A journal that is empty or that does not match its record count or checksum is
+ * invalid; the transaction then has to be completed by scanning the indexes.
+ */
+class TxnJournalFile {
+
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	/**
+	 * The name of the transaction journal file.
+	 */
+	static final String FILE_NAME = "txn-journal";
+
+	/**
+	 * Magic number "Native Txn Journal" to detect whether the file is actually a transaction journal. The first three
+	 * bytes of the file should be equal to this magic number.
+	 */
+	private static final byte[] MAGIC_NUMBER = new byte[] { 'n', 't', 'j' };
+
+	private static final byte FILE_FORMAT_VERSION = 1;
+
+	/**
+	 * The length of the file header: the magic number, the format version and the record count.
+	 */
+	private static final int HEADER_LENGTH = MAGIC_NUMBER.length + 1 + 8;
+
+	private static final int CHECKSUM_LENGTH = 4;
+
+	/**
+	 * The number of records that are written or read at once.
+	 */
+	private static final int BATCH_SIZE = 4096;
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final MappedNioFile nioFile;
+
+	private final int recordSize;
+
+	/**
+	 * Whether the journal is forced to disk when it is not logged in a redo log. Without forced syncing, the journal,
+	 * like the indexes themselves, only survives crashes of the process and not of the operating system.
+	 */
+	private final boolean forceSync;
+
+	/**
+	 * The log in which the journal is logged, <tt>null</tt> if it is forced to disk directly.
+	 */
+	private volatile RedoLog redoLog;
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * Creates a new transaction journal file.
+	 *
+	 * @param dataDir    The directory for the transaction journal file.
+	 * @param recordSize The size of the journaled records.
+	 * @param forceSync  Whether the journal is forced to disk when it is not logged in a redo log.
+	 */
+	public TxnJournalFile(File dataDir, int recordSize, boolean forceSync) throws IOException {
+		this.nioFile = new MappedNioFile(new File(dataDir, FILE_NAME), false);
+		this.recordSize = recordSize;
+		this.forceSync = forceSync;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	/**
+	 * Logs the writes to the journal in the specified redo log, or stops logging them if the log is <tt>null</tt>.
+	 * Logged writes precede the next change of the transaction status in the log, so the journal is then not forced to
+	 * disk separately.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, false);
+		this.redoLog = redoLog;
+	}
+
+	/**
+	 * Replaces the contents of the journal with the supplied records, and makes sure the journal is durable if it is
+	 * logged or if forced syncing is enabled.
+	 *
+	 * @param records The records that were updated by the current transaction.
+	 */
+	public void write(RecordIterator records) throws IOException {
+		// Invalidate the current journal before overwriting it
+		nioFile.truncate(0L);
+
+		CRC32 crc = new CRC32();
+		ByteBuffer buf = ByteBuffer.allocate(BATCH_SIZE * recordSize);
+		long recordCount = 0L;
+		long offset = HEADER_LENGTH;
+		try {
+			byte[] record;
+			while ((record = records.next()) != null) {
+				buf.put(record, 0, recordSize);
+				recordCount++;
+				if (!buf.hasRemaining()) {
+					offset += writeBatch(buf, offset, crc);
+				}
+			}
+		} finally {
+			records.close();
+		}
+		offset += writeBatch(buf, offset, crc);
+
+		ByteBuffer checksum = ByteBuffer.allocate(CHECKSUM_LENGTH);
+		checksum.putInt(0, (int) crc.getValue());
+		nioFile.write(checksum, offset);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.put(MAGIC_NUMBER);
+		header.put(FILE_FORMAT_VERSION);
+		header.putLong(recordCount);
+		header.flip();
+		nioFile.write(header, 0L);
+
+		if (redoLog == null && forceSync) {
+			nioFile.force(false);
+		}
+	}
+
+	private int writeBatch(ByteBuffer buf, long offset, CRC32 crc) throws IOException {
+		buf.flip();
+		int length = buf.remaining();
+		crc.update(buf.array(), 0, length);
+		while (buf.hasRemaining()) {
+			nioFile.write(buf, offset + buf.position());
+		}
+		buf.clear();
+		return length;
+	}
+
+	/**
+	 * Reads the records from the journal into the supplied cache, after verifying the journal.
+	 *
+	 * @param cache The cache to store the records in.
+	 * @return <tt>false</tt> if the journal is invalid, in which case the cache has not been changed.
+	 */
+	public boolean read(RecordCache cache) throws IOException {
+		long fileSize = nioFile.size();
+		if (fileSize < HEADER_LENGTH + CHECKSUM_LENGTH) {
+			return false;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		nioFile.read(header, 0L);
+		header.flip();
+		byte[] magicNumber = new byte[MAGIC_NUMBER.length];
+		header.get(magicNumber);
+		if (!Arrays.equals(MAGIC_NUMBER, magicNumber) || header.get() != FILE_FORMAT_VERSION) {
+			return false;
+		}
+		long recordCount = header.getLong();
+		long dataLength = recordCount * recordSize;
+		if (recordCount < 0L || fileSize != HEADER_LENGTH + dataLength + CHECKSUM_LENGTH) {
+			return false;
+		}
+
+		// Verify the checksum before using any of the records
+		CRC32 crc = new CRC32();
+		ByteBuffer buf = ByteBuffer.allocate(BATCH_SIZE * recordSize);
+		for (long offset = 0L; offset < dataLength; offset += buf.limit()) {
+			readBatch(buf, HEADER_LENGTH + offset, dataLength - offset);
+			crc.update(buf.array(), 0, buf.limit());
+		}
+		if ((int) crc.getValue() != nioFile.readInt(HEADER_LENGTH + dataLength)) {
+			return false;
+		}
+
+		for (long offset = 0L; offset < dataLength; offset += buf.limit()) {
+			readBatch(buf, HEADER_LENGTH + offset, dataLength - offset);
+			while (buf.hasRemaining()) {
+				byte[] record = new byte[recordSize];
+				buf.get(record);
+				cache.storeRecord(record);
+			}
+		}
+		return true;
+	}
+
+	private void readBatch(ByteBuffer buf, long offset, long remaining) throws IOException {
+		buf.clear();
+		buf.limit((int) Math.min(buf.capacity(), remaining));
+		while (buf.hasRemaining()) {
+			if (nioFile.read(buf, offset + buf.position()) < 0) {
+				throw new IOException("Unexpected end of transaction journal");
+			}
+		}
+		buf.flip();
+	}
+
+	/**
+	 * Clears the journal with the same durability as {@link #write(RecordIterator)}, used instead of that method if the
+	 * records that were updated by the current transaction are not known.
+	 */
+	public void invalidate() throws IOException {
+		nioFile.truncate(0L);
+
+		if (redoLog == null && forceSync) {
+			nioFile.force(false);
+		}
+	}
+
+	/**
+	 * Clears the journal once the transaction has completed. The journal is not forced to disk: a journal is always
+	 * rewritten before it is used for another transaction.
+	 */
+	public void clear() throws IOException {
+		if (nioFile.size() > 0L) {
+			nioFile.truncate(0L);
+		}
+	}
+
+	public void close() throws IOException {
+		nioFile.close();
+	}
+}
@@ -11,8 +11,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 
-import org.eclipse.rdf4j.common.io.NioFile;
-
 /**
  * Writes transaction statuses to a file.
  */
@@ -54,7 +52,12 @@ class TxnStatusFile {
 	 */
 	public static final String FILE_NAME = "txn-status";
 
-	private final NioFile nioFile;
+	private final MappedNioFile nioFile;
+
+	/**
+	 * The log in which the transaction status is logged, <tt>null</tt> if it is written to the file directly.
+	 */
+	private volatile RedoLog redoLog;
 
 	/**
 	 * Creates a new transaction status file. New files are initialized with {@link TxnStatus#NONE}.
@@ -64,13 +67,22 @@ class TxnStatusFile {
 	 */
 	public TxnStatusFile(File dataDir) throws IOException {
 		File statusFile = new File(dataDir, FILE_NAME);
-		nioFile = new NioFile(statusFile, "rwd");
+		nioFile = new MappedNioFile(statusFile, false);
 
 		if (nioFile.size() == 0) {
 			setTxnStatus(TxnStatus.NONE);
 		}
 	}
 
+	/**
+	 * Logs changes of the transaction status in the specified redo log, or stops logging them if the log is
+	 * <tt>null</tt>. Each change sets a barrier in the log, see {@link RedoLog#setBarrier()}.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, false);
+		this.redoLog = redoLog;
+	}
+
 	public void close() throws IOException {
 		nioFile.close();
 	}
@@ -85,6 +97,13 @@ class TxnStatusFile {
 		byte[] bytes = txnStatus.name().getBytes(US_ASCII);
 		nioFile.truncate(bytes.length);
 		nioFile.writeBytes(bytes, 0);
+
+		RedoLog log = redoLog;
+		if (log != null) {
+			log.setBarrier();
+		} else {
+			nioFile.force(false);
+		}
 	}
 
 	/**
@@ -11,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Optional;
 
 import org.eclipse.rdf4j.common.annotation.InternalUseOnly;
@@ -29,6 +30,8 @@ import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.nativerdf.datastore.DataStore;
+import org.eclipse.rdf4j.sail.nativerdf.datastore.IDFile;
+import org.eclipse.rdf4j.sail.nativerdf.model.LazyValueGroup;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeBNode;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeIRI;
 import org.eclipse.rdf4j.sail.nativerdf.model.NativeLiteral;
@@ -73,6 +76,13 @@ public class ValueStore extends AbstractValueFactory {
 
 	private static final String FILENAME_PREFIX = "values";
 
+	private static final String HASH_CODE_FILENAME = "values.hashcodes";
+
+	/**
+	 * The number of values that are read at once when storing the hash codes of values that were stored without them.
+	 */
+	private static final int HASH_CODE_BATCH_SIZE = 4096;
+
 	private static final byte URI_VALUE = 0x1; // 0000 0001
 
 	private static final byte BNODE_VALUE = 0x2; // 0000 0010
@@ -88,6 +98,13 @@ public class ValueStore extends AbstractValueFactory {
 	 */
 	private final DataStore dataStore;
 
+	/**
+	 * Stores the {@link Object#hashCode() hash code} of every value by its ID, instead of a file pointer, so that lazy
+	 * values can be hashed without being loaded. The entries of namespaces are <tt>0</tt>. Values are added to this
+	 * file while holding its monitor, in ID order.
+	 */
+	private final IDFile hashCodeFile;
+
 	/**
 	 * Lock manager used to prevent the removal of values over multiple method calls. Note that values can still be
 	 * added when read locks are active.
@@ -135,8 +152,19 @@ public class ValueStore extends AbstractValueFactory {
 
 	public ValueStore(File dataDir, boolean forceSync, int valueCacheSize, int valueIDCacheSize, int namespaceCacheSize,
 			int namespaceIDCacheSize) throws IOException {
+		this(dataDir, forceSync, false, valueCacheSize, valueIDCacheSize, namespaceCacheSize, namespaceIDCacheSize);
+	}
+
+	public ValueStore(File dataDir, boolean forceSync, boolean memoryMapped, int valueCacheSize, int valueIDCacheSize,
+			int namespaceCacheSize, int namespaceIDCacheSize) throws IOException {
 		super();
-		dataStore = new DataStore(dataDir, FILENAME_PREFIX, forceSync);
+		dataStore = new DataStore(dataDir, FILENAME_PREFIX, forceSync, memoryMapped);
+		try {
+			hashCodeFile = new IDFile(new File(dataDir, HASH_CODE_FILENAME), forceSync, memoryMapped);
+		} catch (IOException e) {
+			dataStore.close();
+			throw e;
+		}
 
 		valueCache = new ConcurrentCache<>(valueCacheSize);
 		valueIDCache = new ConcurrentCache<>(valueIDCacheSize);
@@ -144,6 +172,13 @@ public class ValueStore extends AbstractValueFactory {
 		namespaceIDCache = new ConcurrentCache<>(namespaceIDCacheSize);
 
 		setNewRevision();
+
+		try {
+			storeMissingHashCodes();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
 	}
 
 	/*---------*
@@ -197,6 +232,120 @@ public class ValueStore extends AbstractValueFactory {
 		return resultValue;
 	}
 
+	/**
+	 * Gets the values for the specified IDs. Values that are not in the cache are read from file at once, in file
+	 * order, which is considerably faster than looking them up one by one when many values have to be read.
+	 * 
+	 * @param ids Value IDs, IDs smaller than 1 (e.g. the ID of the default context) are allowed.
+	 * @return The values for the IDs, in the order of the supplied IDs. An entry is <tt>null</tt> if no such value
+	 *         could be found.
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public NativeValue[] getValues(int[] ids) throws IOException {
+		NativeValue[] values = new NativeValue[ids.length];
+		int[] missingIDs = getCachedValues(ids, values);
+
+		if (missingIDs.length == 0) {
+			return values;
+		}
+
+		byte[][] data = dataStore.getData(missingIDs);
+
+		NativeValue[] missingValues = new NativeValue[missingIDs.length];
+		for (int i = 0; i < missingIDs.length; i++) {
+			if (data[i] != null) {
+				missingValues[i] = data2value(missingIDs[i], data[i]);
+				valueCache.put(missingIDs[i], missingValues[i]);
+			}
+		}
+
+		setMissingValues(ids, values, missingIDs, missingValues);
+		return values;
+	}
+
+	/**
+	 * Gets the values for the specified IDs, without reading the values that are not in the cache. Instead, lazy values
+	 * are returned for these IDs, which are loaded together (using {@link #getValues(int[])}) as soon as one of them is
+	 * inspected. Lazy values can be passed to {@link #getID(Value)}, compared with other values from this value store
+	 * and hashed without being loaded: the hash code of every value is stored when the value is stored.
+	 * 
+	 * @param ids Value IDs, IDs smaller than 1 (e.g. the ID of the default context) are allowed.
+	 * @return The values for the IDs, in the order of the supplied IDs. An entry is <tt>null</tt> if no such value
+	 *         could be found.
+	 * @exception IOException If an I/O error occurred.
+	 * @see LazyValueGroup
+	 */
+	public NativeValue[] getLazyValues(int[] ids) throws IOException {
+		NativeValue[] values = new NativeValue[ids.length];
+		int[] missingIDs = getCachedValues(ids, values);
+
+		if (missingIDs.length == 0) {
+			return values;
+		}
+
+		// The type of each value is stored as a tag in the ID file
+		byte[] tags = dataStore.getTags(missingIDs);
+		long[] hashCodes = hashCodeFile.getOffsets(missingIDs);
+
+		LazyValueGroup group = new LazyValueGroup(revision);
+		NativeValue[] missingValues = new NativeValue[missingIDs.length];
+		for (int i = 0; i < missingIDs.length; i++) {
+			int hashCode = (int) hashCodes[i];
+			switch (tags[i]) {
+			case URI_VALUE:
+				missingValues[i] = group.createIRI(missingIDs[i], hashCode);
+				break;
+			case BNODE_VALUE:
+				missingValues[i] = group.createBNode(missingIDs[i], hashCode);
+				break;
+			case LITERAL_VALUE:
+				missingValues[i] = group.createLiteral(missingIDs[i], hashCode);
+				break;
+			default:
+				// No such value
+			}
+		}
+
+		setMissingValues(ids, values, missingIDs, missingValues);
+		return values;
+	}
+
+	/**
+	 * Copies the cached values for the specified IDs to the supplied array.
+	 * 
+	 * @return The distinct IDs larger than 0 whose values are not cached, in ascending order.
+	 */
+	private int[] getCachedValues(int[] ids, NativeValue[] values) {
+		int[] missingIDs = new int[ids.length];
+		int missingCount = 0;
+
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] > 0) {
+				values[i] = valueCache.get(ids[i]);
+				if (values[i] == null) {
+					missingIDs[missingCount++] = ids[i];
+				}
+			}
+		}
+
+		Arrays.sort(missingIDs, 0, missingCount);
+		int distinctCount = 0;
+		for (int i = 0; i < missingCount; i++) {
+			if (distinctCount == 0 || missingIDs[distinctCount - 1] != missingIDs[i]) {
+				missingIDs[distinctCount++] = missingIDs[i];
+			}
+		}
+		return Arrays.copyOf(missingIDs, distinctCount);
+	}
+
+	private void setMissingValues(int[] ids, NativeValue[] values, int[] missingIDs, NativeValue[] missingValues) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] > 0 && values[i] == null) {
+				values[i] = missingValues[Arrays.binarySearch(missingIDs, ids[i])];
+			}
+		}
+	}
+
 	/**
 	 * Gets the ID for the specified value.
 	 * 
@@ -309,10 +458,16 @@ public class ValueStore extends AbstractValueFactory {
 		// store which will handle duplicates
 		byte[] valueData = value2data(value, true);
 
-		int id = dataStore.storeData(valueData);
-
 		NativeValue nv = isOwnValue ? (NativeValue) value : getNativeValue(value);
 
+		int id;
+		synchronized (hashCodeFile) {
+			id = dataStore.storeData(valueData);
+			if (id > hashCodeFile.getMaxID()) {
+				hashCodeFile.setOffset(id, toHashCodeEntry(nv.hashCode()));
+			}
+		}
+
 		// Store id in value for fast access in any consecutive calls
 		nv.setInternalID(id, revision);
 
@@ -331,7 +486,11 @@ public class ValueStore extends AbstractValueFactory {
 		try {
 			Lock writeLock = lockManager.getWriteLock();
 			try {
-				dataStore.clear();
+				try {
+					dataStore.clear();
+				} finally {
+					hashCodeFile.clear();
+				}
 
 				valueCache.clear();
 				valueIDCache.clear();
@@ -349,6 +508,16 @@ public class ValueStore extends AbstractValueFactory {
 		}
 	}
 
+	/**
+	 * Logs the writes to the value files in the specified redo log, or stops logging them if the log is <tt>null</tt>.
+	 * 
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		dataStore.setRedoLog(redoLog);
+		hashCodeFile.setRedoLog(redoLog);
+	}
+
 	/**
 	 * Synchronizes any changes that are cached in memory to disk.
 	 * 
@@ -356,6 +525,7 @@ public class ValueStore extends AbstractValueFactory {
 	 */
 	public void sync() throws IOException {
 		dataStore.sync();
+		hashCodeFile.sync();
 	}
 
 	/**
@@ -364,7 +534,38 @@ public class ValueStore extends AbstractValueFactory {
 	 * @exception IOException If an I/O error occurred.
 	 */
 	public void close() throws IOException {
-		dataStore.close();
+		try {
+			dataStore.close();
+		} finally {
+			hashCodeFile.close();
+		}
+	}
+
+	/**
+	 * Stores the hash codes of the values that have been stored without them, which are all values of a store that was
+	 * created before hash codes were stored, or the last values that were stored before a crash.
+	 */
+	private void storeMissingHashCodes() throws IOException {
+		int maxID = dataStore.getMaxID();
+		for (int firstID = hashCodeFile.getMaxID() + 1; firstID <= maxID; firstID += HASH_CODE_BATCH_SIZE) {
+			int[] ids = new int[Math.min(HASH_CODE_BATCH_SIZE, maxID - firstID + 1)];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = firstID + i;
+			}
+
+			byte[][] data = dataStore.getData(ids);
+			for (int i = 0; i < ids.length; i++) {
+				int hashCode = 0;
+				if (data[i] != null && !isNamespaceData(data[i])) {
+					hashCode = data2value(ids[i], data[i]).hashCode();
+				}
+				hashCodeFile.setOffset(ids[i], toHashCodeEntry(hashCode));
+			}
+		}
+	}
+
+	private static long toHashCodeEntry(int hashCode) {
+		return hashCode & 0xFFFFFFFFL;
 	}
 
 	/**
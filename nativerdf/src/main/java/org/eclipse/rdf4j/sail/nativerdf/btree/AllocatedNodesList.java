@@ -15,7 +15,8 @@ import java.util.Arrays;
 import java.util.BitSet;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
-import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.MappedNioFile;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 
 /**
  * List of allocated BTree nodes, persisted to a file on disk.
@@ -53,7 +54,7 @@ class AllocatedNodesList implements Closeable {
 	/**
 	 * The allocated nodes file.
 	 */
-	private final NioFile nioFile;
+	private final MappedNioFile nioFile;
 
 	/**
 	 * Bit set recording which nodes have been allocated, using node IDs as index.
@@ -85,7 +86,7 @@ class AllocatedNodesList implements Closeable {
 			throw new IllegalArgumentException("btree muts not be null");
 		}
 
-		this.nioFile = new NioFile(allocNodesFile);
+		this.nioFile = new MappedNioFile(allocNodesFile, false);
 		this.btree = btree;
 		this.forceSync = forceSync;
 	}
@@ -101,6 +102,14 @@ class AllocatedNodesList implements Closeable {
 		return nioFile.getFile();
 	}
 
+	/**
+	 * Logs the writes to the allocated nodes file in the specified redo log, see
+	 * {@link BTree#setRedoLog(RedoLog)}.
+	 */
+	public synchronized void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, true);
+	}
+
 	@Override
 	public synchronized void close() throws IOException {
 		close(true);
@@ -17,11 +17,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
-import org.eclipse.rdf4j.common.io.NioFile;
 import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.nativerdf.MappedNioFile;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,9 +57,21 @@ public class BTree implements Closeable {
 	static final byte[] OLD_MAGIC_NUMBER = new byte[] { 0, 0, 0 };
 
 	/**
-	 * The file format version number, stored as the fourth byte in BTree files.
+	 * The file format version number, stored as the fourth byte in BTree files. Version 2 indicates that the leaf nodes
+	 * in the file are (or can be) stored in compressed form, version 1 files only contain uncompressed nodes.
 	 */
-	static final byte FILE_FORMAT_VERSION = 1;
+	static final byte FILE_FORMAT_VERSION = 2;
+
+	/**
+	 * The file format version number of BTree files without compressed leaf nodes.
+	 */
+	static final byte UNCOMPRESSED_FILE_FORMAT_VERSION = 1;
+
+	/**
+	 * The maximum number of values in a compressed leaf node, as a multiple of the number of values in an uncompressed
+	 * node.
+	 */
+	private static final int COMPRESSED_LEAF_CAPACITY_FACTOR = 4;
 
 	/**
 	 * The length of the header field.
@@ -73,7 +87,7 @@ public class BTree implements Closeable {
 	/**
 	 * The BTree file, accessed using java.nio-channels.
 	 */
-	final NioFile nioFile;
+	final MappedNioFile nioFile;
 
 	/**
 	 * Flag indicating whether file writes should be forced to disk using {@link FileChannel#force(boolean)}.
@@ -146,6 +160,28 @@ public class BTree implements Closeable {
 	 */
 	final int nodeSize;
 
+	/**
+	 * Flag indicating whether leaf nodes are stored in compressed form. Value derived from the file format version.
+	 */
+	final boolean compressedLeaves;
+
+	/**
+	 * The maximum size (in bytes) of a single value in a compressed leaf node. Value derived from valueSize.
+	 */
+	final int maxEncodedValueSize;
+
+	/**
+	 * The maximum number of values for a leaf node. Equal to <tt>branchFactor - 1</tt> unless leaf nodes are
+	 * compressed.
+	 */
+	final int maxLeafValueCount;
+
+	/**
+	 * The minimum number of values for a leaf node (except for the root). Equal to minValueCount unless leaf nodes are
+	 * compressed, in which case the value is chosen such that two minimally filled leaf nodes can always be merged.
+	 */
+	final int minLeafValueCount;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -166,6 +202,12 @@ public class BTree implements Closeable {
 	 */
 	private final AtomicBoolean closed = new AtomicBoolean(false);
 
+	/**
+	 * The number of iterators that have started iterating over this BTree and that may still be positioned on one of
+	 * its nodes.
+	 */
+	final AtomicInteger activeIterators = new AtomicInteger();
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -238,6 +280,58 @@ public class BTree implements Closeable {
 	 */
 	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
 			boolean forceSync) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync, false);
+	}
+
+	/**
+	 * Creates a new BTree that uses the supplied <tt>RecordComparator</tt> to compare the values that are or will be
+	 * stored in the B-Tree.
+	 * 
+	 * @param dataDir        The directory for the BTree data.
+	 * @param filenamePrefix The prefix for all files used by this BTree.
+	 * @param blockSize      The size (in bytes) of a file block for a single node. Ideally, the size specified is the
+	 *                       size of a block in the used file system.
+	 * @param valueSize      The size (in bytes) of the fixed-length values that are or will be stored in the B-Tree.
+	 * @param comparator     The <tt>RecordComparator</tt> to use for determining whether one value is smaller, larger
+	 *                       or equal to another.
+	 * @param forceSync      Flag indicating whether updates should be synced to disk forcefully by calling
+	 *                       {@link FileChannel#force(boolean)}. This may have a severe impact on write performance.
+	 * @param memoryMapped   Flag indicating whether nodes should be read from a memory mapping of the B-Tree file.
+	 * @throws IOException In case the initialization of the B-Tree file failed.
+	 * @see MappedNioFile
+	 */
+	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, boolean memoryMapped) throws IOException {
+		this(dataDir, filenamePrefix, blockSize, valueSize, comparator, forceSync, memoryMapped, false);
+	}
+
+	/**
+	 * Creates a new BTree that uses the supplied <tt>RecordComparator</tt> to compare the values that are or will be
+	 * stored in the B-Tree.
+	 * <p>
+	 * If <tt>compressedLeaves</tt> is set and the B-Tree file does not exist yet, the values in leaf nodes are stored
+	 * delta-encoded: the values are split into 4-byte integers, which are stored as variable-length differences to the
+	 * corresponding integers of the preceding value in the node. This allows a leaf node to hold considerably more
+	 * values when neighbouring values share a common prefix or are numerically close, as is the case for the triple
+	 * indexes. Existing B-Tree files keep the format they were created with.
+	 * 
+	 * @param dataDir          The directory for the BTree data.
+	 * @param filenamePrefix   The prefix for all files used by this BTree.
+	 * @param blockSize        The size (in bytes) of a file block for a single node. Ideally, the size specified is
+	 *                         the size of a block in the used file system.
+	 * @param valueSize        The size (in bytes) of the fixed-length values that are or will be stored in the B-Tree.
+	 * @param comparator       The <tt>RecordComparator</tt> to use for determining whether one value is smaller,
+	 *                         larger or equal to another.
+	 * @param forceSync        Flag indicating whether updates should be synced to disk forcefully by calling
+	 *                         {@link FileChannel#force(boolean)}. This may have a severe impact on write performance.
+	 * @param memoryMapped     Flag indicating whether nodes should be read from a memory mapping of the B-Tree file.
+	 * @param compressedLeaves Flag indicating whether a newly created B-Tree file should store its leaf nodes in
+	 *                         compressed form.
+	 * @throws IOException In case the initialization of the B-Tree file failed.
+	 * @see #hasCompressedLeaves()
+	 */
+	public BTree(File dataDir, String filenamePrefix, int blockSize, int valueSize, RecordComparator comparator,
+			boolean forceSync, boolean memoryMapped, boolean compressedLeaves) throws IOException {
 		if (dataDir == null) {
 			throw new IllegalArgumentException("dataDir must not be null");
 		}
@@ -258,7 +352,7 @@ public class BTree implements Closeable {
 		}
 
 		File file = new File(dataDir, filenamePrefix + ".dat");
-		this.nioFile = new NioFile(file);
+		this.nioFile = new MappedNioFile(file, memoryMapped);
 		this.comparator = comparator;
 		this.forceSync = forceSync;
 
@@ -271,6 +365,7 @@ public class BTree implements Closeable {
 			this.valueSize = valueSize;
 			this.rootNodeID = 0;
 			this.height = 0;
+			this.compressedLeaves = compressedLeaves;
 
 			writeFileHeader();
 
@@ -292,15 +387,17 @@ public class BTree implements Closeable {
 			if (Arrays.equals(MAGIC_NUMBER, magicNumber)) {
 				if (version > FILE_FORMAT_VERSION) {
 					throw new IOException("Unable to read BTree file " + file + "; it uses a newer file format");
-				} else if (version != FILE_FORMAT_VERSION) {
+				} else if (version != FILE_FORMAT_VERSION && version != UNCOMPRESSED_FILE_FORMAT_VERSION) {
 					throw new IOException(
 							"Unable to read BTree file " + file + "; invalid file format version: " + version);
 				}
+				this.compressedLeaves = version == FILE_FORMAT_VERSION;
 			} else if (Arrays.equals(OLD_MAGIC_NUMBER, magicNumber)) {
 				if (version != 1) {
 					throw new IOException(
 							"Unable to read BTree file " + file + "; invalid file format version: " + version);
 				}
+				this.compressedLeaves = false;
 				// Write new magic number to file
 				logger.info("Updating file header for btree file '{}'", file.getAbsolutePath());
 				writeFileHeader();
@@ -322,6 +419,27 @@ public class BTree implements Closeable {
 		minValueCount = (branchFactor - 1) / 2;
 		nodeSize = 8 + (branchFactor - 1) * slotSize;
 
+		// Compressed leaf nodes store a bit mask and the variable-length
+		// encoded integers of each value, followed by the remaining bytes
+		int intCount = this.valueSize / 4;
+		int maskSize = (intCount + 7) / 8;
+		int remainderSize = this.valueSize % 4;
+		maxEncodedValueSize = maskSize + 5 * intCount + remainderSize;
+
+		if (this.compressedLeaves) {
+			int encodedDataSize = nodeSize - 4;
+			maxLeafValueCount = Math.min(COMPRESSED_LEAF_CAPACITY_FACTOR * (branchFactor - 1),
+					encodedDataSize / Math.max(1, maskSize + remainderSize));
+			minLeafValueCount = Math.min(maxLeafValueCount / 2, encodedDataSize / (2 * maxEncodedValueSize));
+
+			if (minLeafValueCount < 1) {
+				throw new IllegalArgumentException("block size to small for compressed leaf nodes");
+			}
+		} else {
+			maxLeafValueCount = branchFactor - 1;
+			minLeafValueCount = minValueCount;
+		}
+
 		// System.out.println("blockSize=" + this.blockSize);
 		// System.out.println("valueSize=" + this.valueSize);
 		// System.out.println("slotSize=" + this.slotSize);
@@ -341,6 +459,13 @@ public class BTree implements Closeable {
 		return nioFile.getFile();
 	}
 
+	/**
+	 * Checks whether the leaf nodes of this BTree are stored in compressed form.
+	 */
+	public boolean hasCompressedLeaves() {
+		return compressedLeaves;
+	}
+
 	/**
 	 * Closes the BTree and then deletes its data files.
 	 * 
@@ -397,6 +522,24 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Logs all writes to the files of this B-Tree in the specified redo log, or stops logging them if the log is
+	 * <tt>null</tt>. The B-Tree files are attached as transactional files: a node is only written once the last
+	 * barrier of the log is durable.
+	 * 
+	 * @param redoLog The redo log, or <tt>null</tt>.
+	 * @throws IOException If the files could not be forced to disk before attaching them.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		btreeLock.writeLock().lock();
+		try {
+			nioFile.setRedoLog(redoLog, true);
+			allocatedNodesList.setRedoLog(redoLog);
+		} finally {
+			btreeLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Writes any changes that are cached in memory to disk.
 	 * 
@@ -496,8 +639,8 @@ public class BTree implements Closeable {
 	public long getValueCountEstimate() throws IOException {
 		int allocatedNodesCount = allocatedNodesList.getNodeCount();
 
-		// Assume fill factor of 50%
-		return (long) (allocatedNodesCount * (branchFactor - 1) * 0.5);
+		// Assume fill factor of 50%; the vast majority of the nodes are leaf nodes
+		return (long) (allocatedNodesCount * maxLeafValueCount * 0.5);
 	}
 
 	/**
@@ -751,8 +894,13 @@ public class BTree implements Closeable {
 
 			// Do not replace the value if it's identical to the old
 			// value to prevent possibly unnecessary disk writes
-			if (!Arrays.equals(value, insertResult.oldValue)) {
-				node.setValue(valueIdx, value);
+			if (!Arrays.equals(value, insertResult.oldValue) && !node.replaceValue(valueIdx, value)) {
+				// The new value doesn't fit in the compressed leaf node; remove the
+				// old value and insert the new one, splitting the node if necessary
+				node.removeValueRight(valueIdx);
+				InsertResult splitResult = insertInNode(value, nodeID, valueIdx, node);
+				insertResult.overflowValue = splitResult.overflowValue;
+				insertResult.overflowNodeID = splitResult.overflowNodeID;
 			}
 		} else {
 			// valueIdx references the first value that is larger than the key
@@ -829,41 +977,247 @@ public class BTree implements Closeable {
 	public byte[] remove(byte[] key) throws IOException {
 		btreeLock.writeLock().lock();
 		try {
-			byte[] result = null;
+			return removeValue(key);
+		} finally {
+			btreeLock.writeLock().unlock();
+		}
+	}
 
-			Node rootNode = readRootNode();
+	private byte[] removeValue(byte[] key) throws IOException {
+		byte[] result = null;
 
-			if (rootNode != null) {
-				result = removeFromTree(key, rootNode);
+		Node rootNode = readRootNode();
 
-				if (rootNode.isEmpty()) {
-					// Root node has become empty as a result of the removal
-					if (rootNode.isLeaf()) {
-						// Nothing's left
-						rootNodeID = 0;
-					} else {
-						// Collapse B-Tree one level
-						rootNodeID = rootNode.getChildNodeID(0);
-						rootNode.setChildNodeID(0, 0);
-					}
+		if (rootNode != null) {
+			result = removeFromTree(key, rootNode);
+			collapseRootNode(rootNode);
+		}
 
-					// Write new root node ID to file header
-					writeFileHeader();
+		return result;
+	}
 
-					if (height >= 0) {
-						height--;
+	/**
+	 * Removes empty root nodes, lowering the height of the B-Tree, until the root node contains at least one value or
+	 * the B-Tree is empty.
+	 * 
+	 * @param rootNode The current root node, which is released by this method.
+	 */
+	private void collapseRootNode(Node rootNode) throws IOException {
+		while (rootNode != null && rootNode.isEmpty()) {
+			// Root node has become empty as a result of a removal
+			if (rootNode.isLeaf()) {
+				// Nothing's left
+				rootNodeID = 0;
+			} else {
+				// Collapse B-Tree one level
+				rootNodeID = rootNode.getChildNodeID(0);
+				rootNode.setChildNodeID(0, 0);
+			}
+
+			// Write new root node ID to file header
+			writeFileHeader();
+
+			if (height >= 0) {
+				height--;
+			}
+
+			rootNode.release();
+			rootNode = readRootNode();
+		}
+
+		if (rootNode != null) {
+			rootNode.release();
+		}
+	}
+
+	/**
+	 * Removes all values in the specified range from the B-Tree. Subtrees that only contain values in the range are
+	 * dropped as a whole: their nodes are freed without removing their values one by one and, in case of leaf nodes,
+	 * without even reading them. The remaining values in the range, which are located in the nodes on the boundaries of
+	 * the range, are removed one by one, after which the boundary nodes are rebalanced.
+	 * <p>
+	 * Iterators that are positioned in a dropped subtree can not follow such changes. While other iterators are active
+	 * on this B-Tree, all values in the range are therefore removed one by one.
+	 * 
+	 * @param minValue The lower bound of the range, inclusive.
+	 * @param maxValue The upper bound of the range, inclusive.
+	 * @throws IOException If an I/O error occurred.
+	 */
+	public void removeRange(byte[] minValue, byte[] maxValue) throws IOException {
+		btreeLock.writeLock().lock();
+		try {
+			if (activeIterators.get() == 0) {
+				Node rootNode = readRootNode();
+				if (rootNode != null) {
+					try {
+						dropRange(rootNode, 1, height(), minValue, maxValue);
+					} catch (IOException | RuntimeException e) {
+						rootNode.release();
+						throw e;
 					}
+					collapseRootNode(rootNode);
 				}
-
-				rootNode.release();
 			}
 
-			return result;
+			// Remove the values in the range that are left
+			byte[] value;
+			while ((value = findFirstValue(minValue)) != null
+					&& comparator.compareBTreeValues(maxValue, value, 0, value.length) >= 0) {
+				removeValue(value);
+			}
 		} finally {
 			btreeLock.writeLock().unlock();
 		}
 	}
 
+	/**
+	 * Drops the subtrees below the specified node that only contain values in the specified range. For each node that
+	 * contains values in the range, one of these values is kept as the separator between the child nodes on either side
+	 * of the dropped subtrees, so that no node is emptied. Values in leaf nodes are not removed.
+	 * 
+	 * @param node       The root of the (sub) tree.
+	 * @param depth      The depth of the node, <tt>1</tt> for the root node.
+	 * @param treeHeight The height of the B-Tree, which is the depth of the leaf nodes.
+	 */
+	private void dropRange(Node node, int depth, int treeHeight, byte[] minValue, byte[] maxValue)
+			throws IOException {
+		if (node.isLeaf()) {
+			return;
+		}
+
+		// Values firstIdx to endIdx (exclusive) are in the range
+		int firstIdx = node.search(minValue);
+		if (firstIdx < 0) {
+			firstIdx = -firstIdx - 1;
+		}
+		int endIdx = node.search(maxValue);
+		endIdx = endIdx >= 0 ? endIdx + 1 : -endIdx - 1;
+
+		// The child nodes between two values in the range only contain values in the range; drop them together
+		// with the values to their right, keeping the value at firstIdx as separator
+		for (int i = endIdx - 1; i > firstIdx; i--) {
+			int childNodeID = node.getChildNodeID(i);
+			node.removeValueLeft(i);
+			dropSubtree(childNodeID, depth + 1, treeHeight);
+		}
+
+		// The child nodes left and right of the separator can contain values in the range as well
+		int lastChildIdx = endIdx > firstIdx ? firstIdx + 1 : firstIdx;
+		for (int i = lastChildIdx; i >= firstIdx; i--) {
+			Node childNode = node.getChildNode(i);
+			try {
+				dropRange(childNode, depth + 1, treeHeight, minValue, maxValue);
+			} finally {
+				childNode.release();
+			}
+		}
+
+		if (depth + 1 < treeHeight) {
+			// The child nodes are internal nodes and may have lost values
+			for (int i = lastChildIdx; i >= firstIdx; i--) {
+				if (i <= node.getValueCount()) {
+					rebalanceChildNode(node, i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Frees all nodes of the subtree with the specified root node. Leaf nodes are freed without reading them.
+	 */
+	private void dropSubtree(int nodeID, int depth, int treeHeight) throws IOException {
+		if (depth < treeHeight) {
+			Node node = readNode(nodeID);
+			try {
+				for (int i = 0; i <= node.getValueCount(); i++) {
+					dropSubtree(node.getChildNodeID(i), depth + 1, treeHeight);
+				}
+			} finally {
+				node.release();
+			}
+		}
+
+		nodeCache.discard(nodeID);
+		freeNode(nodeID);
+	}
+
+	/**
+	 * Rebalances a child node that may contain far fewer values than the minimum, by moving values from its siblings
+	 * to it or merging it with its siblings until it contains enough values.
+	 */
+	private void rebalanceChildNode(Node parentNode, int childIdx) throws IOException {
+		Node childNode = parentNode.getChildNode(childIdx);
+		try {
+			while (childNode.getValueCount() < childNode.getMinValueCount() && !parentNode.isEmpty()) {
+				Node rightSibling = childIdx < parentNode.getValueCount() ? parentNode.getChildNode(childIdx + 1)
+						: null;
+				Node leftSibling = childIdx > 0 ? parentNode.getChildNode(childIdx - 1) : null;
+
+				try {
+					if (rightSibling != null && rightSibling.getValueCount() > rightSibling.getMinValueCount()) {
+						parentNode.rotateLeft(childIdx, childNode, rightSibling);
+					} else if (leftSibling != null && leftSibling.getValueCount() > leftSibling.getMinValueCount()) {
+						parentNode.rotateRight(childIdx, leftSibling, childNode);
+					} else if (leftSibling != null) {
+						leftSibling.mergeWithRightSibling(parentNode.removeValueRight(childIdx - 1), childNode);
+
+						// Continue with the merged node
+						Node mergedNode = leftSibling;
+						leftSibling = childNode;
+						childNode = mergedNode;
+						childIdx--;
+					} else {
+						childNode.mergeWithRightSibling(parentNode.removeValueRight(childIdx), rightSibling);
+					}
+				} finally {
+					if (rightSibling != null) {
+						rightSibling.release();
+					}
+					if (leftSibling != null) {
+						leftSibling.release();
+					}
+				}
+			}
+		} finally {
+			childNode.release();
+		}
+	}
+
+	/**
+	 * Finds the smallest value in the B-Tree that is equal to or larger than the specified value.
+	 * 
+	 * @return The value, or <tt>null</tt> if there is no such value.
+	 */
+	private byte[] findFirstValue(byte[] minValue) throws IOException {
+		byte[] result = null;
+
+		Node node = readRootNode();
+		while (node != null) {
+			Node childNode = null;
+			try {
+				int valueIdx = node.search(minValue);
+				if (valueIdx >= 0) {
+					return node.getValue(valueIdx);
+				}
+
+				// valueIdx references the first value that is larger than minValue; the values in the child node to its
+				// left are smaller than this value
+				valueIdx = -valueIdx - 1;
+				if (valueIdx < node.getValueCount()) {
+					result = node.getValue(valueIdx);
+				}
+				if (!node.isLeaf()) {
+					childNode = node.getChildNode(valueIdx);
+				}
+			} finally {
+				node.release();
+			}
+			node = childNode;
+		}
+
+		return result;
+	}
+
 	/**
 	 * Removes the value that matches the specified key from the tree starting at the specified node and returns the
 	 * removed value.
@@ -938,6 +1292,8 @@ public class BTree implements Closeable {
 	}
 
 	private void balanceChildNode(Node parentNode, Node childNode, int childIdx) throws IOException {
+		int minValueCount = childNode.getMinValueCount();
+
 		if (childNode.getValueCount() < minValueCount) {
 			// Child node contains too few values, try to borrow one from its right
 			// sibling
@@ -997,6 +1353,159 @@ public class BTree implements Closeable {
 		}
 	}
 
+	/**
+	 * Checks whether this B-Tree contains any values.
+	 *
+	 * @return <tt>true</tt> if the B-Tree does not contain any values.
+	 */
+	public boolean isEmpty() {
+		return rootNodeID == 0;
+	}
+
+	/**
+	 * Fills an empty B-Tree with the supplied values. Instead of inserting the values top-down one by one, the B-Tree
+	 * is built bottom-up: nodes are filled completely from left to right and each node is written only once. This is
+	 * considerably faster than calling {@link #insert(byte[])} for each value and results in a fully packed B-Tree
+	 * file.
+	 *
+	 * @param sortedValues The values to load. The values must be supplied in ascending order according to this
+	 *                     B-Tree's {@link RecordComparator} and must not contain duplicates.
+	 * @return The number of values that were loaded.
+	 * @throws IOException           If an I/O error occurred.
+	 * @throws IllegalStateException If the B-Tree is not empty.
+	 */
+	public long bulkLoad(RecordIterator sortedValues) throws IOException {
+		btreeLock.writeLock().lock();
+		try {
+			if (!isEmpty()) {
+				throw new IllegalStateException("B-Tree must be empty for bulk loading: " + getFile());
+			}
+
+			BulkLoader loader = new BulkLoader();
+			byte[] previous = null;
+			byte[] value;
+			while ((value = sortedValues.next()) != null) {
+				assert previous == null || comparator.compareBTreeValues(previous, value, 0,
+						valueSize) < 0 : "values not sorted or not unique";
+				loader.add(0, value);
+				previous = value;
+			}
+			loader.finish();
+
+			return loader.valueCount;
+		} finally {
+			btreeLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Builds a B-Tree bottom-up from a sorted stream of values. The loader keeps the right-most ("open") node for each
+	 * level of the tree. Values are appended to the open leaf node; once a node is full, the next value is moved up to
+	 * the parent level as a separator and a new node is started. All nodes except the ones on the right-most path are
+	 * therefore completely filled. The right-most path is rebalanced when loading is finished.
+	 */
+	private class BulkLoader {
+
+		/** The right-most node of each level, leaf nodes at index 0. */
+		private final List<Node> openNodes = new ArrayList<>();
+
+		private long valueCount = 0;
+
+		void add(int level, byte[] value) throws IOException {
+			if (level == openNodes.size()) {
+				// First value, or the current top level overflowed: add a new root level
+				Node newRoot = createNewNode();
+				if (level > 0) {
+					newRoot.setChildNodeID(0, openNodes.get(level - 1).getID());
+				}
+				openNodes.add(newRoot);
+			}
+
+			Node node = openNodes.get(level);
+			if (node == null) {
+				node = openNode(level);
+			}
+
+			if (node.isFull()) {
+				// Move the value up to the parent level; the next value for this
+				// level will be stored in a new node right of the value
+				add(level + 1, value);
+				openNodes.set(level, null);
+				node.release();
+			} else {
+				node.insertValueNodeIDPair(node.getValueCount(), value, 0);
+			}
+
+			if (level == 0) {
+				valueCount++;
+			}
+		}
+
+		/**
+		 * Creates a new right-most node at the specified level and links it to its parent, creating a new parent if
+		 * necessary.
+		 */
+		private Node openNode(int level) throws IOException {
+			Node node = createNewNode();
+			openNodes.set(level, node);
+
+			if (level + 1 < openNodes.size()) {
+				Node parent = openNodes.get(level + 1);
+				if (parent == null) {
+					parent = openNode(level + 1);
+				}
+				// Either the right child of the last separator, or child 0 of an empty parent
+				parent.setChildNodeID(parent.getValueCount(), node.getID());
+			}
+
+			return node;
+		}
+
+		void finish() throws IOException {
+			if (openNodes.isEmpty()) {
+				// No values were added
+				return;
+			}
+
+			if (openNodes.get(0) == null) {
+				// A separator was moved up without any values to its right; create
+				// (empty) right-most nodes that will be filled by the rebalancing
+				openNode(0);
+			}
+
+			// Rebalance the right-most path top-down: each node is topped up to the
+			// minimum value count with values from its (full) left sibling
+			for (int level = openNodes.size() - 2; level >= 0; level--) {
+				Node parent = openNodes.get(level + 1);
+				Node node = openNodes.get(level);
+
+				int minValueCount = node.getMinValueCount();
+
+				if (node.getValueCount() < minValueCount) {
+					int childIdx = parent.getValueCount();
+					Node leftSibling = parent.getChildNode(childIdx - 1);
+					try {
+						while (node.getValueCount() < minValueCount) {
+							parent.rotateRight(childIdx, leftSibling, node);
+						}
+					} finally {
+						leftSibling.release();
+					}
+				}
+			}
+
+			Node root = openNodes.get(openNodes.size() - 1);
+			rootNodeID = root.getID();
+			height = openNodes.size();
+			writeFileHeader();
+
+			for (Node node : openNodes) {
+				node.release();
+			}
+			openNodes.clear();
+		}
+	}
+
 	private Node createNewNode() throws IOException {
 		int newNodeID = allocatedNodesList.allocateNode();
 
@@ -1029,23 +1538,31 @@ public class BTree implements Closeable {
 
 		if (node.isEmpty() && node.isLeaf() && nodeCache.discardEmptyUnused(node.getID())) {
 			// allow the discarded node ID to be reused
-			synchronized (allocatedNodesList) {
-				allocatedNodesList.freeNode(node.getID());
-
-				int maxNodeID = allocatedNodesList.getMaxNodeID();
-				if (node.getID() > maxNodeID) {
-					// Shrink file
-					nioFile.truncate(nodeID2offset(maxNodeID) + nodeSize);
-				}
-			}
+			freeNode(node.getID());
 		} else
 			nodeCache.release(node, forceSync);
 	}
 
+	/**
+	 * Marks the specified node ID as unused, allowing it to be reused. The node must have been removed from the node
+	 * cache.
+	 */
+	private void freeNode(int nodeID) throws IOException {
+		synchronized (allocatedNodesList) {
+			allocatedNodesList.freeNode(nodeID);
+
+			int maxNodeID = allocatedNodesList.getMaxNodeID();
+			if (nodeID > maxNodeID) {
+				// Shrink file
+				nioFile.truncate(nodeID2offset(maxNodeID) + nodeSize);
+			}
+		}
+	}
+
 	private void writeFileHeader() throws IOException {
 		ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH);
 		buf.put(MAGIC_NUMBER);
-		buf.put(FILE_FORMAT_VERSION);
+		buf.put(compressedLeaves ? FILE_FORMAT_VERSION : UNCOMPRESSED_FILE_FORMAT_VERSION);
 		buf.putInt(blockSize);
 		buf.putInt(valueSize);
 		buf.putInt(rootNodeID);
@@ -1075,6 +1592,7 @@ public class BTree implements Closeable {
 		out.println("branch factor   = " + branchFactor);
 		out.println("min value count = " + minValueCount);
 		out.println("node size       = " + nodeSize);
+		out.println("compressed      = " + compressedLeaves);
 		out.println();
 
 		int nodeCount = 0;
@@ -1088,6 +1606,16 @@ public class BTree implements Closeable {
 			int nodeID = offset2nodeID(offset);
 			int count = buf.getInt();
 			nodeCount++;
+
+			if (count < 0) {
+				// Compressed leaf node, see Node.write()
+				count &= ~Node.COMPRESSED_LEAF_FLAG;
+				valueCount += count;
+				out.println("node " + nodeID + ": count=" + count + " (compressed leaf)");
+				buf.clear();
+				continue;
+			}
+
 			valueCount += count;
 			out.print("node " + nodeID + ": ");
 			out.print("count=" + count + " ");
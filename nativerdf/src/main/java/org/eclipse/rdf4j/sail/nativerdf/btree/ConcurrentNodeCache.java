@@ -16,6 +16,12 @@ import org.eclipse.rdf4j.sail.nativerdf.ConcurrentCache;
 
 class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 
+	/**
+	 * The number of unused nodes that are kept in the cache. Nodes that are in use are never evicted and don't count
+	 * towards this limit.
+	 */
+	static final int CACHE_SIZE = 512;
+
 	private final Function<Integer, Node> reader;
 
 	private static final Consumer<Node> writeNode = node -> {
@@ -29,21 +35,20 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 	};
 
 	public ConcurrentNodeCache(Function<Integer, Node> reader) {
-		super(0); // cleanUp, when actually run, will try to completely purge the cache (but retain currently used
-					// nodes)
+		super(CACHE_SIZE);
 		this.reader = reader;
 	}
 
 	public void flush() {
-		cache.forEachValue(Long.MAX_VALUE, writeNode);
+		forEachValue(writeNode);
 	}
 
 	public void put(Node node) throws IOException {
-		cache.put(node.getID(), node);
+		put(node.getID(), node);
 	}
 
 	public Node readAndUse(int id) {
-		return cache.compute(id, (k, v) -> {
+		return compute(id, (k, v) -> {
 			Node node = v == null ? reader.apply(k) : v;
 			node.use();
 			return node;
@@ -52,10 +57,12 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 
 	public boolean discardEmptyUnused(int nodeId) {
 
-		Node nn = cache.computeIfPresent(nodeId, (k, v) -> {
+		Node nn = compute(nodeId, (k, v) -> {
 
-			if (v.getUsageCount() == 0 && v.isEmpty() && v.isLeaf()) {
-				writeNode.accept(v);
+			if (v == null || v.getUsageCount() == 0 && v.isEmpty() && v.isLeaf()) {
+				if (v != null) {
+					writeNode.accept(v);
+				}
 				return null;
 			} else
 				return v;
@@ -63,15 +70,25 @@ class ConcurrentNodeCache extends ConcurrentCache<Integer, Node> {
 		return nn == null;
 	}
 
+	/**
+	 * Removes a node from the cache without writing it, for nodes that are no longer part of the B-tree.
+	 */
+	public void discard(int nodeId) {
+		compute(nodeId, (k, v) -> {
+			assert v == null || v.getUsageCount() == 0 : "discarding node that is in use: " + nodeId;
+			return null;
+		});
+	}
+
 	public void release(Node node, boolean forceSync) {
 		if (forceSync)
 			writeNode.accept(node);
-		cleanUp();
+		cleanUp(node.getID());
 	}
 
 	@Override
 	protected boolean onEntryRemoval(Integer key) {
-		Node node = cache.get(key);
+		Node node = peek(key);
 
 		if (node == null)
 			return true;
@@ -19,13 +19,20 @@ import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 
 class Node {
 
+	/**
+	 * Flag that is set in the value count that is stored on disk for a leaf node that is stored in compressed form.
+	 */
+	static final int COMPRESSED_LEAF_FLAG = 0x80000000;
+
 	/** This node's ID. */
 	private final int id;
 
 	private final BTree tree;
 
-	/** This node's data. */
-	private final byte[] data;
+	/**
+	 * This node's data. The array grows when a compressed leaf node holds more values than the node size suggests.
+	 */
+	private byte[] data;
 
 	/** The number of values containined in this node. */
 	private int valueCount;
@@ -36,6 +43,9 @@ class Node {
 	/** Flag indicating whether the contents of data has changed. */
 	private boolean dataChanged;
 
+	/** The size of the values when stored in compressed form, <tt>-1</tt> if it needs to be recalculated. */
+	private int encodedSize = -1;
+
 	/** Registered listeners that want to be notified of changes to the node. */
 	private final ConcurrentLinkedDeque<NodeListener> listeners = new ConcurrentLinkedDeque<>();
 
@@ -114,7 +124,68 @@ class Node {
 	}
 
 	public boolean isFull() {
-		return valueCount == tree.branchFactor - 1;
+		if (valueCount >= getMaxValueCount()) {
+			return true;
+		}
+
+		if (isCompressedLeaf()) {
+			// Inserting a value can grow the encoded node by at most two encoded values: the
+			// new value itself and the value following it, which is now encoded relative to the
+			// new value. Only calculate the actual size when the values could exceed the node size
+			// even if none of them compress. The minimum value count is chosen such that twice
+			// that number of values always fit, so a node that is split can fill both halves.
+			int encodedDataSize = tree.nodeSize - 4;
+			int availableSize = encodedDataSize - 2 * tree.maxEncodedValueSize;
+			return (valueCount + 1) * tree.maxEncodedValueSize > encodedDataSize
+					&& getEncodedSize() > availableSize;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Gets the maximum number of values that this node can contain.
+	 */
+	int getMaxValueCount() {
+		return isCompressedLeaf() ? tree.maxLeafValueCount : tree.branchFactor - 1;
+	}
+
+	/**
+	 * Gets the minimum number of values that this node should contain, unless it is the root node.
+	 */
+	int getMinValueCount() {
+		return isCompressedLeaf() ? tree.minLeafValueCount : tree.minValueCount;
+	}
+
+	private boolean isCompressedLeaf() {
+		return tree.compressedLeaves && isLeaf();
+	}
+
+	private int getEncodedSize() {
+		if (encodedSize < 0) {
+			encodedSize = encodeValues(null, 0);
+		}
+		return encodedSize;
+	}
+
+	/**
+	 * Checks whether the values of this node can be written to a block of the node size. This is always the case,
+	 * unless the node is a compressed leaf node whose encoded values are too large.
+	 */
+	private boolean fitsNodeSize() {
+		return !isCompressedLeaf() || getEncodedSize() <= tree.nodeSize - 4;
+	}
+
+	/**
+	 * Makes sure that the data array can hold the specified number of values and the node IDs around them. Only
+	 * compressed leaf nodes can hold more values than the node size suggests.
+	 */
+	private void ensureCapacity(int valueCount) {
+		int length = valueIdx2offset(valueCount);
+		if (length > data.length) {
+			int maxLength = valueIdx2offset(tree.maxLeafValueCount + 1);
+			data = Arrays.copyOf(data, Math.max(length, Math.min(2 * data.length, maxLength)));
+		}
 	}
 
 	public byte[] getValue(int valueIdx) {
@@ -131,10 +202,45 @@ class Node {
 
 		ByteArrayUtil.put(value, data, valueIdx2offset(valueIdx));
 		dataChanged = true;
+		encodedSize = -1;
+	}
+
+	/**
+	 * Replaces the value at the specified index, unless this is a compressed leaf node whose values would no longer fit
+	 * in the node size with the new value. The caller then needs to remove the old value and insert the new value,
+	 * splitting the node if necessary.
+	 * 
+	 * @return <tt>true</tt> if the value was replaced, <tt>false</tt> if the node has not been changed.
+	 */
+	public boolean replaceValue(int valueIdx, byte[] value) {
+		if (!isCompressedLeaf()) {
+			setValue(valueIdx, value);
+			return true;
+		}
+
+		byte[] oldValue = getValue(valueIdx);
+		int offset = valueIdx2offset(valueIdx);
+		ByteArrayUtil.put(value, data, offset);
+		encodedSize = -1;
+
+		if (getEncodedSize() > tree.nodeSize - 4) {
+			ByteArrayUtil.put(oldValue, data, offset);
+			encodedSize = -1;
+			return false;
+		}
+
+		dataChanged = true;
+		return true;
 	}
 
 	/**
 	 * Removes the value that can be found at the specified valueIdx and the node ID directly to the right of it.
+	 * <p>
+	 * Removing a value never makes the encoded values of a compressed leaf node larger, even though the value following
+	 * it is then encoded relative to the value preceding it (or in full, if the first value is removed). For each
+	 * integer of that value, the new difference is the sum of the two differences that were stored before, and the
+	 * variable-length encoding of a sum of two non-zero differences is never longer than the encodings of the two
+	 * differences together. The bit mask and remaining bytes of the removed value are dropped as well.
 	 * 
 	 * @param valueIdx A legal value index.
 	 * @return The value that was removed.
@@ -160,13 +266,16 @@ class Node {
 
 		dataChanged = true;
 
+		assert fitsNodeSize() : "Encoded values of " + this + " exceed the node size after removal";
+
 		notifyValueRemoved(valueIdx);
 
 		return value;
 	}
 
 	/**
-	 * Removes the value that can be found at the specified valueIdx and the node ID directly to the left of it.
+	 * Removes the value that can be found at the specified valueIdx and the node ID directly to the left of it. See
+	 * {@link #removeValueRight(int)} for why this never makes the encoded values of a compressed leaf node larger.
 	 * 
 	 * @param valueIdx A legal value index.
 	 * @return The value that was removed.
@@ -190,6 +299,8 @@ class Node {
 
 		dataChanged = true;
 
+		assert fitsNodeSize() : "Encoded values of " + this + " exceed the node size after removal";
+
 		notifyValueRemoved(valueIdx);
 
 		return value;
@@ -253,6 +364,8 @@ class Node {
 		assert value != null : "value must not be null";
 		assert nodeID >= 0 : "nodeID must not be negative, is: " + nodeID;
 
+		ensureCapacity(valueCount + 1);
+
 		int offset = valueIdx2offset(valueIdx);
 
 		if (valueIdx < valueCount) {
@@ -264,8 +377,16 @@ class Node {
 		ByteArrayUtil.put(value, data, offset);
 		ByteArrayUtil.putInt(nodeID, data, offset + tree.valueSize);
 
+		int appendedEncodedSize = -1;
+		if (valueIdx == valueCount && encodedSize >= 0) {
+			// Appending a value, no need to re-encode all values
+			int prevOffset = valueIdx > 0 ? valueIdx2offset(valueIdx - 1) : -1;
+			appendedEncodedSize = encodedSize + encodedValueSize(offset, prevOffset);
+		}
+
 		// Raise the value count
 		setValueCount(++valueCount);
+		encodedSize = appendedEncodedSize;
 
 		notifyValueAdded(valueIdx);
 
@@ -278,6 +399,8 @@ class Node {
 		assert nodeID >= 0 : "nodeID must not be negative, is: " + nodeID;
 		assert value != null : "value must not be null";
 
+		ensureCapacity(valueCount + 1);
+
 		int offset = nodeIdx2offset(nodeIdx);
 
 		// Shift values right of <offset> to the right
@@ -307,20 +430,24 @@ class Node {
 		// can be done because data got one spare slot when it was allocated.
 		insertValueNodeIDPair(newValueIdx, newValue, newNodeID);
 
-		assert valueCount == tree.branchFactor : "Node contains " + valueCount + " values, expected "
-				+ tree.branchFactor;
-
-		// Node now contains exactly [branchFactor] values. The median
-		// value at index [branchFactor/2] is moved to the parent
-		// node, the values left of the median stay in this node, the
-		// values right of the median are moved to the new node.
-		int medianIdx = tree.branchFactor / 2;
+		assert valueCount == tree.branchFactor || isCompressedLeaf() : "Node contains " + valueCount
+				+ " values, expected " + tree.branchFactor;
+
+		// Node now contains exactly [branchFactor] values (compressed leaf
+		// nodes may contain fewer). The median value at index
+		// [valueCount/2] is moved to the parent node, the values left of
+		// the median stay in this node, the values right of the median are
+		// moved to the new node. Compressed leaf nodes are split such that
+		// both halves have about the same encoded size instead.
+		int splitValueCount = valueCount;
+		int medianIdx = isCompressedLeaf() ? getCompressedMedianIdx() : splitValueCount / 2;
 		int medianOffset = valueIdx2offset(medianIdx);
 		int splitOffset = medianOffset + tree.valueSize;
 
-		// Move all data (including the spare slot) to the right of
-		// <splitOffset> to the new node
-		System.arraycopy(data, splitOffset, newNode.data, 4, data.length - splitOffset);
+		// Move all data to the right of <splitOffset> to the new node
+		int newValueCount = splitValueCount - medianIdx - 1;
+		newNode.ensureCapacity(newValueCount);
+		System.arraycopy(data, splitOffset, newNode.data, 4, valueIdx2offset(splitValueCount) - splitOffset);
 
 		// Get the median value
 		byte[] medianValue = getValue(medianIdx);
@@ -330,7 +457,7 @@ class Node {
 
 		// Update the value counts
 		setValueCount(medianIdx);
-		newNode.setValueCount(tree.branchFactor - medianIdx - 1);
+		newNode.setValueCount(newValueCount);
 		newNode.dataChanged = true;
 
 		notifyNodeSplit(newNode, medianIdx);
@@ -339,15 +466,58 @@ class Node {
 		return medianValue;
 	}
 
+	/**
+	 * Gets the index of the value at which a compressed leaf node is split, such that the encoded sizes of the values
+	 * left and right of it are as equal as possible while both halves contain at least the minimum number of values.
+	 */
+	private int getCompressedMedianIdx() {
+		int minValueCount = getMinValueCount();
+		int maxIdx = valueCount - 1 - minValueCount;
+		if (minValueCount > maxIdx) {
+			// Can't happen for nodes that are full, see isFull()
+			return valueCount / 2;
+		}
+
+		// The encoded sizes of the values, relative to the values preceding them
+		int[] sizes = new int[valueCount];
+		int totalSize = 0;
+		for (int i = 0; i < valueCount; i++) {
+			sizes[i] = encodedValueSize(valueIdx2offset(i), i > 0 ? valueIdx2offset(i - 1) : -1);
+			totalSize += sizes[i];
+		}
+
+		int leftSize = 0;
+		for (int i = 0; i < minValueCount; i++) {
+			leftSize += sizes[i];
+		}
+
+		int medianIdx = minValueCount;
+		int minDifference = Integer.MAX_VALUE;
+		for (int i = minValueCount; i <= maxIdx; i++) {
+			// The first value of the right half is no longer encoded relative to the median value
+			int rightSize = totalSize - leftSize - sizes[i] - sizes[i + 1]
+					+ encodedValueSize(valueIdx2offset(i + 1), -1);
+			int difference = Math.abs(leftSize - rightSize);
+			if (difference < minDifference) {
+				minDifference = difference;
+				medianIdx = i;
+			}
+			leftSize += sizes[i];
+		}
+
+		return medianIdx;
+	}
+
 	public void mergeWithRightSibling(byte[] medianValue, Node rightSibling) throws IOException {
 		assert valueCount + rightSibling.getValueCount()
-				+ 1 < tree.branchFactor : "Nodes contain too many values to be merged; left: " + valueCount
+				+ 1 <= getMaxValueCount() : "Nodes contain too many values to be merged; left: " + valueCount
 						+ "; right: " + rightSibling.getValueCount();
 
 		// Append median value from parent node
 		insertValueNodeIDPair(valueCount, medianValue, 0);
 
 		int rightIdx = valueCount;
+		ensureCapacity(valueCount + rightSibling.valueCount);
 
 		// Append all values and node references from right sibling
 		System.arraycopy(rightSibling.data, 4, data, nodeIdx2offset(rightIdx),
@@ -359,20 +529,36 @@ class Node {
 		rightSibling.setValueCount(0);
 		rightSibling.dataChanged = true;
 
+		// Two compressed leaf nodes are only merged if one of them contains fewer than the minimum number of values,
+		// which is chosen so that the merged values fit in the node size even if none of them compress
+		assert fitsNodeSize() : "Encoded values of " + this + " exceed the node size after merge";
+
 		rightSibling.notifyNodeMerged(this, rightIdx);
 	}
 
+	/**
+	 * Moves the value at the specified index to the end of the left child node, and the first value of the right child
+	 * node to the specified index. This is only done to top up a left child node that contains fewer than the minimum
+	 * number of values, so compressed leaf nodes always have room for the value.
+	 */
 	public void rotateLeft(int valueIdx, Node leftChildNode, Node rightChildNode) throws IOException {
 		leftChildNode.insertValueNodeIDPair(leftChildNode.getValueCount(), this.getValue(valueIdx),
 				rightChildNode.getChildNodeID(0));
 		setValue(valueIdx, rightChildNode.removeValueLeft(0));
+		assert leftChildNode.fitsNodeSize() : "Encoded values of " + leftChildNode + " exceed the node size";
 		notifyRotatedLeft(valueIdx, leftChildNode, rightChildNode);
 	}
 
+	/**
+	 * Moves the value left of the specified index to the start of the right child node, and the last value of the left
+	 * child node to its place. This is only done to top up a right child node that contains fewer than the minimum
+	 * number of values, so compressed leaf nodes always have room for the value.
+	 */
 	public void rotateRight(int valueIdx, Node leftChildNode, Node rightChildNode) throws IOException {
 		rightChildNode.insertNodeIDValuePair(0, leftChildNode.getChildNodeID(leftChildNode.getValueCount()),
 				this.getValue(valueIdx - 1));
 		setValue(valueIdx - 1, leftChildNode.removeValueRight(leftChildNode.getValueCount() - 1));
+		assert rightChildNode.fitsNodeSize() : "Encoded values of " + rightChildNode + " exceed the node size";
 		notifyRotatedRight(valueIdx, leftChildNode, rightChildNode);
 	}
 
@@ -453,14 +639,39 @@ class Node {
 		assert bytesRead == tree.nodeSize : "Read operation didn't read the entire node (" + bytesRead + " of "
 				+ tree.nodeSize + " bytes)";
 
-		valueCount = ByteArrayUtil.getInt(data, 0);
+		int storedValueCount = ByteArrayUtil.getInt(data, 0);
+
+		if ((storedValueCount & COMPRESSED_LEAF_FLAG) != 0) {
+			byte[] encodedValues = Arrays.copyOfRange(data, 4, tree.nodeSize);
+			clearData(4, tree.nodeSize);
+			setValueCount(storedValueCount & ~COMPRESSED_LEAF_FLAG);
+			ensureCapacity(valueCount);
+			decodeValues(encodedValues);
+		} else {
+			valueCount = storedValueCount;
+			encodedSize = -1;
+		}
 	}
 
 	public void write() throws IOException {
-		ByteBuffer buf = ByteBuffer.wrap(data);
+		ByteBuffer buf;
 
-		// Don't write the spare slot in data to the file:
-		buf.limit(tree.nodeSize);
+		if (valueCount > 0 && isCompressedLeaf()) {
+			byte[] encodedNode = new byte[tree.nodeSize];
+			ByteArrayUtil.putInt(valueCount | COMPRESSED_LEAF_FLAG, encodedNode, 0);
+
+			if (encodeValues(encodedNode, 4) < 0) {
+				throw new IOException("Unable to write " + this + " of " + tree.getFile()
+						+ "; compressed values exceed the node size");
+			}
+
+			buf = ByteBuffer.wrap(encodedNode);
+		} else {
+			buf = ByteBuffer.wrap(data);
+
+			// Don't write the spare slot in data to the file:
+			buf.limit(tree.nodeSize);
+		}
 
 		int bytesWritten = tree.nioFile.write(buf, tree.nodeID2offset(id));
 		assert bytesWritten == tree.nodeSize : "Write operation didn't write the entire node (" + bytesWritten + " of "
@@ -469,6 +680,136 @@ class Node {
 		dataChanged = false;
 	}
 
+	/**
+	 * Encodes the values of this (leaf) node. Each value is split into 4-byte integers; a bit mask indicates which of
+	 * these differ from the corresponding integer of the preceding value, only these are stored as variable-length
+	 * zigzag-encoded differences. Any remaining bytes of the value are stored as-is.
+	 * 
+	 * @param dest   The array to store the encoded values in, or <tt>null</tt> to only calculate the encoded size.
+	 * @param offset The offset in <tt>dest</tt> to start at.
+	 * @return The size of the encoded values, or <tt>-1</tt> if the values do not fit in <tt>dest</tt>.
+	 */
+	private int encodeValues(byte[] dest, int offset) {
+		int intCount = tree.valueSize / 4;
+		int maskSize = (intCount + 7) / 8;
+		int pos = offset;
+
+		for (int i = 0; i < valueCount; i++) {
+			int valueOffset = valueIdx2offset(i);
+			int prevOffset = i > 0 ? valueIdx2offset(i - 1) : -1;
+
+			if (dest != null && pos + tree.maxEncodedValueSize > dest.length) {
+				// Check the actual size
+				if (pos + encodedValueSize(valueOffset, prevOffset) > dest.length) {
+					return -1;
+				}
+			}
+
+			int maskPos = pos;
+			pos += maskSize;
+
+			for (int j = 0; j < intCount; j++) {
+				int value = ByteArrayUtil.getInt(data, valueOffset + 4 * j);
+				int prevValue = prevOffset < 0 ? 0 : ByteArrayUtil.getInt(data, prevOffset + 4 * j);
+
+				if (value != prevValue) {
+					int delta = value - prevValue;
+					int zigzag = (delta << 1) ^ (delta >> 31);
+					if (dest != null) {
+						dest[maskPos + (j >>> 3)] |= 1 << (j & 7);
+						pos = putVarInt(zigzag, dest, pos);
+					} else {
+						pos += varIntSize(zigzag);
+					}
+				}
+			}
+
+			int remainderSize = tree.valueSize - 4 * intCount;
+			if (dest != null) {
+				System.arraycopy(data, valueOffset + 4 * intCount, dest, pos, remainderSize);
+			}
+			pos += remainderSize;
+		}
+
+		return pos - offset;
+	}
+
+	private int encodedValueSize(int valueOffset, int prevOffset) {
+		int intCount = tree.valueSize / 4;
+		int size = (intCount + 7) / 8 + tree.valueSize - 4 * intCount;
+
+		for (int j = 0; j < intCount; j++) {
+			int value = ByteArrayUtil.getInt(data, valueOffset + 4 * j);
+			int prevValue = prevOffset < 0 ? 0 : ByteArrayUtil.getInt(data, prevOffset + 4 * j);
+
+			if (value != prevValue) {
+				int delta = value - prevValue;
+				size += varIntSize((delta << 1) ^ (delta >> 31));
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * Decodes <tt>valueCount</tt> values that were encoded using {@link #encodeValues(byte[], int)}.
+	 */
+	private void decodeValues(byte[] src) {
+		int intCount = tree.valueSize / 4;
+		int maskSize = (intCount + 7) / 8;
+		int remainderSize = tree.valueSize - 4 * intCount;
+		int pos = 0;
+
+		for (int i = 0; i < valueCount; i++) {
+			int valueOffset = valueIdx2offset(i);
+			int prevOffset = i > 0 ? valueIdx2offset(i - 1) : -1;
+
+			int maskPos = pos;
+			pos += maskSize;
+
+			for (int j = 0; j < intCount; j++) {
+				int value = prevOffset < 0 ? 0 : ByteArrayUtil.getInt(data, prevOffset + 4 * j);
+
+				if ((src[maskPos + (j >>> 3)] & (1 << (j & 7))) != 0) {
+					// Read zigzag-encoded variable-length difference
+					int zigzag = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = src[pos++];
+						zigzag |= (b & 0x7F) << shift;
+						shift += 7;
+					} while (b < 0);
+
+					value += (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+
+				ByteArrayUtil.putInt(value, data, valueOffset + 4 * j);
+			}
+
+			System.arraycopy(src, pos, data, valueOffset + 4 * intCount, remainderSize);
+			pos += remainderSize;
+		}
+	}
+
+	private static int putVarInt(int value, byte[] dest, int pos) {
+		while ((value & ~0x7F) != 0) {
+			dest[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dest[pos++] = (byte) value;
+		return pos;
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
 	/**
 	 * Shifts the data between <tt>startOffset</tt> (inclusive) and <tt>endOffset</tt> (exclusive) <tt>shift</tt>
 	 * positions to the right. Negative shift values can be used to shift data to the left.
@@ -488,6 +829,7 @@ class Node {
 	private void setValueCount(int valueCount) {
 		this.valueCount = valueCount;
 		ByteArrayUtil.putInt(valueCount, data, 0);
+		encodedSize = -1;
 	}
 
 	private int valueIdx2offset(int id) {
@@ -34,6 +34,11 @@ class RangeIterator implements RecordIterator, NodeListener {
 
 	private final AtomicBoolean revisitValue = new AtomicBoolean();
 
+	/**
+	 * Flag indicating whether this iterator is counted as one of the tree's active iterators.
+	 */
+	private final AtomicBoolean active = new AtomicBoolean();
+
 	/**
 	 * Tracks the parent nodes of {@link #currentNode}.
 	 */
@@ -81,6 +86,11 @@ class RangeIterator implements RecordIterator, NodeListener {
 				}
 			}
 
+			if (value == null) {
+				// Reached the end of the tree, no nodes are in use anymore
+				deactivate();
+			}
+
 			return value;
 		} finally {
 			tree.btreeLock.readLock().unlock();
@@ -95,6 +105,10 @@ class RangeIterator implements RecordIterator, NodeListener {
 			return;
 		}
 
+		if (active.compareAndSet(false, true)) {
+			tree.activeIterators.incrementAndGet();
+		}
+
 		nextCurrentNode.register(this);
 		currentIdx = 0;
 
@@ -157,7 +171,11 @@ class RangeIterator implements RecordIterator, NodeListener {
 				throw new IllegalStateException();
 			}
 
-			nextCurrentNode.setValue(currentIdx - 1, value);
+			if (!nextCurrentNode.replaceValue(currentIdx - 1, value)) {
+				// The node can't be split while iterating
+				throw new IllegalArgumentException(
+						"Value does not fit in " + nextCurrentNode + " of " + tree.getFile());
+			}
 		} finally {
 			tree.btreeLock.readLock().unlock();
 		}
@@ -173,11 +191,19 @@ class RangeIterator implements RecordIterator, NodeListener {
 
 			assert parentNodeStack.isEmpty();
 			assert parentIndexStack.isEmpty();
+
+			deactivate();
 		} finally {
 			tree.btreeLock.readLock().unlock();
 		}
 	}
 
+	private void deactivate() {
+		if (active.compareAndSet(true, false)) {
+			tree.activeIterators.decrementAndGet();
+		}
+	}
+
 	private void pushStacks(Node newChildNode) {
 		newChildNode.register(this);
 		parentNodeStack.add(currentNode);
@@ -7,7 +7,9 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.nativerdf.config;
 
+import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.CHANGESET_BUFFER_SIZE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.FORCE_SYNC;
+import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.MEMORY_MAPPED;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE_CACHE_SIZE;
 import static org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreSchema.NAMESPACE_ID_CACHE_SIZE;
@@ -37,6 +39,8 @@ public class NativeStoreConfig extends BaseSailConfig {
 
 	private boolean forceSync = false;
 
+	private boolean memoryMapped = false;
+
 	private int valueCacheSize = -1;
 
 	private int valueIDCacheSize = -1;
@@ -45,6 +49,8 @@ public class NativeStoreConfig extends BaseSailConfig {
 
 	private int namespaceIDCacheSize = -1;
 
+	private long changesetBufferSize = -1;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -83,6 +89,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 		this.forceSync = forceSync;
 	}
 
+	public boolean getMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public void setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+	}
+
 	public int getValueCacheSize() {
 		return valueCacheSize;
 	}
@@ -115,6 +129,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 		this.namespaceIDCacheSize = namespaceIDCacheSize;
 	}
 
+	public long getChangesetBufferSize() {
+		return changesetBufferSize;
+	}
+
+	public void setChangesetBufferSize(long changesetBufferSize) {
+		this.changesetBufferSize = changesetBufferSize;
+	}
+
 	@Override
 	public Resource export(Model m) {
 		Resource implNode = super.export(m);
@@ -127,6 +149,9 @@ public class NativeStoreConfig extends BaseSailConfig {
 		if (forceSync) {
 			m.add(implNode, FORCE_SYNC, vf.createLiteral(forceSync));
 		}
+		if (memoryMapped) {
+			m.add(implNode, MEMORY_MAPPED, vf.createLiteral(memoryMapped));
+		}
 		if (valueCacheSize >= 0) {
 			m.add(implNode, VALUE_CACHE_SIZE, vf.createLiteral(valueCacheSize));
 		}
@@ -139,6 +164,9 @@ public class NativeStoreConfig extends BaseSailConfig {
 		if (namespaceIDCacheSize >= 0) {
 			m.add(implNode, NAMESPACE_ID_CACHE_SIZE, vf.createLiteral(namespaceIDCacheSize));
 		}
+		if (changesetBufferSize >= 0) {
+			m.add(implNode, CHANGESET_BUFFER_SIZE, vf.createLiteral(changesetBufferSize));
+		}
 
 		return implNode;
 	}
@@ -159,6 +187,14 @@ public class NativeStoreConfig extends BaseSailConfig {
 							"Boolean value required for " + FORCE_SYNC + " property, found " + lit);
 				}
 			});
+			Models.objectLiteral(m.filter(implNode, MEMORY_MAPPED, null)).ifPresent(lit -> {
+				try {
+					setMemoryMapped(lit.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + MEMORY_MAPPED + " property, found " + lit);
+				}
+			});
 
 			Models.objectLiteral(m.filter(implNode, VALUE_CACHE_SIZE, null)).ifPresent(lit -> {
 				try {
@@ -195,6 +231,15 @@ public class NativeStoreConfig extends BaseSailConfig {
 							"Integer value required for " + NAMESPACE_ID_CACHE_SIZE + " property, found " + lit);
 				}
 			});
+
+			Models.objectLiteral(m.filter(implNode, CHANGESET_BUFFER_SIZE, null)).ifPresent(lit -> {
+				try {
+					setChangesetBufferSize(lit.longValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Integer value required for " + CHANGESET_BUFFER_SIZE + " property, found " + lit);
+				}
+			});
 		} catch (ModelException e) {
 			throw new SailConfigException(e.getMessage(), e);
 		}
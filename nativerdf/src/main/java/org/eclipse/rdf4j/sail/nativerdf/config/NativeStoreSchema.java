@@ -29,6 +29,9 @@ public class NativeStoreSchema {
 	/** <tt>http://www.openrdf.org/config/sail/native#forceSync</tt> */
 	public final static IRI FORCE_SYNC;
 
+	/** <tt>http://www.openrdf.org/config/sail/native#memoryMapped</tt> */
+	public final static IRI MEMORY_MAPPED;
+
 	/** <tt>http://www.openrdf.org/config/sail/native#valueCacheSize</tt> */
 	public final static IRI VALUE_CACHE_SIZE;
 
@@ -41,13 +44,18 @@ public class NativeStoreSchema {
 	/** <tt>http://www.openrdf.org/config/sail/native#namespaceIDCacheSize</tt> */
 	public final static IRI NAMESPACE_ID_CACHE_SIZE;
 
+	/** <tt>http://www.openrdf.org/config/sail/native#changesetBufferSize</tt> */
+	public final static IRI CHANGESET_BUFFER_SIZE;
+
 	static {
 		ValueFactory factory = SimpleValueFactory.getInstance();
 		TRIPLE_INDEXES = factory.createIRI(NAMESPACE, "tripleIndexes");
 		FORCE_SYNC = factory.createIRI(NAMESPACE, "forceSync");
+		MEMORY_MAPPED = factory.createIRI(NAMESPACE, "memoryMapped");
 		VALUE_CACHE_SIZE = factory.createIRI(NAMESPACE, "valueCacheSize");
 		VALUE_ID_CACHE_SIZE = factory.createIRI(NAMESPACE, "valueIDCacheSize");
 		NAMESPACE_CACHE_SIZE = factory.createIRI(NAMESPACE, "namespaceCacheSize");
 		NAMESPACE_ID_CACHE_SIZE = factory.createIRI(NAMESPACE, "namespaceIDCacheSize");
+		CHANGESET_BUFFER_SIZE = factory.createIRI(NAMESPACE, "changesetBufferSize");
 	}
 }
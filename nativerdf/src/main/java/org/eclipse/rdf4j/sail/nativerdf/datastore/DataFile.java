@@ -12,9 +12,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.NoSuchElementException;
 
-import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.MappedNioFile;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 
 /**
  * Class supplying access to a data file. A data file stores data sequentially. Each entry starts with the entry's
@@ -41,11 +43,23 @@ public class DataFile implements Closeable {
 
 	private static final long HEADER_LENGTH = MAGIC_NUMBER.length + 1;
 
+	/**
+	 * The maximum distance between the first and the last data entry that are read at once by
+	 * {@link #getData(long[])}.
+	 */
+	private static final int MAX_READ_AHEAD = 64 * 1024;
+
+	/**
+	 * The number of bytes that is read for the last data entry of a read-ahead window, whose length is not known in
+	 * advance.
+	 */
+	private static final int ENTRY_SIZE_ESTIMATE = 256;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
 
-	private final NioFile nioFile;
+	private final MappedNioFile nioFile;
 
 	private final boolean forceSync;
 
@@ -58,7 +72,11 @@ public class DataFile implements Closeable {
 	}
 
 	public DataFile(File file, boolean forceSync) throws IOException {
-		this.nioFile = new NioFile(file);
+		this(file, forceSync, false);
+	}
+
+	public DataFile(File file, boolean forceSync, boolean memoryMapped) throws IOException {
+		this.nioFile = new MappedNioFile(file, memoryMapped);
 		this.forceSync = forceSync;
 
 		try {
@@ -141,6 +159,63 @@ public class DataFile implements Closeable {
 		return data;
 	}
 
+	/**
+	 * Gets the data entries that are stored at the specified offsets. The entries are read in file order; entries that
+	 * are close to each other are read at once.
+	 * 
+	 * @param offsets The offsets of the data entries, an offset of <tt>0</tt> denotes a missing entry.
+	 * @return The data entries, in the order of the supplied offsets. Missing entries are <tt>null</tt>.
+	 */
+	public byte[][] getData(long[] offsets) throws IOException {
+		byte[][] result = new byte[offsets.length][];
+
+		Integer[] order = new Integer[offsets.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> offsets[i]));
+
+		ByteBuffer window = null;
+		long windowStart = 0L;
+
+		for (int i = 0; i < order.length; i++) {
+			long offset = offsets[order[i]];
+			if (offset == 0L) {
+				continue;
+			}
+
+			if (window != null && offset - windowStart + 4 <= window.limit()) {
+				int entryStart = (int) (offset - windowStart);
+				int dataLength = window.getInt(entryStart);
+				if (entryStart + 4 + dataLength <= window.limit()) {
+					result[order[i]] = Arrays.copyOfRange(window.array(), entryStart + 4, entryStart + 4 + dataLength);
+					continue;
+				}
+			}
+
+			// Read a window starting at this entry that covers the entries that follow closely
+			long lastOffset = offset;
+			for (int j = i + 1; j < order.length && offsets[order[j]] - offset < MAX_READ_AHEAD; j++) {
+				lastOffset = offsets[order[j]];
+			}
+
+			window = ByteBuffer.allocate((int) (lastOffset - offset) + ENTRY_SIZE_ESTIMATE);
+			nioFile.read(window, offset);
+			window.flip();
+			windowStart = offset;
+
+			int dataLength = window.limit() >= 4 ? window.getInt(0) : -1;
+			if (dataLength >= 0 && 4 + dataLength <= window.limit()) {
+				result[order[i]] = Arrays.copyOfRange(window.array(), 4, 4 + dataLength);
+			} else {
+				// Entry is larger than the window
+				result[order[i]] = getData(offset);
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Discards all stored data.
 	 * 
@@ -150,6 +225,13 @@ public class DataFile implements Closeable {
 		nioFile.truncate(HEADER_LENGTH);
 	}
 
+	/**
+	 * Logs the writes to this file in the specified redo log, or stops logging them if the log is <tt>null</tt>.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, false);
+	}
+
 	/**
 	 * Syncs any unstored data to the hash file.
 	 */
@@ -14,14 +14,26 @@ import java.util.Arrays;
 import java.util.zip.CRC32;
 
 import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 
 /**
- * Class that provides indexed storage and retrieval of arbitrary length data.
+ * Class that provides indexed storage and retrieval of arbitrary length data. The first byte of every data entry is
+ * also stored as a tag in the ID file, so that it can be retrieved with {@link #getTags(int[])} without reading the
+ * data itself.
  * 
  * @author Arjohn Kampman
  */
 public class DataStore implements Closeable {
 
+	/*-----------*
+	 * Constants *
+	 *-----------*/
+
+	/**
+	 * The number of data entries that are read at once when upgrading an ID file that does not store tags.
+	 */
+	private static final int UPGRADE_BATCH_SIZE = 4096;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
@@ -46,9 +58,17 @@ public class DataStore implements Closeable {
 	}
 
 	public DataStore(File dataDir, String filePrefix, boolean forceSync) throws IOException {
-		dataFile = new DataFile(new File(dataDir, filePrefix + ".dat"), forceSync);
-		idFile = new IDFile(new File(dataDir, filePrefix + ".id"), forceSync);
-		hashFile = new HashFile(new File(dataDir, filePrefix + ".hash"), forceSync);
+		this(dataDir, filePrefix, forceSync, false);
+	}
+
+	public DataStore(File dataDir, String filePrefix, boolean forceSync, boolean memoryMapped) throws IOException {
+		dataFile = new DataFile(new File(dataDir, filePrefix + ".dat"), forceSync, memoryMapped);
+		idFile = new IDFile(new File(dataDir, filePrefix + ".id"), forceSync, memoryMapped);
+		hashFile = new HashFile(new File(dataDir, filePrefix + ".hash"), forceSync, memoryMapped);
+
+		if (!idFile.isTagged()) {
+			upgradeIDFile();
+		}
 	}
 
 	/*---------*
@@ -75,6 +95,31 @@ public class DataStore implements Closeable {
 		return null;
 	}
 
+	/**
+	 * Gets the values for the specified IDs. This is more efficient than looking up the values one by one, as the
+	 * stored offsets and values are read in file order.
+	 * 
+	 * @param ids The IDs of the values to get, must be larger than 0.
+	 * @return The values for the IDs, in the order of the supplied IDs. An entry is <tt>null</tt> if no value has been
+	 *         stored for the ID.
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public byte[][] getData(int[] ids) throws IOException {
+		return dataFile.getData(idFile.getOffsets(ids));
+	}
+
+	/**
+	 * Gets the tags of the data entries with the specified IDs, which are equal to the first byte of each entry.
+	 * 
+	 * @param ids The IDs of the values to get the tags for, must be larger than 0.
+	 * @return The tags for the IDs, in the order of the supplied IDs. An entry is <tt>0</tt> if no value has been
+	 *         stored for the ID.
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public byte[] getTags(int[] ids) throws IOException {
+		return idFile.getTags(ids);
+	}
+
 	/**
 	 * Gets the ID for the specified value.
 	 * 
@@ -119,13 +164,14 @@ public class DataStore implements Closeable {
 
 	/**
 	 * Stores the supplied value and returns the ID that has been assigned to it. In case the data to store is already
-	 * present, the ID of this existing data is returned.
+	 * present, the ID of this existing data is returned. Concurrent calls are serialized, so that the same data is
+	 * never stored under two IDs.
 	 * 
 	 * @param data The data to store, must not be <tt>null</tt>.
 	 * @return The ID that has been assigned to the value.
 	 * @exception IOException If an I/O error occurred.
 	 */
-	public int storeData(byte[] data) throws IOException {
+	public synchronized int storeData(byte[] data) throws IOException {
 		assert data != null : "data must not be null";
 
 		int id = getID(data);
@@ -133,13 +179,47 @@ public class DataStore implements Closeable {
 		if (id == -1) {
 			// Data not stored yet, store it under a new ID.
 			long offset = dataFile.storeData(data);
-			id = idFile.storeOffset(offset);
+			id = idFile.storeOffset(offset, data[0]);
 			hashFile.storeID(getDataHash(data), id);
 		}
 
 		return id;
 	}
 
+	/**
+	 * Stores the tags of all data entries in an ID file that was created before tags were supported.
+	 */
+	private void upgradeIDFile() throws IOException {
+		int maxID = idFile.getMaxID();
+		for (int firstID = 1; firstID <= maxID; firstID += UPGRADE_BATCH_SIZE) {
+			int[] ids = new int[Math.min(UPGRADE_BATCH_SIZE, maxID - firstID + 1)];
+			for (int i = 0; i < ids.length; i++) {
+				ids[i] = firstID + i;
+			}
+
+			long[] offsets = idFile.getOffsets(ids);
+			byte[][] data = dataFile.getData(offsets);
+			for (int i = 0; i < ids.length; i++) {
+				if (data[i] != null && data[i].length > 0) {
+					idFile.setOffset(ids[i], offsets[i], data[i][0]);
+				}
+			}
+		}
+		idFile.upgradeToTagged();
+	}
+
+	/**
+	 * Logs the writes to the files of this DataStore in the specified redo log, or stops logging them if the log is
+	 * <tt>null</tt>.
+	 * 
+	 * @exception IOException If an I/O error occurred.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		hashFile.setRedoLog(redoLog);
+		idFile.setRedoLog(redoLog);
+		dataFile.setRedoLog(redoLog);
+	}
+
 	/**
 	 * Synchronizes any recent changes to the data to disk.
 	 * 
@@ -16,7 +16,8 @@ import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.MappedNioFile;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 
 /**
  * Class supplying access to a hash file.
@@ -57,7 +58,7 @@ public class HashFile implements Closeable {
 	 * Variables *
 	 *-----------*/
 
-	private final NioFile nioFile;
+	private final MappedNioFile nioFile;
 
 	private final boolean forceSync;
 
@@ -91,7 +92,11 @@ public class HashFile implements Closeable {
 	}
 
 	public HashFile(File file, boolean forceSync) throws IOException {
-		this.nioFile = new NioFile(file);
+		this(file, forceSync, false);
+	}
+
+	public HashFile(File file, boolean forceSync, boolean memoryMapped) throws IOException {
+		this.nioFile = new MappedNioFile(file, memoryMapped);
 		this.forceSync = forceSync;
 
 		try {
@@ -237,6 +242,13 @@ public class HashFile implements Closeable {
 		}
 	}
 
+	/**
+	 * Logs the writes to this file in the specified redo log, or stops logging them if the log is <tt>null</tt>.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, false);
+	}
+
 	/**
 	 * Syncs any unstored data to the hash file.
 	 */
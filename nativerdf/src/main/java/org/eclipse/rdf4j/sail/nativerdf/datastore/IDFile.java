@@ -10,14 +10,19 @@ package org.eclipse.rdf4j.sail.nativerdf.datastore;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
-import org.eclipse.rdf4j.common.io.NioFile;
+import org.eclipse.rdf4j.sail.nativerdf.MappedNioFile;
+import org.eclipse.rdf4j.sail.nativerdf.RedoLog;
 
 /**
  * Class supplying access to an ID file. An ID file maps IDs (integers &gt;= 1) to file pointers (long integers). There
  * is a direct correlation between IDs and the position at which the file pointers are stored; the file pointer for ID X
  * is stored at position 8*X.
+ * <p>
+ * Since file format version 2, the most significant byte of each stored item holds a tag that the owner of the file can
+ * use to classify the data entry without reading it; the remaining 7 bytes hold the file pointer.
  * 
  * @author Arjohn Kampman
  */
@@ -36,7 +41,12 @@ public class IDFile implements Closeable {
 	/**
 	 * File format version, stored as the fourth byte in ID files.
 	 */
-	private static final byte FILE_FORMAT_VERSION = 1;
+	private static final byte FILE_FORMAT_VERSION = 2;
+
+	/**
+	 * The last file format version that does not store tags.
+	 */
+	private static final byte UNTAGGED_FILE_FORMAT_VERSION = 1;
 
 	/**
 	 * The size of the file header in bytes. The file header contains the following data: magic number (3 bytes) file
@@ -46,14 +56,29 @@ public class IDFile implements Closeable {
 
 	private static final long ITEM_SIZE = 8L;
 
+	/**
+	 * The maximum number of consecutive items that is read at once by {@link #getOffsets(int[])}.
+	 */
+	private static final int MAX_ITEMS_PER_READ = 512;
+
+	private static final int TAG_SHIFT = 56;
+
+	private static final long OFFSET_MASK = (1L << TAG_SHIFT) - 1;
+
 	/*-----------*
 	 * Variables *
 	 *-----------*/
 
-	private final NioFile nioFile;
+	private final MappedNioFile nioFile;
 
 	private final boolean forceSync;
 
+	/**
+	 * Flag indicating whether the file stores tags; <tt>false</tt> for files using file format version 1 until they
+	 * have been {@link #upgradeToTagged() upgraded}.
+	 */
+	private volatile boolean tagged;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -63,7 +88,11 @@ public class IDFile implements Closeable {
 	}
 
 	public IDFile(File file, boolean forceSync) throws IOException {
-		this.nioFile = new NioFile(file);
+		this(file, forceSync, false);
+	}
+
+	public IDFile(File file, boolean forceSync, boolean memoryMapped) throws IOException {
+		this.nioFile = new MappedNioFile(file, memoryMapped);
 		this.forceSync = forceSync;
 
 		try {
@@ -74,6 +103,7 @@ public class IDFile implements Closeable {
 				nioFile.writeBytes(new byte[] { 0, 0, 0, 0 }, 4);
 
 				sync();
+				tagged = true;
 			} else if (nioFile.size() < HEADER_LENGTH) {
 				throw new IOException("File too small to be a compatible ID file");
 			} else {
@@ -85,9 +115,10 @@ public class IDFile implements Closeable {
 				byte version = nioFile.readByte(MAGIC_NUMBER.length);
 				if (version > FILE_FORMAT_VERSION) {
 					throw new IOException("Unable to read ID file; it uses a newer file format");
-				} else if (version != FILE_FORMAT_VERSION) {
+				} else if (version != FILE_FORMAT_VERSION && version != UNTAGGED_FILE_FORMAT_VERSION) {
 					throw new IOException("Unable to read ID file; invalid file format version: " + version);
 				}
+				tagged = version == FILE_FORMAT_VERSION;
 			}
 		} catch (IOException e) {
 			this.nioFile.close();
@@ -113,12 +144,38 @@ public class IDFile implements Closeable {
 		return (int) (nioFile.size() / ITEM_SIZE) - 1;
 	}
 
+	/**
+	 * Checks whether this ID file stores tags. Files created with file format version 1 do not store tags until they
+	 * have been upgraded using {@link #upgradeToTagged()}, {@link #getTag(int)} returns <tt>0</tt> for all IDs in such
+	 * files.
+	 */
+	public boolean isTagged() {
+		return tagged;
+	}
+
+	/**
+	 * Marks this ID file as storing tags, after the owner of the file has set the tags of all stored IDs using
+	 * {@link #setOffset(int, long, byte)}.
+	 */
+	public void upgradeToTagged() throws IOException {
+		nioFile.writeByte(FILE_FORMAT_VERSION, MAGIC_NUMBER.length);
+		nioFile.force(false);
+		tagged = true;
+	}
+
 	/**
 	 * Stores the offset of a new data entry, returning the ID under which is stored.
 	 */
 	public int storeOffset(long offset) throws IOException {
+		return storeOffset(offset, (byte) 0);
+	}
+
+	/**
+	 * Stores the offset and tag of a new data entry, returning the ID under which is stored.
+	 */
+	public int storeOffset(long offset, byte tag) throws IOException {
 		long fileSize = nioFile.size();
-		nioFile.writeLong(offset, fileSize);
+		nioFile.writeLong(toItem(offset, tag), fileSize);
 		return (int) (fileSize / ITEM_SIZE);
 	}
 
@@ -129,8 +186,19 @@ public class IDFile implements Closeable {
 	 * @param offset The (new) offset for the specified ID.
 	 */
 	public void setOffset(int id, long offset) throws IOException {
+		setOffset(id, offset, (byte) 0);
+	}
+
+	/**
+	 * Sets or updates the stored offset and tag for the specified ID.
+	 * 
+	 * @param id     The ID to set the offset for, must be larger than 0.
+	 * @param offset The (new) offset for the specified ID.
+	 * @param tag    The (new) tag for the specified ID.
+	 */
+	public void setOffset(int id, long offset, byte tag) throws IOException {
 		assert id > 0 : "id must be larger than 0, is: " + id;
-		nioFile.writeLong(offset, ITEM_SIZE * id);
+		nioFile.writeLong(toItem(offset, tag), ITEM_SIZE * id);
 	}
 
 	/**
@@ -141,7 +209,88 @@ public class IDFile implements Closeable {
 	 */
 	public long getOffset(int id) throws IOException {
 		assert id > 0 : "id must be larger than 0, is: " + id;
-		return nioFile.readLong(ITEM_SIZE * id);
+		return nioFile.readLong(ITEM_SIZE * id) & OFFSET_MASK;
+	}
+
+	/**
+	 * Gets the tag of the data entry with the specified ID.
+	 * 
+	 * @param id The ID to get the tag for, must be larger than 0.
+	 * @return The tag for the ID, <tt>0</tt> if no tag has been stored.
+	 */
+	public byte getTag(int id) throws IOException {
+		assert id > 0 : "id must be larger than 0, is: " + id;
+		return toTag(nioFile.readLong(ITEM_SIZE * id));
+	}
+
+	/**
+	 * Gets the offsets of the data entries with the specified IDs. The offsets are read in ID order, reading the
+	 * offsets of IDs that are close to each other at once.
+	 * 
+	 * @param ids The IDs to get the offsets for, must be larger than 0.
+	 * @return The offsets for the IDs, in the order of the supplied IDs.
+	 */
+	public long[] getOffsets(int[] ids) throws IOException {
+		long[] offsets = getItems(ids);
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] &= OFFSET_MASK;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Gets the tags of the data entries with the specified IDs, reading them in the same way as
+	 * {@link #getOffsets(int[])}.
+	 * 
+	 * @param ids The IDs to get the tags for, must be larger than 0.
+	 * @return The tags for the IDs, in the order of the supplied IDs.
+	 */
+	public byte[] getTags(int[] ids) throws IOException {
+		long[] items = getItems(ids);
+		byte[] tags = new byte[items.length];
+		for (int i = 0; i < items.length; i++) {
+			tags[i] = toTag(items[i]);
+		}
+		return tags;
+	}
+
+	private long[] getItems(int[] ids) throws IOException {
+		int[] sortedIDs = ids.clone();
+		Arrays.sort(sortedIDs);
+		long[] sortedItems = new long[sortedIDs.length];
+
+		int i = 0;
+		while (i < sortedIDs.length) {
+			int firstID = sortedIDs[i];
+			assert firstID > 0 : "id must be larger than 0, is: " + firstID;
+
+			int end = i + 1;
+			while (end < sortedIDs.length && sortedIDs[end] - firstID < MAX_ITEMS_PER_READ) {
+				end++;
+			}
+
+			ByteBuffer buf = ByteBuffer.allocate((sortedIDs[end - 1] - firstID + 1) * (int) ITEM_SIZE);
+			nioFile.read(buf, ITEM_SIZE * firstID);
+
+			for (; i < end; i++) {
+				sortedItems[i] = buf.getLong((sortedIDs[i] - firstID) * (int) ITEM_SIZE);
+			}
+		}
+
+		long[] items = new long[ids.length];
+		for (int j = 0; j < ids.length; j++) {
+			items[j] = sortedItems[Arrays.binarySearch(sortedIDs, ids[j])];
+		}
+		return items;
+	}
+
+	private static long toItem(long offset, byte tag) {
+		assert (offset & ~OFFSET_MASK) == 0L : "offset too large: " + offset;
+		return (long) (tag & 0xff) << TAG_SHIFT | offset;
+	}
+
+	private byte toTag(long item) {
+		return tagged ? (byte) (item >>> TAG_SHIFT) : 0;
 	}
 
 	/**
@@ -153,6 +302,13 @@ public class IDFile implements Closeable {
 		nioFile.truncate(HEADER_LENGTH);
 	}
 
+	/**
+	 * Logs the writes to this file in the specified redo log, or stops logging them if the log is <tt>null</tt>.
+	 */
+	public void setRedoLog(RedoLog redoLog) throws IOException {
+		nioFile.setRedoLog(redoLog, false);
+	}
+
 	/**
 	 * Syncs any unstored data to the hash file.
 	 */
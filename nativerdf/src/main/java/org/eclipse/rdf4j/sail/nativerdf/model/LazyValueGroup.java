@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.concurrent.locks.Lock;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.nativerdf.ValueStore;
+import org.eclipse.rdf4j.sail.nativerdf.ValueStoreRevision;
+
+/**
+ * A group of lazily loaded values. A lazy value only knows its type and its internal ID when it is created; its
+ * string representation is loaded from the value store when it is first needed. At that point the other values in the
+ * group are loaded as well, using a single call to {@link ValueStore#getValues(int[])}, which reads them in file
+ * order.
+ * <p>
+ * Lazy values are compared by ID with other values from the same value store revision, they are hashed using the hash
+ * code that the value store keeps for every value, and their ID can be looked up with {@link ValueStore#getID(Value)}
+ * without loading them. Values that are only used to look up, join or deduplicate statements are therefore never
+ * loaded.
+ * <p>
+ * Lazy values must not outlive the value store revision that they were created with, as they can no longer be loaded
+ * once the value store has been cleared or closed. The NativeStore therefore {@link #load(Value) loads} the values of
+ * statements and query results before they are returned to its users.
+ */
+public class LazyValueGroup {
+
+	/*-----------*
+	 * Variables *
+	 *-----------*/
+
+	private final ValueStoreRevision revision;
+
+	/**
+	 * The values in this group, <tt>null</tt> once they have been loaded.
+	 */
+	private List<NativeValue> values = new ArrayList<>();
+
+	/*--------------*
+	 * Constructors *
+	 *--------------*/
+
+	/**
+	 * Creates a new group for lazy values with IDs from the specified value store revision.
+	 */
+	public LazyValueGroup(ValueStoreRevision revision) {
+		this.revision = revision;
+	}
+
+	/*---------*
+	 * Methods *
+	 *---------*/
+
+	public synchronized NativeIRI createIRI(int id, int hashCode) {
+		NativeIRI iri = new NativeIRI(revision, id, hashCode, this);
+		values.add(iri);
+		return iri;
+	}
+
+	public synchronized NativeBNode createBNode(int id, int hashCode) {
+		NativeBNode bnode = new NativeBNode(revision, id, hashCode, this);
+		values.add(bnode);
+		return bnode;
+	}
+
+	public synchronized NativeLiteral createLiteral(int id, int hashCode) {
+		NativeLiteral literal = new NativeLiteral(revision, id, hashCode, this);
+		values.add(literal);
+		return literal;
+	}
+
+	/**
+	 * Loads the supplied value if it is a lazy value that has not been loaded yet.
+	 *
+	 * @throws SailException If the value could not be read, or if it has been removed from the value store.
+	 */
+	public static void load(Value value) throws SailException {
+		if (value instanceof NativeIRI) {
+			((NativeIRI) value).load();
+		} else if (value instanceof NativeLiteral) {
+			((NativeLiteral) value).load();
+		} else if (value instanceof NativeBNode) {
+			((NativeBNode) value).load();
+		}
+	}
+
+	/**
+	 * Loads all values in this group, if this hasn't been done yet.
+	 *
+	 * @throws SailException If the values could not be read, or if they have been removed from the value store.
+	 */
+	synchronized void load() throws SailException {
+		if (values == null) {
+			return;
+		}
+
+		ValueStore valueStore = revision.getValueStore();
+		int[] ids = new int[values.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = values.get(i).getInternalID();
+		}
+
+		NativeValue[] loadedValues;
+		try {
+			Lock readLock = valueStore.getReadLock();
+			try {
+				if (!revision.equals(valueStore.getRevision())) {
+					throw new SailException("Unable to load values, they have been removed from the value store");
+				}
+				loadedValues = valueStore.getValues(ids);
+			} finally {
+				readLock.release();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SailException(e);
+		} catch (IOException e) {
+			throw new SailException(e);
+		}
+
+		for (int i = 0; i < ids.length; i++) {
+			if (loadedValues[i] == null) {
+				throw new SailException("Unable to load value with ID " + ids[i]);
+			}
+		}
+
+		for (int i = 0; i < ids.length; i++) {
+			NativeValue value = values.get(i);
+			if (value instanceof NativeIRI) {
+				((NativeIRI) value).initialize((NativeIRI) loadedValues[i]);
+			} else if (value instanceof NativeBNode) {
+				((NativeBNode) value).initialize((NativeBNode) loadedValues[i]);
+			} else {
+				((NativeLiteral) value).initialize((NativeLiteral) loadedValues[i]);
+			}
+		}
+		values = null;
+	}
+}
@@ -26,6 +26,17 @@ public class NativeBNode extends SimpleBNode implements NativeResource {
 
 	private volatile int internalID;
 
+	/**
+	 * The group that this blank node is loaded with, <tt>null</tt> if the blank node has been loaded.
+	 */
+	private transient volatile LazyValueGroup lazyGroup;
+
+	/**
+	 * The hash code of a lazy blank node, which is stored in the value store so that it is known before the blank node
+	 * is loaded.
+	 */
+	private transient int lazyHashCode;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -35,6 +46,15 @@ public class NativeBNode extends SimpleBNode implements NativeResource {
 		setInternalID(internalID, revision);
 	}
 
+	/**
+	 * Creates a lazy blank node, which is loaded together with the other values in the specified group.
+	 */
+	NativeBNode(ValueStoreRevision revision, int internalID, int hashCode, LazyValueGroup lazyGroup) {
+		this(revision, internalID);
+		this.lazyHashCode = hashCode;
+		this.lazyGroup = lazyGroup;
+	}
+
 	public NativeBNode(ValueStoreRevision revision, String nodeID) {
 		this(revision, nodeID, UNKNOWN_ID);
 	}
@@ -80,7 +100,55 @@ public class NativeBNode extends SimpleBNode implements NativeResource {
 			}
 		}
 
+		load();
 		return super.equals(o);
 	}
 
+	@Override
+	public int hashCode() {
+		if (lazyGroup != null) {
+			// lazy values are hashed without loading them, e.g. by DISTINCT and hash joins
+			return lazyHashCode;
+		}
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		load();
+		return super.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		load();
+		return super.stringValue();
+	}
+
+	@Override
+	public String getID() {
+		load();
+		return super.getID();
+	}
+
+	/**
+	 * Copies the ID of a loaded blank node into this lazy blank node.
+	 */
+	void initialize(NativeBNode loadedBNode) {
+		setID(loadedBNode.getID());
+		lazyGroup = null;
+	}
+
+	void load() {
+		LazyValueGroup group = lazyGroup;
+		if (group != null) {
+			group.load();
+		}
+	}
+
+	protected Object writeReplace() {
+		load();
+		return this;
+	}
+
 }
@@ -22,6 +22,16 @@ public class NativeIRI extends SimpleIRI implements NativeResource {
 
 	private volatile int internalID;
 
+	/**
+	 * The group that this IRI is loaded with, <tt>null</tt> if the IRI has been loaded.
+	 */
+	private transient volatile LazyValueGroup lazyGroup;
+
+	/**
+	 * The hash code of a lazy IRI, which is stored in the value store so that it is known before the IRI is loaded.
+	 */
+	private transient int lazyHashCode;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -31,6 +41,15 @@ public class NativeIRI extends SimpleIRI implements NativeResource {
 		setInternalID(internalID, revision);
 	}
 
+	/**
+	 * Creates a lazy IRI, which is loaded together with the other values in the specified group.
+	 */
+	NativeIRI(ValueStoreRevision revision, int internalID, int hashCode, LazyValueGroup lazyGroup) {
+		this(revision, internalID);
+		this.lazyHashCode = hashCode;
+		this.lazyGroup = lazyGroup;
+	}
+
 	public NativeIRI(ValueStoreRevision revision, String uri) {
 		this(revision, uri, UNKNOWN_ID);
 	}
@@ -84,6 +103,60 @@ public class NativeIRI extends SimpleIRI implements NativeResource {
 			}
 		}
 
+		load();
 		return super.equals(o);
 	}
+
+	@Override
+	public int hashCode() {
+		if (lazyGroup != null) {
+			// lazy values are hashed without loading them, e.g. by DISTINCT and hash joins
+			return lazyHashCode;
+		}
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		load();
+		return super.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		load();
+		return super.stringValue();
+	}
+
+	@Override
+	public String getNamespace() {
+		load();
+		return super.getNamespace();
+	}
+
+	@Override
+	public String getLocalName() {
+		load();
+		return super.getLocalName();
+	}
+
+	/**
+	 * Copies the IRI string of a loaded IRI into this lazy IRI.
+	 */
+	void initialize(NativeIRI loadedIRI) {
+		setIRIString(loadedIRI.stringValue());
+		lazyGroup = null;
+	}
+
+	void load() {
+		LazyValueGroup group = lazyGroup;
+		if (group != null) {
+			group.load();
+		}
+	}
+
+	protected Object writeReplace() {
+		load();
+		return this;
+	}
 }
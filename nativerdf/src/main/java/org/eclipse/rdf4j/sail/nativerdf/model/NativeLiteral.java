@@ -7,6 +7,8 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.nativerdf.model;
 
+import java.util.Optional;
+
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleLiteral;
 import org.eclipse.rdf4j.sail.nativerdf.ValueStoreRevision;
@@ -27,6 +29,17 @@ public class NativeLiteral extends SimpleLiteral implements NativeValue {
 
 	private volatile int internalID;
 
+	/**
+	 * The group that this literal is loaded with, <tt>null</tt> if the literal has been loaded.
+	 */
+	private transient volatile LazyValueGroup lazyGroup;
+
+	/**
+	 * The hash code of a lazy literal, which is stored in the value store so that it is known before the literal is
+	 * loaded.
+	 */
+	private transient int lazyHashCode;
+
 	/*--------------*
 	 * Constructors *
 	 *--------------*/
@@ -36,6 +49,15 @@ public class NativeLiteral extends SimpleLiteral implements NativeValue {
 		setInternalID(internalID, revision);
 	}
 
+	/**
+	 * Creates a lazy literal, which is loaded together with the other values in the specified group.
+	 */
+	NativeLiteral(ValueStoreRevision revision, int internalID, int hashCode, LazyValueGroup lazyGroup) {
+		this(revision, internalID);
+		this.lazyHashCode = hashCode;
+		this.lazyGroup = lazyGroup;
+	}
+
 	public NativeLiteral(ValueStoreRevision revision, String label) {
 		this(revision, label, UNKNOWN_ID);
 	}
@@ -100,6 +122,68 @@ public class NativeLiteral extends SimpleLiteral implements NativeValue {
 			}
 		}
 
+		load();
 		return super.equals(o);
 	}
+
+	@Override
+	public int hashCode() {
+		if (lazyGroup != null) {
+			// lazy values are hashed without loading them, e.g. by DISTINCT and hash joins
+			return lazyHashCode;
+		}
+		return super.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		load();
+		return super.toString();
+	}
+
+	@Override
+	public String stringValue() {
+		load();
+		return super.stringValue();
+	}
+
+	@Override
+	public String getLabel() {
+		load();
+		return super.getLabel();
+	}
+
+	@Override
+	public Optional<String> getLanguage() {
+		load();
+		return super.getLanguage();
+	}
+
+	@Override
+	public IRI getDatatype() {
+		load();
+		return super.getDatatype();
+	}
+
+	/**
+	 * Copies the label, language and datatype of a loaded literal into this lazy literal.
+	 */
+	void initialize(NativeLiteral loadedLiteral) {
+		setLabel(loadedLiteral.getLabel());
+		loadedLiteral.getLanguage().ifPresent(this::setLanguage);
+		setDatatype(loadedLiteral.getDatatype());
+		lazyGroup = null;
+	}
+
+	void load() {
+		LazyValueGroup group = lazyGroup;
+		if (group != null) {
+			group.load();
+		}
+	}
+
+	protected Object writeReplace() {
+		load();
+		return this;
+	}
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentCache}.
+ */
+public class ConcurrentCacheTest {
+
+	@Test
+	public void testGetAndPut() {
+		ConcurrentCache<Integer, String> cache = new ConcurrentCache<>(16);
+
+		assertNull(cache.put(1, "one"));
+		assertEquals("one", cache.put(1, "uno"));
+		assertEquals("uno", cache.get(1));
+		assertNull(cache.get(2));
+
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		cache.clear();
+		assertNull(cache.get(1));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSizeIsLimited() {
+		ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<>(100);
+
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(i, i);
+		}
+
+		assertThat(cache.size()).isLessThanOrEqualTo(100);
+		assertEquals(10_000 - cache.size(), cache.getEvictionCount());
+	}
+
+	@Test
+	public void testFrequentlyUsedEntriesSurviveScan() {
+		ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<>(100);
+
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 50; i++) {
+				if (cache.get(i) == null) {
+					cache.put(i, i);
+				}
+			}
+		}
+
+		// a scan over many keys that are used only once
+		for (int i = 1000; i < 6000; i++) {
+			cache.put(i, i);
+		}
+
+		int retained = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.get(i) != null) {
+				retained++;
+			}
+		}
+		assertThat(retained).isGreaterThanOrEqualTo(45);
+	}
+
+	@Test
+	public void testReadsAreRecordedWithoutWrites() {
+		ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<>(100);
+
+		for (int i = 0; i < 50; i++) {
+			cache.put(i, i);
+		}
+		// only lookups, which are recorded through the read buffers
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 50; i++) {
+				assertEquals(Integer.valueOf(i), cache.get(i));
+			}
+		}
+
+		for (int i = 1000; i < 6000; i++) {
+			cache.put(i, i);
+		}
+
+		int retained = 0;
+		for (int i = 0; i < 50; i++) {
+			if (cache.get(i) != null) {
+				retained++;
+			}
+		}
+		assertThat(retained).isGreaterThanOrEqualTo(45);
+	}
+
+	@Test
+	public void testVetoedRemoval() {
+		ConcurrentCache<Integer, Integer> cache = new ConcurrentCache<Integer, Integer>(0) {
+
+			@Override
+			protected boolean onEntryRemoval(Integer key) {
+				return key != 42;
+			}
+		};
+
+		cache.put(42, 42);
+		cache.put(1, 1);
+
+		assertEquals(Integer.valueOf(42), cache.get(42));
+		assertNull(cache.get(1));
+	}
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.eclipse.rdf4j.sail.nativerdf.model.NativeValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the lazy values returned by {@link ValueStore#getLazyValues(int[])}.
+ */
+public class LazyValueTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final Value[] values = { vf.createIRI("http://example.org/a"), vf.createBNode("b1"),
+			vf.createLiteral("foo", "en"), vf.createLiteral("42", XMLSchema.INT), vf.createLiteral("bar") };
+
+	private File dataDir;
+
+	private ValueStore valueStore;
+
+	private int[] ids;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = tempDir.newFolder();
+		valueStore = new ValueStore(dataDir);
+		ids = new int[values.length + 1];
+		for (int i = 0; i < values.length; i++) {
+			ids[i] = valueStore.storeValue(values[i]);
+		}
+		// the default context
+		ids[values.length] = 0;
+		valueStore.close();
+
+		// Reopen the value store to start with empty caches
+		valueStore = new ValueStore(dataDir);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		valueStore.close();
+	}
+
+	@Test
+	public void testLazyValuesAreEqualToStoredValues() throws Exception {
+		NativeValue[] lazyValues = valueStore.getLazyValues(ids);
+
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(ids[i], lazyValues[i].getInternalID());
+			assertEquals(values[i], lazyValues[i]);
+			assertEquals(values[i].hashCode(), lazyValues[i].hashCode());
+			assertEquals(values[i].stringValue(), lazyValues[i].stringValue());
+		}
+		assertNull(lazyValues[values.length]);
+
+		Literal literal = (Literal) lazyValues[2];
+		assertEquals("en", literal.getLanguage().get());
+		assertEquals(42, ((Literal) lazyValues[3]).intValue());
+		assertEquals(XMLSchema.STRING, ((Literal) lazyValues[4]).getDatatype());
+	}
+
+	@Test
+	public void testLazyValuesAreComparedByID() throws Exception {
+		NativeValue[] lazyValues1 = valueStore.getLazyValues(ids);
+		NativeValue[] lazyValues2 = valueStore.getLazyValues(ids);
+
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(ids[i], valueStore.getID(lazyValues1[i]));
+		}
+
+		// After clearing the store, the values can no longer be loaded, which shows that they are compared and hashed
+		// without loading them
+		valueStore.clear();
+
+		for (int i = 0; i < values.length; i++) {
+			assertTrue(lazyValues1[i].equals(lazyValues2[i]));
+			assertEquals(values[i].hashCode(), lazyValues1[i].hashCode());
+		}
+	}
+
+	@Test
+	public void testHashCodesAreStoredForExistingValues() throws Exception {
+		valueStore.close();
+		assertTrue(new File(dataDir, "values.hashcodes").delete());
+
+		valueStore = new ValueStore(dataDir);
+		NativeValue[] lazyValues = valueStore.getLazyValues(ids);
+		valueStore.clear();
+
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i].hashCode(), lazyValues[i].hashCode());
+		}
+	}
+
+	@Test
+	public void testReturnedStatementsOutliveTheStore() throws Exception {
+		valueStore.close();
+
+		NativeStore store = new NativeStore(dataDir);
+		store.initialize();
+		List<Statement> statements;
+		try (NotifyingSailConnection con = store.getConnection()) {
+			con.begin();
+			con.addStatement((Resource) values[0], RDF.VALUE, values[2]);
+			con.addStatement((Resource) values[1], RDF.VALUE, values[3], (Resource) values[0]);
+			con.commit();
+
+			statements = Iterations.asList(con.getStatements(null, null, null, false));
+		} finally {
+			store.shutDown();
+		}
+
+		assertEquals(2, statements.size());
+		for (Statement st : statements) {
+			assertEquals(RDF.VALUE.stringValue(), st.getPredicate().stringValue());
+			assertTrue(st.getObject().equals(values[2]) || st.getObject().equals(values[3]));
+			assertTrue(st.toString().contains(st.getSubject().stringValue()));
+		}
+
+		// reopen the value store for tearDown
+		valueStore = new ValueStore(dataDir);
+	}
+}
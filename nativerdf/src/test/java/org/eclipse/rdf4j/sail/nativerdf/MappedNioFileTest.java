@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link MappedNioFile}.
+ */
+public class MappedNioFileTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private MappedNioFile file;
+
+	@Before
+	public void setUp() throws Exception {
+		file = new MappedNioFile(tempDir.newFile("mapped.dat"), true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.close();
+	}
+
+	@Test
+	public void testReadAfterWrite() throws Exception {
+		file.writeBytes(new byte[] { 1, 2, 3, 4 }, 0L);
+		file.writeLong(42L, 4L);
+
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, file.readBytes(0L, 4));
+		assertEquals(42L, file.readLong(4L));
+		assertTrue(file.isMemoryMapped());
+	}
+
+	@Test
+	public void testReadAfterGrowth() throws Exception {
+		file.writeInt(1, 0L);
+		assertEquals(1, file.readInt(0L));
+
+		// the file grows beyond the initially mapped region
+		file.writeInt(2, 4096L);
+		assertEquals(2, file.readInt(4096L));
+
+		// existing data is overwritten
+		file.writeInt(3, 0L);
+		assertEquals(3, file.readInt(0L));
+	}
+
+	@Test
+	public void testReadBeyondEnd() throws Exception {
+		file.writeBytes(new byte[] { 1, 2, 3, 4 }, 0L);
+
+		ByteBuffer buf = ByteBuffer.allocate(8);
+		assertEquals(4, file.read(buf, 0L));
+		assertEquals(-1, file.read(ByteBuffer.allocate(4), 16L));
+	}
+
+	@Test
+	public void testTruncate() throws Exception {
+		file.writeLong(42L, 0L);
+		assertEquals(42L, file.readLong(0L));
+
+		file.truncate(4L);
+		assertEquals(4L, file.size());
+		assertEquals(4, file.read(ByteBuffer.allocate(8), 0L));
+
+		file.writeLong(43L, 0L);
+		assertEquals(43L, file.readLong(0L));
+	}
+
+	@Test
+	public void testDeleteAfterRemapAndTruncate() throws Exception {
+		for (int i = 0; i < 16; i++) {
+			// every read beyond the mapped part of the file remaps the segment and unmaps the previous mapping
+			file.writeInt(i, i * 4096L);
+			assertEquals(i, file.readInt(i * 4096L));
+			assertEquals(0, file.readInt(0L));
+		}
+
+		file.truncate(8192L);
+		assertEquals(1, file.readInt(4096L));
+		assertEquals(-1, file.read(ByteBuffer.allocate(4), 8192L));
+
+		File dataFile = file.getFile();
+		assertTrue(file.delete());
+		assertFalse(dataFile.exists());
+		file = new MappedNioFile(dataFile, true);
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link NativeStore#bulkLoad(java.util.Iterator)}.
+ */
+public class NativeStoreBulkLoadTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testBulkLoad() throws Exception {
+		File dataDir = tempDir.newFolder("nativestore");
+		IRI ctx = vf.createIRI("urn:ctx");
+
+		List<Statement> statements = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			IRI subj = vf.createIRI("urn:s" + i);
+			statements.add(vf.createStatement(subj, RDFS.LABEL, vf.createLiteral(i)));
+			statements.add(vf.createStatement(subj, RDFS.LABEL, vf.createLiteral(i), ctx));
+		}
+		// duplicates are ignored
+		statements.addAll(statements.subList(0, 10));
+		Collections.shuffle(statements);
+
+		NativeStore store = new NativeStore(dataDir, "spoc,posc,cspo");
+		// use a small buffer to force multiple sorted runs
+		assertEquals(2000, store.bulkLoad(statements.iterator(), 300));
+
+		store.init();
+		try (SailConnection con = store.getConnection()) {
+			assertEquals(2000, con.size());
+			assertEquals(1000, con.size(ctx));
+			assertThat(QueryResults.asList(con.getContextIDs())).containsExactly(ctx);
+			assertThat(QueryResults.asList(con.getStatements(vf.createIRI("urn:s42"), null, null, false)))
+					.hasSize(2);
+			assertThat(QueryResults.asList(con.getStatements(null, null, vf.createLiteral(42), false))).hasSize(2);
+
+			// the store can be modified as usual afterwards
+			con.begin();
+			con.removeStatements(null, null, null, ctx);
+			con.commit();
+			assertEquals(1000, con.size());
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBulkLoadNonEmptyStore() throws Exception {
+		File dataDir = tempDir.newFolder("nativestore");
+		Statement st = vf.createStatement(RDFS.CLASS, RDFS.LABEL, vf.createLiteral("class"));
+
+		NativeStore store = new NativeStore(dataDir);
+		store.bulkLoad(Collections.singletonList(st).iterator());
+		store.bulkLoad(Collections.singletonList(st).iterator());
+	}
+}
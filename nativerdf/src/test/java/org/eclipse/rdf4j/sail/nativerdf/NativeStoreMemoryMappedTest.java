@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.IOException;
+
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.SailException;
+
+/**
+ * Runs the {@link NativeStoreTest} tests against a {@link NativeStore} that reads its files through memory mappings.
+ */
+public class NativeStoreMemoryMappedTest extends NativeStoreTest {
+
+	@Override
+	protected NotifyingSail createSail() throws SailException {
+		try {
+			NativeStore sail = new NativeStore(tempDir.newFolder("nativestore"), "spoc,posc");
+			sail.setMemoryMapped(true);
+			sail.init();
+			return sail;
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link NativeStore#addTripleIndex(String, TripleIndexListener)} and
+ * {@link NativeStore#removeTripleIndex(String, TripleIndexListener)}.
+ */
+public class NativeStoreOnlineIndexTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void testAddIndexDuringUpdates() throws Exception {
+		File dataDir = tempDir.newFolder("nativestore");
+		NativeStore store = new NativeStore(dataDir, "spoc");
+		store.init();
+		try (SailConnection con = store.getConnection()) {
+			con.begin();
+			for (int i = 0; i < 1000; i++) {
+				con.addStatement(vf.createIRI("urn:s" + i), RDFS.LABEL, vf.createLiteral(i % 10));
+			}
+			con.commit();
+
+			List<String> events = new CopyOnWriteArrayList<>();
+			Future<Void> indexAdded = store.addTripleIndex("opsc", new TripleIndexListener() {
+
+				@Override
+				public void indexAdded(String indexSpec) {
+					events.add("added " + indexSpec);
+				}
+			});
+
+			// the store remains writable while the index is built
+			int i = 1000;
+			do {
+				con.begin();
+				con.addStatement(vf.createIRI("urn:s" + i), RDFS.LABEL, vf.createLiteral(i % 10));
+				con.removeStatements(vf.createIRI("urn:s" + (i - 1000)), null, null);
+				con.commit();
+				i++;
+			} while (!indexAdded.isDone());
+			indexAdded.get();
+
+			assertThat(events).containsExactly("added opsc");
+			assertEquals("spoc,opsc", store.getTripleIndexes());
+			assertEquals(1000, con.size());
+			assertEquals(100, QueryResults.asList(con.getStatements(null, null, vf.createLiteral(3), false)).size());
+		} finally {
+			store.shutDown();
+		}
+
+		// the index is retained when the store is reopened without explicit index configuration
+		store = new NativeStore(dataDir);
+		store.init();
+		try (SailConnection con = store.getConnection()) {
+			assertEquals(100, QueryResults.asList(con.getStatements(null, null, vf.createLiteral(7), false)).size());
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void testRemoveIndexWithOpenIterator() throws Exception {
+		File dataDir = tempDir.newFolder("nativestore");
+		NativeStore store = new NativeStore(dataDir, "spoc,posc");
+		store.init();
+		try (SailConnection con = store.getConnection()) {
+			IRI pred = vf.createIRI("urn:p");
+			con.begin();
+			for (int i = 0; i < 100; i++) {
+				con.addStatement(vf.createIRI("urn:s" + i), pred, vf.createLiteral(i));
+			}
+			con.commit();
+
+			// the index is removed while it is in use
+			Future<Void> indexRemoved;
+			int count = 0;
+			try (CloseableIteration<? extends Statement, SailException> iter = con.getStatements(null, pred, null,
+					false)) {
+				assertThat(iter.hasNext()).isTrue();
+				indexRemoved = store.removeTripleIndex("posc", null);
+				while (iter.hasNext()) {
+					iter.next();
+					count++;
+				}
+			}
+			assertEquals(100, count);
+
+			indexRemoved.get();
+			assertEquals("spoc", store.getTripleIndexes());
+			assertEquals(100, QueryResults.asList(con.getStatements(null, pred, null, false)).size());
+			assertThat(new File(dataDir, "triples-posc.dat")).doesNotExist();
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void testRemoveLastIndex() throws Exception {
+		NativeStore store = new NativeStore(tempDir.newFolder("nativestore"), "spoc");
+		store.init();
+		try {
+			store.removeTripleIndex("spoc", null).get();
+			fail("the only index must not be removed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+		} finally {
+			store.shutDown();
+		}
+		assertEquals("spoc", store.getTripleIndexes());
+	}
+}
@@ -75,7 +75,7 @@ public class NativeStoreTxnTest {
 		for (File file : repoDir.listFiles()) {
 			System.out.println("# " + file.getName());
 		}
-		Assert.assertEquals(15, repoDir.listFiles().length);
+		Assert.assertEquals(17, repoDir.listFiles().length);
 
 		// make sure there is no txncacheXXX.dat file
 		Assert.assertFalse(Files.list(repoDir.getAbsoluteFile().toPath())
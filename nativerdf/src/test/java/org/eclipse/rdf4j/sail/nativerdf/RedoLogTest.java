@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link RedoLog}.
+ */
+public class RedoLogTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private File dataDir;
+
+	private File crashDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = tempDir.newFolder();
+		crashDir = tempDir.newFolder();
+	}
+
+	@Test
+	public void testReplayRestoresLoggedWrites() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, false);
+			file.writeBytes(new byte[] { 1, 2, 3, 4 }, 0);
+			file.writeInt(42, 4);
+			file.writeLong(43L, 8);
+			file.writeLong(44L, 16);
+			file.truncate(16);
+			redoLog.sync(redoLog.getPosition());
+
+			// Simulate a crash that lost all writes to the file itself
+			copyLogSegments(dataDir, crashDir);
+		}
+		redoLog.close();
+
+		new RedoLog(crashDir).close();
+
+		try (MappedNioFile file = new MappedNioFile(new File(crashDir, "test.dat"), false)) {
+			assertEquals(16, file.size());
+			assertArrayEquals(new byte[] { 1, 2, 3, 4 }, file.readBytes(0, 4));
+			assertEquals(42, file.readInt(4));
+			assertEquals(43L, file.readLong(8));
+		}
+	}
+
+	@Test
+	public void testReplayIgnoresTornRecord() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, false);
+			file.writeInt(42, 0);
+			redoLog.sync(redoLog.getPosition());
+			copyLogSegments(dataDir, crashDir);
+		}
+		redoLog.close();
+
+		// Append the start of a record that was not written completely
+		File[] segments = crashDir.listFiles((dir, name) -> name.startsWith(RedoLog.FILE_PREFIX));
+		assertEquals(1, segments.length);
+		try (FileOutputStream out = new FileOutputStream(segments[0], true)) {
+			out.write(new byte[] { 0, 0, 0, 100, 1, 2, 3, 4, 1 });
+		}
+
+		new RedoLog(crashDir).close();
+
+		try (MappedNioFile file = new MappedNioFile(new File(crashDir, "test.dat"), false)) {
+			assertEquals(4, file.size());
+			assertEquals(42, file.readInt(0));
+		}
+	}
+
+	@Test
+	public void testReplayDeletesFiles() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		File dataFile = new File(dataDir, "test.dat");
+		MappedNioFile file = new MappedNioFile(dataFile, false);
+		file.setRedoLog(redoLog, false);
+		file.writeInt(42, 0);
+		assertTrue(file.delete());
+		redoLog.sync(redoLog.getPosition());
+		assertFalse(dataFile.exists());
+
+		copyLogSegments(dataDir, crashDir);
+		redoLog.close();
+
+		new RedoLog(crashDir).close();
+		assertFalse(new File(crashDir, "test.dat").exists());
+	}
+
+	@Test
+	public void testCheckpointDeletesOldSegments() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, true);
+			file.writeInt(42, 0);
+			redoLog.setBarrier();
+			file.writeInt(43, 4);
+
+			redoLog.checkpoint();
+			assertEquals(1, countLogSegments(dataDir));
+
+			// A checkpoint forces the file, after which the log no longer has to contain its writes
+			copyLogSegments(dataDir, crashDir);
+			Files.copy(file.getFile().toPath(), new File(crashDir, "test.dat").toPath());
+		}
+		redoLog.close();
+		assertEquals(0, countLogSegments(dataDir));
+
+		new RedoLog(crashDir).close();
+		assertEquals(0, countLogSegments(crashDir));
+		try (MappedNioFile file = new MappedNioFile(new File(crashDir, "test.dat"), false)) {
+			assertEquals(42, file.readInt(0));
+			assertEquals(43, file.readInt(4));
+		}
+	}
+
+	@Test
+	public void testTransactionalWritesWaitForBarrier() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, true);
+			file.writeLong(42L, 0);
+			file.writeLong(43L, 8);
+			redoLog.setBarrier();
+			file.writeInt(44, 4);
+			file.writeInt(45, 16);
+			file.writeInt(46, 20);
+			file.truncate(20);
+
+			// The changes after the barrier are pending, but visible to reads
+			assertEquals(20, file.size());
+			assertEquals(44, file.readInt(4));
+			assertEquals(43L, file.readLong(8));
+			assertEquals(45, file.readInt(16));
+			assertEquals(16, Files.size(file.getFile().toPath()));
+
+			redoLog.sync(redoLog.getPosition());
+			assertEquals(20, Files.size(file.getFile().toPath()));
+			assertEquals(44, file.readInt(4));
+			assertEquals(45, file.readInt(16));
+		}
+		redoLog.close();
+	}
+
+	@Test
+	public void testPendingTruncationHidesFileData() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, true);
+			file.writeLong(42L, 0);
+			file.writeLong(43L, 8);
+			redoLog.setBarrier();
+			file.truncate(4);
+			file.writeInt(44, 12);
+
+			assertEquals(16, file.size());
+			assertEquals(0, file.readInt(4));
+			assertEquals(0, file.readInt(8));
+			assertEquals(44, file.readInt(12));
+
+			file.truncate(0);
+			assertEquals(0, file.size());
+			assertEquals(-1, file.read(ByteBuffer.allocate(4), 0));
+		}
+		redoLog.close();
+
+		try (MappedNioFile file = new MappedNioFile(new File(dataDir, "test.dat"), false)) {
+			assertEquals(0, file.size());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAttachFileFromOtherDirectory() throws Exception {
+		RedoLog redoLog = new RedoLog(dataDir);
+		try (MappedNioFile file = new MappedNioFile(new File(crashDir, "test.dat"), false)) {
+			file.setRedoLog(redoLog, false);
+		} finally {
+			redoLog.close();
+		}
+	}
+
+	private static void copyLogSegments(File sourceDir, File targetDir) throws IOException {
+		for (File file : sourceDir.listFiles()) {
+			if (file.getName().startsWith(RedoLog.FILE_PREFIX)) {
+				Files.copy(file.toPath(), new File(targetDir, file.getName()).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private static int countLogSegments(File dir) {
+		return dir.listFiles((d, name) -> name.startsWith(RedoLog.FILE_PREFIX)).length;
+	}
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link SpillingRecordSet}.
+ */
+public class SpillingRecordSetTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = tempDir.newFolder();
+	}
+
+	@Test
+	public void testAddRemove() throws Exception {
+		SpillingRecordSet set = new SpillingRecordSet(dataDir, 8, 1024 * 1024);
+		assertTrue(set.add(record(1, 2)));
+		assertFalse(set.add(record(1, 2)));
+		assertTrue(set.add(record(1, 3)));
+		assertEquals(2, set.size());
+
+		assertTrue(set.contains(record(1, 2)));
+		assertFalse(set.contains(record(2, 1)));
+
+		assertTrue(set.remove(record(1, 2)));
+		assertFalse(set.remove(record(1, 2)));
+		assertFalse(set.contains(record(1, 2)));
+		assertEquals(1, set.size());
+
+		assertTrue(set.add(record(1, 2)));
+		assertEquals(2, set.size());
+		assertEquals(0, set.getRunCount());
+	}
+
+	@Test
+	public void testSpillToRuns() throws Exception {
+		// the smallest possible table, so that the records are spilled to disk
+		SpillingRecordSet set = new SpillingRecordSet(dataDir, 8, 0);
+		for (int i = 0; i < 5000; i++) {
+			set.add(record(i % 7, i));
+		}
+		for (int i = 0; i < 5000; i += 2) {
+			set.remove(record(i % 7, i));
+		}
+		assertTrue(set.getRunCount() > 0);
+		assertEquals(2500, set.size());
+
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i % 2 == 1, set.contains(record(i % 7, i)));
+		}
+
+		int count = 0;
+		byte[] last = null;
+		try (RecordIterator iter = set.iterateRange(null, null)) {
+			byte[] next;
+			while ((next = iter.next()) != null) {
+				if (last != null) {
+					assertTrue(ByteArrayUtil.compareRegion(last, 0, next, 0, 8) < 0);
+				}
+				assertEquals(1, ByteArrayUtil.getInt(next, 4) % 2);
+				last = next;
+				count++;
+			}
+		}
+		assertEquals(2500, count);
+
+		set.clear();
+		assertEquals(0, set.size());
+		assertEquals(0, set.getRunCount());
+		assertFalse(set.contains(record(1, 1)));
+	}
+
+	@Test
+	public void testIterateRange() throws Exception {
+		SpillingRecordSet set = new SpillingRecordSet(dataDir, 8, 0);
+		for (int i = 0; i < 3000; i++) {
+			set.add(record(i % 3, i));
+		}
+
+		assertEquals(1000, count(set.iterateRange(record(1, 0), record(1, Integer.MAX_VALUE))));
+		assertEquals(2, count(set.iterateRange(record(2, 2), record(2, 5))));
+		assertEquals(0, count(set.iterateRange(record(3, 0), null)));
+	}
+
+	@Test
+	public void testIterationIsSnapshot() throws Exception {
+		SpillingRecordSet set = new SpillingRecordSet(dataDir, 8, 1024 * 1024);
+		set.add(record(1, 1));
+		set.add(record(1, 2));
+
+		try (RecordIterator iter = set.iterateRange(null, null)) {
+			set.remove(record(1, 2));
+			set.add(record(1, 3));
+
+			assertEquals(1, ByteArrayUtil.getInt(iter.next(), 4));
+			assertEquals(2, ByteArrayUtil.getInt(iter.next(), 4));
+			assertNull(iter.next());
+		}
+		assertEquals(2, count(set.iterateRange(null, null)));
+	}
+
+	@Test
+	public void testRunsAreDeletedWhenNoLongerUsed() throws Exception {
+		SpillingRecordSet set = new SpillingRecordSet(dataDir, 8, 0);
+		for (int i = 0; i < 20000; i++) {
+			set.add(record(i % 7, i));
+		}
+		assertTrue(dataDir.list().length > 0);
+
+		RecordIterator iter = set.iterateRange(null, null);
+		set.clear();
+		// the runs are deleted, but are still read by the iterator
+		assertEquals(0, dataDir.list().length);
+		assertEquals(20000, count(iter));
+
+		set.add(record(1, 1));
+		set.close();
+		assertEquals(0, dataDir.list().length);
+	}
+
+	private static byte[] record(int first, int second) {
+		byte[] record = new byte[8];
+		ByteArrayUtil.putInt(first, record, 0);
+		ByteArrayUtil.putInt(second, record, 4);
+		return record;
+	}
+
+	private static int count(RecordIterator iter) throws IOException {
+		int count = 0;
+		try {
+			while (iter.next() != null) {
+				count++;
+			}
+		} finally {
+			iter.close();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link TripleDelta} and merging it into a {@link TripleStore}.
+ */
+public class TripleDeltaTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private File dataDir;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = tempDir.newFolder();
+	}
+
+	@Test
+	public void testLastChangeWins() throws Exception {
+		try (TripleDelta delta = new TripleDelta(dataDir, 4)) {
+			assertTrue(delta.isEmpty());
+
+			// enough changes to spill several sorted runs
+			for (int i = 10; i > 0; i--) {
+				delta.add(i, 1, 1, 0);
+				delta.remove(i, 1, 1, 0);
+				if (i % 2 == 0) {
+					delta.add(i, 1, 1, 0);
+				}
+			}
+			delta.remove(1, 2, 3, 4);
+			assertFalse(delta.isEmpty());
+
+			RecordCache added = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			RecordCache removed = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			try {
+				delta.getChanges(added, removed);
+
+				try (RecordIterator iter = added.getRecords()) {
+					for (int i = 2; i <= 10; i += 2) {
+						assertEquals(i, ByteArrayUtil.getInt(iter.next(), TripleStore.SUBJ_IDX));
+					}
+					assertNull(iter.next());
+				}
+				try (RecordIterator iter = removed.getRecords()) {
+					assertEquals(1, ByteArrayUtil.getInt(iter.next(), TripleStore.PRED_IDX));
+					assertEquals(2, ByteArrayUtil.getInt(iter.next(), TripleStore.PRED_IDX));
+					for (int i = 3; i <= 9; i += 2) {
+						assertEquals(i, ByteArrayUtil.getInt(iter.next(), TripleStore.SUBJ_IDX));
+					}
+					assertNull(iter.next());
+				}
+			} finally {
+				added.discard();
+				removed.discard();
+			}
+
+			delta.clear();
+			assertTrue(delta.isEmpty());
+		}
+	}
+
+	@Test
+	public void testMergeIntoTripleStore() throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(1, 1, 1, 0);
+			tripleStore.storeTriple(2, 1, 1, 5);
+			tripleStore.storeTriple(3, 1, 1, 5, false);
+			tripleStore.commit();
+
+			TripleDelta delta = new TripleDelta(dataDir, 2);
+			delta.add(1, 1, 1, 0);
+			delta.add(4, 1, 1, 5);
+			delta.add(5, 1, 1, 5);
+			delta.remove(2, 1, 1, 5);
+			// inferred triples are not removed by an explicit delta
+			delta.remove(3, 1, 1, 5);
+
+			tripleStore.startTransaction();
+			Map<Integer, Long> added;
+			Map<Integer, Long> removed;
+			RecordCache addedTriples = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			RecordCache removedTriples = new SequentialRecordCache(dataDir, TripleStore.RECORD_LENGTH);
+			try {
+				delta.getChanges(addedTriples, removedTriples);
+				delta.close();
+				removed = tripleStore.removeTriples(removedTriples.getRecords(), true);
+				added = tripleStore.storeTriples(addedTriples.getRecords(), true);
+			} finally {
+				addedTriples.discard();
+				removedTriples.discard();
+			}
+			tripleStore.commit();
+
+			assertEquals(1, added.size());
+			assertEquals(2L, added.get(5).longValue());
+			assertEquals(1, removed.size());
+			assertEquals(1L, removed.get(5).longValue());
+
+			assertEquals(4, countTriples(tripleStore, -1, -1, -1, -1));
+			assertEquals(0, countTriples(tripleStore, 2, -1, -1, -1));
+			assertEquals(1, countTriples(tripleStore, -1, 1, -1, 0));
+			assertEquals(1, countTriples(tripleStore, 3, 1, 1, 5));
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	private static int countTriples(TripleStore tripleStore, int subj, int pred, int obj, int context)
+			throws IOException {
+		int count = 0;
+		try (RecordIterator iter = tripleStore.getTriples(subj, pred, obj, context)) {
+			while (iter.next() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
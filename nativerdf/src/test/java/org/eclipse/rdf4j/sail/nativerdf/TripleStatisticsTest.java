@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link TripleStatistics} maintained by a {@link TripleStore}.
+ */
+public class TripleStatisticsTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	@Test
+	public void testStatisticsAreMaintainedOnCommit() throws Exception {
+		File dataDir = tempDir.newFolder("triplestore");
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc,posc");
+		try {
+			tripleStore.startTransaction();
+			for (int i = 1; i <= 1000; i++) {
+				// 100 subjects with 10 objects each for predicate 1, 10 objects for predicate 2
+				tripleStore.storeTriple(i % 100 + 1, 1, i, 0);
+				tripleStore.storeTriple(i, 2, i % 10 + 1, 0);
+			}
+			tripleStore.commit();
+
+			TripleStatistics statistics = tripleStore.getStatistics();
+			assertEquals(2000, statistics.getTripleCount());
+			assertEquals(1000, statistics.getTripleCount(1));
+			assertThat(statistics.getDistinctSubjectCount(1)).isBetween(80L, 120L);
+			assertThat(statistics.getDistinctObjectCount(2)).isBetween(8L, 12L);
+			assertThat(tripleStore.cardinality(-1, 2, 5, -1)).isBetween(80.0, 120.0);
+
+			tripleStore.startTransaction();
+			tripleStore.removeTriplesByContext(-1, 2, -1, -1);
+			tripleStore.storeTriple(1, 3, 1, 0);
+			tripleStore.commit();
+
+			// rolled back changes are not counted
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(1, 3, 2, 0);
+			tripleStore.rollback();
+
+			assertEquals(0, statistics.getTripleCount(2));
+			assertEquals(1, statistics.getTripleCount(3));
+			assertEquals(1001, statistics.getTripleCount());
+		} finally {
+			tripleStore.close();
+		}
+
+		// the statistics are stored with the triple store
+		tripleStore = new TripleStore(dataDir, null);
+		try {
+			assertEquals(1000, tripleStore.getStatistics().getTripleCount(1));
+			assertEquals(1001, tripleStore.getStatistics().getTripleCount());
+		} finally {
+			tripleStore.close();
+		}
+
+		// and are recomputed if they are missing
+		assertThat(new File(dataDir, TripleStatistics.FILE_NAME).delete()).isTrue();
+		tripleStore = new TripleStore(dataDir, null);
+		try {
+			assertEquals(1000, tripleStore.getStatistics().getTripleCount(1));
+			assertEquals(1001, tripleStore.getStatistics().getTripleCount());
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testStatisticsChangedAfterStoreAreNotLoaded() throws Exception {
+		File dataDir = tempDir.newFolder("statistics");
+		byte[] triple = new byte[TripleStore.RECORD_LENGTH];
+		ByteArrayUtil.putInt(1, triple, TripleStore.PRED_IDX);
+
+		TripleStatistics statistics = new TripleStatistics(dataDir, false);
+		statistics.add(triple);
+		statistics.store(true);
+		assertThat(new TripleStatistics(dataDir, false).load()).isTrue();
+
+		// simulate a crash after a change that was not stored
+		statistics.add(triple);
+		assertThat(new TripleStatistics(dataDir, false).load()).isFalse();
+
+		statistics.store(true);
+		TripleStatistics loaded = new TripleStatistics(dataDir, false);
+		assertThat(loaded.load()).isTrue();
+		assertEquals(2, loaded.getTripleCount(1));
+	}
+}
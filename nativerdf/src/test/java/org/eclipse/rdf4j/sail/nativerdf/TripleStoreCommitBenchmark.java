@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of committing a transaction to a {@link TripleStore} depending on the number of triple indexes.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 10)
+@BenchmarkMode({ Mode.AverageTime })
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TripleStoreCommitBenchmark {
+
+	private static final int TRIPLES_PER_TRANSACTION = 10_000;
+
+	@Param({ "spoc", "spoc,posc", "spoc,posc,opsc", "spoc,posc,opsc,cspo" })
+	public String indexes;
+
+	private File dataDir;
+
+	private TripleStore tripleStore;
+
+	private final Random random = new Random(42);
+
+	@Setup(Level.Iteration)
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("triplestore");
+		tripleStore = new TripleStore(dataDir, indexes);
+		System.gc();
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		try {
+			tripleStore.close();
+		} finally {
+			FileUtil.deleteDir(dataDir);
+		}
+	}
+
+	@Benchmark
+	public void commit() throws IOException {
+		tripleStore.startTransaction();
+		for (int i = 0; i < TRIPLES_PER_TRANSACTION; i++) {
+			tripleStore.storeTriple(random.nextInt(100_000) + 1, random.nextInt(100) + 1,
+					random.nextInt(100_000) + 1, random.nextInt(10));
+		}
+		tripleStore.commit();
+	}
+}
@@ -7,11 +7,17 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.nativerdf;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.common.io.FileUtil;
 import org.eclipse.rdf4j.sail.nativerdf.TxnStatusFile.TxnStatus;
 import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
@@ -91,4 +97,117 @@ public class TripleStoreRecoveryTest {
 		}
 	}
 
+	@Test
+	public void testCommitRecoveryFromJournal() throws Exception {
+		storeUncommittedTriple(1, 2, 3, 4);
+
+		// Pretend that commit was called and crashed after writing the journal
+		writeJournal(createRecord(1, 2, 3, 4, TripleStore.EXPLICIT_FLAG | TripleStore.ADDED_FLAG));
+		setTxnStatus(TxnStatus.COMMITTING);
+
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			try (RecordIterator iter = tripleStore.getTriples(-1, -1, -1, -1)) {
+				assertArrayEquals(createRecord(1, 2, 3, 4, TripleStore.EXPLICIT_FLAG), iter.next());
+				assertNull(iter.next());
+			}
+		} finally {
+			tripleStore.close();
+		}
+		assertEquals(0L, new File(dataDir, TxnJournalFile.FILE_NAME).length());
+	}
+
+	@Test
+	public void testRollbackRecoveryFromJournal() throws Exception {
+		storeUncommittedTriple(1, 2, 3, 4);
+
+		// Pretend that rollback was called and crashed after writing the journal
+		writeJournal(createRecord(1, 2, 3, 4, TripleStore.EXPLICIT_FLAG | TripleStore.ADDED_FLAG));
+		setTxnStatus(TxnStatus.ROLLING_BACK);
+
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			try (RecordIterator iter = tripleStore.getTriples(-1, -1, -1, -1)) {
+				assertNull(iter.next());
+			}
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	@Test
+	public void testCommitRecoveryWithCorruptJournal() throws Exception {
+		storeUncommittedTriple(1, 2, 3, 4);
+
+		writeJournal(createRecord(1, 2, 3, 4, TripleStore.EXPLICIT_FLAG | TripleStore.ADDED_FLAG));
+		try (FileOutputStream out = new FileOutputStream(new File(dataDir, TxnJournalFile.FILE_NAME), true)) {
+			out.write(new byte[] { 1, 2, 3 });
+		}
+		setTxnStatus(TxnStatus.COMMITTING);
+
+		// The indexes are scanned instead
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			try (RecordIterator iter = tripleStore.getTriples(-1, -1, -1, -1)) {
+				assertArrayEquals(createRecord(1, 2, 3, 4, TripleStore.EXPLICIT_FLAG), iter.next());
+				assertNull(iter.next());
+			}
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	private void storeUncommittedTriple(int subj, int pred, int obj, int context) throws Exception {
+		TripleStore tripleStore = new TripleStore(dataDir, "spoc");
+		try {
+			tripleStore.startTransaction();
+			tripleStore.storeTriple(subj, pred, obj, context);
+		} finally {
+			tripleStore.close();
+		}
+	}
+
+	private void writeJournal(byte[]... records) throws Exception {
+		TxnJournalFile txnJournalFile = new TxnJournalFile(dataDir, TripleStore.RECORD_LENGTH, false);
+		try {
+			Iterator<byte[]> iter = Arrays.asList(records).iterator();
+			txnJournalFile.write(new RecordIterator() {
+
+				@Override
+				public byte[] next() {
+					return iter.hasNext() ? iter.next() : null;
+				}
+
+				@Override
+				public void set(byte[] record) {
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		} finally {
+			txnJournalFile.close();
+		}
+	}
+
+	private void setTxnStatus(TxnStatus txnStatus) throws Exception {
+		TxnStatusFile txnStatusFile = new TxnStatusFile(dataDir);
+		try {
+			txnStatusFile.setTxnStatus(txnStatus);
+		} finally {
+			txnStatusFile.close();
+		}
+	}
+
+	private static byte[] createRecord(int subj, int pred, int obj, int context, int flags) {
+		byte[] record = new byte[TripleStore.RECORD_LENGTH];
+		ByteArrayUtil.putInt(subj, record, TripleStore.SUBJ_IDX);
+		ByteArrayUtil.putInt(pred, record, TripleStore.PRED_IDX);
+		ByteArrayUtil.putInt(obj, record, TripleStore.OBJ_IDX);
+		ByteArrayUtil.putInt(context, record, TripleStore.CONTEXT_IDX);
+		record[TripleStore.FLAG_IDX] = (byte) flags;
+		return record;
+	}
 }
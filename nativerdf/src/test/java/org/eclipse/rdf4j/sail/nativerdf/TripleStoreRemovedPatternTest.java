@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.eclipse.rdf4j.sail.nativerdf.btree.RecordIterator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that triples removed by pattern in a transaction are removed from all indexes upon commit.
+ */
+public class TripleStoreRemovedPatternTest {
+
+	private File dataDir;
+
+	private TripleStore tripleStore;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("nativestore");
+		tripleStore = new TripleStore(dataDir, "spoc,posc,cspo");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		tripleStore.close();
+		FileUtil.deleteDir(dataDir);
+		dataDir = null;
+	}
+
+	@Test
+	public void testRemoveContextAndStoreAgain() throws Exception {
+		tripleStore.startTransaction();
+		for (int i = 1; i <= 10; i++) {
+			tripleStore.storeTriple(i, 2, 3, 4);
+			tripleStore.storeTriple(i, 2, 3, 5);
+		}
+		tripleStore.commit();
+
+		tripleStore.startTransaction();
+		tripleStore.removeTriples(-1, -1, -1, 4);
+		tripleStore.removeTriples(1, 2, 3, 5);
+		tripleStore.storeTriple(7, 2, 3, 4);
+		tripleStore.commit();
+
+		assertEquals(1, count(-1, -1, -1, 4));
+		assertEquals(2, count(7, -1, -1, -1));
+		assertEquals(9, count(-1, -1, -1, 5));
+		assertEquals(10, count(-1, 2, -1, -1));
+	}
+
+	@Test
+	public void testRemoveManyPatterns() throws Exception {
+		tripleStore.startTransaction();
+		for (int i = 1; i <= 2000; i++) {
+			tripleStore.storeTriple(1000 + i, 9, 3, 4);
+		}
+		for (int i = 1; i <= 20; i++) {
+			tripleStore.storeTriple(i, 2, 3, 4);
+		}
+		tripleStore.storeTriple(99, 3, 3, 4);
+		tripleStore.commit();
+
+		// more patterns than are kept track of, triples matching the other patterns are removed one by one
+		tripleStore.startTransaction();
+		tripleStore.removeTriples(-1, 3, -1, -1);
+		for (int i = 1; i <= 20; i++) {
+			tripleStore.removeTriples(i, -1, -1, -1);
+		}
+		tripleStore.storeTriple(99, 3, 3, 4);
+		tripleStore.storeTriple(5, 2, 3, 4);
+		tripleStore.commit();
+
+		assertEquals(2002, count(-1, -1, -1, -1));
+		assertEquals(1, count(-1, 3, -1, -1));
+		assertEquals(1, count(5, -1, -1, -1));
+		assertEquals(0, count(6, -1, -1, -1));
+		assertEquals(2002, count(-1, -1, -1, 4));
+	}
+
+	private int count(int subj, int pred, int obj, int context) throws Exception {
+		int count = 0;
+		try (RecordIterator iter = tripleStore.getTriples(subj, pred, obj, context)) {
+			while (iter.next() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -7,11 +7,19 @@
  *******************************************************************************/
 package org.eclipse.rdf4j.sail.nativerdf.btree;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
+import org.eclipse.rdf4j.common.io.ByteArrayUtil;
 import org.eclipse.rdf4j.common.io.FileUtil;
 import org.junit.After;
 import org.junit.Before;
@@ -136,11 +144,279 @@ public class BTreeTest {
 		}
 	}
 
+	@Test
+	public void testBulkLoad() throws Exception {
+		for (int size = 0; size <= TEST_VALUES.size(); size++) {
+			btree.clear();
+			List<byte[]> values = TEST_VALUES.subList(0, size);
+
+			assertEquals(size, btree.bulkLoad(new ListRecordIterator(values)));
+
+			try (RecordIterator iter = btree.iterateAll()) {
+				for (byte[] value : values) {
+					assertArrayEquals(value, iter.next());
+				}
+				assertNull(iter.next());
+			}
+			for (byte[] value : values) {
+				assertArrayEquals(value, btree.get(value));
+			}
+		}
+	}
+
+	@Test
+	public void testBulkLoadThenModify() throws Exception {
+		btree.bulkLoad(new ListRecordIterator(TEST_VALUES.subList(0, 200)));
+
+		for (byte[] value : TEST_VALUES) {
+			btree.insert(value);
+		}
+		for (byte[] value : RANDOMIZED_TEST_VALUES) {
+			assertArrayEquals(value, btree.remove(value));
+		}
+
+		try (RecordIterator iter = btree.iterateAll()) {
+			assertNull(iter.next());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testBulkLoadNonEmpty() throws Exception {
+		btree.insert(TEST_VALUES.get(0));
+		btree.bulkLoad(new ListRecordIterator(TEST_VALUES.subList(1, 2)));
+	}
+
+	@Test
+	public void testRemoveRange() throws Exception {
+		testAddRandom();
+
+		btree.removeRange(TEST_VALUES.get(10), TEST_VALUES.get(200));
+
+		try (RecordIterator iter = btree.iterateAll()) {
+			for (int i = 0; i < TEST_VALUES.size(); i++) {
+				if (i < 10 || i > 200) {
+					assertArrayEquals(TEST_VALUES.get(i), iter.next());
+				}
+			}
+			assertNull(iter.next());
+		}
+
+		// The tree remains usable after dropping its nodes
+		for (byte[] value : RANDOMIZED_TEST_VALUES) {
+			btree.insert(value);
+		}
+		btree.removeRange(TEST_VALUES.get(0), TEST_VALUES.get(TEST_VALUES.size() - 1));
+		assertTrue(btree.isEmpty());
+	}
+
+	@Test
+	public void testRemoveRangeWithOpenIterator() throws Exception {
+		testAddRandom();
+
+		try (RecordIterator iter = btree.iterateAll()) {
+			assertArrayEquals(TEST_VALUES.get(0), iter.next());
+
+			btree.removeRange(TEST_VALUES.get(1), TEST_VALUES.get(99));
+
+			assertArrayEquals(TEST_VALUES.get(100), iter.next());
+		}
+		for (int i = 1; i < 100; i++) {
+			assertNull(btree.get(TEST_VALUES.get(i)));
+		}
+		assertArrayEquals(TEST_VALUES.get(100), btree.get(TEST_VALUES.get(100)));
+	}
+
 	@Test
 	public void testNewAndClear() throws Exception {
 		btree.clear();
 	}
 
+	@Test
+	public void testCompressedLeaves() throws Exception {
+		// Values resembling triple records: four integer IDs and a flag byte
+		List<byte[]> values = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			byte[] value = new byte[17];
+			ByteArrayUtil.putInt(i / 50, value, 0);
+			ByteArrayUtil.putInt(i % 50 / 10, value, 4);
+			ByteArrayUtil.putInt(i * 31, value, 8);
+			value[16] = (byte) (i % 3);
+			values.add(value);
+		}
+		List<byte[]> randomizedValues = new ArrayList<>(values);
+		Collections.shuffle(randomizedValues, new Random(42));
+
+		BTree compressed = new BTree(dir, "compressed", 2048, 17, new DefaultRecordComparator(), false, false, true);
+		BTree uncompressed = new BTree(dir, "uncompressed", 2048, 17);
+		try {
+			assertTrue(compressed.hasCompressedLeaves());
+			assertFalse(uncompressed.hasCompressedLeaves());
+
+			for (byte[] value : randomizedValues) {
+				compressed.insert(value);
+				uncompressed.insert(value);
+			}
+			compressed.sync();
+			uncompressed.sync();
+
+			assertTrue(new File(dir, "compressed.dat").length() * 2 < new File(dir, "uncompressed.dat").length());
+		} finally {
+			uncompressed.delete();
+			compressed.close();
+		}
+
+		// The compression format is stored in the file
+		compressed = new BTree(dir, "compressed", 2048, 17);
+		try {
+			assertTrue(compressed.hasCompressedLeaves());
+
+			try (RecordIterator iter = compressed.iterateAll()) {
+				for (byte[] value : values) {
+					assertArrayEquals(value, iter.next());
+				}
+				assertNull(iter.next());
+			}
+
+			for (byte[] value : randomizedValues) {
+				assertArrayEquals(value, compressed.remove(value));
+			}
+			assertTrue(compressed.isEmpty());
+		} finally {
+			compressed.delete();
+		}
+	}
+
+	@Test
+	public void testRemoveFromFullCompressedLeaf() throws Exception {
+		BTree compressed = new BTree(dir, "compressed", 2048, 17, new DefaultRecordComparator(), false, false, true);
+		List<byte[]> values = new ArrayList<>();
+		try {
+			// Large IDs that are close together: only the first value is stored in full, the others as small
+			// differences, until the root leaf node is full
+			for (int i = 0; values.isEmpty() || !isRootFull(compressed); i++) {
+				byte[] value = new byte[17];
+				ByteArrayUtil.putInt(0x70000000 + i / 7, value, 0);
+				ByteArrayUtil.putInt(0x60000000 + i % 7, value, 4);
+				ByteArrayUtil.putInt(0x50000000 + i * 131, value, 8);
+				ByteArrayUtil.putInt(0x40000000 - i, value, 12);
+				compressed.insert(value);
+				values.add(value);
+			}
+
+			// The value after the removed first value is now stored in full, the value after the removed middle
+			// value relative to the value before it
+			assertArrayEquals(values.get(0), compressed.remove(values.remove(0)));
+			byte[] middle = values.remove(values.size() / 2);
+			assertArrayEquals(middle, compressed.remove(middle));
+			compressed.sync();
+		} finally {
+			compressed.close();
+		}
+
+		compressed = new BTree(dir, "compressed", 2048, 17);
+		try (RecordIterator iter = compressed.iterateAll()) {
+			for (byte[] value : values) {
+				assertArrayEquals(value, iter.next());
+			}
+			assertNull(iter.next());
+		} finally {
+			compressed.delete();
+		}
+	}
+
+	@Test
+	public void testSplitCompressedLeavesKeepMinimumValueCount() throws Exception {
+		BTree compressed = new BTree(dir, "compressed", 2048, 17, new DefaultRecordComparator(), false, false, true);
+		try {
+			// Random values that hardly compress, so that leaf nodes are split by size rather than by value count
+			Random random = new Random(42);
+			for (int i = 0; i < 20_000; i++) {
+				compressed.insert(createRandomValue(random, random.nextInt()));
+			}
+
+			Node root = compressed.readRootNode();
+			try {
+				assertFalse(root.isLeaf());
+				assertMinValueCounts(root);
+			} finally {
+				root.release();
+			}
+		} finally {
+			compressed.delete();
+		}
+	}
+
+	@Test
+	public void testSplitCompressedLeafBySize() throws Exception {
+		BTree compressed = new BTree(dir, "compressed", 2048, 17, new DefaultRecordComparator(), false, false, true);
+		try {
+			// Values that compress well, followed by values that hardly compress
+			for (int i = 0; i < 300; i++) {
+				byte[] value = new byte[17];
+				ByteArrayUtil.putInt(i, value, 12);
+				compressed.insert(value);
+			}
+			Random random = new Random(42);
+			while (!isRootFull(compressed)) {
+				compressed.insert(createRandomValue(random, 1));
+			}
+			compressed.insert(createRandomValue(random, 1));
+
+			Node root = compressed.readRootNode();
+			try {
+				assertEquals(1, root.getValueCount());
+				Node left = root.getChildNode(0);
+				Node right = root.getChildNode(1);
+				try {
+					// Most values that compress well stay in the left node
+					assertTrue(left.getValueCount() > 2 * right.getValueCount());
+					assertTrue(right.getValueCount() >= right.getMinValueCount());
+				} finally {
+					left.release();
+					right.release();
+				}
+			} finally {
+				root.release();
+			}
+		} finally {
+			compressed.delete();
+		}
+	}
+
+	private static byte[] createRandomValue(Random random, int firstId) {
+		byte[] value = new byte[17];
+		ByteArrayUtil.putInt(firstId, value, 0);
+		for (int j = 4; j < 16; j += 4) {
+			ByteArrayUtil.putInt(random.nextInt(), value, j);
+		}
+		return value;
+	}
+
+	private static void assertMinValueCounts(Node node) throws Exception {
+		for (int i = 0; i <= node.getValueCount(); i++) {
+			Node child = node.getChildNode(i);
+			try {
+				assertTrue(child.getValueCount() + " < " + child.getMinValueCount(),
+						child.getValueCount() >= child.getMinValueCount());
+				if (!child.isLeaf()) {
+					assertMinValueCounts(child);
+				}
+			} finally {
+				child.release();
+			}
+		}
+	}
+
+	private static boolean isRootFull(BTree tree) throws Exception {
+		Node root = tree.readRootNode();
+		try {
+			assertTrue(root.isLeaf());
+			return root.isFull();
+		} finally {
+			root.release();
+		}
+	}
+
 	/*
 	 * Test for SES-527 public void testRootNodeSplit() throws Exception { // Fill the root node for (int i = 0; i < 15;
 	 * i++) { btree.insert(TEST_VALUES.get(i)); } // Fire up an iterator RecordIterator iter = btree.iterateAll();
@@ -148,4 +424,29 @@ public class BTreeTest {
 	 * returns all 15 elements int count = 0; while (iter.next() != null) { count++; } iter.close(); assertEquals(15,
 	 * count); }
 	 */
+
+	private static class ListRecordIterator implements RecordIterator {
+
+		private final List<byte[]> values;
+
+		private int position = 0;
+
+		public ListRecordIterator(List<byte[]> values) {
+			this.values = values;
+		}
+
+		@Override
+		public byte[] next() {
+			return position < values.size() ? values.get(position++) : null;
+		}
+
+		@Override
+		public void set(byte[] record) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.nativerdf.datastore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.eclipse.rdf4j.common.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DataStore}.
+ */
+public class DataStoreTest {
+
+	private File dataDir;
+
+	private DataStore dataStore;
+
+	@Before
+	public void setUp() throws Exception {
+		dataDir = FileUtil.createTempDir("datastore");
+		dataStore = new DataStore(dataDir, "values");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		dataStore.close();
+		FileUtil.deleteDir(dataDir);
+	}
+
+	@Test
+	public void testGetDataBatch() throws Exception {
+		Random random = new Random(42);
+		byte[][] values = new byte[2000][];
+		for (int i = 0; i < values.length; i++) {
+			// mostly small values, with a few that are larger than the read-ahead window
+			int length = i % 500 == 0 ? 100_000 : random.nextInt(600);
+			values[i] = new byte[length];
+			random.nextBytes(values[i]);
+			// values must be unique
+			values[i] = Arrays.copyOf(values[i], length + 4);
+			values[i][length] = (byte) (i >> 24);
+			values[i][length + 1] = (byte) (i >> 16);
+			values[i][length + 2] = (byte) (i >> 8);
+			values[i][length + 3] = (byte) i;
+			assertEquals(i + 1, dataStore.storeData(values[i]));
+		}
+
+		int[] ids = new int[5000];
+		for (int i = 0; i < ids.length; i++) {
+			// includes duplicates
+			ids[i] = random.nextInt(values.length) + 1;
+		}
+		ids[0] = values.length + 10;
+
+		byte[][] data = dataStore.getData(ids);
+		assertEquals(ids.length, data.length);
+		assertNull(data[0]);
+		for (int i = 1; i < ids.length; i++) {
+			assertArrayEquals(values[ids[i] - 1], data[i]);
+			assertArrayEquals(dataStore.getData(ids[i]), data[i]);
+		}
+	}
+
+	@Test
+	public void testTags() throws Exception {
+		int id1 = dataStore.storeData(new byte[] { 1, 10, 11 });
+		int id2 = dataStore.storeData(new byte[] { 3, 12 });
+		int id3 = dataStore.storeData(new byte[] { (byte) 0xff });
+
+		byte[] tags = dataStore.getTags(new int[] { id3, id1, id2, id1 });
+		assertArrayEquals(new byte[] { (byte) 0xff, 1, 3, 1 }, tags);
+		assertArrayEquals(new byte[] { 3, 12 }, dataStore.getData(id2));
+	}
+
+	@Test
+	public void testUpgradeUntaggedIDFile() throws Exception {
+		for (int i = 0; i < 5000; i++) {
+			dataStore.storeData(new byte[] { (byte) (i % 3 + 1), (byte) (i >> 8), (byte) i });
+		}
+		dataStore.close();
+
+		// Rewrite the ID file in the format that did not store tags
+		File file = new File(dataDir, "values.id");
+		try (IDFile idFile = new IDFile(file)) {
+			for (int id = 1; id <= 5000; id++) {
+				idFile.setOffset(id, idFile.getOffset(id));
+			}
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(3);
+			raf.writeByte(1);
+		}
+
+		dataStore = new DataStore(dataDir, "values");
+
+		int[] ids = new int[5000];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = i + 1;
+		}
+		byte[] tags = dataStore.getTags(ids);
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(i % 3 + 1, tags[i]);
+			assertArrayEquals(new byte[] { (byte) (i % 3 + 1), (byte) (i >> 8), (byte) i }, dataStore.getData(i + 1));
+		}
+		assertEquals(5001, dataStore.storeData(new byte[] { 2, 0 }));
+		assertEquals(2, dataStore.getTags(new int[] { 5001 })[0]);
+	}
+}
@@ -23,14 +23,22 @@ import org.eclipse.rdf4j.query.algebra.StatementPattern;
 import org.eclipse.rdf4j.query.algebra.Var;
 import org.eclipse.rdf4j.sail.SailConflictException;
 import org.eclipse.rdf4j.sail.SailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Set of changes applied to an {@link SailSourceBranch} awaiting to be flushed into its backing {@link SailSource}.
+ * <p>
+ * Once the branch no longer needs a changeset, it is {@link #discard() discarded}. Its {@link Model}s are released as
+ * soon as they are no longer read by {@link SailDataset}s or other changesets: models that are {@link AutoCloseable},
+ * and that may hold resources such as off-heap memory or temporary files, are closed.
  * 
  * @author James Leigh
  */
 abstract class Changeset implements SailSink, ModelFactory {
 
+	private static final Logger logger = LoggerFactory.getLogger(Changeset.class);
+
 	/**
 	 * Set of {@link SailDataset}s that are currently using this {@link Changeset} to derive the state of the
 	 * {@link SailSource}.
@@ -43,6 +51,27 @@ abstract class Changeset implements SailSink, ModelFactory {
 	 */
 	private Set<Changeset> prepend;
 
+	/**
+	 * {@link Changeset}s that may still read the models of this {@link Changeset}: the changesets that have it in their
+	 * {@link #prepend} set, and the changeset that this object took over the models from.
+	 */
+	private Set<Changeset> readers;
+
+	/**
+	 * The {@link Changeset} that took over the models of this object, if any.
+	 */
+	private Changeset modelOwner;
+
+	/**
+	 * If the {@link SailSourceBranch} no longer needs this object.
+	 */
+	private boolean discarded;
+
+	/**
+	 * If the models have been released.
+	 */
+	private boolean released;
+
 	/**
 	 * When in {@link IsolationLevels#SERIALIZABLE} this contains all the observed {@link StatementPattern}s that were
 	 * observed by {@link ObservingSailDataset}.
@@ -91,7 +120,28 @@ abstract class Changeset implements SailSink, ModelFactory {
 
 	@Override
 	public void close() throws SailException {
-		// no-op
+		// the prepended changesets are only read while preparing
+		Set<Changeset> prepended;
+		synchronized (this) {
+			prepended = prepend;
+			prepend = null;
+		}
+		if (prepended != null) {
+			for (Changeset changeset : prepended) {
+				changeset.removeReader(this);
+			}
+		}
+	}
+
+	/**
+	 * Marks this object as no longer needed by its {@link SailSourceBranch}. The models are released once they are no
+	 * longer read.
+	 */
+	void discard() {
+		synchronized (this) {
+			discarded = true;
+		}
+		releaseIfUnused();
 	}
 
 	@Override
@@ -127,21 +177,81 @@ abstract class Changeset implements SailSink, ModelFactory {
 		refbacks.add(dataset);
 	}
 
-	public synchronized void removeRefback(SailDatasetImpl dataset) {
-		if (refbacks != null) {
-			refbacks.remove(dataset);
+	public void removeRefback(SailDatasetImpl dataset) {
+		synchronized (this) {
+			if (refbacks != null) {
+				refbacks.remove(dataset);
+			}
 		}
+		releaseIfUnused();
 	}
 
 	public synchronized boolean isRefback() {
 		return refbacks != null && !refbacks.isEmpty();
 	}
 
-	public synchronized void prepend(Changeset changeset) {
-		if (prepend == null) {
-			prepend = new HashSet<>();
+	public void prepend(Changeset changeset) {
+		boolean added;
+		synchronized (this) {
+			if (prepend == null) {
+				prepend = new HashSet<>();
+			}
+			added = prepend.add(changeset);
+		}
+		if (added) {
+			changeset.addReader(this);
+		}
+	}
+
+	private synchronized void addReader(Changeset changeset) {
+		if (readers == null) {
+			readers = new HashSet<>();
+		}
+		readers.add(changeset);
+	}
+
+	private void removeReader(Changeset changeset) {
+		synchronized (this) {
+			if (readers != null) {
+				readers.remove(changeset);
+			}
+		}
+		releaseIfUnused();
+	}
+
+	/**
+	 * Releases the models if this object has been discarded and is no longer read.
+	 */
+	private void releaseIfUnused() {
+		Model approvedModel;
+		Model deprecatedModel;
+		Changeset owner;
+		synchronized (this) {
+			if (!discarded || released || isRefback() || readers != null && !readers.isEmpty()) {
+				return;
+			}
+			released = true;
+			approvedModel = approved;
+			deprecatedModel = deprecated;
+			owner = modelOwner;
+		}
+		if (owner != null) {
+			// the models are released by their new owner
+			owner.removeReader(this);
+		} else {
+			release(approvedModel);
+			release(deprecatedModel);
+		}
+	}
+
+	private static void release(Model model) {
+		if (model instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) model).close();
+			} catch (Exception e) {
+				logger.warn("Failed to release changeset model", e);
+			}
 		}
-		prepend.add(changeset);
 	}
 
 	@Override
@@ -292,7 +402,15 @@ abstract class Changeset implements SailSink, ModelFactory {
 		}
 	}
 
+	/**
+	 * Takes over the changes of another {@link Changeset}, including its models. The models are released by this
+	 * object, once the other changeset no longer reads them either.
+	 */
 	protected void setChangeset(Changeset from) {
+		synchronized (from) {
+			from.modelOwner = this;
+		}
+		addReader(from);
 		this.observations = from.observations;
 		this.approved = from.approved;
 		this.deprecated = from.deprecated;
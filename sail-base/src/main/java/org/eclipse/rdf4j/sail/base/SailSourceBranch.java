@@ -144,10 +144,19 @@ class SailSourceBranch implements SailSource {
 			} finally {
 				SailSink toClosePrepared = prepared;
 				prepared = null;
-				if (toClosePrepared != null) {
-					toClosePrepared.close();
+				try {
+					if (toClosePrepared != null) {
+						toClosePrepared.close();
+					}
+				} finally {
+					if (!autoFlush) {
+						// a fork is closed at the end of its life, changes that have not been flushed are dropped
+						for (Changeset change : changes) {
+							change.discard();
+						}
+						changes.clear();
+					}
 				}
-
 			}
 		} finally {
 			semaphore.unlock();
@@ -160,6 +169,8 @@ class SailSourceBranch implements SailSource {
 
 			private boolean prepared;
 
+			private boolean flushed;
+
 			@Override
 			public void prepare() throws SailException {
 				if (!prepared) {
@@ -171,6 +182,7 @@ class SailSourceBranch implements SailSource {
 
 			@Override
 			public void flush() throws SailException {
+				flushed = true;
 				merge(this);
 			}
 
@@ -179,6 +191,9 @@ class SailSourceBranch implements SailSource {
 				try {
 					super.close();
 				} finally {
+					if (!flushed) {
+						rollback(this);
+					}
 					if (prepared) {
 						closeChangeset(this);
 						prepared = false;
@@ -303,12 +318,27 @@ class SailSourceBranch implements SailSource {
 				for (Changeset c : pending) {
 					c.prepend(merged);
 				}
+			} else {
+				change.discard();
 			}
 		} finally {
 			semaphore.unlock();
 		}
 	}
 
+	/**
+	 * Drops a {@link Changeset} that is closed without having been flushed.
+	 */
+	void rollback(Changeset change) {
+		try {
+			semaphore.lock();
+			pending.remove(change);
+		} finally {
+			semaphore.unlock();
+		}
+		change.discard();
+	}
+
 	void compressChanges() {
 		try {
 			semaphore.lock();
@@ -326,6 +356,7 @@ class SailSourceBranch implements SailSource {
 					// Changeset does not throw SailException
 					throw new AssertionError(e);
 				}
+				pop.discard();
 			}
 
 		} finally {
@@ -446,12 +477,16 @@ class SailSourceBranch implements SailSource {
 					&& !isChanged((Changeset) sink)) {
 				// one change to apply that is not in use to an empty Changeset
 				Changeset dst = (Changeset) sink;
-				dst.setChangeset(changes.pop());
+				Changeset change = changes.pop();
+				dst.setChangeset(change);
+				change.discard();
 			} else {
 				Iterator<Changeset> iter = changes.iterator();
 				while (iter.hasNext()) {
-					flush(iter.next(), sink);
+					Changeset change = iter.next();
+					flush(change, sink);
 					iter.remove();
+					change.discard();
 				}
 			}
 		} finally {
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Eclipse RDF4J contributors.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *******************************************************************************/
+package org.eclipse.rdf4j.sail.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.rdf4j.IsolationLevel;
+import org.eclipse.rdf4j.IsolationLevels;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.CloseableIteratorIteration;
+import org.eclipse.rdf4j.common.iteration.EmptyIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ModelFactory;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.sail.SailException;
+import org.junit.Test;
+
+/**
+ * Tests that the models of the {@link Changeset}s of a {@link SailSourceBranch} are released once they are no longer
+ * used.
+ */
+public class SailSourceBranchTest {
+
+	private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final IRI subj = vf.createIRI("http://example.org/subj");
+
+	private final IRI pred = vf.createIRI("http://example.org/pred");
+
+	private final List<TrackingModel> models = Collections.synchronizedList(new ArrayList<>());
+
+	private final ModelFactory modelFactory = () -> {
+		TrackingModel model = new TrackingModel();
+		models.add(model);
+		return model;
+	};
+
+	private final ModelSailSource backingSource = new ModelSailSource();
+
+	@Test
+	public void testSinkClosedWithoutFlushIsReleased() throws Exception {
+		SailSourceBranch branch = new SailSourceBranch(backingSource, modelFactory, false);
+		SailSink sink = branch.sink(IsolationLevels.NONE);
+		sink.approve(subj, pred, vf.createLiteral(1), null);
+		sink.close();
+
+		assertFalse(branch.isChanged());
+		assertEquals(1, models.size());
+		assertTrue(models.get(0).closed);
+	}
+
+	@Test
+	public void testFlushedChangesAreReleasedAfterReaders() throws Exception {
+		SailSourceBranch branch = new SailSourceBranch(backingSource, modelFactory, false);
+		approve(branch, 1);
+
+		SailDataset dataset = branch.dataset(IsolationLevels.NONE);
+		branch.flush();
+		assertEquals(1, backingSource.committed.size());
+		assertFalse(models.get(0).closed);
+
+		// the dataset can still read the flushed changes
+		assertEquals(1, count(dataset, null));
+		dataset.close();
+		assertTrue(models.get(0).closed);
+	}
+
+	@Test
+	public void testConcurrentReadersDuringDiscard() throws Exception {
+		SailSourceBranch branch = new SailSourceBranch(backingSource, modelFactory, false);
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> readers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				readers.add(executor.submit(() -> {
+					while (!done.get()) {
+						SailDataset dataset = branch.dataset(IsolationLevels.NONE);
+						try {
+							// reading a released model fails, a pattern without matches reads the models without
+							// changing them
+							assertEquals(0, count(dataset, vf.createLiteral(-1)));
+						} finally {
+							dataset.close();
+						}
+					}
+					return null;
+				}));
+			}
+
+			for (int i = 0; i < 500; i++) {
+				approve(branch, i);
+				if (i % 10 == 0) {
+					branch.flush();
+				}
+			}
+			done.set(true);
+			for (Future<?> reader : readers) {
+				reader.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			done.set(true);
+			executor.shutdownNow();
+		}
+
+		branch.flush();
+		assertEquals(500, backingSource.committed.size());
+		for (TrackingModel model : models) {
+			assertTrue(model.closed);
+		}
+	}
+
+	@Test
+	public void testForkDiscardsUnflushedChangesOnClose() throws Exception {
+		SailSourceBranch branch = new SailSourceBranch(backingSource, modelFactory, false);
+		approve(branch, 1);
+		assertTrue(branch.isChanged());
+
+		branch.close();
+		assertFalse(branch.isChanged());
+		assertEquals(0, backingSource.committed.size());
+		assertEquals(1, models.size());
+		assertTrue(models.get(0).closed);
+	}
+
+	private void approve(SailSource source, int value) throws SailException {
+		SailSink sink = source.sink(IsolationLevels.NONE);
+		try {
+			sink.approve(subj, pred, vf.createLiteral(value), null);
+			sink.flush();
+		} finally {
+			sink.close();
+		}
+	}
+
+	private static int count(SailDataset dataset, Value obj) throws SailException {
+		int count = 0;
+		try (CloseableIteration<? extends Statement, SailException> iter = dataset.getStatements(null, null, obj)) {
+			while (iter.hasNext()) {
+				iter.next();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * A model that can no longer be read once it has been closed.
+	 */
+	private static class TrackingModel extends LinkedHashModel implements AutoCloseable {
+
+		private static final long serialVersionUID = 1L;
+
+		private volatile boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		@Override
+		public boolean contains(Resource subj, IRI pred, Value obj, Resource... contexts) {
+			checkOpen();
+			return super.contains(subj, pred, obj, contexts);
+		}
+
+		@Override
+		public Model filter(Resource subj, IRI pred, Value obj, Resource... contexts) {
+			checkOpen();
+			return super.filter(subj, pred, obj, contexts);
+		}
+
+		@Override
+		public Iterator<Statement> iterator() {
+			checkOpen();
+			return super.iterator();
+		}
+
+		private void checkOpen() {
+			if (closed) {
+				throw new IllegalStateException("Model has been released");
+			}
+		}
+	}
+
+	/**
+	 * A {@link SailSource} that applies the flushed statements to a model.
+	 */
+	private static class ModelSailSource implements SailSource {
+
+		final Model committed = new LinkedHashModel();
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public SailSource fork() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void prepare() {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public SailDataset dataset(IsolationLevel level) {
+			return new SailDataset() {
+
+				@Override
+				public void close() {
+				}
+
+				@Override
+				public CloseableIteration<? extends Namespace, SailException> getNamespaces() {
+					return new EmptyIteration<>();
+				}
+
+				@Override
+				public String getNamespace(String prefix) {
+					return null;
+				}
+
+				@Override
+				public CloseableIteration<? extends Resource, SailException> getContextIDs() {
+					return new EmptyIteration<>();
+				}
+
+				@Override
+				public CloseableIteration<? extends Statement, SailException> getStatements(Resource subj, IRI pred,
+						Value obj, Resource... contexts) {
+					List<Statement> statements;
+					synchronized (committed) {
+						statements = new ArrayList<>(committed.filter(subj, pred, obj, contexts));
+					}
+					return new CloseableIteratorIteration<>(statements.iterator());
+				}
+			};
+		}
+
+		@Override
+		public SailSink sink(IsolationLevel level) {
+			return new SailSink() {
+
+				@Override
+				public void close() {
+				}
+
+				@Override
+				public void prepare() {
+				}
+
+				@Override
+				public void flush() {
+				}
+
+				@Override
+				public void setNamespace(String prefix, String name) {
+				}
+
+				@Override
+				public void removeNamespace(String prefix) {
+				}
+
+				@Override
+				public void clearNamespaces() {
+				}
+
+				@Override
+				public void clear(Resource... contexts) {
+					synchronized (committed) {
+						committed.remove(null, null, null, contexts);
+					}
+				}
+
+				@Override
+				public void observe(Resource subj, IRI pred, Value obj, Resource... contexts) {
+				}
+
+				@Override
+				public void approve(Resource subj, IRI pred, Value obj, Resource ctx) {
+					synchronized (committed) {
+						committed.add(subj, pred, obj, ctx);
+					}
+				}
+
+				@Override
+				public void deprecate(Resource subj, IRI pred, Value obj, Resource ctx) {
+					synchronized (committed) {
+						committed.remove(subj, pred, obj, ctx);
+					}
+				}
+			};
+		}
+	}
+}